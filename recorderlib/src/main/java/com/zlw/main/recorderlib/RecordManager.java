@@ -4,15 +4,31 @@ package com.zlw.main.recorderlib;
 import android.annotation.SuppressLint;
 import android.app.Application;
 
+import com.zlw.main.recorderlib.recorder.DeferredEncodePolicy;
 import com.zlw.main.recorderlib.recorder.RecordConfig;
 import com.zlw.main.recorderlib.recorder.RecordHelper;
 import com.zlw.main.recorderlib.recorder.RecordService;
+import com.zlw.main.recorderlib.recorder.StartupMetrics;
+import com.zlw.main.recorderlib.recorder.adaptive.QualityChangeEvent;
+import com.zlw.main.recorderlib.recorder.fanout.OutputStats;
 import com.zlw.main.recorderlib.recorder.listener.RecordDataListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordFeatureListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordLevelListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordResultListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordSoundSizeListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordSpectrumListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordStateListener;
+import com.zlw.main.recorderlib.recorder.metrics.MetricsSnapshot;
+import com.zlw.main.recorderlib.recorder.rtp.RtpStats;
+import com.zlw.main.recorderlib.recorder.stream.EncodedPacket;
+import com.zlw.main.recorderlib.recorder.stream.LevelReading;
+import com.zlw.main.recorderlib.recorder.stream.OverflowStrategy;
+import com.zlw.main.recorderlib.recorder.stream.PcmChunk;
+import com.zlw.main.recorderlib.recorder.stream.RecordPublisher;
 import com.zlw.main.recorderlib.utils.Logger;
 
+import java.util.List;
+
 /**
  * @author zhaolewei on 2018/7/10.
  */
@@ -98,6 +114,27 @@ public class RecordManager {
         RecordService.setRecordSoundSizeListener(listener);
     }
 
+    /**
+     * 录音电平（峰值/RMS dBFS、削波、直流偏移）监听回调
+     */
+    public void setRecordLevelListener(RecordLevelListener listener) {
+        RecordService.setRecordLevelListener(listener);
+    }
+
+    /**
+     * 实时频谱监听回调，需先通过 {@link RecordConfig#setSpectrumConfig} 开启频谱分析
+     */
+    public void setRecordSpectrumListener(RecordSpectrumListener listener) {
+        RecordService.setRecordSpectrumListener(listener);
+    }
+
+    /**
+     * 特征提取回调，需先通过 {@link RecordConfig#setFeatureConfig} 开启特征提取
+     */
+    public void setRecordFeatureListener(RecordFeatureListener listener) {
+        RecordService.setRecordFeatureListener(listener);
+    }
+
     /**
      * 录音完成回调
      */
@@ -125,4 +162,112 @@ public class RecordManager {
         return RecordService.getState();
     }
 
+    /**
+     * 开启预热池，空闲时按当前录音配置预先创建 AudioRecord 和编码器，降低开始录音的延迟
+     *
+     * @param size          预热个数，0：关闭预热池
+     * @param idleTimeoutMs 空闲多久后释放预热的对象
+     */
+    public void setWarmPool(int size, long idleTimeoutMs) {
+        RecordService.setWarmPool(size, idleTimeoutMs);
+    }
+
+    /**
+     * 开启待机预录：空闲时按当前录音配置保持麦克风采集，只在内存中保留最近 seconds 秒，
+     * 开始录音时这段数据无缝拼接在录音开头，避免丢失第一句话。待机期间麦克风一直处于占用状态
+     *
+     * @param seconds 预录时长 s，0：关闭
+     */
+    public void setPreRoll(int seconds) {
+        RecordService.setPreRoll(seconds);
+    }
+
+    /**
+     * 获取最近一次录音的启动耗时
+     */
+    public StartupMetrics getStartupMetrics() {
+        return RecordService.getStartupMetrics();
+    }
+
+    /**
+     * RTP 实时发送（{@link RecordConfig#setRtpConfig}）的发送量、丢包和从采集到 socket 的延迟，未开启时为 null
+     */
+    public RtpStats getRtpStats() {
+        return RecordService.getRtpStats();
+    }
+
+    /**
+     * 本次录音的运行统计：采集读取耗时与溢出、流水线各环节耗时、编码队列深度与等待时间、编码实时率、写入耗时和丢帧，
+     * 录音中为实时数据，结束后为最终结果，尚未录音时为 null；定期写入文件见 {@link RecordConfig#setMetricsConfig}
+     */
+    public MetricsSnapshot getRecordMetrics() {
+        return RecordService.getRecordMetrics();
+    }
+
+    /**
+     * 采集数据（内置处理之后的PCM）的发布者，订阅者按 request(n) 接收，处理慢时按各自的 {@link OverflowStrategy} 丢弃，不影响录音；
+     * 没有订阅者时不产生额外开销
+     */
+    public RecordPublisher<PcmChunk> getAudioPublisher() {
+        return RecordService.getAudioPublisher();
+    }
+
+    /**
+     * 编码后数据包的发布者，目前仅 AAC/AAC_ADTS 单路输出发布（带 ADTS 头的帧）
+     */
+    public RecordPublisher<EncodedPacket> getPacketPublisher() {
+        return RecordService.getPacketPublisher();
+    }
+
+    /**
+     * 电平读数的发布者，间隔见 {@link RecordConfig#setLevelIntervalMs(int)}
+     */
+    public RecordPublisher<LevelReading> getLevelPublisher() {
+        return RecordService.getLevelPublisher();
+    }
+
+    /**
+     * 设置延迟编码（{@link RecordConfig#setDeferredEncoding(boolean)}）的触发时机，默认空闲时编码；
+     * 同时恢复录音目录中上次进程未完成的任务，其结果通过 {@link #setRecordResultListener} 回调
+     */
+    public void setDeferredEncodePolicy(DeferredEncodePolicy policy) {
+        RecordService.setDeferredEncodePolicy(context, policy);
+    }
+
+    /**
+     * 立即编码所有积压的延迟编码任务，录音中时等待录音结束
+     */
+    public void encodeDeferredNow() {
+        RecordService.encodeDeferredNow();
+    }
+
+    /**
+     * @return 尚未编码的音频时长 秒
+     */
+    public float getDeferredBacklogSeconds() {
+        return RecordService.getDeferredBacklogMs() / 1000f;
+    }
+
+    /**
+     * @return 当前延迟编码任务的进度 0~1，-1: 没有正在编码的任务
+     */
+    public float getDeferredProgress() {
+        return RecordService.getDeferredProgress();
+    }
+
+    /**
+     * 最近一次录音的编码质量调整记录，需开启 {@link RecordConfig#setAdaptiveQuality(boolean)}；
+     * 调整在下一次录音开始时生效
+     */
+    public List<QualityChangeEvent> getQualityChangeEvents() {
+        return RecordService.getQualityChangeEvents();
+    }
+
+    /**
+     * 多路输出（{@link RecordConfig#addOutput}）时各路的延迟、丢帧等统计
+     */
+    public List<OutputStats> getOutputStats() {
+        return RecordService.getOutputStats();
+    }
+
 }
@@ -0,0 +1,19 @@
+package com.zlw.main.recorderlib.recorder;
+
+/**
+ * 延迟编码的触发时机
+ */
+public enum DeferredEncodePolicy {
+    /**
+     * 录音结束、录音机空闲后即开始编码
+     */
+    IDLE,
+    /**
+     * 仅在充电时编码
+     */
+    CHARGING,
+    /**
+     * 仅在调用 {@link com.zlw.main.recorderlib.RecordManager#encodeDeferredNow()} 后编码
+     */
+    MANUAL
+}
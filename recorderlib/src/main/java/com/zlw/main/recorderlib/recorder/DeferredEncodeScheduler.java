@@ -0,0 +1,461 @@
+package com.zlw.main.recorderlib.recorder;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import com.zlw.main.recorderlib.recorder.fanout.OutputEncoder;
+import com.zlw.main.recorderlib.recorder.fanout.OutputEncoders;
+import com.zlw.main.recorderlib.recorder.listener.RecordResultListener;
+import com.zlw.main.recorderlib.recorder.mp3.Mp3Encoder;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * 延迟编码调度
+ * 录音时只写PCM，录音结束后在后台低优先级线程中按配置的格式编码，
+ * 编码到临时文件后重命名为结果文件并删除PCM。编码过程中开始新的录音会中止当前任务，空闲后重新编码；
+ * MP3 与实时录音共用 LAME 的全局实例，被占用时稍后再试，有其他使用方等待时同样中止
+ * <p>
+ * 每个任务在PCM文件旁保存一个 {@value #JOB_SUFFIX} 描述文件，进程被杀后通过 {@link #restore(File)} 重新扫描录音目录恢复；
+ * 编码失败的任务放回队尾稍后重试，连续失败 {@value #MAX_ATTEMPTS} 次后放弃并通过回调报告，PCM文件保留
+ */
+class DeferredEncodeScheduler {
+    private static final String TAG = DeferredEncodeScheduler.class.getSimpleName();
+    /**
+     * 录音结束后等待一段时间再编码，避免连续录音时反复启停
+     */
+    private static final long IDLE_DELAY_MS = 2000;
+    private static final long RECORDING_POLL_MS = 10 * 1000;
+    private static final long CHARGING_POLL_MS = 60 * 1000;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final long RETRY_DELAY_MS = 30 * 1000;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final String JOB_SUFFIX = ".job";
+
+    private static final int RESULT_DONE = 0;
+    private static final int RESULT_ABORTED = 1;
+    private static final int RESULT_FAILED = 2;
+
+    private final Callback callback;
+    private final LinkedList<Job> jobs = new LinkedList<>();
+    private final Set<String> restoredDirs = new HashSet<>();
+    private HandlerThread encodeThread;
+    private Handler encodeHandler;
+    private volatile DeferredEncodePolicy policy = DeferredEncodePolicy.IDLE;
+    private volatile Context context;
+    private volatile boolean forceRun;
+    private volatile Job currentJob;
+    private volatile long currentProcessed;
+
+    private final Runnable checkRunnable = new Runnable() {
+        @Override
+        public void run() {
+            check();
+        }
+    };
+
+    DeferredEncodeScheduler(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @param context 用于查询充电状态，{@link DeferredEncodePolicy#CHARGING} 时需要
+     */
+    void setPolicy(DeferredEncodePolicy policy, Context context) {
+        this.policy = policy;
+        if (context != null) {
+            this.context = context.getApplicationContext();
+        }
+        scheduleCheck(0);
+    }
+
+    /**
+     * 忽略触发策略，立即编码全部积压的任务（录音中时等待录音结束）
+     */
+    void encodeNow() {
+        forceRun = true;
+        scheduleCheck(0);
+    }
+
+    /**
+     * 添加一个任务
+     *
+     * @param rawFile    PCM文件
+     * @param targetFile 编码结果文件
+     * @param config     PCM参数和目标格式
+     * @param listener   编码完成的回调
+     */
+    void enqueue(File rawFile, File targetFile, RecordConfig config, RecordResultListener listener) {
+        Job job = new Job(rawFile, targetFile, config, listener);
+        job.save();
+        synchronized (jobs) {
+            jobs.add(job);
+        }
+        Logger.i(TAG, "添加延迟编码任务 %s, 积压：%s ms", targetFile.getName(), getBacklogMs());
+        scheduleCheck(IDLE_DELAY_MS);
+    }
+
+    /**
+     * 扫描录音目录中上次进程未完成的任务并加入队列，每个目录只扫描一次，恢复的任务没有单独的结果回调
+     */
+    void restore(File dir) {
+        if (dir == null) {
+            return;
+        }
+        synchronized (restoredDirs) {
+            if (!restoredDirs.add(dir.getAbsolutePath())) {
+                return;
+            }
+        }
+        File[] jobFiles = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && file.getName().endsWith(JOB_SUFFIX);
+            }
+        });
+        if (jobFiles == null || jobFiles.length == 0) {
+            return;
+        }
+        int restored = 0;
+        for (File jobFile : jobFiles) {
+            Job job = Job.load(jobFile);
+            if (job == null) {
+                continue;
+            }
+            synchronized (jobs) {
+                if (!isQueued(job.rawFile)) {
+                    jobs.add(job);
+                    restored++;
+                }
+            }
+        }
+        if (restored > 0) {
+            Logger.i(TAG, "恢复延迟编码任务：%s, 积压：%s ms", restored, getBacklogMs());
+            scheduleCheck(IDLE_DELAY_MS);
+        }
+    }
+
+    private boolean isQueued(File rawFile) {
+        Job current = currentJob;
+        if (current != null && current.rawFile.equals(rawFile)) {
+            return true;
+        }
+        for (Job job : jobs) {
+            if (job.rawFile.equals(rawFile)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 尚未编码的音频时长 ms（包含正在编码任务的剩余部分）
+     */
+    long getBacklogMs() {
+        long backlogMs = 0;
+        synchronized (jobs) {
+            for (Job job : jobs) {
+                backlogMs += job.rawFile.length() * 1000 / job.bytesPerSecond;
+            }
+        }
+        Job job = currentJob;
+        if (job != null) {
+            backlogMs += Math.max(0, job.rawFile.length() - currentProcessed) * 1000 / job.bytesPerSecond;
+        }
+        return backlogMs;
+    }
+
+    /**
+     * @return 当前任务的编码进度 0~1，-1: 没有正在编码的任务
+     */
+    float getProgress() {
+        Job job = currentJob;
+        if (job == null) {
+            return -1;
+        }
+        long total = job.rawFile.length();
+        return total > 0 ? Math.min(1f, (float) currentProcessed / total) : 0;
+    }
+
+    private synchronized void scheduleCheck(long delayMs) {
+        if (encodeThread == null) {
+            encodeThread = new HandlerThread("deferred-encode", Process.THREAD_PRIORITY_BACKGROUND);
+            encodeThread.start();
+            encodeHandler = new Handler(encodeThread.getLooper());
+        }
+        encodeHandler.removeCallbacks(checkRunnable);
+        encodeHandler.postDelayed(checkRunnable, delayMs);
+    }
+
+    private void check() {
+        for (; ; ) {
+            Job job;
+            synchronized (jobs) {
+                job = jobs.peek();
+            }
+            if (job == null) {
+                forceRun = false;
+                return;
+            }
+            if (callback.isRecording()) {
+                scheduleCheck(RECORDING_POLL_MS);
+                return;
+            }
+            if (!canRun()) {
+                if (policy == DeferredEncodePolicy.CHARGING) {
+                    scheduleCheck(CHARGING_POLL_MS);
+                }
+                return;
+            }
+            synchronized (jobs) {
+                jobs.poll();
+            }
+            int result = encode(job);
+            if (result == RESULT_ABORTED) {
+                //被录音中止，放回队首等待下次空闲
+                synchronized (jobs) {
+                    jobs.addFirst(job);
+                }
+                scheduleCheck(RECORDING_POLL_MS);
+                return;
+            }
+            if (result == RESULT_FAILED && !giveUp(job)) {
+                //放到队尾，不挡住其他任务
+                synchronized (jobs) {
+                    jobs.addLast(job);
+                }
+                scheduleCheck(RETRY_DELAY_MS);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 记录一次失败，达到次数上限时放弃该任务
+     *
+     * @return 是否已放弃
+     */
+    private boolean giveUp(Job job) {
+        job.attempts++;
+        if (job.attempts < MAX_ATTEMPTS) {
+            Logger.w(TAG, "延迟编码失败 %s，第 %s 次，稍后重试", job.targetFile.getName(), job.attempts);
+            job.save();
+            return false;
+        }
+        //保留PCM文件，避免丢失录音
+        job.jobFile.delete();
+        Logger.e(TAG, "延迟编码失败 %s 次，放弃 %s，PCM：%s", job.attempts, job.targetFile.getName(), job.rawFile.getAbsolutePath());
+        callback.onEncodeError(job, String.format("%s，PCM已保留：%s", job.lastError, job.rawFile.getAbsolutePath()));
+        return true;
+    }
+
+    private boolean canRun() {
+        switch (policy) {
+            case CHARGING:
+                return forceRun || isCharging();
+            case MANUAL:
+                return forceRun;
+            case IDLE:
+            default:
+                return true;
+        }
+    }
+
+    private boolean isCharging() {
+        Context ctx = context;
+        if (ctx == null) {
+            return false;
+        }
+        Intent battery = ctx.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        return status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+
+    /**
+     * @return {@link #RESULT_ABORTED}: 因开始录音或 LAME 被占用而中止；{@link #RESULT_FAILED}: 失败原因见 {@link Job#lastError}
+     */
+    private int encode(Job job) {
+        boolean mp3 = job.config.getFormat() == RecordConfig.RecordFormat.MP3;
+        if (mp3 && !Mp3Encoder.tryAcquire(job)) {
+            Logger.i(TAG, "LAME 正被占用，稍后编码 %s", job.targetFile.getName());
+            return RESULT_ABORTED;
+        }
+        currentJob = job;
+        currentProcessed = 0;
+        File tmpFile = new File(job.targetFile.getAbsolutePath() + ".tmp");
+        Logger.TimeCalculator timeCalculator = new Logger.TimeCalculator();
+        boolean aborted = false;
+        String error = null;
+        OutputEncoder encoder = null;
+        InputStream is = null;
+        try {
+            encoder = OutputEncoders.create(job.config, new RecordOutput(job.config.getFormat()), tmpFile, false);
+            is = new FileInputStream(job.rawFile);
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            int len;
+            while ((len = is.read(buffer)) > 0) {
+                encoder.encode(buffer, len);
+                currentProcessed += len;
+                if (callback.isRecording() || mp3 && Mp3Encoder.hasWaiters()) {
+                    aborted = true;
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            Logger.e(e, TAG, e.getMessage());
+            error = job.config.getFormat().name() + "延迟编码失败";
+        } finally {
+            try {
+                if (encoder != null) {
+                    encoder.close();
+                }
+            } catch (IOException e) {
+                Logger.e(e, TAG, e.getMessage());
+                error = job.config.getFormat().name() + "延迟编码失败";
+            }
+            if (mp3) {
+                Mp3Encoder.release(job);
+            }
+            try {
+                if (is != null) {
+                    is.close();
+                }
+            } catch (IOException e) {
+                Logger.e(e, TAG, e.getMessage());
+            }
+            currentJob = null;
+        }
+        if (aborted || error != null) {
+            tmpFile.delete();
+            if (aborted) {
+                Logger.i(TAG, "开始录音或 LAME 被其他使用方等待，中止延迟编码 %s", job.targetFile.getName());
+                return RESULT_ABORTED;
+            }
+            job.lastError = error;
+            return RESULT_FAILED;
+        }
+        if (job.targetFile.exists() && !job.targetFile.delete() || !tmpFile.renameTo(job.targetFile)) {
+            tmpFile.delete();
+            job.lastError = "延迟编码结果保存失败";
+            return RESULT_FAILED;
+        }
+        job.rawFile.delete();
+        job.jobFile.delete();
+        Logger.i(TAG, "延迟编码完成 %s 耗时：%s ms", job.targetFile.getName(), timeCalculator.end());
+        callback.onEncoded(job);
+        return RESULT_DONE;
+    }
+
+    static class Job {
+        final File rawFile;
+        final File targetFile;
+        final RecordConfig config;
+        /**
+         * 从描述文件恢复的任务为 null
+         */
+        final RecordResultListener listener;
+        final long bytesPerSecond;
+        final File jobFile;
+        int attempts;
+        String lastError;
+
+        Job(File rawFile, File targetFile, RecordConfig config, RecordResultListener listener) {
+            this.rawFile = rawFile;
+            this.targetFile = targetFile;
+            this.config = config;
+            this.listener = listener;
+            this.bytesPerSecond = Math.max(1, (long) config.getSampleRate() * config.getChannelCount() * config.getEncoding() / 8);
+            this.jobFile = new File(rawFile.getAbsolutePath() + JOB_SUFFIX);
+        }
+
+        /**
+         * 写入描述文件，失败时该任务只是无法在进程重启后恢复
+         */
+        void save() {
+            Properties properties = new Properties();
+            properties.setProperty("target", targetFile.getAbsolutePath());
+            properties.setProperty("format", config.getFormat().name());
+            properties.setProperty("channelConfig", String.valueOf(config.getChannelConfig()));
+            properties.setProperty("encodingConfig", String.valueOf(config.getEncodingConfig()));
+            properties.setProperty("sampleRate", String.valueOf(config.getSampleRate()));
+            properties.setProperty("attempts", String.valueOf(attempts));
+            OutputStream os = null;
+            try {
+                os = new FileOutputStream(jobFile);
+                properties.store(os, null);
+            } catch (IOException e) {
+                Logger.e(e, TAG, "延迟编码任务保存失败：%s", jobFile.getAbsolutePath());
+            } finally {
+                try {
+                    if (os != null) {
+                        os.close();
+                    }
+                } catch (IOException e) {
+                    Logger.e(e, TAG, e.getMessage());
+                }
+            }
+        }
+
+        /**
+         * @return 描述文件无效或PCM文件已不存在时返回 null 并删除描述文件
+         */
+        static Job load(File jobFile) {
+            String path = jobFile.getAbsolutePath();
+            File rawFile = new File(path.substring(0, path.length() - JOB_SUFFIX.length()));
+            Properties properties = new Properties();
+            InputStream is = null;
+            try {
+                is = new FileInputStream(jobFile);
+                properties.load(is);
+                if (rawFile.exists()) {
+                    RecordConfig config = new RecordConfig(RecordConfig.RecordFormat.valueOf(properties.getProperty("format")),
+                            Integer.parseInt(properties.getProperty("channelConfig")),
+                            Integer.parseInt(properties.getProperty("encodingConfig")),
+                            Integer.parseInt(properties.getProperty("sampleRate")));
+                    Job job = new Job(rawFile, new File(properties.getProperty("target")), config, null);
+                    job.attempts = Integer.parseInt(properties.getProperty("attempts", "0"));
+                    return job;
+                }
+            } catch (IOException | RuntimeException e) {
+                Logger.e(e, TAG, "延迟编码任务读取失败：%s", path);
+            } finally {
+                try {
+                    if (is != null) {
+                        is.close();
+                    }
+                } catch (IOException e) {
+                    Logger.e(e, TAG, e.getMessage());
+                }
+            }
+            jobFile.delete();
+            return null;
+        }
+    }
+
+    interface Callback {
+        boolean isRecording();
+
+        void onEncoded(Job job);
+
+        void onEncodeError(Job job, String error);
+    }
+}
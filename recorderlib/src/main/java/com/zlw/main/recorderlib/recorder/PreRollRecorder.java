@@ -0,0 +1,192 @@
+package com.zlw.main.recorderlib.recorder;
+
+import android.media.AudioRecord;
+
+import com.zlw.main.recorderlib.recorder.preroll.PreRollBuffer;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.util.Locale;
+
+/**
+ * 待机预录：空闲时保持麦克风采集，最近 N 秒的数据循环写入 {@link PreRollBuffer}，
+ * start 时把仍在采集的 AudioRecord 和缓冲一起交给录音线程，录音线程先读完缓冲再继续读 AudioRecord，前后无缝衔接
+ * <p>
+ * 待机线程只做阻塞读取和一次内存拷贝，不分配内存；缓冲在开启时分配一次，配置不变时重复使用。
+ * AudioRecord 的内部缓冲区按 {@link #HANDOFF_BUFFER_MS} 创建，交接过程中（编码器初始化等）的数据保存在其中不会丢失
+ * <p>
+ * 待机期间麦克风处于占用状态，系统会显示麦克风使用提示
+ */
+class PreRollRecorder {
+    private static final String TAG = PreRollRecorder.class.getSimpleName();
+    static final int HANDOFF_BUFFER_MS = 1000;
+
+    private RecordConfig config;
+    private String configKey;
+    private int seconds;
+    private AudioRecord audioRecord;
+    private PreRollBuffer buffer;
+    private byte[] readBuffer;
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * 设置待机预录的配置，之前的待机停止，由 {@link #resume()} 开始
+     *
+     * @param seconds 保留的时长 s
+     */
+    synchronized void setup(RecordConfig config, int seconds) {
+        stop();
+        this.config = config;
+        this.configKey = keyOf(config);
+        this.seconds = seconds;
+    }
+
+    /**
+     * 关闭待机预录并释放麦克风
+     */
+    synchronized void stop() {
+        stopLoop();
+        releaseAudioRecord();
+        config = null;
+        configKey = null;
+        buffer = null;
+        readBuffer = null;
+    }
+
+    synchronized boolean isEnabled() {
+        return config != null;
+    }
+
+    /**
+     * 录音开始：配置相同时停止待机循环，交出正在采集的 AudioRecord，之后通过 {@link #getBuffer()} 读取预录数据；
+     * 配置不同时释放麦克风，录音结束后由 {@link #resume()} 按待机配置重新开始
+     *
+     * @return 正在采集的 AudioRecord，null：未开启或配置不同
+     */
+    synchronized AudioRecord takeOver(RecordConfig recordConfig) {
+        if (config == null) {
+            return null;
+        }
+        stopLoop();
+        if (audioRecord == null || !keyOf(recordConfig).equals(configKey)) {
+            Logger.i(TAG, "录音配置与预录不同，不使用预录数据");
+            releaseAudioRecord();
+            return null;
+        }
+        AudioRecord record = audioRecord;
+        audioRecord = null;
+        Logger.i(TAG, "交接预录数据：%s ms", buffer.available() * 1000L / buffer.getFrameBytes() / record.getSampleRate());
+        return record;
+    }
+
+    /**
+     * 交接给录音线程的缓冲，在 {@link #resume()} 前读取
+     */
+    synchronized PreRollBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * 录音结束后交还 AudioRecord 供下次待机使用
+     *
+     * @return 是否接收，未接收时由调用方处理
+     */
+    synchronized boolean giveBack(AudioRecord record, RecordConfig recordConfig) {
+        if (config == null || audioRecord != null || record.getState() != AudioRecord.STATE_INITIALIZED
+                || !keyOf(recordConfig).equals(configKey)) {
+            return false;
+        }
+        if (record.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+            record.stop();
+        }
+        audioRecord = record;
+        return true;
+    }
+
+    /**
+     * 空闲时（重新）开始待机循环，预录缓冲清空
+     */
+    synchronized void resume() {
+        if (config == null || running) {
+            return;
+        }
+        if (audioRecord == null) {
+            audioRecord = RecorderWarmPool.createAudioRecord(config, HANDOFF_BUFFER_MS);
+            if (audioRecord == null || audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                Logger.e(TAG, "预录 AudioRecord 创建失败");
+                releaseAudioRecord();
+                return;
+            }
+        }
+        int frameBytes = Math.max(1, config.getChannelCount() * config.getEncoding() / 8);
+        int capacityFrames = Math.max(1, audioRecord.getSampleRate() * seconds);
+        if (buffer == null || buffer.getCapacity() != capacityFrames * frameBytes) {
+            buffer = new PreRollBuffer(capacityFrames, frameBytes);
+            Logger.i(TAG, "预录缓冲：%s s, %s bytes", seconds, buffer.getCapacity());
+        }
+        buffer.clear();
+        int readSize = AudioRecord.getMinBufferSize(audioRecord.getSampleRate(), config.getChannelConfig(), config.getEncodingConfig());
+        if (readBuffer == null || readBuffer.length != readSize) {
+            readBuffer = new byte[Math.max(frameBytes, readSize)];
+        }
+        try {
+            audioRecord.startRecording();
+        } catch (IllegalStateException e) {
+            Logger.e(e, TAG, "预录启动失败");
+            releaseAudioRecord();
+            return;
+        }
+        final AudioRecord record = audioRecord;
+        final PreRollBuffer ring = buffer;
+        final byte[] data = readBuffer;
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop(record, ring, data);
+            }
+        }, "pre-roll");
+        thread.start();
+    }
+
+    private void loop(AudioRecord record, PreRollBuffer ring, byte[] data) {
+        while (running) {
+            int read = record.read(data, 0, data.length);
+            if (read > 0) {
+                ring.write(data, 0, read);
+            } else if (read < 0) {
+                Logger.e(TAG, "预录读取失败：%s", read);
+                break;
+            }
+        }
+    }
+
+    /**
+     * 等待当前的读取完成后停止待机线程，AudioRecord 保持采集状态
+     */
+    private void stopLoop() {
+        running = false;
+        Thread t = thread;
+        thread = null;
+        if (t == null) {
+            return;
+        }
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void releaseAudioRecord() {
+        if (audioRecord != null) {
+            audioRecord.release();
+            audioRecord = null;
+        }
+    }
+
+    private static String keyOf(RecordConfig config) {
+        return String.format(Locale.US, "%s_%s_%s_%s", config.getSampleRate(), config.getCaptureSampleRate(),
+                config.getChannelConfig(), config.getEncodingConfig());
+    }
+}
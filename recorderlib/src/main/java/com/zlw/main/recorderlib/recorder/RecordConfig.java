@@ -3,7 +3,21 @@ package com.zlw.main.recorderlib.recorder;
 import android.media.AudioFormat;
 import android.os.Environment;
 
+import com.zlw.main.recorderlib.recorder.dsp.AgcConfig;
+import com.zlw.main.recorderlib.recorder.dsp.SpectrumConfig;
+import com.zlw.main.recorderlib.recorder.dsp.VadConfig;
+import com.zlw.main.recorderlib.recorder.feature.FeatureConfig;
+import com.zlw.main.recorderlib.recorder.hls.HlsConfig;
+import com.zlw.main.recorderlib.recorder.metrics.MetricsConfig;
+import com.zlw.main.recorderlib.recorder.pipeline.Stage;
+import com.zlw.main.recorderlib.recorder.pipeline.StageSpec;
+import com.zlw.main.recorderlib.recorder.rtp.RtpConfig;
+import com.zlw.main.recorderlib.recorder.upload.UploadConfig;
+
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -29,6 +43,16 @@ public class RecordConfig implements Serializable {
      */
     private int sampleRate = 16000;
 
+    /**
+     * 采集使用设备的原生采样率，见 {@link #setCaptureSampleRate(int)}
+     */
+    public static final int CAPTURE_RATE_NATIVE = -1;
+
+    /**
+     * 采集采样率，0：与 sampleRate 相同；与 sampleRate 不同时采集后重采样到 sampleRate
+     */
+    private int captureSampleRate = 0;
+
     /*
         * 录音文件存放路径，默认sdcard/Record
      */
@@ -36,6 +60,87 @@ public class RecordConfig implements Serializable {
             "%s/Record/",
             Environment.getExternalStorageDirectory().getAbsolutePath());
 
+    /**
+     * 多路输出，不为空时忽略 format，按各路输出的格式同时编码
+     */
+    private List<RecordOutput> outputs = new ArrayList<>();
+
+    /**
+     * 自定义处理环节，在内置处理之后、编码之前运行；环节工厂不参与序列化
+     */
+    private transient List<StageSpec> stages = new ArrayList<>();
+
+    /**
+     * 编码跟不上实时时是否自动降低MP3的质量和码率，默认关闭；
+     * AAC 使用的 MediaCodec 不支持运行中修改音频码率，不做调整
+     */
+    private boolean adaptiveQuality = false;
+
+    /**
+     * 延迟编码：录音时只写PCM，结束后在后台编码为 format 格式，默认关闭
+     */
+    private boolean deferredEncoding = false;
+
+    /**
+     * 音量/电平回调的间隔 ms
+     */
+    private int levelIntervalMs = 100;
+
+    /**
+     * 静音跳过配置，null：不跳过；仅支持16bit
+     */
+    private VadConfig vadConfig;
+
+    /**
+     * 实时频谱分析配置，null：不分析；仅支持16bit
+     */
+    private SpectrumConfig spectrumConfig;
+
+    /**
+     * log-mel / MFCC 特征提取配置，null：不提取；仅支持16bit
+     */
+    private FeatureConfig featureConfig;
+
+    /**
+     * 自动增益与限幅配置，null：不处理；仅支持16bit
+     */
+    private AgcConfig agcConfig;
+
+    /**
+     * 是否在录音文件旁生成波形峰值索引 .peaks
+     */
+    private boolean peakIndexEnabled = false;
+
+    /**
+     * 边录边传配置，null：不上传；仅对 AAC/AAC_ADTS 单路输出有效
+     */
+    private UploadConfig uploadConfig;
+
+    /**
+     * RTP 实时发送配置，null：不发送；仅对 AAC/AAC_ADTS/PCM/WAV 单路输出有效
+     */
+    private RtpConfig rtpConfig;
+
+    /**
+     * HLS 直播分片配置，null：不输出；仅对 AAC/AAC_ADTS 单路输出有效
+     */
+    private HlsConfig hlsConfig;
+
+    /**
+     * 运行统计定期写入文件的配置，null：不写入；统计本身始终开启
+     */
+    private MetricsConfig metricsConfig;
+
+    /**
+     * 声道路由方式
+     */
+    private ChannelRouting channelRouting = ChannelRouting.PASS_THROUGH;
+
+    /**
+     * 录音结束后是否原地裁剪开头和结尾的静音
+     */
+    private boolean trimSilence = false;
+
     public RecordConfig() {
     }
 
@@ -99,8 +204,274 @@ public class RecordConfig implements Serializable {
         }
     }
 
+    /**
+     * 添加一路输出
+     */
+    public RecordConfig addOutput(RecordOutput output) {
+        outputs.add(output);
+        return this;
+    }
+
+    /**
+     * 添加在录音线程中同步运行的自定义处理环节，见 {@link #addStage(String, Stage.Factory, int)}
+     */
+    public RecordConfig addStage(String name, Stage.Factory factory) {
+        return addStage(name, factory, 0);
+    }
+
+    /**
+     * 添加自定义处理环节：按添加顺序排在内置处理（声道路由、电平、静音跳过、增益等）之后、编码之前，
+     * 可读取或原地修改PCM数据，每段采集由 factory 创建一次
+     *
+     * @param queueCapacity 大于0时该环节及其后的环节（含编码）在独立线程中运行，队列容量（块）；0：在录音线程中同步运行
+     */
+    public RecordConfig addStage(String name, Stage.Factory factory, int queueCapacity) {
+        if (stages == null) {
+            stages = new ArrayList<>();
+        }
+        stages.add(new StageSpec(name, factory, queueCapacity));
+        return this;
+    }
+
+    public void clearStages() {
+        if (stages != null) {
+            stages.clear();
+        }
+    }
+
+    public List<StageSpec> getStages() {
+        return stages != null ? stages : Collections.<StageSpec>emptyList();
+    }
+
+    public void clearOutputs() {
+        outputs.clear();
+    }
+
+    public List<RecordOutput> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * 实际使用的多路输出：{@link ChannelRouting#SPLIT} 且未配置多路输出时，按声道各生成一路录音格式的输出
+     */
+    public List<RecordOutput> getRoutedOutputs() {
+        if (!isSplitChannels() || !outputs.isEmpty()) {
+            return outputs;
+        }
+        List<RecordOutput> split = new ArrayList<>();
+        for (int channel = 0; channel < getChannelCount(); channel++) {
+            split.add(new RecordOutput(format).setChannel(channel));
+        }
+        return split;
+    }
+
+    /**
+     * @return 是否为多路输出
+     */
+    public boolean hasOutputs() {
+        return !outputs.isEmpty() || isSplitChannels();
+    }
+
+    private boolean isSplitChannels() {
+        return channelRouting == ChannelRouting.SPLIT && getChannelCount() > 1;
+    }
+
+    /**
+     * 经过声道路由后送入处理环节和编码器的声道数
+     */
+    public int getRoutedChannelCount() {
+        int channels = getChannelCount();
+        return channelRouting == ChannelRouting.DOWNMIX_MONO && channels > 1 ? 1 : channels;
+    }
+
+    /**
+     * 经过声道路由后的声道配置，见 {@link #getRoutedChannelCount()}
+     */
+    public int getRoutedChannelConfig() {
+        return getRoutedChannelCount() == 1 ? AudioFormat.CHANNEL_IN_MONO : channelConfig;
+    }
+
     //get&set
 
+    public VadConfig getVadConfig() {
+        return vadConfig;
+    }
+
+    /**
+     * 开启静音跳过，编码前删除（或压缩）静音段，并在录音文件旁生成 .vad.json 记录删除的区间
+     *
+     * @param vadConfig null：关闭
+     */
+    public void setVadConfig(VadConfig vadConfig) {
+        this.vadConfig = vadConfig;
+    }
+
+    public SpectrumConfig getSpectrumConfig() {
+        return spectrumConfig;
+    }
+
+    /**
+     * 开启实时频谱分析，结果通过 {@link com.zlw.main.recorderlib.recorder.listener.RecordSpectrumListener} 回调
+     *
+     * @param spectrumConfig null：关闭
+     */
+    public void setSpectrumConfig(SpectrumConfig spectrumConfig) {
+        this.spectrumConfig = spectrumConfig;
+    }
+
+    public FeatureConfig getFeatureConfig() {
+        return featureConfig;
+    }
+
+    /**
+     * 录音过程中增量提取 log-mel / MFCC 特征，结果通过 {@link com.zlw.main.recorderlib.recorder.listener.RecordFeatureListener} 回调，
+     * 可选写入 录音文件名.feat；特征基于静音跳过和自动增益之前的原始音频
+     *
+     * @param featureConfig null：关闭
+     */
+    public void setFeatureConfig(FeatureConfig featureConfig) {
+        this.featureConfig = featureConfig;
+    }
+
+    public AgcConfig getAgcConfig() {
+        return agcConfig;
+    }
+
+    /**
+     * 开启自动增益与预读限幅，在编码前将音量归一到目标电平，输出延迟 lookaheadMs
+     *
+     * @param agcConfig null：关闭
+     */
+    public void setAgcConfig(AgcConfig agcConfig) {
+        this.agcConfig = agcConfig;
+    }
+
+    public boolean isPeakIndexEnabled() {
+        return peakIndexEnabled;
+    }
+
+    /**
+     * 录音过程中增量构建波形峰值索引，结束后写入 录音文件名.peaks，
+     * 通过 {@link com.zlw.main.recorderlib.recorder.waveform.PeakIndex} 查询；开启静音跳过时索引对应跳过后的音频
+     */
+    public void setPeakIndexEnabled(boolean peakIndexEnabled) {
+        this.peakIndexEnabled = peakIndexEnabled;
+    }
+
+    public UploadConfig getUploadConfig() {
+        return uploadConfig;
+    }
+
+    /**
+     * 录音过程中将编码后的ADTS数据分块上传，见 {@link com.zlw.main.recorderlib.recorder.upload.ChunkedUploader}；
+     * 录音结束后剩余分块在后台继续上传，结果通过 {@link UploadConfig#setListener} 回调
+     *
+     * @param uploadConfig null：关闭
+     */
+    public void setUploadConfig(UploadConfig uploadConfig) {
+        this.uploadConfig = uploadConfig;
+    }
+
+    public RtpConfig getRtpConfig() {
+        return rtpConfig;
+    }
+
+    /**
+     * 录音过程中通过 RTP/UDP 实时发送音频：AAC 格式发送编码后的帧（RFC 3640），PCM/WAV 格式发送采集数据（L16），
+     * 发送统计见 {@link com.zlw.main.recorderlib.RecordManager#getRtpStats()}；延迟编码时不发送
+     *
+     * @param rtpConfig null：关闭
+     */
+    public void setRtpConfig(RtpConfig rtpConfig) {
+        this.rtpConfig = rtpConfig;
+    }
+
+    public HlsConfig getHlsConfig() {
+        return hlsConfig;
+    }
+
+    /**
+     * 录音过程中将编码后的AAC帧切分为 fMP4 分片并维护滚动播放列表，
+     * 配合任意本地文件服务器即可用标准 HLS 播放器边录边听，见 {@link com.zlw.main.recorderlib.recorder.hls.HlsSegmenter}；延迟编码时不输出
+     *
+     * @param hlsConfig null：关闭
+     */
+    public void setHlsConfig(HlsConfig hlsConfig) {
+        this.hlsConfig = hlsConfig;
+    }
+
+    public MetricsConfig getMetricsConfig() {
+        return metricsConfig;
+    }
+
+    /**
+     * 录音过程中定期将运行统计（见 {@link com.zlw.main.recorderlib.RecordManager#getRecordMetrics()}）写入文件，
+     * 录音结束时写入最终结果，便于附在问题报告中
+     *
+     * @param metricsConfig null：不写入
+     */
+    public void setMetricsConfig(MetricsConfig metricsConfig) {
+        this.metricsConfig = metricsConfig;
+    }
+
+    public ChannelRouting getChannelRouting() {
+        return channelRouting;
+    }
+
+    /**
+     * 设置声道路由，仅对双声道录音有效
+     * {@link ChannelRouting#DOWNMIX_MONO}：采集后立即原地混为单声道，之后的处理环节、编码器和 WAV 头均按单声道处理；
+     * {@link ChannelRouting#SPLIT}：每个声道单独输出一个文件，见 {@link #getRoutedOutputs()}
+     */
+    public void setChannelRouting(ChannelRouting channelRouting) {
+        this.channelRouting = channelRouting == null ? ChannelRouting.PASS_THROUGH : channelRouting;
+    }
+
+    public boolean isTrimSilence() {
+        return trimSilence;
+    }
+
+    /**
+     * 录音结束、回调结果前原地裁剪开头和结尾的静音（门限 -50dBFS，两端各保留 200ms），仅支持16bit
+     * 只对单路输出的 WAV/PCM/MP3/AAC_ADTS 生效，MP3/ADTS 按帧裁剪；
+     * .peaks/.vad.json 仍对应裁剪前的时间轴
+     */
+    public void setTrimSilence(boolean trimSilence) {
+        this.trimSilence = trimSilence;
+    }
+
+    public int getLevelIntervalMs() {
+        return levelIntervalMs;
+    }
+
+    /**
+     * 设置 {@link com.zlw.main.recorderlib.recorder.listener.RecordSoundSizeListener} 和
+     * {@link com.zlw.main.recorderlib.recorder.listener.RecordLevelListener} 的回调间隔
+     */
+    public void setLevelIntervalMs(int levelIntervalMs) {
+        this.levelIntervalMs = levelIntervalMs;
+    }
+
+    public boolean isDeferredEncoding() {
+        return deferredEncoding;
+    }
+
+    public void setDeferredEncoding(boolean deferredEncoding) {
+        this.deferredEncoding = deferredEncoding;
+    }
+
+    public boolean isAdaptiveQuality() {
+        return adaptiveQuality;
+    }
+
+    /**
+     * 仅对实时 MP3 录音生效，延迟编码、多路输出及其他格式忽略该设置。
+     * 录音中按编码实时率和队列深度给出质量档位，在下一次录音开始时生效，同一个文件内不切换
+     */
+    public void setAdaptiveQuality(boolean adaptiveQuality) {
+        this.adaptiveQuality = adaptiveQuality;
+    }
+
     public RecordFormat getFormat() {
         return format;
     }
@@ -133,10 +504,39 @@ public class RecordConfig implements Serializable {
         this.sampleRate = sampleRate;
     }
 
+    public int getCaptureSampleRate() {
+        return captureSampleRate;
+    }
+
+    /**
+     * 设置采集采样率，与 sampleRate 不同时由重采样器转换后再交给后续处理和编码，仅支持16bit
+     * 设备不支持 sampleRate 时也会自动改用支持的采样率采集
+     *
+     * @param captureSampleRate 0：与 sampleRate 相同；{@link #CAPTURE_RATE_NATIVE}：设备原生采样率（48000/44100）
+     */
+    public void setCaptureSampleRate(int captureSampleRate) {
+        this.captureSampleRate = captureSampleRate;
+    }
+
 
     @Override
     public String toString() {
-        return String.format(Locale.getDefault(), "录制格式： %s,采样率：%sHz,位宽：%s bit,声道数：%s", format, sampleRate, getEncoding(), getChannelCount());
+        return String.format(Locale.getDefault(), "录制格式： %s,采样率：%sHz,位宽：%s bit,声道数：%s,声道路由：%s", hasOutputs() ? getRoutedOutputs() : format, sampleRate, getEncoding(), getChannelCount(), channelRouting);
+    }
+
+    public enum ChannelRouting {
+        /**
+         * 保持采集的声道
+         */
+        PASS_THROUGH,
+        /**
+         * 混为单声道，编码量减半
+         */
+        DOWNMIX_MONO,
+        /**
+         * 每个声道输出为单独的单声道文件
+         */
+        SPLIT
     }
 
     public enum RecordFormat {
@@ -153,9 +553,17 @@ public class RecordConfig implements Serializable {
          */
         PCM(".pcm"),
         /**
-         * aac格式
+         * aac格式，MP4封装（API 18 以下为ADTS流）
+         */
+        AAC(".m4a"),
+        /**
+         * aac格式，ADTS裸流
+         */
+        AAC_ADTS(".aac"),
+        /**
+         * flac格式，无损压缩
          */
-        AAC(".m4a");
+        FLAC(".flac");
 
         private String extension;
 
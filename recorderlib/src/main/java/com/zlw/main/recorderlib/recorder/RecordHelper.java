@@ -1,37 +1,89 @@
 package com.zlw.main.recorderlib.recorder;
 
-import android.media.AudioFormat;
 import android.media.AudioRecord;
-import android.media.MediaRecorder;
+import android.media.MediaFormat;
+import android.os.Build;
 import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
-import android.util.Log;
 
 import com.zlw.main.recorderlib.recorder.aac.AACEncoder;
+import com.zlw.main.recorderlib.recorder.aac.AacSink;
+import com.zlw.main.recorderlib.recorder.aac.AdtsFileSink;
+import com.zlw.main.recorderlib.recorder.aac.HlsAacSink;
+import com.zlw.main.recorderlib.recorder.aac.Mp4FileSink;
+import com.zlw.main.recorderlib.recorder.aac.PublishingAacSink;
+import com.zlw.main.recorderlib.recorder.aac.RtpAacSink;
+import com.zlw.main.recorderlib.recorder.aac.UploadingAacSink;
+import com.zlw.main.recorderlib.recorder.adaptive.AdaptiveQualityController;
+import com.zlw.main.recorderlib.recorder.adaptive.QualityChangeEvent;
+import com.zlw.main.recorderlib.recorder.fanout.FanOutRecorder;
+import com.zlw.main.recorderlib.recorder.feature.FeatureConfig;
+import com.zlw.main.recorderlib.recorder.feature.FeatureExtractor;
+import com.zlw.main.recorderlib.recorder.feature.FeatureSidecarWriter;
+import com.zlw.main.recorderlib.recorder.fanout.OutputStats;
+import com.zlw.main.recorderlib.recorder.flac.FlacEncoder;
+import com.zlw.main.recorderlib.recorder.hls.HlsConfig;
+import com.zlw.main.recorderlib.recorder.hls.HlsSegmenter;
+import com.zlw.main.recorderlib.recorder.dsp.AutoGainControl;
+import com.zlw.main.recorderlib.recorder.dsp.ChannelMixer;
+import com.zlw.main.recorderlib.recorder.dsp.LevelMeter;
+import com.zlw.main.recorderlib.recorder.dsp.PolyphaseResampler;
+import com.zlw.main.recorderlib.recorder.dsp.SilenceGate;
+import com.zlw.main.recorderlib.recorder.dsp.SpectrumAnalyzer;
 import com.zlw.main.recorderlib.recorder.listener.RecordDataListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordFeatureListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordLevelListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordResultListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordSoundSizeListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordSpectrumListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordStateListener;
+import com.zlw.main.recorderlib.recorder.metrics.MetricsConfig;
+import com.zlw.main.recorderlib.recorder.metrics.MetricsDumper;
+import com.zlw.main.recorderlib.recorder.metrics.MetricsSnapshot;
+import com.zlw.main.recorderlib.recorder.metrics.RecordMetrics;
 import com.zlw.main.recorderlib.recorder.mp3.Mp3EncodeThread;
+import com.zlw.main.recorderlib.recorder.pipeline.AudioFrame;
+import com.zlw.main.recorderlib.recorder.pipeline.Pipeline;
+import com.zlw.main.recorderlib.recorder.pipeline.Stage;
+import com.zlw.main.recorderlib.recorder.pipeline.StageSpec;
+import com.zlw.main.recorderlib.recorder.preroll.PreRollBuffer;
+import com.zlw.main.recorderlib.recorder.rtp.AacRtpPacketizer;
+import com.zlw.main.recorderlib.recorder.rtp.L16RtpPacketizer;
+import com.zlw.main.recorderlib.recorder.rtp.RtpConfig;
+import com.zlw.main.recorderlib.recorder.rtp.RtpSender;
+import com.zlw.main.recorderlib.recorder.rtp.RtpStats;
+import com.zlw.main.recorderlib.recorder.stream.EncodedPacket;
+import com.zlw.main.recorderlib.recorder.stream.LevelReading;
+import com.zlw.main.recorderlib.recorder.stream.PcmChunk;
+import com.zlw.main.recorderlib.recorder.stream.RecordPublisher;
+import com.zlw.main.recorderlib.recorder.trim.SilenceBoundsTracker;
+import com.zlw.main.recorderlib.recorder.trim.SilenceTrimmer;
+import com.zlw.main.recorderlib.recorder.upload.ChunkedUploader;
+import com.zlw.main.recorderlib.recorder.upload.UploadConfig;
+import com.zlw.main.recorderlib.recorder.waveform.PeakIndexWriter;
 import com.zlw.main.recorderlib.recorder.wav.WavUtils;
 import com.zlw.main.recorderlib.utils.ByteUtils;
 import com.zlw.main.recorderlib.utils.FileUtils;
 import com.zlw.main.recorderlib.utils.Logger;
-import com.zlw.main.recorderlib.utils.RecordUtils;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Arrays;
 import java.util.Locale;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author zhaolewei on 2018/7/10.
@@ -46,6 +98,9 @@ public class RecordHelper {
     private RecordDataListener recordDataListener;
     private RecordSoundSizeListener recordSoundSizeListener;
     private RecordResultListener recordResultListener;
+    private RecordLevelListener recordLevelListener;
+    private RecordSpectrumListener recordSpectrumListener;
+    private RecordFeatureListener recordFeatureListener;
     private RecordConfig currentConfig;
     private AudioRecordThread audioRecordThread;
     private Handler mainHandler = new Handler(Looper.getMainLooper());
@@ -54,6 +109,158 @@ public class RecordHelper {
     private File tmpFile = null;
     private List<File> files = new ArrayList<>();
     private Mp3EncodeThread mp3EncodeThread;
+    private FlacEncoder flacEncoder;
+    private FanOutRecorder fanOutRecorder;
+    private List<OutputStats> lastOutputStats = Collections.emptyList();
+    private AdaptiveQualityController qualityController;
+    /**
+     * 自适应质量在上一次 MP3 录音结束时给出的档位，用于下一次录音
+     */
+    private volatile int mp3QualityLevel;
+    private final DeferredEncodeScheduler deferredScheduler = new DeferredEncodeScheduler(new DeferredEncodeScheduler.Callback() {
+        @Override
+        public boolean isRecording() {
+            return state != RecordState.IDLE;
+        }
+
+        @Override
+        public void onEncoded(final DeferredEncodeScheduler.Job job) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (recordStateListener != null) {
+                        recordStateListener.onStateChange(RecordState.FINISH);
+                    }
+                    //进程重启后恢复的任务没有单独的回调
+                    RecordResultListener listener = job.listener != null ? job.listener : recordResultListener;
+                    if (listener != null) {
+                        listener.onResult(job.targetFile);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void onEncodeError(DeferredEncodeScheduler.Job job, String error) {
+            notifyError(error);
+        }
+    });
+    /**
+     * 自适应质量：队列深度达到该值视为编码跟不上
+     */
+    private static final int ADAPTIVE_HIGH_QUEUE_DEPTH = 8;
+    private final RecorderWarmPool warmPool = new RecorderWarmPool();
+    private final PreRollRecorder preRollRecorder = new PreRollRecorder();
+    private final StartupMetrics startupMetrics = new StartupMetrics();
+    /**
+     * 本次录音的运行统计，每次 start 重新创建
+     */
+    private volatile RecordMetrics recordMetrics;
+    private MetricsDumper metricsDumper;
+    private LevelMeter levelMeter;
+    private SilenceGate silenceGate;
+    private AutoGainControl autoGainControl;
+    private volatile SpectrumAnalyzer spectrumAnalyzer;
+    private PeakIndexWriter peakIndexWriter;
+    private volatile FeatureExtractor featureExtractor;
+    private FeatureSidecarWriter featureSidecar;
+    /**
+     * 累计多少帧特征回调一次，以及采集线程上尚未通知的帧数
+     */
+    private int featurePublishFrames;
+    private int featureUnpublished;
+    /**
+     * 特征回调复用的数组，仅在主线程中读写
+     */
+    private float[] featureMel;
+    private float[] featureMfcc;
+    private final AtomicBoolean featurePending = new AtomicBoolean();
+    /**
+     * MP3/ADTS 静音裁剪使用的采集时非静音范围
+     */
+    private SilenceBoundsTracker silenceBoundsTracker;
+    /**
+     * RTP 实时发送，AAC 格式在编码输出线程中打包，PCM/WAV 格式在采集线程中打包
+     */
+    private volatile RtpSender rtpSender;
+    private AacRtpPacketizer aacRtpPacketizer;
+    private L16RtpPacketizer l16RtpPacketizer;
+    /**
+     * 已登记到 rtpSender 的采集样本数（每声道）
+     */
+    private long rtpCapturedFrames;
+    private RtpStats lastRtpStats;
+    /**
+     * 采集数据、编码数据包和电平读数的发布者，订阅者的回调在 record-publish 线程池中进行
+     */
+    private final ExecutorService publishExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(r, "record-publish");
+        }
+    });
+    private final RecordPublisher<PcmChunk> audioPublisher = new RecordPublisher<>("audio", publishExecutor);
+    private final RecordPublisher<EncodedPacket> packetPublisher = new RecordPublisher<>("packet", publishExecutor);
+    private final RecordPublisher<LevelReading> levelPublisher = new RecordPublisher<>("level", publishExecutor);
+    /**
+     * 频谱回调复用的数组，仅在主线程中读写
+     */
+    private float[] spectrumBands;
+    private float[] spectrumEdges;
+    /**
+     * 主线程尚未取走上一次结果时不再重复post
+     */
+    private final AtomicBoolean spectrumPending = new AtomicBoolean();
+    /**
+     * 累计多少个样本回调一次电平
+     */
+    private int levelPublishSamples;
+    private volatile int soundSize;
+    private volatile float peakDbfs;
+    private volatile float rmsDbfs;
+    private volatile int clipCount;
+    private volatile float dcOffset;
+    private final Runnable levelRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (recordSoundSizeListener != null) {
+                recordSoundSizeListener.onSoundSize(soundSize);
+            }
+            if (recordLevelListener != null) {
+                recordLevelListener.onLevel(peakDbfs, rmsDbfs, clipCount, dcOffset);
+            }
+        }
+    };
+    private final Runnable spectrumRunnable = new Runnable() {
+        @Override
+        public void run() {
+            spectrumPending.set(false);
+            SpectrumAnalyzer analyzer = spectrumAnalyzer;
+            if (analyzer == null || recordSpectrumListener == null) {
+                return;
+            }
+            if (spectrumBands == null || spectrumBands.length != analyzer.getBandCount()) {
+                spectrumBands = new float[analyzer.getBandCount()];
+            }
+            analyzer.readBands(spectrumBands);
+            recordSpectrumListener.onSpectrum(spectrumBands, spectrumEdges);
+        }
+    };
+    private final Runnable featureRunnable = new Runnable() {
+        @Override
+        public void run() {
+            featurePending.set(false);
+            drainFeatures(featureExtractor);
+        }
+    };
+    private final SpectrumAnalyzer.Callback spectrumCallback = new SpectrumAnalyzer.Callback() {
+        @Override
+        public void onSpectrumReady(SpectrumAnalyzer analyzer) {
+            if (recordSpectrumListener != null && spectrumPending.compareAndSet(false, true)) {
+                mainHandler.post(spectrumRunnable);
+            }
+        }
+    };
 
     private RecordHelper() {
     }
@@ -89,6 +296,126 @@ public class RecordHelper {
         this.recordResultListener = recordResultListener;
     }
 
+    void setRecordLevelListener(RecordLevelListener recordLevelListener) {
+        this.recordLevelListener = recordLevelListener;
+    }
+
+    void setRecordSpectrumListener(RecordSpectrumListener recordSpectrumListener) {
+        this.recordSpectrumListener = recordSpectrumListener;
+    }
+
+    void setRecordFeatureListener(RecordFeatureListener recordFeatureListener) {
+        this.recordFeatureListener = recordFeatureListener;
+    }
+
+    /**
+     * 设置预热池
+     *
+     * @param size          预热个数，0：关闭
+     * @param idleTimeoutMs 空闲释放时间
+     * @param config        需要预热的录音配置
+     */
+    void setWarmPool(int size, long idleTimeoutMs, RecordConfig config) {
+        warmPool.setPoolSize(size, idleTimeoutMs);
+        warmUp(config);
+    }
+
+    /**
+     * 设置待机预录，空闲时立即开始采集，录音中则在本次录音结束后开始
+     *
+     * @param seconds 保留的时长 s，0：关闭
+     * @param config  待机采集的配置，录音配置的采样率、声道和位宽与之相同时才会拼接预录数据
+     */
+    void setPreRoll(int seconds, RecordConfig config) {
+        if (seconds <= 0 || config == null) {
+            preRollRecorder.stop();
+            return;
+        }
+        preRollRecorder.setup(config, seconds);
+        if (state == RecordState.IDLE) {
+            preRollRecorder.resume();
+        }
+    }
+
+    /**
+     * 按配置预热，仅在空闲时进行
+     */
+    void warmUp(RecordConfig config) {
+        if (state == RecordState.IDLE && warmPool.isEnabled()) {
+            warmPool.warmUp(config);
+        }
+    }
+
+    StartupMetrics getStartupMetrics() {
+        return startupMetrics;
+    }
+
+    /**
+     * RTP 发送统计，录音中为实时数据，结束后为最终结果
+     */
+    RtpStats getRtpStats() {
+        RtpSender sender = rtpSender;
+        return sender != null ? sender.getStats() : lastRtpStats;
+    }
+
+    /**
+     * 运行统计，录音中为实时数据，结束后为最终结果
+     */
+    MetricsSnapshot getRecordMetrics() {
+        RecordMetrics metrics = recordMetrics;
+        return metrics != null ? metrics.snapshot() : null;
+    }
+
+    RecordPublisher<PcmChunk> getAudioPublisher() {
+        return audioPublisher;
+    }
+
+    RecordPublisher<EncodedPacket> getPacketPublisher() {
+        return packetPublisher;
+    }
+
+    RecordPublisher<LevelReading> getLevelPublisher() {
+        return levelPublisher;
+    }
+
+    DeferredEncodeScheduler getDeferredScheduler() {
+        return deferredScheduler;
+    }
+
+    /**
+     * 是否为延迟编码，PCM/WAV 本身不需要编码，多路输出不支持延迟编码
+     */
+    private boolean isDeferred() {
+        RecordConfig.RecordFormat format = currentConfig.getFormat();
+        return currentConfig.isDeferredEncoding() && !currentConfig.hasOutputs()
+                && format != RecordConfig.RecordFormat.PCM && format != RecordConfig.RecordFormat.WAV;
+    }
+
+    /**
+     * 最近一次录音的编码质量调整记录
+     */
+    List<QualityChangeEvent> getQualityChangeEvents() {
+        AdaptiveQualityController controller = qualityController;
+        return controller != null ? controller.getEvents() : Collections.<QualityChangeEvent>emptyList();
+    }
+
+    private AdaptiveQualityController createQualityController(String name, int maxLevel, int initialLevel) {
+        if (!currentConfig.isAdaptiveQuality()) {
+            qualityController = null;
+            return null;
+        }
+        qualityController = new AdaptiveQualityController(name, maxLevel, ADAPTIVE_HIGH_QUEUE_DEPTH, initialLevel);
+        return qualityController;
+    }
+
+    /**
+     * 多路输出时各路的统计，录音中为实时数据，结束后为最终结果
+     */
+    List<OutputStats> getOutputStats() {
+        FanOutRecorder recorder = fanOutRecorder;
+        return recorder != null ? recorder.getStats() : lastOutputStats;
+    }
+
     public void start(String _filePath, RecordConfig config) {
         this.currentConfig = config;
         if (state != RecordState.IDLE) {
@@ -97,6 +424,9 @@ public class RecordHelper {
         }
         this.filePath = _filePath;
         resultFile = new File(filePath);
+        if (isDeferred()) {
+            deferredScheduler.restore(resultFile.getParentFile());
+        }
         String tempFilePath = getTempFilePath();
 
         Logger.d(TAG, "----------------开始录制 %s------------------------", currentConfig.getFormat().name());
@@ -106,15 +436,34 @@ public class RecordHelper {
 
 
         tmpFile = new File(tempFilePath);
+        startupMetrics.start();
+        recordMetrics = new RecordMetrics();
+        qualityController = null;
+        startMetricsDumper();
+        levelMeter = new LevelMeter(currentConfig.getEncoding());
+        silenceGate = currentConfig.getVadConfig() != null && currentConfig.getEncoding() == 16
+                ? new SilenceGate(currentConfig.getVadConfig(), currentConfig.getSampleRate(), currentConfig.getRoutedChannelCount())
+                : null;
+        autoGainControl = currentConfig.getAgcConfig() != null && currentConfig.getEncoding() == 16
+                ? new AutoGainControl(currentConfig.getAgcConfig(), currentConfig.getSampleRate(), currentConfig.getRoutedChannelCount())
+                : null;
+        startSpectrumAnalyzer();
+        startFeatureExtractor();
+        startRtpStream();
+        peakIndexWriter = currentConfig.isPeakIndexEnabled() && currentConfig.getEncoding() != 0
+                ? new PeakIndexWriter(currentConfig.getSampleRate(), currentConfig.getRoutedChannelCount(), currentConfig.getEncoding())
+                : null;
+        silenceBoundsTracker = currentConfig.isTrimSilence() && currentConfig.getEncoding() == 16 && isFrameTrimFormat()
+                ? new SilenceBoundsTracker(currentConfig.getRoutedChannelCount(), SilenceTrimmer.DEFAULT_THRESHOLD_DB)
+                : null;
+        levelPublishSamples = Math.max(1, currentConfig.getSampleRate() * currentConfig.getRoutedChannelCount()
+                * currentConfig.getLevelIntervalMs() / 1000);
         //1.开启录音线程并准备录音
         audioRecordThread = new AudioRecordThread();
         audioRecordThread.start();
     }
 
     public void stop() {
-        if (null!= mAACEncoder){
-            mAACEncoder.stop();
-        }
         if (state == RecordState.IDLE) {
             Logger.e(TAG, "状态异常当前状态： %s", state.name());
             return;
@@ -170,6 +519,10 @@ public class RecordHelper {
 
     private void notifyFinish() {
         Logger.d(TAG, "录音结束 file: %s", resultFile.getAbsolutePath());
+        Logger.d(TAG, "启动耗时： %s", startupMetrics);
+        finishCaptureStages();
+        trimSilenceIfNeeded();
+        restoreStandby();
 
         mainHandler.post(new Runnable() {
             @Override
@@ -184,6 +537,16 @@ public class RecordHelper {
         });
     }
 
+    /**
+     * 一次录音结束（完成、转入延迟编码或失败）后补齐本次录音取走的预热对象，并恢复待机预录
+     */
+    private void restoreStandby() {
+        if (warmPool.isEnabled()) {
+            warmPool.warmUp(currentConfig);
+        }
+        preRollRecorder.resume();
+    }
+
     private void notifyError(final String error) {
         if (recordStateListener == null) {
             return;
@@ -197,7 +560,7 @@ public class RecordHelper {
     }
 
     private void notifyData(final byte[] data) {
-        if (recordDataListener == null && recordSoundSizeListener == null) {
+        if (recordDataListener == null) {
             return;
         }
         mainHandler.post(new Runnable() {
@@ -206,100 +569,820 @@ public class RecordHelper {
                 if (recordDataListener != null) {
                     recordDataListener.onData(data);
                 }
-                if (recordSoundSizeListener != null) {
-                    recordSoundSizeListener.onSoundSize((int) RecordUtils.getMaxDecibels(data));
-                }
             }
         });
     }
 
+    /**
+     * 在采集线程中统计电平，每累计 levelPublishSamples 个样本回调一次
+     */
+    private void meterLevel(byte[] data, int len) {
+        if (len <= 0) {
+            return;
+        }
+        levelMeter.process(data, 0, len);
+        publishLevelIfNeeded();
+    }
+
+    private void meterLevel(short[] data, int count) {
+        if (count <= 0) {
+            return;
+        }
+        levelMeter.process(data, 0, count);
+        publishLevelIfNeeded();
+    }
+
+    /**
+     * 将采集数据交给 DSP 线程做频谱分析，不阻塞采集线程
+     */
+    private void analyzeSpectrum(byte[] data, int len) {
+        SpectrumAnalyzer analyzer = spectrumAnalyzer;
+        if (analyzer != null && len > 0) {
+            analyzer.write(data, len);
+        }
+    }
+
+    private void analyzeSpectrum(short[] data, int count) {
+        SpectrumAnalyzer analyzer = spectrumAnalyzer;
+        if (analyzer != null && count > 0) {
+            analyzer.write(data, count);
+        }
+    }
+
+    private void startSpectrumAnalyzer() {
+        stopSpectrumAnalyzer();
+        if (currentConfig.getSpectrumConfig() == null || currentConfig.getEncoding() != 16) {
+            return;
+        }
+        try {
+            SpectrumAnalyzer analyzer = new SpectrumAnalyzer(currentConfig.getSpectrumConfig(),
+                    currentConfig.getSampleRate(), currentConfig.getRoutedChannelCount());
+            //边界在整个录音过程中不变，主线程回调直接复用
+            spectrumEdges = analyzer.getBandEdges();
+            analyzer.start(spectrumCallback);
+            spectrumAnalyzer = analyzer;
+        } catch (IllegalArgumentException e) {
+            Logger.e(e, TAG, "频谱分析配置错误：%s", e.getMessage());
+        }
+    }
+
+    private void stopSpectrumAnalyzer() {
+        SpectrumAnalyzer analyzer = spectrumAnalyzer;
+        spectrumAnalyzer = null;
+        if (analyzer != null) {
+            analyzer.stop();
+        }
+    }
+
+    /**
+     * 在采集线程中提取特征，每累计 featurePublishFrames 帧通知主线程取走
+     */
+    private void extractFeatures(byte[] data, int len) {
+        FeatureExtractor extractor = featureExtractor;
+        if (extractor != null && len > 0) {
+            publishFeaturesIfNeeded(extractor.process(data, len));
+        }
+    }
+
+    private void extractFeatures(short[] data, int count) {
+        FeatureExtractor extractor = featureExtractor;
+        if (extractor != null && count > 0) {
+            publishFeaturesIfNeeded(extractor.process(data, count));
+        }
+    }
+
+    private void publishFeaturesIfNeeded(int produced) {
+        featureUnpublished += produced;
+        if (featureUnpublished < featurePublishFrames) {
+            return;
+        }
+        featureUnpublished = 0;
+        if (recordFeatureListener != null && featurePending.compareAndSet(false, true)) {
+            mainHandler.post(featureRunnable);
+        }
+    }
+
+    /**
+     * 在主线程中取走所有未读的特征帧并回调
+     */
+    private void drainFeatures(FeatureExtractor extractor) {
+        if (extractor == null || recordFeatureListener == null) {
+            return;
+        }
+        int capacity = extractor.getCapacity();
+        if (featureMel == null || featureMel.length != capacity * extractor.getMelBands()
+                || featureMfcc.length != capacity * extractor.getMfccCount()) {
+            featureMel = new float[capacity * extractor.getMelBands()];
+            featureMfcc = new float[capacity * extractor.getMfccCount()];
+        }
+        int frames;
+        while ((frames = extractor.read(featureMel, featureMfcc, capacity)) > 0) {
+            recordFeatureListener.onFeatures(extractor.getLastReadFrame(), frames, featureMel, featureMfcc);
+        }
+    }
+
+    private void startFeatureExtractor() {
+        finishFeatureExtractor();
+        FeatureConfig config = currentConfig.getFeatureConfig();
+        if (config == null || currentConfig.getEncoding() != 16) {
+            return;
+        }
+        try {
+            FeatureExtractor extractor = new FeatureExtractor(config, currentConfig.getSampleRate(), currentConfig.getRoutedChannelCount());
+            if (config.isSidecarEnabled()) {
+                try {
+                    featureSidecar = new FeatureSidecarWriter(FeatureSidecarWriter.sidecarOf(resultFile),
+                            currentConfig.getSampleRate(), extractor);
+                    extractor.setSidecar(featureSidecar);
+                } catch (IOException e) {
+                    Logger.e(e, TAG, "特征文件创建失败：%s", e.getMessage());
+                }
+            }
+            int hopMs = Math.max(1, extractor.getHopSamples() * 1000 / currentConfig.getSampleRate());
+            featurePublishFrames = Math.max(1, Math.min(extractor.getCapacity() / 2, config.getPublishIntervalMs() / hopMs));
+            featureUnpublished = 0;
+            featureExtractor = extractor;
+        } catch (IllegalArgumentException e) {
+            Logger.e(e, TAG, "特征提取配置错误：%s", e.getMessage());
+        }
+    }
+
+    /**
+     * 关闭特征文件，剩余的帧在主线程中回调
+     */
+    private void finishFeatureExtractor() {
+        final FeatureExtractor extractor = featureExtractor;
+        featureExtractor = null;
+        FeatureSidecarWriter sidecar = featureSidecar;
+        featureSidecar = null;
+        if (sidecar != null) {
+            try {
+                sidecar.close();
+                Logger.i(TAG, "特征文件：%s 帧", sidecar.getFrameCount());
+            } catch (IOException e) {
+                Logger.e(e, TAG, e.getMessage());
+            }
+        }
+        if (extractor != null) {
+            if (extractor.getDroppedFrames() > 0) {
+                Logger.w(TAG, "特征回调跟不上，丢弃 %s 帧", extractor.getDroppedFrames());
+            }
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    drainFeatures(extractor);
+                }
+            });
+        }
+    }
+
+    /**
+     * 声道路由：需要时原地混为单声道，之后的环节都按路由后的声道数处理
+     *
+     * @return 处理后的有效长度
+     */
+    private int routeChannels(byte[] data, int len) {
+        if (len <= 0 || currentConfig.getRoutedChannelCount() == currentConfig.getChannelCount()) {
+            return len;
+        }
+        return ChannelMixer.downmix(data, len, currentConfig.getChannelCount(), currentConfig.getEncoding());
+    }
+
+    private int routeChannels(short[] data, int count) {
+        if (count <= 0 || currentConfig.getRoutedChannelCount() == currentConfig.getChannelCount()) {
+            return count;
+        }
+        return ChannelMixer.downmix(data, count, currentConfig.getChannelCount());
+    }
+
+    /**
+     * 跳过静音，原地修改缓冲区
+     *
+     * @return 处理后的有效长度
+     */
+    private int gateSilence(byte[] data, int len) {
+        return silenceGate != null && len > 0 ? silenceGate.process(data, len) : len;
+    }
+
+    private int gateSilence(short[] data, int count) {
+        return silenceGate != null && count > 0 ? silenceGate.process(data, count) : count;
+    }
+
+    /**
+     * 自动增益与限幅，原地修改缓冲区
+     */
+    private void applyGain(byte[] data, int len) {
+        if (autoGainControl != null && len > 0) {
+            autoGainControl.process(data, len);
+        }
+    }
+
+    private void applyGain(short[] data, int count) {
+        if (autoGainControl != null && count > 0) {
+            autoGainControl.process(data, count);
+        }
+    }
+
+    /**
+     * 静音跳过时缓冲区需要额外预留的样本数
+     */
+    private int gateExtraSamples() {
+        return silenceGate != null ? silenceGate.getExtraCapacity() : 0;
+    }
+
+    /**
+     * 在采集线程中更新波形峰值索引，数据为静音跳过之后写入文件的部分
+     */
+    private void indexPeaks(byte[] data, int len) {
+        if (peakIndexWriter != null && len > 0) {
+            peakIndexWriter.process(data, len);
+        }
+    }
+
+    private void indexPeaks(short[] data, int count) {
+        if (peakIndexWriter != null && count > 0) {
+            peakIndexWriter.process(data, count);
+        }
+    }
+
+    private void trackSilenceBounds(byte[] data, int len) {
+        if (silenceBoundsTracker != null && len > 0) {
+            silenceBoundsTracker.process(data, len);
+        }
+    }
+
+    private void trackSilenceBounds(short[] data, int count) {
+        if (silenceBoundsTracker != null && count > 0) {
+            silenceBoundsTracker.process(data, count);
+        }
+    }
+
+    /**
+     * 创建 RTP 发送器和打包器，socket 在录音线程中打开
+     */
+    private void startRtpStream() {
+        closeRtpStream();
+        lastRtpStats = null;
+        RtpConfig config = currentConfig.getRtpConfig();
+        if (config == null) {
+            return;
+        }
+        RecordConfig.RecordFormat format = currentConfig.getFormat();
+        boolean pcm = format == RecordConfig.RecordFormat.PCM || format == RecordConfig.RecordFormat.WAV;
+        if (currentConfig.getEncoding() != 16 || currentConfig.hasOutputs() || isDeferred() || !(pcm || isAacFormat())) {
+            Logger.w(TAG, "RTP 仅支持16bit单路输出的 AAC/AAC_ADTS/PCM/WAV，且不能延迟编码");
+            return;
+        }
+        try {
+            RtpSender sender = new RtpSender(config, currentConfig.getSampleRate());
+            if (pcm) {
+                l16RtpPacketizer = new L16RtpPacketizer(sender, currentConfig.getRoutedChannelCount(), config.getPacketTimeMs());
+            } else {
+                aacRtpPacketizer = new AacRtpPacketizer(sender);
+            }
+            rtpCapturedFrames = 0;
+            rtpSender = sender;
+        } catch (IllegalArgumentException e) {
+            Logger.e(e, TAG, "RTP 配置错误：%s", e.getMessage());
+        }
+    }
+
+    /**
+     * 打开 socket，包含地址解析，需在录音线程中调用；暂停后继续录音时保持原来的 socket
+     */
+    private void openRtpStream() {
+        RtpSender sender = rtpSender;
+        if (sender == null || sender.isOpen()) {
+            return;
+        }
+        try {
+            sender.open();
+            Logger.i(TAG, "RTP 发送：%s, ssrc=%08x", currentConfig.getRtpConfig(), sender.getSsrc());
+        } catch (IOException e) {
+            Logger.e(e, TAG, "RTP 连接失败：%s", e.getMessage());
+        }
+    }
+
+    /**
+     * 登记采集进度用于延迟统计，PCM/WAV 格式同时打包发送
+     *
+     * @param captureNanos 这块数据读取完成的时刻
+     */
+    private void streamRtp(byte[] data, int len, long captureNanos) {
+        RtpSender sender = rtpSender;
+        if (sender == null || len <= 0) {
+            return;
+        }
+        rtpCapturedFrames += len / (2 * currentConfig.getRoutedChannelCount());
+        sender.markCaptured(rtpCapturedFrames, captureNanos);
+        if (l16RtpPacketizer != null) {
+            l16RtpPacketizer.write(data, 0, len);
+        }
+    }
+
+    private void closeRtpStream() {
+        RtpSender sender = rtpSender;
+        rtpSender = null;
+        L16RtpPacketizer l16 = l16RtpPacketizer;
+        l16RtpPacketizer = null;
+        aacRtpPacketizer = null;
+        if (sender == null) {
+            return;
+        }
+        if (l16 != null) {
+            l16.flush();
+        }
+        sender.close();
+        lastRtpStats = sender.getStats();
+        Logger.i(TAG, "RTP 统计：%s", lastRtpStats);
+    }
+
+    /**
+     * 只能按帧裁剪、需要采集时记录静音范围的格式
+     */
+    private boolean isFrameTrimFormat() {
+        RecordConfig.RecordFormat format = currentConfig.getFormat();
+        return format == RecordConfig.RecordFormat.MP3 || format == RecordConfig.RecordFormat.AAC_ADTS;
+    }
+
+    /**
+     * 原地裁剪录音文件开头和结尾的静音，在录音结果回调前执行
+     * 仅处理单路输出的 WAV/PCM/MP3/AAC_ADTS，边栏文件（.peaks/.vad.json）仍对应裁剪前的时间轴
+     */
+    private void trimSilenceIfNeeded() {
+        SilenceBoundsTracker tracker = silenceBoundsTracker;
+        silenceBoundsTracker = null;
+        if (!currentConfig.isTrimSilence() || currentConfig.hasOutputs() || !FileUtils.isFile(resultFile)) {
+            return;
+        }
+        try {
+            switch (currentConfig.getFormat()) {
+                case WAV:
+                    SilenceTrimmer.trimWav(resultFile);
+                    break;
+                case PCM:
+                    if (currentConfig.getEncoding() == 16) {
+                        SilenceTrimmer.trimPcm(resultFile, currentConfig.getSampleRate(), currentConfig.getRoutedChannelCount(),
+                                SilenceTrimmer.DEFAULT_THRESHOLD_DB, SilenceTrimmer.DEFAULT_PADDING_MS);
+                    }
+                    break;
+                case MP3:
+                case AAC_ADTS:
+                    if (tracker == null || tracker.getFirst() < 0) {
+                        break;
+                    }
+                    int sampleRate = currentConfig.getSampleRate();
+                    long startMs = tracker.getFirst() * 1000 / sampleRate - SilenceTrimmer.DEFAULT_PADDING_MS;
+                    long endMs = (tracker.getLast() + 1) * 1000 / sampleRate + SilenceTrimmer.DEFAULT_PADDING_MS;
+                    if (currentConfig.getFormat() == RecordConfig.RecordFormat.MP3) {
+                        SilenceTrimmer.trimMp3(resultFile, startMs, endMs);
+                    } else {
+                        SilenceTrimmer.trimAdts(resultFile, startMs, endMs);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (IOException e) {
+            Logger.e(e, TAG, e.getMessage());
+        }
+    }
+
+    /**
+     * 录音结束，收尾采集线程上的各处理环节
+     */
+    private void finishCaptureStages() {
+        finishSilenceGate();
+        stopSpectrumAnalyzer();
+        finishFeatureExtractor();
+        finishPeakIndex();
+        closeRtpStream();
+        stopMetricsDumper();
+        if (autoGainControl != null) {
+            Logger.i(TAG, "自动增益：%s dB，限幅最大压缩：%s dB", autoGainControl.getGainDb(), autoGainControl.getMaxLimiterReductionDb());
+            autoGainControl = null;
+        }
+    }
+
+    private void startMetricsDumper() {
+        //上一次录音异常结束时未停止
+        if (metricsDumper != null) {
+            metricsDumper.stop();
+        }
+        MetricsConfig config = currentConfig.getMetricsConfig();
+        metricsDumper = config != null ? new MetricsDumper(config, recordMetrics, currentConfig.toString()) : null;
+        if (metricsDumper != null) {
+            Logger.i(TAG, "%s", config);
+            metricsDumper.start();
+        }
+    }
+
+    /**
+     * 采集结束时写入最终的运行统计
+     */
+    private void stopMetricsDumper() {
+        RecordMetrics metrics = recordMetrics;
+        if (metrics != null) {
+            metrics.finish();
+            Logger.i(TAG, "运行统计：%n%s", metrics.snapshot());
+        }
+        MetricsDumper dumper = metricsDumper;
+        metricsDumper = null;
+        if (dumper != null) {
+            dumper.stop();
+        }
+    }
+
+    /**
+     * 写出波形峰值索引 录音文件名.peaks
+     */
+    private void finishPeakIndex() {
+        PeakIndexWriter writer = peakIndexWriter;
+        peakIndexWriter = null;
+        if (writer == null) {
+            return;
+        }
+        File sidecar = PeakIndexWriter.sidecarOf(resultFile);
+        try {
+            writer.write(sidecar);
+            Logger.i(TAG, "波形索引：%s 样本，%s bytes", writer.getTotalSamples(), sidecar.length());
+        } catch (IOException e) {
+            Logger.e(e, TAG, e.getMessage());
+        }
+    }
+
+    /**
+     * 写出删除区间的映射文件 录音文件名.vad.json
+     */
+    private void finishSilenceGate() {
+        SilenceGate gate = silenceGate;
+        silenceGate = null;
+        if (gate == null) {
+            return;
+        }
+        gate.finish();
+        File sidecar = new File(resultFile.getAbsolutePath() + ".vad.json");
+        try {
+            gate.writeSidecar(sidecar, currentConfig.getSampleRate());
+        } catch (IOException e) {
+            Logger.e(e, TAG, e.getMessage());
+        }
+        Logger.i(TAG, "静音跳过：删除 %s%%，区间数：%s", Math.round(gate.getRemovedRatio() * 100), gate.getRemovedIntervals().size());
+    }
+
+    private void publishLevelIfNeeded() {
+        if (levelMeter.getSampleCount() < levelPublishSamples) {
+            return;
+        }
+        if (recordSoundSizeListener != null || recordLevelListener != null) {
+            soundSize = levelMeter.getSoundSize();
+            peakDbfs = levelMeter.getPeakDbfs();
+            rmsDbfs = levelMeter.getRmsDbfs();
+            clipCount = levelMeter.getClipCount();
+            dcOffset = levelMeter.getDcOffset();
+            mainHandler.post(levelRunnable);
+        }
+        if (levelPublisher.hasSubscribers()) {
+            levelPublisher.offer(new LevelReading(levelMeter.getPeakDbfs(), levelMeter.getRmsDbfs(),
+                    levelMeter.getClipCount(), levelMeter.getDcOffset()));
+        }
+        levelMeter.reset();
+    }
+
     private void initMp3EncoderThread(int bufferSize) {
         try {
-            mp3EncodeThread = new Mp3EncodeThread(resultFile, bufferSize);
+            boolean encoderReady = warmPool.obtainMp3Encoder(currentConfig);
+            int level = currentConfig.isAdaptiveQuality() ? mp3QualityLevel : 0;
+            mp3EncodeThread = new Mp3EncodeThread(resultFile, bufferSize, encoderReady, level);
+            mp3EncodeThread.setStartupMetrics(startupMetrics);
+            mp3EncodeThread.setRecordMetrics(recordMetrics);
+            mp3EncodeThread.setQualityController(createQualityController("mp3", Mp3EncodeThread.MAX_QUALITY_LEVEL, level));
             mp3EncodeThread.start();
+        } catch (IllegalStateException e) {
+            Logger.e(e, TAG, e.getMessage());
+            notifyError("MP3编码器正被占用");
+        } catch (Exception e) {
+            Logger.e(e, TAG, e.getMessage());
+            notifyError("MP3编码器初始化失败");
+        }
+    }
+
+    /**
+     * 等待剩余数据编码完成后回调结果
+     */
+    private void stopMp3Encoder() {
+        if (mp3EncodeThread == null) {
+            notifyFinish();
+            return;
+        }
+        final AdaptiveQualityController controller = qualityController;
+        mp3EncodeThread.stopSafe(new Mp3EncodeThread.EncordFinishListener() {
+            @Override
+            public void onFinish() {
+                if (controller != null) {
+                    mp3QualityLevel = controller.getLevel();
+                }
+                notifyFinish();
+            }
+        });
+        mp3EncodeThread = null;
+    }
+
+    private void initFlacEncoder() {
+        try {
+            flacEncoder = new FlacEncoder(resultFile, currentConfig.getSampleRate(),
+                    currentConfig.getRoutedChannelCount(), currentConfig.getEncoding());
+            flacEncoder.setStartupMetrics(startupMetrics);
         } catch (Exception e) {
             Logger.e(e, TAG, e.getMessage());
+            notifyError("FLAC编码器初始化失败");
         }
     }
 
+    /**
+     * 等待剩余帧编码完成并回填文件头，在独立线程中进行避免阻塞调用方
+     */
+    private void stopFlacEncoder() {
+        final FlacEncoder encoder = flacEncoder;
+        flacEncoder = null;
+        if (encoder == null) {
+            notifyFinish();
+            return;
+        }
+        new Thread("flac-finish") {
+            @Override
+            public void run() {
+                try {
+                    encoder.close();
+                } catch (IOException e) {
+                    Logger.e(e, TAG, e.getMessage());
+                    notifyError("FLAC编码失败");
+                }
+                if (encoder.getDroppedFrames() > 0) {
+                    Logger.w(TAG, "FLAC编码跟不上，共丢弃 %s 帧", encoder.getDroppedFrames());
+                }
+                notifyFinish();
+            }
+        }.start();
+    }
+
+    private void initFanOutRecorder() {
+        fanOutRecorder = new FanOutRecorder(currentConfig, resultFile, new FanOutRecorder.Listener() {
+            @Override
+            public void onOutputError(RecordOutput output, String error) {
+                notifyError(error);
+            }
+
+            @Override
+            public void onOutputFinish(RecordOutput output, final File file, OutputStats stats) {
+                final RecordResultListener listener = output.getResultListener();
+                if (listener == null) {
+                    return;
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onResult(file);
+                    }
+                });
+            }
+
+            @Override
+            public void onAllFinish(List<OutputStats> stats) {
+                lastOutputStats = stats;
+                for (OutputStats outputStats : stats) {
+                    Logger.i(TAG, "输出统计： %s", outputStats);
+                }
+                notifyFinish();
+            }
+        });
+        if (!fanOutRecorder.start()) {
+            notifyError("没有可用的输出");
+        }
+    }
+
+    /**
+     * 结束多路输出，全部输出完成后回调录音结果，结果文件为第一路输出
+     */
+    private void stopFanOutRecorder() {
+        FanOutRecorder recorder = fanOutRecorder;
+        fanOutRecorder = null;
+        if (recorder == null) {
+            notifyFinish();
+            return;
+        }
+        File primaryFile = recorder.getPrimaryFile();
+        if (primaryFile != null) {
+            resultFile = primaryFile;
+        }
+        recorder.stop();
+    }
+
     private class AudioRecordThread extends Thread {
         private AudioRecord audioRecord;
+        /**
+         * 采集缓冲区（重采样之后）的大小
+         */
         private int bufferSize;
+        /**
+         * 每次从 AudioRecord 读取的大小
+         */
+        private int captureSize;
+        /**
+         * 采集采样率与 sampleRate 不同时的重采样器
+         */
+        private PolyphaseResampler resampler;
+        private short[] captureShorts;
+        private byte[] captureBytes;
+        /**
+         * 最近一次读取完成的时刻 nanoTime
+         */
+        private long readNanos;
+        /**
+         * 从待机预录接手时，先读完其中的数据再读 AudioRecord
+         */
+        private PreRollBuffer preRollBuffer;
+        private boolean fromPreRoll;
+        /**
+         * AudioRecord 缓冲区的时长，读取间隔超过该值即溢出
+         */
+        private long overrunNanos;
+        private long lastReadEndNanos;
 
         AudioRecordThread() {
             //2.根据录音参数构造AudioRecord实体对象
-            bufferSize = AudioRecord.getMinBufferSize(currentConfig.getSampleRate(),
+            if (state == RecordState.IDLE) {
+                audioRecord = preRollRecorder.takeOver(currentConfig);
+                if (audioRecord != null) {
+                    fromPreRoll = true;
+                    preRollBuffer = preRollRecorder.getBuffer();
+                    startupMetrics.setWarmStart(true);
+                }
+            }
+            if (audioRecord == null) {
+                audioRecord = warmPool.obtainAudioRecord(currentConfig);
+                if (audioRecord == null) {
+                    audioRecord = RecorderWarmPool.createAudioRecord(currentConfig);
+                } else if (state == RecordState.IDLE) {
+                    startupMetrics.setWarmStart(true);
+                }
+            }
+            int captureRate = audioRecord != null ? audioRecord.getSampleRate() : currentConfig.getSampleRate();
+            captureSize = AudioRecord.getMinBufferSize(captureRate,
                     currentConfig.getChannelConfig(), currentConfig.getEncodingConfig()) * RECORD_AUDIO_BUFFER_TIMES;
+            bufferSize = captureSize;
+            overrunNanos = estimateBufferNanos(captureRate);
+            if (captureRate != currentConfig.getSampleRate()) {
+                resampler = new PolyphaseResampler(captureRate, currentConfig.getSampleRate(), currentConfig.getChannelCount());
+                bufferSize = Math.max(resampler.getMaxOutput(captureSize), resampler.getMaxOutput(captureSize / 2) * 2);
+                Logger.i(TAG, "采集采样率 %s，重采样到 %s", captureRate, currentConfig.getSampleRate());
+            }
             Logger.d(TAG, "record buffer size = %s", bufferSize);
+        }
 
-            getValidBufferSize();
-            if (currentConfig.getFormat() == RecordConfig.RecordFormat.MP3 && mp3EncodeThread == null) {
+        /**
+         * 创建编码器，在录音线程中进行：MP3 需要等待延迟编码等其他使用方让出 LAME，不能阻塞调用 start 的线程
+         */
+        private void initEncoders() {
+            if (isDeferred()) {
+                Logger.d(TAG, "延迟编码，录音时只写PCM");
+            } else if (currentConfig.hasOutputs()) {
+                if (fanOutRecorder == null) {
+                    initFanOutRecorder();
+                }
+            } else if (currentConfig.getFormat() == RecordConfig.RecordFormat.MP3 && mp3EncodeThread == null) {
                 initMp3EncoderThread(bufferSize);
-            } else if (currentConfig.getFormat() == RecordConfig.RecordFormat.AAC) {
+            } else if (isAacFormat() && mAACEncoder == null) {
                 initAACEncoder();
+            } else if (currentConfig.getFormat() == RecordConfig.RecordFormat.FLAC && flacEncoder == null) {
+                initFlacEncoder();
             }
         }
 
-        public void getValidBufferSize() {
-            for (int rate : new int[]{44100, 22050, 11025, 16000, 8000}) {  // add the rates you wish to check against
-                int bufferSize = AudioRecord.getMinBufferSize(rate, AudioFormat.CHANNEL_CONFIGURATION_DEFAULT, AudioFormat.ENCODING_PCM_16BIT);
-                if (bufferSize > 0) {
-                    // buffer size is valid, Sample rate supported
-                    Logger.d(TAG, "buffer size is valid, = %s" + bufferSize);
-                    /**
-                     * @param audioSource ：录音源
-                     * 这里选择使用麦克风：MediaRecorder.AudioSource.MIC
-                     * @param sampleRateInHz： 采样率
-                     * @param channelConfig：声道数
-                     * @param audioFormat： 采样位数.
-                     *   See {@link AudioFormat#ENCODING_PCM_8BIT}, {@link AudioFormat#ENCODING_PCM_16BIT},
-                     *   and {@link AudioFormat#ENCODING_PCM_FLOAT}.
-                     * @param bufferSizeInBytes： 音频录制的缓冲区大小
-                     *   See {@link #getMinBufferSize(int, int, int)}
-                     */
-                    audioRecord = new AudioRecord(MediaRecorder.AudioSource.VOICE_COMMUNICATION, currentConfig.getSampleRate(),
-                            currentConfig.getChannelConfig(), currentConfig.getEncodingConfig(), bufferSize);
-                    return;
+        private long estimateBufferNanos(int captureRate) {
+            int frameBytes = Math.max(1, currentConfig.getChannelCount() * currentConfig.getEncoding() / 8);
+            long frames = AudioRecord.getMinBufferSize(captureRate, currentConfig.getChannelConfig(),
+                    currentConfig.getEncodingConfig()) / frameBytes;
+            if (audioRecord != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                frames = audioRecord.getBufferSizeInFrames();
+            }
+            return Math.max(1, frames) * 1000000000L / captureRate;
+        }
+
+        /**
+         * 读取一块采集数据，需要时重采样到 sampleRate
+         *
+         * @return 写入 buffer 的样本数，或 AudioRecord 的错误码
+         */
+        private int readAudio(short[] buffer) {
+            if (resampler == null) {
+                int read = readCapture(buffer, bufferSize);
+                readNanos = System.nanoTime();
+                return read;
+            }
+            if (captureShorts == null) {
+                captureShorts = new short[captureSize];
+            }
+            int read = readCapture(captureShorts, captureSize);
+            readNanos = System.nanoTime();
+            return read > 0 ? resampler.process(captureShorts, read, buffer) : read;
+        }
+
+        /**
+         * @return 写入 buffer 的字节数，或 AudioRecord 的错误码
+         */
+        private int readAudio(byte[] buffer) {
+            if (resampler == null) {
+                int read = readCapture(buffer, bufferSize);
+                readNanos = System.nanoTime();
+                return read;
+            }
+            if (captureBytes == null) {
+                captureBytes = new byte[captureSize];
+            }
+            int read = readCapture(captureBytes, captureSize);
+            readNanos = System.nanoTime();
+            return read > 0 ? resampler.process(captureBytes, read, buffer) : read;
+        }
+
+        private int readCapture(short[] buffer, int size) {
+            if (preRollBuffer != null) {
+                int read = preRollBuffer.read(buffer, 0, size);
+                if (read > 0) {
+                    return read;
                 }
+                preRollBuffer = null;
             }
+            long readStart = System.nanoTime();
+            int read = audioRecord.read(buffer, 0, size);
+            onRecordRead(readStart, read);
+            return read;
         }
 
-        @Override
-        public void run() {
-            super.run();
+        private int readCapture(byte[] buffer, int size) {
+            if (preRollBuffer != null) {
+                int read = preRollBuffer.read(buffer, 0, size);
+                if (read > 0) {
+                    return read;
+                }
+                preRollBuffer = null;
+            }
+            long readStart = System.nanoTime();
+            int read = audioRecord.read(buffer, 0, size);
+            onRecordRead(readStart, read);
+            return read;
+        }
 
-            switch (currentConfig.getFormat()) {
-                case AAC:
-                    mAACEncoder.start();
-                    startAacRecorder();
-                    break;
-                case MP3:
-                    startMp3Recorder();
-                    break;
-                default:
-                    startPcmRecorder();
-                    break;
+        /**
+         * 统计读取耗时；两次读取之间的间隔超过 AudioRecord 缓冲区的时长时，缓冲区已满，记为一次溢出
+         */
+        private void onRecordRead(long readStart, int read) {
+            long now = System.nanoTime();
+            RecordMetrics metrics = recordMetrics;
+            if (metrics != null) {
+                metrics.recordCaptureRead(now - readStart);
+                if (read < 0) {
+                    metrics.countReadError();
+                }
+                if (lastReadEndNanos != 0 && readStart - lastReadEndNanos > overrunNanos) {
+                    metrics.countOverrun();
+                }
             }
+            lastReadEndNanos = now;
         }
 
-        private void startPcmRecorder() {
-            state = RecordState.RECORDING;
-            notifyState();
-            Logger.d(TAG, "开始录制 Pcm");
-            FileOutputStream fos = null;
-            try {
-                fos = new FileOutputStream(tmpFile);
+        /**
+         * 从待机预录接手的 AudioRecord 已在采集中，不再重新开始
+         */
+        private void startCapture() {
+            if (audioRecord.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
                 audioRecord.startRecording();
-                byte[] byteBuffer = new byte[bufferSize];
+            }
+        }
 
-                while (state == RecordState.RECORDING) {
-                    int end = audioRecord.read(byteBuffer, 0, byteBuffer.length);
-                    notifyData(byteBuffer);
-                    fos.write(byteBuffer, 0, end);
-                    fos.flush();
+        /**
+         * 录音线程结束时交还 AudioRecord：来自待机预录的在录音结束后交还给它，其余由预热池决定复用或释放
+         */
+        private void recycleAudioRecord() {
+            if (audioRecord != null) {
+                if (!(fromPreRoll && state == RecordState.STOP && preRollRecorder.giveBack(audioRecord, currentConfig))) {
+                    warmPool.recycleAudioRecord(audioRecord, currentConfig);
                 }
-                audioRecord.stop();
-                files.add(tmpFile);
+                audioRecord = null;
+            }
+            preRollBuffer = null;
+        }
+
+        @Override
+        public void run() {
+            super.run();
+            openRtpStream();
+            state = RecordState.RECORDING;
+            notifyState();
+            initEncoders();
+            boolean failed = false;
+            try {
+                capture(buildPipeline());
                 if (state == RecordState.STOP) {
                     makeFile();
                 } else {
@@ -308,113 +1391,264 @@ public class RecordHelper {
             } catch (Exception e) {
                 Logger.e(e, TAG, e.getMessage());
                 notifyError("录音失败");
-            } finally {
-                try {
-                    if (fos != null) {
-                        fos.close();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+                failed = true;
             }
             if (state != RecordState.PAUSE) {
                 state = RecordState.IDLE;
                 notifyState();
                 Logger.d(TAG, "录音结束");
+                if (failed) {
+                    finishCaptureStages();
+                    restoreStandby();
+                }
             }
         }
 
-        private void startMp3Recorder() {
-            state = RecordState.RECORDING;
-            notifyState();
+        /**
+         * 按录音格式组装流水线：内置处理 → 自定义环节 → 编码/写入 → 数据回调，
+         * MP3 编码器使用 short[] 数据，其余使用 byte[]
+         */
+        private Pipeline buildPipeline() throws IOException {
+            boolean shortSamples = !isDeferred() && !currentConfig.hasOutputs()
+                    && currentConfig.getFormat() == RecordConfig.RecordFormat.MP3;
+            Pipeline pipeline = new Pipeline(shortSamples,
+                    shortSamples ? bufferSize + gateExtraSamples() : bufferSize + gateExtraSamples() * 2);
+            pipeline.setMetrics(recordMetrics);
+            pipeline.add("capture", new CaptureStage());
+            for (StageSpec spec : currentConfig.getStages()) {
+                pipeline.add(spec.getName(), spec.getFactory().create(currentConfig), spec.getQueueCapacity());
+            }
+            pipeline.add("encode", createEncodeStage());
+            pipeline.add("publish", new PublishStage());
+            pipeline.add("data", new DataStage());
+            return pipeline;
+        }
 
+        private void capture(Pipeline pipeline) throws IOException, InterruptedException {
             try {
-                audioRecord.startRecording();
-                short[] byteBuffer = new short[bufferSize];
-
+                if (audioRecord == null) {
+                    throw new IllegalStateException("AudioRecord 初始化失败");
+                }
+                startCapture();
+                pipeline.start();
                 while (state == RecordState.RECORDING) {
-                    int end = audioRecord.read(byteBuffer, 0, byteBuffer.length);
-                    if (mp3EncodeThread != null) {
-                        mp3EncodeThread.addChangeBuffer(new Mp3EncodeThread.ChangeBuffer(byteBuffer, end));
-                    }
-                    notifyData(ByteUtils.toBytes(byteBuffer));
+                    AudioFrame frame = pipeline.obtain();
+                    frame.setLength(frame.isShortSamples() ? readAudio(frame.getShorts()) : readAudio(frame.getBytes()));
+                    frame.setCaptureNanos(readNanos);
+                    pipeline.push(frame);
                 }
                 audioRecord.stop();
-            } catch (Exception e) {
-                Logger.e(e, TAG, e.getMessage());
-                notifyError("录音失败");
-            }
-            if (state != RecordState.PAUSE) {
-                state = RecordState.IDLE;
-                notifyState();
-                if (mp3EncodeThread != null) {
-                    mp3EncodeThread.stopSafe(new Mp3EncodeThread.EncordFinishListener() {
-                        @Override
-                        public void onFinish() {
-                            notifyFinish();
-                        }
-                    });
-                } else {
-                    notifyFinish();
-                }
-            } else {
-                Logger.d(TAG, "暂停");
+            } finally {
+                recycleAudioRecord();
+                pipeline.finish();
             }
         }
+    }
 
-        private void startAacRecorder() {
-            state = RecordState.RECORDING;
-            notifyState();
+    /**
+     * 各录音格式的编码/写入环节
+     */
+    private Stage createEncodeStage() throws IOException {
+        if (isDeferred()) {
+            Logger.d(TAG, "开始录制 Pcm");
+            return new PcmFileStage(tmpFile);
+        }
+        if (currentConfig.hasOutputs()) {
+            return new Stage() {
+                @Override
+                public void process(AudioFrame frame) throws IOException {
+                    if (fanOutRecorder != null && frame.getLength() > 0) {
+                        fanOutRecorder.write(frame.getBytes(), frame.getLength());
+                    }
+                }
 
-            try {
-                if (null == audioRecord) {
-                    return;
+                @Override
+                public void finish() {
                 }
-                audioRecord.startRecording();
-                byte[] byteBuffer = new byte[bufferSize];
+            };
+        }
+        switch (currentConfig.getFormat()) {
+            case AAC:
+            case AAC_ADTS:
+                return new Stage() {
+                    @Override
+                    public void process(AudioFrame frame) {
+                        if (mAACEncoder != null && frame.getLength() > 0) {
+                            mAACEncoder.putAudioData(frame.getBytes(), frame.getLength());
+                        }
+                    }
 
-                while (state == RecordState.RECORDING) {
-                    int end = audioRecord.read(byteBuffer, 0, byteBuffer.length);
-                    if (mAACEncoder != null) {
-                        mAACEncoder.putAudioData(byteBuffer);
+                    @Override
+                    public void finish() {
                     }
-                    notifyData(byteBuffer);
-                }
-                audioRecord.stop();
-                if (state == RecordState.STOP) {
-                    makeFile();
-                } else {
-                    Logger.i(TAG, "暂停！");
-                }
-            } catch (Exception e) {
-                Logger.e(TAG, e.getMessage());
-                notifyError("录音失败");
-            } finally {
-                if (null != audioRecord) {
-                    audioRecord.release();
-                    audioRecord = null;
-                }
-                try {
-                    if (fos != null) {
-                        fos.close();
+                };
+            case MP3:
+                return new Stage() {
+                    @Override
+                    public void process(AudioFrame frame) {
+                        if (mp3EncodeThread != null) {
+                            mp3EncodeThread.addChangeBuffer(new Mp3EncodeThread.ChangeBuffer(frame.getShorts(), frame.getLength()));
+                        }
                     }
-                } catch (IOException e) {
-                    e.printStackTrace();
+
+                    @Override
+                    public void finish() {
+                    }
+                };
+            case FLAC:
+                return new Stage() {
+                    @Override
+                    public void process(AudioFrame frame) throws IOException {
+                        if (flacEncoder != null && frame.getLength() > 0) {
+                            flacEncoder.write(frame.getBytes(), 0, frame.getLength());
+                        }
+                    }
+
+                    @Override
+                    public void finish() {
+                    }
+                };
+            default:
+                Logger.d(TAG, "开始录制 Pcm");
+                return new PcmFileStage(tmpFile);
+        }
+    }
+
+    /**
+     * 内置的采集处理：声道路由、电平、频谱、特征、静音跳过、增益、峰值索引、静音边界和 RTP 发送
+     */
+    private class CaptureStage implements Stage {
+        @Override
+        public void process(AudioFrame frame) {
+            int end = frame.getLength();
+            if (frame.isShortSamples()) {
+                short[] data = frame.getShorts();
+                end = routeChannels(data, end);
+                if (end > 0) {
+                    startupMetrics.markFirstSample();
                 }
-            }
-            if (state != RecordState.PAUSE) {
-                state = RecordState.IDLE;
-                notifyState();
+                meterLevel(data, end);
+                analyzeSpectrum(data, end);
+                extractFeatures(data, end);
+                end = gateSilence(data, end);
+                applyGain(data, end);
+                indexPeaks(data, end);
+                trackSilenceBounds(data, end);
             } else {
-                Logger.d(TAG, "暂停");
+                byte[] data = frame.getBytes();
+                end = routeChannels(data, end);
+                if (end > 0) {
+                    startupMetrics.markFirstSample();
+                }
+                meterLevel(data, end);
+                analyzeSpectrum(data, end);
+                extractFeatures(data, end);
+                end = gateSilence(data, end);
+                applyGain(data, end);
+                indexPeaks(data, end);
+                trackSilenceBounds(data, end);
+                streamRtp(data, end, frame.getCaptureNanos());
+            }
+            frame.setLength(end);
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * 发布采集数据，没有订阅者时不拷贝
+     */
+    private class PublishStage implements Stage {
+        @Override
+        public void process(AudioFrame frame) {
+            int len = frame.getLength();
+            if (len <= 0 || !audioPublisher.hasSubscribers()) {
+                return;
+            }
+            byte[] data = copyFrame(frame, len);
+            audioPublisher.offer(new PcmChunk(data, frame.getCaptureNanos()));
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * 录音数据回调
+     */
+    private class DataStage implements Stage {
+        @Override
+        public void process(AudioFrame frame) {
+            int len = frame.getLength();
+            if (recordDataListener == null || len <= 0) {
+                return;
+            }
+            //数据块会被流水线复用，回调的是本次采集长度的拷贝
+            notifyData(copyFrame(frame, len));
+        }
+
+        @Override
+        public void finish() {
+        }
+    }
+
+    /**
+     * @return 数据块前 len 个采样的小端PCM拷贝
+     */
+    private static byte[] copyFrame(AudioFrame frame, int len) {
+        return frame.isShortSamples() ? ByteUtils.toBytes(frame.getShorts(), len) : Arrays.copyOf(frame.getBytes(), len);
+    }
+
+    /**
+     * 采集数据写入临时PCM文件，每段采集一个文件，结束时加入待合并列表
+     */
+    private class PcmFileStage implements Stage {
+        private final File file;
+        private final FileOutputStream fos;
+
+        PcmFileStage(File file) throws IOException {
+            this.file = file;
+            this.fos = new FileOutputStream(file);
+        }
+
+        @Override
+        public void process(AudioFrame frame) throws IOException {
+            if (frame.getLength() > 0) {
+                long writeStart = System.nanoTime();
+                fos.write(frame.getBytes(), 0, frame.getLength());
+                fos.flush();
+                RecordMetrics metrics = recordMetrics;
+                if (metrics != null) {
+                    metrics.recordWrite(System.nanoTime() - writeStart);
+                }
             }
+        }
 
+        @Override
+        public void finish() throws IOException {
+            fos.close();
+            files.add(file);
         }
     }
 
     private void makeFile() {
+        if (isDeferred()) {
+            makeDeferredFile();
+            return;
+        }
+        if (currentConfig.hasOutputs()) {
+            stopFanOutRecorder();
+            return;
+        }
         switch (currentConfig.getFormat()) {
             case MP3:
+                stopMp3Encoder();
+                return;
+            case FLAC:
+                stopFlacEncoder();
                 return;
             case WAV:
                 mergePcmFile();
@@ -424,7 +1658,9 @@ public class RecordHelper {
                 mergePcmFile();
                 break;
             case AAC:
-                break;
+            case AAC_ADTS:
+                stopAACEncoder();
+                return;
             default:
                 break;
         }
@@ -432,6 +1668,34 @@ public class RecordHelper {
         Logger.i(TAG, "录音完成！ path: %s ； 大小：%s", resultFile.getAbsoluteFile(), resultFile.length());
     }
 
+    /**
+     * 合并PCM后交给延迟编码调度，编码完成后再回调录音结果
+     */
+    private void makeDeferredFile() {
+        File rawFile = new File(resultFile.getAbsolutePath() + RecordConfig.RecordFormat.PCM.getExtension());
+        if (!mergePcmFiles(rawFile, files)) {
+            notifyError("合并失败");
+            finishCaptureStages();
+            restoreStandby();
+            return;
+        }
+        silenceBoundsTracker = null;
+        if (currentConfig.isTrimSilence() && currentConfig.getEncoding() == 16) {
+            try {
+                SilenceTrimmer.trimPcm(rawFile, currentConfig.getSampleRate(), currentConfig.getRoutedChannelCount(),
+                        SilenceTrimmer.DEFAULT_THRESHOLD_DB, SilenceTrimmer.DEFAULT_PADDING_MS);
+            } catch (IOException e) {
+                Logger.e(e, TAG, e.getMessage());
+            }
+        }
+        RecordConfig jobConfig = new RecordConfig(currentConfig.getFormat(), currentConfig.getRoutedChannelConfig(),
+                currentConfig.getEncodingConfig(), currentConfig.getSampleRate());
+        deferredScheduler.enqueue(rawFile, resultFile, jobConfig, recordResultListener);
+        finishCaptureStages();
+        restoreStandby();
+        Logger.i(TAG, "录音完成，等待编码 path: %s ； 大小：%s", rawFile.getAbsoluteFile(), rawFile.length());
+    }
+
     /**
      * 添加Wav头文件
      */
@@ -439,7 +1703,7 @@ public class RecordHelper {
         if (!FileUtils.isFile(resultFile) || resultFile.length() == 0) {
             return;
         }
-        byte[] header = WavUtils.generateWavFileHeader((int) resultFile.length(), currentConfig.getSampleRate(), currentConfig.getChannelCount(), currentConfig.getEncoding());
+        byte[] header = WavUtils.generateWavFileHeader((int) resultFile.length(), currentConfig.getSampleRate(), currentConfig.getRoutedChannelCount(), currentConfig.getEncoding());
         WavUtils.writeHeader(resultFile, header);
     }
 
@@ -542,75 +1806,124 @@ public class RecordHelper {
     }
 
 
-    private LinkedBlockingQueue<Runnable> mRunnables = new LinkedBlockingQueue<>();
-
-
-    private Thread workThread;
-    private volatile boolean loop;
-
-    FileOutputStream fos = null;
+    private AacSink aacSink = null;
     private AACEncoder mAACEncoder;
     private String filePath;
 
-    private void initAACEncoder(){
-        mAACEncoder = AACEncoder.newInstance(currentConfig);
-        if (null == resultFile){
+    private boolean isAacFormat() {
+        return currentConfig.getFormat() == RecordConfig.RecordFormat.AAC
+                || currentConfig.getFormat() == RecordConfig.RecordFormat.AAC_ADTS;
+    }
+
+    private void initAACEncoder() {
+        if (null == resultFile) {
             resultFile = new File(filePath);
         }
         try {
-            fos = new FileOutputStream(resultFile);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            aacSink = createAacSink(resultFile);
+        } catch (IOException e) {
+            Logger.e(e, TAG, e.getMessage());
             return;
         }
+        mAACEncoder = warmPool.obtainAACEncoder(currentConfig);
+        if (mAACEncoder == null) {
+            mAACEncoder = AACEncoder.newInstance(currentConfig);
+        }
+        final AACEncoder encoder = mAACEncoder;
+        final AacSink sink = aacSink;
+        encoder.setRecordMetrics(recordMetrics);
+        final RecordMetrics metrics = recordMetrics;
+        encoder.setCallback(new AACEncoder.Callback() {
 
-        workThread = new Thread("publish-thread") {
             @Override
-            public void run() {
-                while (loop && !Thread.interrupted()) {
-                    try {
-                        Runnable runnable = mRunnables.take();
-                        runnable.run();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                }
-                mRunnables.clear();
-                Log.d(TAG, "= =lgd= Rtmp发布线程退出...");
+            public void outputFormatChanged(MediaFormat format) {
+                sink.onFormatChanged(format);
             }
-        };
-
-        loop = true;
-        workThread.start();
-
-        mAACEncoder.setCallback(new AACEncoder.Callback() {
 
             @Override
-            public void outputAudioData(final byte[] aac, final int len,final int nTimeStamp) {
-                Runnable runnable = new Runnable() {
-                    @Override
-                    public void run() {
-                        Log.e(TAG, "outPutAACData len"+len);
-                        if (null!=fos) {
-                            try {
-                                fos.write(aac, 0, len);
-                                fos.flush();
-                            } catch (IOException e) {
-                                e.printStackTrace();
-                            }
-                        }
-                    }
-                };
+            public void outputAudioData(final byte[] aac, final int len, final int nTimeStamp) {
+                startupMetrics.markFirstPacket();
+                long writeStart = System.nanoTime();
                 try {
-                    mRunnables.put(runnable);
-                } catch (InterruptedException e) {
-                    Log.e(TAG, " =lgd= outputAudioData=====error: "+e.toString());
-                    e.printStackTrace();
+                    sink.writePacket(aac, len, nTimeStamp);
+                } catch (IOException e) {
+                    Logger.e(e, TAG, e.getMessage());
+                } finally {
+                    encoder.recyclePacket(aac);
+                }
+                if (metrics != null) {
+                    metrics.recordWrite(System.nanoTime() - writeStart);
                 }
             }
         });
+        encoder.start();
+    }
 
+    private AacSink createAacSink(File file) throws IOException {
+        AacSink sink;
+        if (currentConfig.getFormat() == RecordConfig.RecordFormat.AAC
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            sink = new Mp4FileSink(file);
+        } else {
+            sink = new AdtsFileSink(file);
+        }
+        UploadConfig uploadConfig = currentConfig.getUploadConfig();
+        if (uploadConfig != null) {
+            try {
+                File spillDir = uploadConfig.getSpillDir() != null
+                        ? new File(uploadConfig.getSpillDir()) : new File(file.getParentFile(), ".upload");
+                ChunkedUploader uploader = new ChunkedUploader(uploadConfig, spillDir, UUID.randomUUID().toString(),
+                        uploadConfig.getListener());
+                uploader.start();
+                Logger.i(TAG, "边录边传 session: %s", uploader.getSessionId());
+                sink = new UploadingAacSink(sink, uploader);
+            } catch (IllegalArgumentException e) {
+                Logger.e(e, TAG, "上传配置错误：%s", e.getMessage());
+            }
+        }
+        HlsConfig hlsConfig = currentConfig.getHlsConfig();
+        if (hlsConfig != null) {
+            try {
+                File dir = hlsConfig.getDirectory() != null
+                        ? new File(hlsConfig.getDirectory()) : new File(file.getAbsolutePath() + "_hls");
+                HlsSegmenter segmenter = new HlsSegmenter(hlsConfig, dir);
+                Logger.i(TAG, "HLS 播放列表：%s", segmenter.getPlaylistFile().getAbsolutePath());
+                sink = new HlsAacSink(sink, segmenter);
+            } catch (IllegalArgumentException e) {
+                Logger.e(e, TAG, "HLS 配置错误：%s", e.getMessage());
+            }
+        }
+        if (aacRtpPacketizer != null) {
+            sink = new RtpAacSink(sink, aacRtpPacketizer);
+        }
+        return new PublishingAacSink(sink, packetPublisher);
+    }
 
+    /**
+     * 结束AAC编码，等待编码器输出剩余数据后完成文件
+     */
+    private void stopAACEncoder() {
+        if (mAACEncoder == null) {
+            notifyFinish();
+            return;
+        }
+        AACEncoder encoder = mAACEncoder;
+        mAACEncoder = null;
+        encoder.stop(new AACEncoder.EncodeFinishListener() {
+            @Override
+            public void onFinish() {
+                try {
+                    if (aacSink != null) {
+                        aacSink.close();
+                    }
+                } catch (IOException e) {
+                    Logger.e(e, TAG, e.getMessage());
+                }
+                aacSink = null;
+                notifyFinish();
+                Logger.i(TAG, "录音完成！ path: %s ； 大小：%s", resultFile.getAbsoluteFile(), resultFile.length());
+            }
+        });
     }
 
 }
@@ -0,0 +1,106 @@
+package com.zlw.main.recorderlib.recorder;
+
+import com.zlw.main.recorderlib.recorder.listener.RecordResultListener;
+
+import java.io.Serializable;
+import java.util.Locale;
+
+/**
+ * 一路录音输出
+ * 同一次录音可配置多路输出（如 WAV 原始文件 + 64kbps MP3），采集到的数据同时送入每一路的编码器
+ */
+public class RecordOutput implements Serializable {
+    private RecordConfig.RecordFormat format;
+    /**
+     * 目标码率 bit/s，<=0 使用该格式的默认码率，仅对 MP3/AAC 有效
+     */
+    private int bitRate;
+    /**
+     * 输出文件路径，为空时使用本次录音的文件名加上该格式的后缀
+     */
+    private String filePath;
+    /**
+     * 输出采样率，<=0 与录音的采样率相同；不同时在该路的工作线程中重采样，仅支持16bit
+     */
+    private int sampleRate;
+    /**
+     * 只输出其中一个声道（从0开始），<0 输出全部声道
+     */
+    private int channel = -1;
+    private transient RecordResultListener resultListener;
+
+    public RecordOutput(RecordConfig.RecordFormat format) {
+        this(format, 0);
+    }
+
+    public RecordOutput(RecordConfig.RecordFormat format, int bitRate) {
+        this.format = format;
+        this.bitRate = bitRate;
+    }
+
+    public RecordConfig.RecordFormat getFormat() {
+        return format;
+    }
+
+    public int getBitRate() {
+        return bitRate;
+    }
+
+    public RecordOutput setBitRate(int bitRate) {
+        this.bitRate = bitRate;
+        return this;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public RecordOutput setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    /**
+     * 该路只输出一个声道，得到单声道文件；未指定文件路径时文件名加 _ch序号 后缀
+     *
+     * @param channel 声道序号，从0开始；<0 输出全部声道
+     */
+    public RecordOutput setChannel(int channel) {
+        this.channel = channel;
+        return this;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public RecordOutput setFilePath(String filePath) {
+        this.filePath = filePath;
+        return this;
+    }
+
+    public RecordResultListener getResultListener() {
+        return resultListener;
+    }
+
+    /**
+     * 该路输出完成的回调，在主线程中回调
+     */
+    public RecordOutput setResultListener(RecordResultListener resultListener) {
+        this.resultListener = resultListener;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        String channelInfo = channel >= 0 ? String.format(Locale.getDefault(), ", ch%s", channel) : "";
+        if (sampleRate > 0) {
+            return String.format(Locale.getDefault(), "%s(%s bps, %s Hz%s)", format, bitRate, sampleRate, channelInfo);
+        }
+        return String.format(Locale.getDefault(), "%s(%s bps%s)", format, bitRate, channelInfo);
+    }
+}
@@ -6,14 +6,27 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.IBinder;
 
+import com.zlw.main.recorderlib.recorder.adaptive.QualityChangeEvent;
+import com.zlw.main.recorderlib.recorder.fanout.OutputStats;
 import com.zlw.main.recorderlib.recorder.listener.RecordDataListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordFeatureListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordLevelListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordResultListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordSoundSizeListener;
+import com.zlw.main.recorderlib.recorder.listener.RecordSpectrumListener;
 import com.zlw.main.recorderlib.recorder.listener.RecordStateListener;
+import com.zlw.main.recorderlib.recorder.metrics.MetricsSnapshot;
+import com.zlw.main.recorderlib.recorder.rtp.RtpStats;
+import com.zlw.main.recorderlib.recorder.stream.EncodedPacket;
+import com.zlw.main.recorderlib.recorder.stream.LevelReading;
+import com.zlw.main.recorderlib.recorder.stream.PcmChunk;
+import com.zlw.main.recorderlib.recorder.stream.RecordPublisher;
 import com.zlw.main.recorderlib.utils.FileUtils;
 import com.zlw.main.recorderlib.utils.Logger;
 
+import java.io.File;
 import java.text.SimpleDateFormat;
+import java.util.List;
 import java.util.Locale;
 
 /**
@@ -110,6 +123,7 @@ public class RecordService extends Service {
     public static boolean changeFormat(RecordConfig.RecordFormat recordFormat) {
         if (getState() == RecordHelper.RecordState.IDLE) {
             currentConfig.setFormat(recordFormat);
+            RecordHelper.getInstance().warmUp(currentConfig);
             return true;
         }
         return false;
@@ -142,6 +156,18 @@ public class RecordService extends Service {
         RecordHelper.getInstance().setRecordResultListener(recordResultListener);
     }
 
+    public static void setRecordLevelListener(RecordLevelListener recordLevelListener) {
+        RecordHelper.getInstance().setRecordLevelListener(recordLevelListener);
+    }
+
+    public static void setRecordSpectrumListener(RecordSpectrumListener recordSpectrumListener) {
+        RecordHelper.getInstance().setRecordSpectrumListener(recordSpectrumListener);
+    }
+
+    public static void setRecordFeatureListener(RecordFeatureListener recordFeatureListener) {
+        RecordHelper.getInstance().setRecordFeatureListener(recordFeatureListener);
+    }
+
     private void doStartRecording(String path) {
         Logger.v(TAG, "doStartRecording path: %s", path);
         RecordHelper.getInstance().start(path, currentConfig);
@@ -169,6 +195,107 @@ public class RecordService extends Service {
 
     public static void setCurrentConfig(RecordConfig currentConfig) {
         RecordService.currentConfig = currentConfig;
+        RecordHelper.getInstance().warmUp(currentConfig);
+    }
+
+    /**
+     * 设置预热池
+     *
+     * @param size          预热个数，0：关闭
+     * @param idleTimeoutMs 空闲多久后释放预热的对象
+     */
+    public static void setWarmPool(int size, long idleTimeoutMs) {
+        RecordHelper.getInstance().setWarmPool(size, idleTimeoutMs, currentConfig);
+    }
+
+    /**
+     * 设置待机预录
+     *
+     * @param seconds 保留的时长 s，0：关闭
+     */
+    public static void setPreRoll(int seconds) {
+        RecordHelper.getInstance().setPreRoll(seconds, currentConfig);
+    }
+
+    /**
+     * 多路输出时各路的延迟、丢帧等统计
+     */
+    public static List<OutputStats> getOutputStats() {
+        return RecordHelper.getInstance().getOutputStats();
+    }
+
+    /**
+     * 设置延迟编码的触发时机
+     *
+     * @param context 用于查询充电状态
+     */
+    public static void setDeferredEncodePolicy(Context context, DeferredEncodePolicy policy) {
+        DeferredEncodeScheduler scheduler = RecordHelper.getInstance().getDeferredScheduler();
+        scheduler.setPolicy(policy, context);
+        scheduler.restore(new File(currentConfig.getRecordDir()));
+    }
+
+    /**
+     * 立即编码所有积压的延迟编码任务
+     */
+    public static void encodeDeferredNow() {
+        DeferredEncodeScheduler scheduler = RecordHelper.getInstance().getDeferredScheduler();
+        scheduler.restore(new File(currentConfig.getRecordDir()));
+        scheduler.encodeNow();
+    }
+
+    /**
+     * @return 尚未编码的音频时长 ms
+     */
+    public static long getDeferredBacklogMs() {
+        return RecordHelper.getInstance().getDeferredScheduler().getBacklogMs();
+    }
+
+    /**
+     * @return 当前延迟编码任务的进度 0~1，-1: 没有正在编码的任务
+     */
+    public static float getDeferredProgress() {
+        return RecordHelper.getInstance().getDeferredScheduler().getProgress();
+    }
+
+    /**
+     * 最近一次录音的编码质量调整记录
+     */
+    public static List<QualityChangeEvent> getQualityChangeEvents() {
+        return RecordHelper.getInstance().getQualityChangeEvents();
+    }
+
+    /**
+     * 获取最近一次录音的启动耗时
+     */
+    public static StartupMetrics getStartupMetrics() {
+        return RecordHelper.getInstance().getStartupMetrics();
+    }
+
+    /**
+     * RTP 发送统计，录音中为实时数据，结束后为最终结果
+     */
+    public static RtpStats getRtpStats() {
+        return RecordHelper.getInstance().getRtpStats();
+    }
+
+    /**
+     * 运行统计，录音中为实时数据，结束后为最终结果
+     */
+    public static MetricsSnapshot getRecordMetrics() {
+        return RecordHelper.getInstance().getRecordMetrics();
+    }
+
+    public static RecordPublisher<PcmChunk> getAudioPublisher() {
+        return RecordHelper.getInstance().getAudioPublisher();
+    }
+
+    public static RecordPublisher<EncodedPacket> getPacketPublisher() {
+        return RecordHelper.getInstance().getPacketPublisher();
+    }
+
+    public static RecordPublisher<LevelReading> getLevelPublisher() {
+        return RecordHelper.getInstance().getLevelPublisher();
     }
 
     /**
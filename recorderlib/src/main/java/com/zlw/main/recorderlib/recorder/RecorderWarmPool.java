@@ -0,0 +1,298 @@
+package com.zlw.main.recorderlib.recorder;
+
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.zlw.main.recorderlib.recorder.aac.AACEncoder;
+import com.zlw.main.recorderlib.recorder.mp3.Mp3EncodeThread;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.util.LinkedList;
+import java.util.Locale;
+
+/**
+ * 录音对象预热池
+ * 针对当前的录音配置预先创建 AudioRecord、已配置好的AAC编码器以及初始化好的LAME，
+ * start 时直接取用；AudioRecord 用完后回收复用，空闲超时后全部释放
+ */
+class RecorderWarmPool {
+    private static final String TAG = RecorderWarmPool.class.getSimpleName();
+
+    /**
+     * 设备原生采样率的候选，按优先级排列
+     */
+    private static final int[] NATIVE_RATES = {48000, 44100};
+    /**
+     * 配置的采样率不可用时依次尝试的采样率
+     */
+    private static final int[] FALLBACK_RATES = {48000, 44100, 32000, 22050, 16000, 11025, 8000};
+
+    private int poolSize;
+    private long idleTimeoutMs;
+    private HandlerThread warmThread;
+    private Handler warmHandler;
+
+    /**
+     * 池中对象对应的配置
+     */
+    private String configKey;
+    private final LinkedList<AudioRecord> audioRecords = new LinkedList<>();
+    private final LinkedList<AACEncoder> aacEncoders = new LinkedList<>();
+    private boolean mp3EncoderReady;
+
+    private final Runnable idleReleaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            Logger.d(TAG, "预热池空闲超时，释放");
+            releaseAll();
+        }
+    };
+
+    /**
+     * @param size          每类对象预热的个数，0：关闭预热池
+     * @param idleTimeoutMs 空闲多久后释放池中对象
+     */
+    synchronized void setPoolSize(int size, long idleTimeoutMs) {
+        this.poolSize = Math.max(0, size);
+        this.idleTimeoutMs = idleTimeoutMs;
+        if (poolSize == 0) {
+            releaseAll();
+            if (warmThread != null) {
+                warmThread.quit();
+                warmThread = null;
+                warmHandler = null;
+            }
+        }
+    }
+
+    synchronized boolean isEnabled() {
+        return poolSize > 0;
+    }
+
+    /**
+     * 在预热线程中按配置补齐池中的对象
+     */
+    synchronized void warmUp(final RecordConfig config) {
+        if (poolSize <= 0 || config == null) {
+            return;
+        }
+        if (warmThread == null) {
+            warmThread = new HandlerThread("recorder-warm-pool");
+            warmThread.start();
+            warmHandler = new Handler(warmThread.getLooper());
+        }
+        final String key = keyOf(config);
+        warmHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                fill(config, key);
+            }
+        });
+    }
+
+    synchronized AudioRecord obtainAudioRecord(RecordConfig config) {
+        if (!keyOf(config).equals(configKey)) {
+            return null;
+        }
+        return audioRecords.poll();
+    }
+
+    synchronized AACEncoder obtainAACEncoder(RecordConfig config) {
+        if (!keyOf(config).equals(configKey)) {
+            return null;
+        }
+        return aacEncoders.poll();
+    }
+
+    /**
+     * @return LAME 是否已按该配置初始化，取用后需重新预热；期间被延迟编码等收回时为 false
+     */
+    synchronized boolean obtainMp3Encoder(RecordConfig config) {
+        if (!mp3EncoderReady || !keyOf(config).equals(configKey)) {
+            return false;
+        }
+        mp3EncoderReady = false;
+        return Mp3EncodeThread.claimStandbyEncoder();
+    }
+
+    /**
+     * 回收 AudioRecord，池已满、配置已变化或未开启预热时直接释放
+     */
+    synchronized void recycleAudioRecord(AudioRecord audioRecord, RecordConfig config) {
+        if (audioRecord == null) {
+            return;
+        }
+        if (poolSize > 0 && keyOf(config).equals(configKey) && audioRecords.size() < poolSize
+                && audioRecord.getState() == AudioRecord.STATE_INITIALIZED) {
+            audioRecords.add(audioRecord);
+            scheduleIdleRelease();
+        } else {
+            audioRecord.release();
+        }
+    }
+
+    private void fill(RecordConfig config, String key) {
+        synchronized (this) {
+            if (poolSize <= 0) {
+                return;
+            }
+            if (!key.equals(configKey)) {
+                releaseAll();
+                configKey = key;
+            }
+        }
+        Logger.TimeCalculator timeCalculator = new Logger.TimeCalculator();
+        //创建过程较慢，不持有锁，避免阻塞 start 时的取用
+        while (needMore(audioRecords, key)) {
+            AudioRecord audioRecord = createAudioRecord(config);
+            if (audioRecord == null || !offer(audioRecords, audioRecord, key)) {
+                if (audioRecord != null) {
+                    audioRecord.release();
+                }
+                break;
+            }
+        }
+        RecordConfig.RecordFormat format = config.getFormat();
+        if (format == RecordConfig.RecordFormat.AAC || format == RecordConfig.RecordFormat.AAC_ADTS) {
+            while (needMore(aacEncoders, key)) {
+                AACEncoder encoder;
+                try {
+                    encoder = AACEncoder.newInstance(config);
+                    encoder.prepare();
+                } catch (Exception e) {
+                    Logger.e(e, TAG, "AAC编码器预热失败");
+                    break;
+                }
+                if (!offer(aacEncoders, encoder, key)) {
+                    encoder.release();
+                    break;
+                }
+            }
+        } else if (format == RecordConfig.RecordFormat.MP3 && !config.isDeferredEncoding() && !config.hasOutputs()) {
+            //延迟编码和多路输出录音时不使用实时的 LAME；LAME 正被延迟编码占用时跳过预热，
+            //预热的 LAME 不阻挡其他使用方，空闲超时为0时也不会一直占用
+            synchronized (this) {
+                if (key.equals(configKey) && !(mp3EncoderReady && Mp3EncodeThread.hasStandbyEncoder())) {
+                    mp3EncoderReady = Mp3EncodeThread.initStandbyEncoder(config);
+                }
+            }
+        }
+        synchronized (this) {
+            scheduleIdleRelease();
+        }
+        Logger.d(TAG, "预热完成 %s 耗时：%s ms", key, timeCalculator.end());
+    }
+
+    private synchronized boolean needMore(LinkedList<?> list, String key) {
+        return poolSize > 0 && key.equals(configKey) && list.size() < poolSize;
+    }
+
+    private synchronized <T> boolean offer(LinkedList<T> list, T item, String key) {
+        if (poolSize > 0 && key.equals(configKey) && list.size() < poolSize) {
+            list.add(item);
+            return true;
+        }
+        return false;
+    }
+
+    private void scheduleIdleRelease() {
+        if (warmHandler == null || idleTimeoutMs <= 0) {
+            return;
+        }
+        warmHandler.removeCallbacks(idleReleaseRunnable);
+        warmHandler.postDelayed(idleReleaseRunnable, idleTimeoutMs);
+    }
+
+    private synchronized void releaseAll() {
+        for (AudioRecord audioRecord : audioRecords) {
+            audioRecord.release();
+        }
+        audioRecords.clear();
+        for (AACEncoder encoder : aacEncoders) {
+            encoder.release();
+        }
+        aacEncoders.clear();
+        if (mp3EncoderReady) {
+            Mp3EncodeThread.releaseStandbyEncoder();
+            mp3EncoderReady = false;
+        }
+        configKey = null;
+    }
+
+    private static String keyOf(RecordConfig config) {
+        return String.format(Locale.US, "%s_%s_%s_%s_%s_%s", config.getFormat(), config.getSampleRate(),
+                config.getCaptureSampleRate(), config.getChannelConfig(), config.getChannelRouting(), config.getEncodingConfig());
+    }
+
+    /**
+     * 确定实际的采集采样率：优先使用配置的采集采样率，设备不支持时改用第一个可用的采样率；
+     * 8bit 无法重采样，始终按 sampleRate 采集
+     */
+    static int resolveCaptureRate(RecordConfig config) {
+        int outputRate = config.getSampleRate();
+        if (config.getEncoding() != 16) {
+            return outputRate;
+        }
+        int preferred = config.getCaptureSampleRate() > 0 ? config.getCaptureSampleRate() : outputRate;
+        if (config.getCaptureSampleRate() == RecordConfig.CAPTURE_RATE_NATIVE) {
+            preferred = firstSupported(config, NATIVE_RATES, outputRate);
+        }
+        if (isSupported(config, preferred)) {
+            return preferred;
+        }
+        int fallback = firstSupported(config, FALLBACK_RATES, outputRate);
+        Logger.w(TAG, "设备不支持采样率 %s，改用 %s 采集", preferred, fallback);
+        return fallback;
+    }
+
+    private static int firstSupported(RecordConfig config, int[] rates, int defaultRate) {
+        for (int rate : rates) {
+            if (isSupported(config, rate)) {
+                return rate;
+            }
+        }
+        return defaultRate;
+    }
+
+    private static boolean isSupported(RecordConfig config, int rate) {
+        return AudioRecord.getMinBufferSize(rate, config.getChannelConfig(), config.getEncodingConfig()) > 0;
+    }
+
+    /**
+     * 根据录音参数构造AudioRecord实体对象，采样率见 {@link #resolveCaptureRate(RecordConfig)}
+     */
+    static AudioRecord createAudioRecord(RecordConfig config) {
+        return createAudioRecord(config, 0);
+    }
+
+    /**
+     * @param bufferMs 内部缓冲区至少能容纳的时长 ms，读取停顿不超过该时长时不丢数据；0：使用最小缓冲区
+     */
+    static AudioRecord createAudioRecord(RecordConfig config, int bufferMs) {
+        int captureRate = resolveCaptureRate(config);
+        int bufferSize = AudioRecord.getMinBufferSize(captureRate, config.getChannelConfig(), config.getEncodingConfig());
+        if (bufferSize <= 0) {
+            Logger.e(TAG, "无可用的采样率");
+            return null;
+        }
+        int frameBytes = Math.max(1, config.getChannelCount() * config.getEncoding() / 8);
+        bufferSize = Math.max(bufferSize, (int) ((long) captureRate * bufferMs / 1000) * frameBytes);
+        Logger.d(TAG, "buffer size is valid, = %s", bufferSize);
+        /**
+         * @param audioSource ：录音源
+         * 这里选择使用麦克风：MediaRecorder.AudioSource.MIC
+         * @param sampleRateInHz： 采样率
+         * @param channelConfig：声道数
+         * @param audioFormat： 采样位数.
+         *   See {@link AudioFormat#ENCODING_PCM_8BIT}, {@link AudioFormat#ENCODING_PCM_16BIT},
+         *   and {@link AudioFormat#ENCODING_PCM_FLOAT}.
+         * @param bufferSizeInBytes： 音频录制的缓冲区大小
+         *   See {@link #getMinBufferSize(int, int, int)}
+         */
+        return new AudioRecord(MediaRecorder.AudioSource.VOICE_COMMUNICATION, captureRate,
+                config.getChannelConfig(), config.getEncodingConfig(), bufferSize);
+    }
+}
@@ -0,0 +1,71 @@
+package com.zlw.main.recorderlib.recorder;
+
+import java.util.Locale;
+
+/**
+ * 录音启动耗时统计
+ * 从调用 start 开始，分别记录采集到第一个有效样本和编码输出第一个数据包的时间
+ */
+public class StartupMetrics {
+    private volatile long startNanos;
+    private volatile long firstSampleNanos;
+    private volatile long firstPacketNanos;
+    private volatile boolean warmStart;
+
+    void start() {
+        warmStart = false;
+        firstSampleNanos = 0;
+        firstPacketNanos = 0;
+        startNanos = System.nanoTime();
+    }
+
+    void setWarmStart(boolean warmStart) {
+        this.warmStart = warmStart;
+    }
+
+    public void markFirstSample() {
+        if (firstSampleNanos == 0 && startNanos != 0) {
+            firstSampleNanos = System.nanoTime();
+        }
+    }
+
+    public void markFirstPacket() {
+        if (firstPacketNanos == 0 && startNanos != 0) {
+            firstPacketNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * @return 到第一个有效样本的时间 ms，-1：尚未采集到
+     */
+    public long getTimeToFirstSampleMs() {
+        return elapsedMs(firstSampleNanos);
+    }
+
+    /**
+     * @return 到第一个编码数据包的时间 ms，-1：尚未输出（PCM/WAV 格式无编码过程）
+     */
+    public long getTimeToFirstPacketMs() {
+        return elapsedMs(firstPacketNanos);
+    }
+
+    /**
+     * @return 本次录音是否使用了预热的对象
+     */
+    public boolean isWarmStart() {
+        return warmStart;
+    }
+
+    private long elapsedMs(long nanos) {
+        if (nanos == 0 || startNanos == 0) {
+            return -1;
+        }
+        return (nanos - startNanos) / 1000000L;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.getDefault(), "预热：%s, 首个样本：%s ms, 首个数据包：%s ms",
+                warmStart, getTimeToFirstSampleMs(), getTimeToFirstPacketMs());
+    }
+}
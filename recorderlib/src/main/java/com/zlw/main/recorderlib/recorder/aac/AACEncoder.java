@@ -5,19 +5,25 @@ import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaCodecList;
 import android.media.MediaFormat;
+import android.os.Build;
 import android.util.Log;
 
 
 import com.zlw.main.recorderlib.recorder.RecordConfig;
+import com.zlw.main.recorderlib.recorder.metrics.QueueMetrics;
+import com.zlw.main.recorderlib.recorder.metrics.RecordMetrics;
+import com.zlw.main.recorderlib.utils.BytePool;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
 
 /**
  * @author Conor
  *
- * 音视频编码，对视频进行AVC编码、对音频进行AAC编码
+ * 音频AAC编码
+ * 采集线程只负责拷贝数据到复用的输入帧，送入编码器与取出编码数据分别在独立线程中完成，
+ * 输出的ADTS数据包来自复用池，使用完毕后调用 {@link #recyclePacket(byte[])} 归还
  */
 public class AACEncoder {
     private static final String TAG = "AVEncoder";
@@ -26,24 +32,61 @@ public class AACEncoder {
     ///////////////////AUDIO/////////////////////////////////
     // parameters for the encoder
     private static final String AUDIO_MIME_TYPE = "audio/mp4a-latm";
+    /**
+     * ADTS头部的大小
+     */
+    public static final int ADTS_HEADER_SIZE = 7;
+    /**
+     * AAC单帧每声道最大 6144 bit
+     */
+    private static final int MAX_FRAME_BYTES_PER_CHANNEL = 768;
+    /**
+     * ADTS 采样率索引表，下标即 freqIdx
+     */
+    private static final int[] ADTS_SAMPLE_RATES = {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+    /**
+     * 待编码的输入帧最大积压数，超出后丢弃并计数
+     */
+    private static final int MAX_PENDING_FRAMES = 256;
+    private static final int TIMEOUT_USEC = 10000;
+
     private MediaCodec aEncoder;                // API >= 16(Android4.1.2)
-    private MediaCodec.BufferInfo aBufferInfo;        // API >= 16(Android4.1.2)
     private MediaCodecInfo audioCodecInfo;
     private MediaFormat audioFormat;
-    private Thread audioEncoderThread;
+    private Thread feedThread;
+    private Thread drainThread;
     private volatile boolean audioEncoderLoop = false;
-    private volatile boolean aEncoderEnd = false;
-    private LinkedBlockingQueue<byte[]> audioQueue;
+    private boolean prepared = false;
 
-    private long presentationTimeUs;
-    private final int TIMEOUT_USEC = 10000;
+    private final ArrayBlockingQueue<PcmFrame> pendingFrames = new ArrayBlockingQueue<>(MAX_PENDING_FRAMES);
+    private final ArrayBlockingQueue<PcmFrame> freeFrames = new ArrayBlockingQueue<>(MAX_PENDING_FRAMES);
+    private BytePool packetPool;
+    private final byte[] adtsHeader = new byte[ADTS_HEADER_SIZE];
+
+    private int sampleRate;
+    private int bytesPerSampleFrame;
+    private long queuedBytes;
+    private volatile long droppedFrames;
+
+    private int targetBitRate;
+    private volatile RecordMetrics metrics;
+    private volatile QueueMetrics queueMetrics;
     private Callback mCallback;
+    private EncodeFinishListener finishListener;
 
     public static AACEncoder newInstance(RecordConfig recordConfig) {
-        return new AACEncoder(recordConfig);
+        return new AACEncoder(recordConfig, 0);
     }
 
-    private AACEncoder(RecordConfig recordConfig) {
+    /**
+     * @param bitRate 目标码率 bit/s，<=0 时使用默认码率
+     */
+    public static AACEncoder newInstance(RecordConfig recordConfig, int bitRate) {
+        return new AACEncoder(recordConfig, bitRate);
+    }
+
+    private AACEncoder(RecordConfig recordConfig, int bitRate) {
+        this.targetBitRate = bitRate;
         initAudioEncoder(recordConfig);
     }
 
@@ -57,32 +100,55 @@ public class AACEncoder {
     }
 
     public interface Callback {
+        /**
+         * 编码器输出格式确定，在第一个数据包之前回调
+         *
+         * @param format 输出格式，包含 csd-0 (AudioSpecificConfig)
+         */
+        void outputFormatChanged(MediaFormat format);
+
+        /**
+         * 输出一个带ADTS头的AAC数据包，在编码输出线程中回调
+         *
+         * @param aac        数据包，来自复用池，使用完毕后调用 {@link #recyclePacket(byte[])} 归还
+         * @param len        有效长度（数组长度可能更大）
+         * @param nTimeStamp 时间戳 ms
+         */
         void outputAudioData(final byte[] aac, final int len, final int nTimeStamp);
     }
 
+    public interface EncodeFinishListener {
+        /**
+         * 编码器已输出全部数据并释放
+         */
+        void onFinish();
+    }
+
 
     public void initAudioEncoder(RecordConfig recordConfig){
-        aBufferInfo = new MediaCodec.BufferInfo();
-        audioQueue = new LinkedBlockingQueue<>();
         audioCodecInfo = selectCodec(AUDIO_MIME_TYPE);
         if (audioCodecInfo == null) {
             if (DEBUG) Log.e(TAG, "= =lgd= Unable to find an appropriate codec for " + AUDIO_MIME_TYPE);
             return;
         }
-        int sampleRate = recordConfig.getSampleRate();
+        sampleRate = recordConfig.getSampleRate();
         int pcmFormat = recordConfig.getEncoding();
-        int chanelCount = recordConfig.getChannelCount();
+        int chanelCount = recordConfig.getRoutedChannelCount();
+        bytesPerSampleFrame = pcmFormat / 8 * chanelCount;
 
         Log.d(TAG, "===liuguodong===selected codec: " + audioCodecInfo.getName());
         audioFormat = MediaFormat.createAudioFormat(AUDIO_MIME_TYPE, sampleRate, chanelCount);
         audioFormat.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
-        audioFormat.setInteger(MediaFormat.KEY_CHANNEL_MASK, AudioFormat.CHANNEL_IN_STEREO);//CHANNEL_IN_STEREO 立体声
-        int bitRate = sampleRate * pcmFormat * chanelCount;
+        audioFormat.setInteger(MediaFormat.KEY_CHANNEL_MASK, chanelCount == 1 ? AudioFormat.CHANNEL_IN_MONO : AudioFormat.CHANNEL_IN_STEREO);
+        int bitRate = targetBitRate > 0 ? targetBitRate : sampleRate * pcmFormat * chanelCount;
         audioFormat.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
         audioFormat.setInteger(MediaFormat.KEY_CHANNEL_COUNT, chanelCount);
         audioFormat.setInteger(MediaFormat.KEY_SAMPLE_RATE, sampleRate);
         Log.d(TAG, " =lgd= =====format: " + audioFormat.toString());
 
+        packetPool = new BytePool(ADTS_HEADER_SIZE + MAX_FRAME_BYTES_PER_CHANNEL * Math.max(chanelCount, 1), 32);
+        initAdtsHeader(adtsHeader, sampleRate, chanelCount);
+
         if (aEncoder != null) {
             return;
         }
@@ -112,6 +178,22 @@ public class AACEncoder {
         return null;
     }
 
+    /**
+     * 配置并启动 MediaCodec，但不启动编码线程，可提前调用以减少 start 的耗时
+     */
+    public void prepare() {
+        if (prepared) {
+            return;
+        }
+        if (aEncoder == null) {
+            throw new RuntimeException(" =lgd= =请初始化音频编码器=====");
+        }
+        aEncoder.configure(audioFormat, null, null,
+                MediaCodec.CONFIGURE_FLAG_ENCODE);
+        aEncoder.start();
+        prepared = true;
+    }
+
     /**
      * 开始
      */
@@ -119,11 +201,28 @@ public class AACEncoder {
         startAudioEncode();
     }
 
+    /**
+     * 释放未启动编码线程的编码器
+     */
+    public void release() {
+        if (!audioEncoderLoop) {
+            releaseEncoder();
+        }
+    }
+
+    /**
+     * 停止，已送入的数据编码完成后回调 {@link EncodeFinishListener#onFinish()}
+     */
+    public void stop(EncodeFinishListener listener) {
+        this.finishListener = listener;
+        stopAudioEncode();
+    }
+
     /**
      * 停止
      */
     public void stop() {
-        stopAudioEncode();
+        stop(null);
     }
 
 
@@ -135,45 +234,96 @@ public class AACEncoder {
         if (audioEncoderLoop) {
             throw new RuntimeException(" =lgd= 音频编码线程必须先停止===");
         }
-        audioEncoderThread = new Thread() {
+        prepare();
+        queuedBytes = 0;
+        droppedFrames = 0;
+
+        feedThread = new Thread("aac-feed") {
             @Override
             public void run() {
                 Log.d(TAG, "===liuguodong=====Audio 编码线程 启动...");
-                presentationTimeUs = System.currentTimeMillis() * 1000;
-                aEncoderEnd = false;
-                aEncoder.configure(audioFormat, null, null,
-                        MediaCodec.CONFIGURE_FLAG_ENCODE);
-                aEncoder.start();
-                while (audioEncoderLoop && !Thread.interrupted()) {
-                    try {
-                        byte[] data = audioQueue.take();
-                        encodeAudioData(data);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                        break;
-                    }
-                }
-                if (aEncoder != null) {
-                    //停止音频编码器
-                    aEncoder.stop();
-                    //释放音频编码器
-                    aEncoder.release();
-                    aEncoder = null;
-                }
-
-                audioQueue.clear();
+                feedLoop();
+            }
+        };
+        drainThread = new Thread("aac-drain") {
+            @Override
+            public void run() {
+                drainLoop();
+                releaseEncoder();
                 Log.d(TAG, "= =lgd= ==Audio 编码线程 退出...");
+                if (finishListener != null) {
+                    finishListener.onFinish();
+                }
             }
         };
         audioEncoderLoop = true;
-        audioEncoderThread.start();
+        drainThread.start();
+        feedThread.start();
     }
 
     private void stopAudioEncode() {
         Log.d(TAG, "== =lgd= ==stop Audio 编码...");
-        aEncoderEnd = true;
+        if (!audioEncoderLoop) {
+            if (finishListener != null) {
+                finishListener.onFinish();
+            }
+            return;
+        }
+        try {
+            pendingFrames.put(PcmFrame.END_OF_STREAM);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * 添加音频数据，数据被拷贝到复用的输入帧中，调用方可立即复用 data
+     *
+     * @param data 音频数据
+     * @param len  有效长度
+     */
+    public void putAudioData(byte[] data, int len) {
+        if (len <= 0) {
+            return;
+        }
+        PcmFrame frame = obtainFrame(data, len);
+        QueueMetrics queue = queueMetrics;
+        if (!pendingFrames.offer(frame)) {
+            droppedFrames++;
+            Log.w(TAG, "编码积压，丢弃音频帧: " + droppedFrames);
+            freeFrames.offer(frame);
+            if (queue != null) {
+                queue.onDrop();
+            }
+        } else if (queue != null) {
+            queue.onEnqueue(pendingFrames.size());
+        }
+    }
+
+    /**
+     * 添加音频数据，积压时阻塞等待而不丢弃，用于非实时的编码
+     *
+     * @param data 音频数据
+     * @param len  有效长度
+     */
+    public void putAudioDataBlocking(byte[] data, int len) throws InterruptedException {
+        if (len <= 0) {
+            return;
+        }
+        pendingFrames.put(obtainFrame(data, len));
     }
 
+    private PcmFrame obtainFrame(byte[] data, int len) {
+        PcmFrame frame = freeFrames.poll();
+        if (frame == null || frame.data.length < len) {
+            frame = new PcmFrame(len);
+        }
+        System.arraycopy(data, 0, frame.data, 0, len);
+        frame.size = len;
+        frame.queuedNanos = System.nanoTime();
+        return frame;
+    }
 
     /**
      * 添加音频数据
@@ -181,93 +331,228 @@ public class AACEncoder {
      * @param data
      */
     public void putAudioData(byte[] data) {
-        try {
-            audioQueue.put(data);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
+        putAudioData(data, data.length);
     }
 
-    private int getYuvBuffer(int width, int height) {
-        int yStride = (int) Math.ceil(width / 16.0) * 16;
-        int uvStride = (int) Math.ceil( (yStride / 2) / 16.0) * 16;
-        int ySize = yStride * height;
-        int uvSize = uvStride * height / 2;
-        return ySize + uvSize * 2;
+    /**
+     * 归还 {@link Callback#outputAudioData(byte[], int, int)} 输出的数据包
+     */
+    public void recyclePacket(byte[] packet) {
+        packetPool.recycle(packet);
     }
 
+    /**
+     * 记录输入队列和送入编码器的耗时（包含等待编码器空闲输入缓冲区的时间）
+     */
+    public void setRecordMetrics(RecordMetrics metrics) {
+        this.metrics = metrics;
+        this.queueMetrics = metrics != null ? metrics.getQueue("aac") : null;
+    }
 
-    private void encodeAudioData(byte[] input){
-        try {
-            //拿到输入缓冲区,用于传送数据进行编码
-            ByteBuffer[] inputBuffers = aEncoder.getInputBuffers();
-            //首先通过dequeueInputBuffer(long timeoutUs)请求一个输入缓存，timeoutUs代表等待时间，设置为-1代表无限等待
-            int inputBufferIndex = aEncoder.dequeueInputBuffer(-1);
-
-            if (inputBufferIndex >= 0) {
-                ByteBuffer inputBuffer = inputBuffers[inputBufferIndex];
-                //使用之前要clear一下，避免之前的缓存数据影响当前数据
-                inputBuffer.clear();
-                //把数据添加到输入缓存中，
-                inputBuffer.put(input);
-                //并调用queueInputBuffer()把缓存数据入队
-                aEncoder.queueInputBuffer(inputBufferIndex, 0, input.length, 0, 0);
+    /**
+     * @return 因积压丢弃的输入帧数
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    private void feedLoop() {
+        ByteBuffer[] inputBuffers = Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP ? aEncoder.getInputBuffers() : null;
+        while (audioEncoderLoop) {
+            PcmFrame frame;
+            try {
+                frame = pendingFrames.take();
+            } catch (InterruptedException e) {
+                break;
             }
+            try {
+                if (frame == PcmFrame.END_OF_STREAM) {
+                    queueEndOfStream();
+                    break;
+                }
+                long feedStart = System.nanoTime();
+                QueueMetrics queue = queueMetrics;
+                if (queue != null) {
+                    queue.onDequeue(feedStart - frame.queuedNanos, pendingFrames.size());
+                }
+                int offset = 0;
+                while (offset < frame.size && audioEncoderLoop) {
+                    int index = aEncoder.dequeueInputBuffer(TIMEOUT_USEC);
+                    if (index < 0) {
+                        continue;
+                    }
+                    ByteBuffer inputBuffer = inputBuffers != null ? inputBuffers[index] : aEncoder.getInputBuffer(index);
+                    inputBuffer.clear();
+                    int count = Math.min(inputBuffer.remaining(), frame.size - offset);
+                    inputBuffer.put(frame.data, offset, count);
+                    aEncoder.queueInputBuffer(index, 0, count, getPresentationTimeUs(), 0);
+                    queuedBytes += count;
+                    offset += count;
+                }
+                //等待空闲输入缓冲区的时间即编码器的背压
+                long feedNanos = System.nanoTime() - feedStart;
+                RecordMetrics recordMetrics = metrics;
+                if (recordMetrics != null) {
+                    recordMetrics.recordEncode(feedNanos, (long) frame.size / bytesPerSampleFrame * 1000000000L / sampleRate);
+                }
+            } catch (Exception t) {
+                Log.e(TAG, "= =lgd= =encodeAudioData=====error: " + t.toString());
+            } finally {
+                if (frame != PcmFrame.END_OF_STREAM) {
+                    freeFrames.offer(frame);
+                }
+            }
+        }
+        pendingFrames.clear();
+    }
 
-            //拿到输出缓冲区,用于取到编码后的数据
-            ByteBuffer[] outputBuffers = aEncoder.getOutputBuffers();
-            //拿到输出缓冲区的索引
-            int outputBufferIndex = aEncoder.dequeueOutputBuffer(aBufferInfo, TIMEOUT_USEC);
-
-            ByteBuffer outputBuffer;
-            int outBitSize;
-            int outPacketSize;
-            byte[] chunkAudio;
-
-            while (outputBufferIndex >= 0) {
-                outBitSize = aBufferInfo.size;
-
-                //添加ADTS头,ADTS头包含了AAC文件的采样率、通道数、帧数据长度等信息。
-                outPacketSize = outBitSize + 7;//7为ADTS头部的大小
-                outputBuffer = outputBuffers[outputBufferIndex];//拿到输出Buffer
-                outputBuffer.position(aBufferInfo.offset);
-                outputBuffer.limit(aBufferInfo.offset + outBitSize);
-                chunkAudio = new byte[outPacketSize];
-                addADTStoPacket(chunkAudio, outPacketSize);
-                outputBuffer.get(chunkAudio, 7, outBitSize);//将编码得到的AAC数据 取出到byte[]中偏移量offset=7
-                outputBuffer.position(aBufferInfo.offset);
+    private void queueEndOfStream() {
+        int index;
+        do {
+            index = aEncoder.dequeueInputBuffer(TIMEOUT_USEC);
+        } while (index < 0 && audioEncoderLoop);
+        if (index >= 0) {
+            aEncoder.queueInputBuffer(index, 0, 0, getPresentationTimeUs(), MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+        }
+    }
 
+    private void drainLoop() {
+        boolean legacy = Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP;
+        ByteBuffer[] outputBuffers = legacy ? aEncoder.getOutputBuffers() : null;
+        MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+        while (audioEncoderLoop) {
+            int index;
+            try {
+                index = aEncoder.dequeueOutputBuffer(bufferInfo, TIMEOUT_USEC);
+            } catch (Exception t) {
+                Log.e(TAG, "= =lgd= =dequeueOutputBuffer=====error: " + t.toString());
+                break;
+            }
+            if (index == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                if (legacy) {
+                    outputBuffers = aEncoder.getOutputBuffers();
+                }
+                continue;
+            }
+            if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
                 if (null != mCallback) {
-                    mCallback.outputAudioData(chunkAudio, chunkAudio.length, (int) aBufferInfo.presentationTimeUs / 1000);
+                    mCallback.outputFormatChanged(aEncoder.getOutputFormat());
                 }
-                //releaseOutputBuffer方法必须调用
-                aEncoder.releaseOutputBuffer(outputBufferIndex, false);
-                outputBufferIndex = aEncoder.dequeueOutputBuffer(aBufferInfo, 10000);
+                continue;
             }
+            if (index < 0) {
+                continue;
+            }
+            ByteBuffer outputBuffer = outputBuffers != null ? outputBuffers[index] : aEncoder.getOutputBuffer(index);
+            //CODEC_CONFIG 为AudioSpecificConfig，ADTS流不需要
+            if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && bufferInfo.size > 0) {
+                outputPacket(outputBuffer, bufferInfo);
+            }
+            //releaseOutputBuffer方法必须调用
+            aEncoder.releaseOutputBuffer(index, false);
+            if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                break;
+            }
+        }
+        audioEncoderLoop = false;
+    }
 
-        } catch (Exception t) {
-            Log.e(TAG, "= =lgd= =encodeAudioData=====error: " + t.toString());
+    private void outputPacket(ByteBuffer outputBuffer, MediaCodec.BufferInfo bufferInfo) {
+        int outPacketSize = bufferInfo.size + ADTS_HEADER_SIZE;
+        byte[] packet = outPacketSize <= packetPool.getBufferSize() ? packetPool.obtain() : new byte[outPacketSize];
+        //添加ADTS头,ADTS头包含了AAC文件的采样率、通道数、帧数据长度等信息。
+        writeAdtsHeader(adtsHeader, packet, outPacketSize);
+        outputBuffer.position(bufferInfo.offset);
+        outputBuffer.limit(bufferInfo.offset + bufferInfo.size);
+        outputBuffer.get(packet, ADTS_HEADER_SIZE, bufferInfo.size);
+        if (null != mCallback) {
+            mCallback.outputAudioData(packet, outPacketSize, (int) (bufferInfo.presentationTimeUs / 1000));
+        } else {
+            packetPool.recycle(packet);
         }
     }
 
+    private void releaseEncoder() {
+        if (aEncoder != null) {
+            try {
+                //停止音频编码器
+                aEncoder.stop();
+            } catch (Exception e) {
+                Log.e(TAG, "= =lgd= =stop=====error: " + e.toString());
+            }
+            //释放音频编码器
+            aEncoder.release();
+            aEncoder = null;
+        }
+        prepared = false;
+    }
+
+    /**
+     * 根据已送入编码器的字节数计算时间戳
+     */
+    private long getPresentationTimeUs() {
+        if (bytesPerSampleFrame <= 0 || sampleRate <= 0) {
+            return 0;
+        }
+        return queuedBytes / bytesPerSampleFrame * 1000000L / sampleRate;
+    }
+
     /**
-     * 添加ADTS头
+     * 根据实际的采样率和声道数预先生成ADTS头的固定部分
      *
-     * @param packet
-     * @param packetLen
+     * @param header 长度为 {@link #ADTS_HEADER_SIZE}
      */
-    private void addADTStoPacket(byte[] packet, int packetLen) {
+    static void initAdtsHeader(byte[] header, int sampleRate, int channelCount) {
         int profile = 2; // AAC LC
-        int freqIdx = 8; // 44.1KHz
-        int chanCfg = 1; // CPE
-
-        // fill in ADTS data
-        packet[0] = (byte) 0xFF;
-        packet[1] = (byte) 0xF9;
-        packet[2] = (byte) (((profile - 1) << 6) + (freqIdx << 2) + (chanCfg >> 2));
-        packet[3] = (byte) (((chanCfg & 3) << 6) + (packetLen >> 11));
+        int freqIdx = getAdtsFrequencyIndex(sampleRate);
+        int chanCfg = channelCount;
+
+        header[0] = (byte) 0xFF;
+        header[1] = (byte) 0xF9;
+        header[2] = (byte) (((profile - 1) << 6) + (freqIdx << 2) + (chanCfg >> 2));
+        header[3] = (byte) ((chanCfg & 3) << 6);
+        header[6] = (byte) 0xFC;
+    }
+
+    static int getAdtsFrequencyIndex(int sampleRate) {
+        for (int i = 0; i < ADTS_SAMPLE_RATES.length; i++) {
+            if (ADTS_SAMPLE_RATES[i] == sampleRate) {
+                return i;
+            }
+        }
+        Log.w(TAG, "不支持的ADTS采样率: " + sampleRate);
+        return 4;
+    }
+
+    /**
+     * 添加ADTS头，仅填充与帧长度相关的字段
+     *
+     * @param header    {@link #initAdtsHeader(byte[], int, int)} 生成的固定部分
+     * @param packet
+     * @param packetLen 含头部的包长度，13位，不超过 8191
+     */
+    static void writeAdtsHeader(byte[] header, byte[] packet, int packetLen) {
+        packet[0] = header[0];
+        packet[1] = header[1];
+        packet[2] = header[2];
+        packet[3] = (byte) (header[3] + (packetLen >> 11));
         packet[4] = (byte) ((packetLen & 0x7FF) >> 3);
         packet[5] = (byte) (((packetLen & 7) << 5) + 0x1F);
-        packet[6] = (byte) 0xFC;
+        packet[6] = header[6];
+    }
+
+    /**
+     * 复用的PCM输入帧
+     */
+    private static class PcmFrame {
+        static final PcmFrame END_OF_STREAM = new PcmFrame(0);
+
+        final byte[] data;
+        int size;
+        long queuedNanos;
+
+        PcmFrame(int capacity) {
+            data = new byte[capacity];
+        }
     }
 }
@@ -0,0 +1,32 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import android.media.MediaFormat;
+
+import java.io.IOException;
+
+/**
+ * AAC编码数据的输出目标，所有方法均在编码输出线程中调用
+ */
+public interface AacSink {
+
+    /**
+     * 编码器输出格式确定（包含 csd-0），在第一个数据包之前回调
+     *
+     * @param format 编码器输出格式
+     */
+    void onFormatChanged(MediaFormat format);
+
+    /**
+     * 写入一个带ADTS头的AAC数据包，返回后 packet 可能被复用
+     *
+     * @param packet      数据包
+     * @param len         有效长度
+     * @param timeStampMs 时间戳 ms
+     */
+    void writePacket(byte[] packet, int len, int timeStampMs) throws IOException;
+
+    /**
+     * 编码结束，完成文件收尾工作
+     */
+    void close() throws IOException;
+}
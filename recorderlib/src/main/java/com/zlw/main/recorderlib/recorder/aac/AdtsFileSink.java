@@ -0,0 +1,37 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import android.media.MediaFormat;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 将ADTS数据包直接写入文件，生成裸AAC流（.aac）
+ */
+public class AdtsFileSink implements AacSink {
+    private static final int OUTPUT_BUFFER_SIZE = 16 * 1024;
+
+    private OutputStream outputStream;
+
+    public AdtsFileSink(File file) throws FileNotFoundException {
+        outputStream = new BufferedOutputStream(new FileOutputStream(file), OUTPUT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void onFormatChanged(MediaFormat format) {
+    }
+
+    @Override
+    public void writePacket(byte[] packet, int len, int timeStampMs) throws IOException {
+        outputStream.write(packet, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        outputStream.close();
+    }
+}
@@ -0,0 +1,40 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import android.media.MediaFormat;
+
+import com.zlw.main.recorderlib.recorder.hls.HlsSegmenter;
+
+import java.io.IOException;
+
+/**
+ * 在写入本地文件的同时，将AAC帧交给 {@link HlsSegmenter} 输出 HLS 分片，录音过程中即可用标准播放器收听
+ */
+public class HlsAacSink implements AacSink {
+    private final AacSink sink;
+    private final HlsSegmenter segmenter;
+
+    public HlsAacSink(AacSink sink, HlsSegmenter segmenter) {
+        this.sink = sink;
+        this.segmenter = segmenter;
+    }
+
+    @Override
+    public void onFormatChanged(MediaFormat format) {
+        sink.onFormatChanged(format);
+    }
+
+    @Override
+    public void writePacket(byte[] packet, int len, int timeStampMs) throws IOException {
+        segmenter.writeAdts(packet, len);
+        sink.writePacket(packet, len, timeStampMs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sink.close();
+        } finally {
+            segmenter.close();
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MP4 fast-start 处理：将文件末尾的 moov 移动到 mdat 之前
+ * 只将 moov 读入内存并修正 stco/co64 中的偏移，mdat 通过 FileChannel 顺序拷贝一次
+ */
+public class Mp4FastStart {
+    private static final String TAG = Mp4FastStart.class.getSimpleName();
+
+    private static final int MOOV = fourCC("moov");
+    private static final int MDAT = fourCC("mdat");
+    private static final int TRAK = fourCC("trak");
+    private static final int MDIA = fourCC("mdia");
+    private static final int MINF = fourCC("minf");
+    private static final int STBL = fourCC("stbl");
+    private static final int STCO = fourCC("stco");
+    private static final int CO64 = fourCC("co64");
+
+    private static final String TMP_SUFFIX = ".faststart";
+
+    /**
+     * 将 moov 移动到 mdat 之前，失败时原文件保持不变
+     *
+     * @param file mp4文件
+     * @return 是否为 fast-start 布局
+     */
+    public static boolean relocateMoov(File file) {
+        Logger.TimeCalculator timeCalculator = new Logger.TimeCalculator();
+        File tmpFile = new File(file.getAbsolutePath() + TMP_SUFFIX);
+        RandomAccessFile in = null;
+        FileOutputStream out = null;
+        boolean success = false;
+        try {
+            in = new RandomAccessFile(file, "r");
+            long fileLength = in.length();
+            long moovPos = -1;
+            long moovSize = 0;
+            long mdatPos = -1;
+            byte[] header = new byte[16];
+            long pos = 0;
+            while (pos + 8 <= fileLength) {
+                in.seek(pos);
+                in.readFully(header, 0, 8);
+                long size = readUInt32(header, 0);
+                int type = readInt(header, 4);
+                int headerSize = 8;
+                if (size == 1) {
+                    in.readFully(header, 8, 8);
+                    size = readLong(header, 8);
+                    headerSize = 16;
+                } else if (size == 0) {
+                    size = fileLength - pos;
+                }
+                if (size < headerSize || pos + size > fileLength) {
+                    Logger.w(TAG, "atom 长度有误 pos: %s, size: %s", pos, size);
+                    return false;
+                }
+                if (type == MOOV) {
+                    moovPos = pos;
+                    moovSize = size;
+                } else if (type == MDAT && mdatPos < 0) {
+                    mdatPos = pos;
+                }
+                pos += size;
+            }
+            if (moovPos < 0 || mdatPos < 0) {
+                Logger.w(TAG, "未找到 moov/mdat: %s", file.getAbsolutePath());
+                return false;
+            }
+            if (moovPos < mdatPos) {
+                return true;
+            }
+            if (moovSize > Integer.MAX_VALUE) {
+                return false;
+            }
+
+            byte[] moov = new byte[(int) moovSize];
+            in.seek(moovPos);
+            in.readFully(moov);
+            if (!shiftChunkOffsets(moov, 0, moov.length, moovSize)) {
+                Logger.w(TAG, "chunk offset 修正失败");
+                return false;
+            }
+
+            out = new FileOutputStream(tmpFile);
+            FileChannel src = in.getChannel();
+            FileChannel dst = out.getChannel();
+            transfer(src, 0, mdatPos, dst);
+            ByteBuffer moovBuffer = ByteBuffer.wrap(moov);
+            while (moovBuffer.hasRemaining()) {
+                dst.write(moovBuffer);
+            }
+            transfer(src, mdatPos, moovPos - mdatPos, dst);
+            transfer(src, moovPos + moovSize, fileLength - moovPos - moovSize, dst);
+            success = true;
+        } catch (IOException e) {
+            Logger.e(e, TAG, e.getMessage());
+        } finally {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+                if (in != null) {
+                    in.close();
+                }
+            } catch (IOException e) {
+                Logger.e(e, TAG, e.getMessage());
+                success = false;
+            }
+        }
+
+        if (success && !tmpFile.renameTo(file)) {
+            success = file.delete() && tmpFile.renameTo(file);
+        }
+        if (!success) {
+            tmpFile.delete();
+            return false;
+        }
+        Logger.d(TAG, "fast-start 完成 大小：%s, 耗时：%s ms", file.length(), timeCalculator.end());
+        return true;
+    }
+
+    private static void transfer(FileChannel src, long position, long count, FileChannel dst) throws IOException {
+        while (count > 0) {
+            long transferred = src.transferTo(position, count, dst);
+            if (transferred <= 0) {
+                throw new IOException("transferTo failed at " + position);
+            }
+            position += transferred;
+            count -= transferred;
+        }
+    }
+
+    /**
+     * 递归修正 stco/co64 中的 chunk 偏移
+     */
+    private static boolean shiftChunkOffsets(byte[] data, int start, int end, long delta) {
+        int pos = start;
+        while (pos + 8 <= end) {
+            long size = readUInt32(data, pos);
+            int type = readInt(data, pos + 4);
+            int headerSize = 8;
+            if (size == 1) {
+                size = readLong(data, pos + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < headerSize || pos + size > end) {
+                return false;
+            }
+            int atomEnd = (int) (pos + size);
+            int body = pos + headerSize;
+            if (type == MOOV || type == TRAK || type == MDIA || type == MINF || type == STBL) {
+                if (!shiftChunkOffsets(data, body, atomEnd, delta)) {
+                    return false;
+                }
+            } else if (type == STCO) {
+                //version(1) + flags(3) + entry_count(4)
+                int count = readInt(data, body + 4);
+                int entry = body + 8;
+                if (count < 0 || entry + (long) count * 4 > atomEnd) {
+                    return false;
+                }
+                for (int i = 0; i < count; i++, entry += 4) {
+                    long offset = readUInt32(data, entry) + delta;
+                    if (offset > 0xFFFFFFFFL) {
+                        //需要转换为 co64，此时放弃 fast-start
+                        return false;
+                    }
+                    writeInt(data, entry, (int) offset);
+                }
+            } else if (type == CO64) {
+                int count = readInt(data, body + 4);
+                int entry = body + 8;
+                if (count < 0 || entry + (long) count * 8 > atomEnd) {
+                    return false;
+                }
+                for (int i = 0; i < count; i++, entry += 8) {
+                    writeLong(data, entry, readLong(data, entry) + delta);
+                }
+            }
+            pos = atomEnd;
+        }
+        return true;
+    }
+
+    private static int fourCC(String type) {
+        return (type.charAt(0) << 24) | (type.charAt(1) << 16) | (type.charAt(2) << 8) | type.charAt(3);
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return ((src[offset] & 0xFF) << 24)
+                | ((src[offset + 1] & 0xFF) << 16)
+                | ((src[offset + 2] & 0xFF) << 8)
+                | (src[offset + 3] & 0xFF);
+    }
+
+    private static long readUInt32(byte[] src, int offset) {
+        return readInt(src, offset) & 0xFFFFFFFFL;
+    }
+
+    private static long readLong(byte[] src, int offset) {
+        return (readUInt32(src, offset) << 32) | readUInt32(src, offset + 4);
+    }
+
+    private static void writeInt(byte[] dest, int offset, int value) {
+        dest[offset] = (byte) (value >>> 24);
+        dest[offset + 1] = (byte) (value >>> 16);
+        dest[offset + 2] = (byte) (value >>> 8);
+        dest[offset + 3] = (byte) value;
+    }
+
+    private static void writeLong(byte[] dest, int offset, long value) {
+        writeInt(dest, offset, (int) (value >>> 32));
+        writeInt(dest, offset + 4, (int) value);
+    }
+}
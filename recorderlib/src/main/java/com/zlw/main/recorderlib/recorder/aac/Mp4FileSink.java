@@ -0,0 +1,90 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 使用 MediaMuxer 将AAC数据封装为MP4（.m4a），结束时将 moov 移至 mdat 之前（fast-start）
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+public class Mp4FileSink implements AacSink {
+    private static final String TAG = Mp4FileSink.class.getSimpleName();
+    /**
+     * AAC LC 每帧采样数
+     */
+    private static final int SAMPLES_PER_FRAME = 1024;
+
+    private final File file;
+    private MediaMuxer muxer;
+    private int trackIndex = -1;
+    private int sampleRate;
+    private long frameCount;
+    private ByteBuffer sampleBuffer = ByteBuffer.allocateDirect(8 * 1024);
+    private final MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+
+    public Mp4FileSink(File file) throws IOException {
+        this.file = file;
+        this.muxer = new MediaMuxer(file.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+    }
+
+    @Override
+    public void onFormatChanged(MediaFormat format) {
+        if (trackIndex >= 0) {
+            Logger.w(TAG, "输出格式重复变化，忽略: %s", format);
+            return;
+        }
+        sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        trackIndex = muxer.addTrack(format);
+        muxer.start();
+    }
+
+    @Override
+    public void writePacket(byte[] packet, int len, int timeStampMs) throws IOException {
+        if (trackIndex < 0) {
+            return;
+        }
+        int size = len - AACEncoder.ADTS_HEADER_SIZE;
+        if (size <= 0) {
+            return;
+        }
+        if (sampleBuffer.capacity() < size) {
+            sampleBuffer = ByteBuffer.allocateDirect(size);
+        }
+        sampleBuffer.clear();
+        sampleBuffer.put(packet, AACEncoder.ADTS_HEADER_SIZE, size);
+        sampleBuffer.flip();
+        //按帧序号计算时间戳，避免毫秒取整造成的帧间隔抖动
+        long presentationTimeUs = frameCount * SAMPLES_PER_FRAME * 1000000L / sampleRate;
+        bufferInfo.set(0, size, presentationTimeUs, 0);
+        muxer.writeSampleData(trackIndex, sampleBuffer, bufferInfo);
+        frameCount++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (muxer == null) {
+            return;
+        }
+        boolean started = trackIndex >= 0;
+        try {
+            if (started) {
+                muxer.stop();
+            }
+        } finally {
+            muxer.release();
+            muxer = null;
+        }
+        if (started) {
+            Mp4FastStart.relocateMoov(file);
+        }
+    }
+}
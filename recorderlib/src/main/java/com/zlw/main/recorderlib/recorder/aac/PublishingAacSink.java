@@ -0,0 +1,40 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import android.media.MediaFormat;
+
+import com.zlw.main.recorderlib.recorder.stream.EncodedPacket;
+import com.zlw.main.recorderlib.recorder.stream.RecordPublisher;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 将编码输出的AAC帧发布给订阅者，没有订阅者时不拷贝
+ */
+public class PublishingAacSink implements AacSink {
+    private final AacSink sink;
+    private final RecordPublisher<EncodedPacket> publisher;
+
+    public PublishingAacSink(AacSink sink, RecordPublisher<EncodedPacket> publisher) {
+        this.sink = sink;
+        this.publisher = publisher;
+    }
+
+    @Override
+    public void onFormatChanged(MediaFormat format) {
+        sink.onFormatChanged(format);
+    }
+
+    @Override
+    public void writePacket(byte[] packet, int len, int timeStampMs) throws IOException {
+        if (publisher.hasSubscribers()) {
+            publisher.offer(new EncodedPacket(Arrays.copyOf(packet, len), timeStampMs));
+        }
+        sink.writePacket(packet, len, timeStampMs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+}
@@ -0,0 +1,37 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import android.media.MediaFormat;
+
+import com.zlw.main.recorderlib.recorder.rtp.AacRtpPacketizer;
+
+import java.io.IOException;
+
+/**
+ * 在写入本地文件的同时，将编码输出的AAC帧按 RFC 3640 通过 RTP 实时发出
+ * 数据包先发送再写文件，使网络延迟不受文件写入影响；socket 的关闭由 {@link com.zlw.main.recorderlib.recorder.rtp.RtpSender} 的持有者负责
+ */
+public class RtpAacSink implements AacSink {
+    private final AacSink sink;
+    private final AacRtpPacketizer packetizer;
+
+    public RtpAacSink(AacSink sink, AacRtpPacketizer packetizer) {
+        this.sink = sink;
+        this.packetizer = packetizer;
+    }
+
+    @Override
+    public void onFormatChanged(MediaFormat format) {
+        sink.onFormatChanged(format);
+    }
+
+    @Override
+    public void writePacket(byte[] packet, int len, int timeStampMs) throws IOException {
+        packetizer.writeAdts(packet, len);
+        sink.writePacket(packet, len, timeStampMs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        sink.close();
+    }
+}
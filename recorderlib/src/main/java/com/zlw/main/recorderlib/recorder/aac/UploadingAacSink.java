@@ -0,0 +1,41 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import android.media.MediaFormat;
+
+import com.zlw.main.recorderlib.recorder.upload.ChunkedUploader;
+
+import java.io.IOException;
+
+/**
+ * 在写入本地文件的同时，将ADTS数据包交给 {@link ChunkedUploader} 边录边传
+ * 上传的始终是ADTS裸流，与本地文件格式（.m4a/.aac）无关，服务端无需等待文件收尾即可解码
+ */
+public class UploadingAacSink implements AacSink {
+    private final AacSink sink;
+    private final ChunkedUploader uploader;
+
+    public UploadingAacSink(AacSink sink, ChunkedUploader uploader) {
+        this.sink = sink;
+        this.uploader = uploader;
+    }
+
+    @Override
+    public void onFormatChanged(MediaFormat format) {
+        sink.onFormatChanged(format);
+    }
+
+    @Override
+    public void writePacket(byte[] packet, int len, int timeStampMs) throws IOException {
+        uploader.write(packet, 0, len);
+        sink.writePacket(packet, len, timeStampMs);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sink.close();
+        } finally {
+            uploader.finish();
+        }
+    }
+}
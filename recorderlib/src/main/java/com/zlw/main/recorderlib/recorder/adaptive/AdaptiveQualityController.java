@@ -0,0 +1,131 @@
+package com.zlw.main.recorderlib.recorder.adaptive;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 编码质量自适应控制
+ * 编码线程每编码一段数据上报一次耗时和队列深度，按约1s的窗口统计实时率，
+ * 跟不上时降档、持续有余量时升档。升降档使用不同的阈值和连续窗口数，并在调整后冷却，避免来回抖动
+ * <p>
+ * 档位 0 为配置的最高质量，数值越大质量越低、编码越快；只在编码线程中调用。
+ * 控制器只给出档位，何时生效由编码器决定（MP3 在下一次录音开始时生效）
+ */
+public class AdaptiveQualityController {
+    private static final String TAG = AdaptiveQualityController.class.getSimpleName();
+
+    private static final long WINDOW_NANOS = 1000000000L;
+    /**
+     * 实时率高于该值视为跟不上
+     */
+    private static final float BEHIND_RTF = 0.85f;
+    /**
+     * 实时率低于该值视为有余量
+     */
+    private static final float SLACK_RTF = 0.5f;
+    private static final int BEHIND_WINDOWS = 2;
+    private static final int SLACK_WINDOWS = 5;
+    private static final int COOLDOWN_WINDOWS = 2;
+    private static final int MAX_EVENTS = 64;
+
+    private final String name;
+    private final int maxLevel;
+    private final int highQueueDepth;
+    private final long startNanos = System.nanoTime();
+    private final List<QualityChangeEvent> events = Collections.synchronizedList(new ArrayList<QualityChangeEvent>());
+
+    private volatile int level;
+    private long windowAudioNanos;
+    private long windowEncodeNanos;
+    private int windowMaxQueue;
+    private int behindCount;
+    private int slackCount;
+    private int cooldown;
+
+    /**
+     * @param name           编码器名称，用于日志
+     * @param maxLevel       最低质量档位
+     * @param highQueueDepth 队列深度达到该值视为跟不上
+     */
+    public AdaptiveQualityController(String name, int maxLevel, int highQueueDepth) {
+        this(name, maxLevel, highQueueDepth, 0);
+    }
+
+    /**
+     * @param initialLevel 起始档位，通常为上一次录音结束时的档位
+     */
+    public AdaptiveQualityController(String name, int maxLevel, int highQueueDepth, int initialLevel) {
+        this.name = name;
+        this.maxLevel = maxLevel;
+        this.highQueueDepth = highQueueDepth;
+        this.level = Math.max(0, Math.min(maxLevel, initialLevel));
+    }
+
+    /**
+     * 上报一次编码
+     *
+     * @param audioNanos  本次编码的音频时长
+     * @param encodeNanos 本次编码耗时
+     * @param queueDepth  当前等待编码的队列深度
+     * @return 调整后的档位
+     */
+    public int onEncoded(long audioNanos, long encodeNanos, int queueDepth) {
+        windowAudioNanos += audioNanos;
+        windowEncodeNanos += encodeNanos;
+        windowMaxQueue = Math.max(windowMaxQueue, queueDepth);
+        if (windowAudioNanos < WINDOW_NANOS) {
+            return level;
+        }
+        float rtf = (float) windowEncodeNanos / windowAudioNanos;
+        int maxQueue = windowMaxQueue;
+        windowAudioNanos = 0;
+        windowEncodeNanos = 0;
+        windowMaxQueue = 0;
+
+        if (cooldown > 0) {
+            cooldown--;
+            return level;
+        }
+        boolean behind = rtf > BEHIND_RTF || maxQueue >= highQueueDepth;
+        boolean slack = rtf < SLACK_RTF && maxQueue <= 1;
+        behindCount = behind ? behindCount + 1 : 0;
+        slackCount = slack ? slackCount + 1 : 0;
+        //积压严重时不等待连续窗口直接降档
+        if ((behindCount >= BEHIND_WINDOWS || maxQueue >= highQueueDepth * 2) && level < maxLevel) {
+            changeLevel(level + 1, rtf, maxQueue);
+        } else if (slackCount >= SLACK_WINDOWS && level > 0) {
+            changeLevel(level - 1, rtf, maxQueue);
+        }
+        return level;
+    }
+
+    private void changeLevel(int newLevel, float rtf, int queueDepth) {
+        QualityChangeEvent event = new QualityChangeEvent(name, (System.nanoTime() - startNanos) / 1000000L,
+                level, newLevel, rtf, queueDepth);
+        if (events.size() >= MAX_EVENTS) {
+            events.remove(0);
+        }
+        events.add(event);
+        Logger.i(TAG, "编码质量调整 %s", event);
+        level = newLevel;
+        behindCount = 0;
+        slackCount = 0;
+        cooldown = COOLDOWN_WINDOWS;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * @return 最近的质量调整记录
+     */
+    public List<QualityChangeEvent> getEvents() {
+        synchronized (events) {
+            return new ArrayList<>(events);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.zlw.main.recorderlib.recorder.adaptive;
+
+import java.util.Locale;
+
+/**
+ * 一次编码质量调整记录
+ */
+public class QualityChangeEvent {
+    private final String encoder;
+    private final long timeMs;
+    private final int fromLevel;
+    private final int toLevel;
+    private final float realtimeFactor;
+    private final int queueDepth;
+
+    QualityChangeEvent(String encoder, long timeMs, int fromLevel, int toLevel, float realtimeFactor, int queueDepth) {
+        this.encoder = encoder;
+        this.timeMs = timeMs;
+        this.fromLevel = fromLevel;
+        this.toLevel = toLevel;
+        this.realtimeFactor = realtimeFactor;
+        this.queueDepth = queueDepth;
+    }
+
+    public String getEncoder() {
+        return encoder;
+    }
+
+    /**
+     * @return 距编码开始的时间 ms
+     */
+    public long getTimeMs() {
+        return timeMs;
+    }
+
+    public int getFromLevel() {
+        return fromLevel;
+    }
+
+    /**
+     * @return 调整后的档位，0为最高质量
+     */
+    public int getToLevel() {
+        return toLevel;
+    }
+
+    /**
+     * @return 触发调整时的实时率（编码耗时/音频时长），大于1表示编码慢于实时
+     */
+    public float getRealtimeFactor() {
+        return realtimeFactor;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.getDefault(), "%s %sms 档位：%s -> %s, 实时率：%.2f, 队列：%s",
+                encoder, timeMs, fromLevel, toLevel, realtimeFactor, queueDepth);
+    }
+}
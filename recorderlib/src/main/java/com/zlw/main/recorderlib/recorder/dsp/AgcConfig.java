@@ -0,0 +1,115 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import java.io.Serializable;
+
+/**
+ * 自动增益（AGC）与限幅器配置
+ */
+public class AgcConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 目标 RMS 电平 dBFS
+     */
+    private float targetLevelDb = -18f;
+    /**
+     * 最大增益 dB，同时也是最大衰减
+     */
+    private float maxGainDb = 20f;
+    /**
+     * 增益下降的时间常数 ms
+     */
+    private int attackMs = 50;
+    /**
+     * 增益上升的时间常数 ms
+     */
+    private int releaseMs = 1000;
+    /**
+     * 电平低于该值 dBFS 时视为噪声，保持当前增益，避免放大底噪
+     */
+    private float noiseGateDb = -55f;
+    /**
+     * 限幅器输出上限 dBFS
+     */
+    private float limiterCeilingDb = -1f;
+    /**
+     * 限幅器预读时长 ms，输出相应延迟
+     */
+    private int lookaheadMs = 5;
+    /**
+     * 限幅器恢复的时间常数 ms
+     */
+    private int limiterReleaseMs = 60;
+
+    public float getTargetLevelDb() {
+        return targetLevelDb;
+    }
+
+    public AgcConfig setTargetLevelDb(float targetLevelDb) {
+        this.targetLevelDb = targetLevelDb;
+        return this;
+    }
+
+    public float getMaxGainDb() {
+        return maxGainDb;
+    }
+
+    public AgcConfig setMaxGainDb(float maxGainDb) {
+        this.maxGainDb = maxGainDb;
+        return this;
+    }
+
+    public int getAttackMs() {
+        return attackMs;
+    }
+
+    public AgcConfig setAttackMs(int attackMs) {
+        this.attackMs = attackMs;
+        return this;
+    }
+
+    public int getReleaseMs() {
+        return releaseMs;
+    }
+
+    public AgcConfig setReleaseMs(int releaseMs) {
+        this.releaseMs = releaseMs;
+        return this;
+    }
+
+    public float getNoiseGateDb() {
+        return noiseGateDb;
+    }
+
+    public AgcConfig setNoiseGateDb(float noiseGateDb) {
+        this.noiseGateDb = noiseGateDb;
+        return this;
+    }
+
+    public float getLimiterCeilingDb() {
+        return limiterCeilingDb;
+    }
+
+    public AgcConfig setLimiterCeilingDb(float limiterCeilingDb) {
+        this.limiterCeilingDb = limiterCeilingDb;
+        return this;
+    }
+
+    public int getLookaheadMs() {
+        return lookaheadMs;
+    }
+
+    public AgcConfig setLookaheadMs(int lookaheadMs) {
+        this.lookaheadMs = lookaheadMs;
+        return this;
+    }
+
+    public int getLimiterReleaseMs() {
+        return limiterReleaseMs;
+    }
+
+    public AgcConfig setLimiterReleaseMs(int limiterReleaseMs) {
+        this.limiterReleaseMs = limiterReleaseMs;
+        return this;
+    }
+}
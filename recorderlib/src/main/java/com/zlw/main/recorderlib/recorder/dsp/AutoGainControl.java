@@ -0,0 +1,214 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+/**
+ * 自动增益 + 预读限幅器
+ * 位于采集和编码之间，直接在采集缓冲区上原地处理，只在采集线程中使用，处理过程不分配内存
+ * <p>
+ * AGC：每 10ms 统计一次输入 RMS，按 attack/release 时间常数将增益平滑地推向 目标电平-输入电平，
+ * 帧内线性插值避免增益突变；低于噪声门限时保持增益不变
+ * <p>
+ * 限幅器：对预读窗口内每个样本所需的增益取滑动最小值，经恢复平滑后再做一次等长的滑动平均，
+ * 保证峰值到达时增益已降到位，输出不超过上限且不产生硬削波。
+ * 输出相对输入延迟 lookahead-1 个样本，开头以静音补齐，结束时最后这部分样本被丢弃，总长度不变
+ */
+public class AutoGainControl {
+    private static final int AGC_FRAME_MS = 10;
+    private static final float SCALE = 32768f;
+
+    private final int channels;
+    private final float targetLevelDb;
+    private final float maxGainDb;
+    private final float noiseGateDb;
+    private final float attackCoef;
+    private final float releaseCoef;
+    private final int agcFrameSamples;
+
+    private float gainDb;
+    private float gain = 1f;
+    private float gainStep;
+    private double frameEnergy;
+    private int frameCount;
+
+    private final float ceiling;
+    private final float limiterReleaseCoef;
+    private final int lookahead;
+    /**
+     * 延迟线，lookahead 帧交错存放
+     */
+    private final float[] delay;
+    /**
+     * 滑动最小值的单调队列（环形）
+     */
+    private final float[] minValues;
+    private final long[] minIndexes;
+    private int minHead;
+    private int minSize;
+    private final float[] boxRing;
+    private double boxSum;
+    private float limiterGain = 1f;
+    private float minLimiterGain = 1f;
+    private long sampleIndex;
+
+    public AutoGainControl(AgcConfig config, int sampleRate, int channels) {
+        this.channels = Math.max(1, channels);
+        this.targetLevelDb = config.getTargetLevelDb();
+        this.maxGainDb = Math.abs(config.getMaxGainDb());
+        this.noiseGateDb = config.getNoiseGateDb();
+        this.agcFrameSamples = Math.max(1, sampleRate * AGC_FRAME_MS / 1000);
+        this.attackCoef = smoothing(AGC_FRAME_MS, config.getAttackMs());
+        this.releaseCoef = smoothing(AGC_FRAME_MS, config.getReleaseMs());
+
+        this.ceiling = (float) Math.pow(10, Math.min(0f, config.getLimiterCeilingDb()) / 20);
+        this.limiterReleaseCoef = smoothing(1000f / sampleRate, config.getLimiterReleaseMs());
+        this.lookahead = Math.max(1, sampleRate * config.getLookaheadMs() / 1000);
+        delay = new float[lookahead * this.channels];
+        minValues = new float[lookahead];
+        minIndexes = new long[lookahead];
+        boxRing = new float[lookahead];
+        for (int i = 0; i < lookahead; i++) {
+            boxRing[i] = 1f;
+        }
+        boxSum = lookahead;
+    }
+
+    /**
+     * 一阶平滑系数：每 stepMs 向目标靠近的比例
+     */
+    private static float smoothing(float stepMs, int timeConstantMs) {
+        return timeConstantMs <= 0 ? 1f : (float) (1 - Math.exp(-stepMs / timeConstantMs));
+    }
+
+    /**
+     * 原地处理16bit PCM，按整帧处理，末尾不足一帧的样本保持不变
+     *
+     * @param count 样本数（所有声道）
+     */
+    public void process(short[] buffer, int count) {
+        int frames = count / channels;
+        for (int f = 0, offset = 0; f < frames; f++, offset += channels) {
+            float peak = 0;
+            int slot = (int) (sampleIndex % lookahead) * channels;
+            for (int c = 0; c < channels; c++) {
+                float x = buffer[offset + c] / SCALE;
+                frameEnergy += x * x;
+                float v = x * gain;
+                delay[slot + c] = v;
+                peak = Math.max(peak, Math.abs(v));
+            }
+            float g = limit(peak);
+            int out = (int) ((sampleIndex + 1) % lookahead) * channels;
+            for (int c = 0; c < channels; c++) {
+                buffer[offset + c] = toShort(delay[out + c] * g);
+            }
+            advance();
+        }
+    }
+
+    /**
+     * 原地处理16bit小端PCM，按整帧处理，末尾不足一帧的样本保持不变
+     *
+     * @param len 字节数
+     */
+    public void process(byte[] buffer, int len) {
+        int frames = len / 2 / channels;
+        for (int f = 0, offset = 0; f < frames; f++, offset += channels * 2) {
+            float peak = 0;
+            int slot = (int) (sampleIndex % lookahead) * channels;
+            for (int c = 0; c < channels; c++) {
+                int i = offset + c * 2;
+                float x = (short) ((buffer[i] & 0xff) | (buffer[i + 1] << 8)) / SCALE;
+                frameEnergy += x * x;
+                float v = x * gain;
+                delay[slot + c] = v;
+                peak = Math.max(peak, Math.abs(v));
+            }
+            float g = limit(peak);
+            int out = (int) ((sampleIndex + 1) % lookahead) * channels;
+            for (int c = 0; c < channels; c++) {
+                int i = offset + c * 2;
+                short s = toShort(delay[out + c] * g);
+                buffer[i] = (byte) s;
+                buffer[i + 1] = (byte) (s >> 8);
+            }
+            advance();
+        }
+    }
+
+    /**
+     * 写入一个新样本所需的增益，返回延迟线输出端应使用的限幅增益
+     */
+    private float limit(float peak) {
+        float required = peak > ceiling ? ceiling / peak : 1f;
+        //滑动最小值：窗口为最近 lookahead 个样本
+        while (minSize > 0 && minIndexes[minHead] <= sampleIndex - lookahead) {
+            minHead = (minHead + 1) % lookahead;
+            minSize--;
+        }
+        while (minSize > 0 && minValues[(minHead + minSize - 1) % lookahead] >= required) {
+            minSize--;
+        }
+        int tail = (minHead + minSize) % lookahead;
+        minValues[tail] = required;
+        minIndexes[tail] = sampleIndex;
+        minSize++;
+        float windowMin = minValues[minHead];
+        //下降立即跟随，上升按恢复时间平滑，结果不会大于 windowMin
+        if (windowMin < limiterGain) {
+            limiterGain = windowMin;
+        } else {
+            limiterGain += (windowMin - limiterGain) * limiterReleaseCoef;
+        }
+        int box = (int) (sampleIndex % lookahead);
+        boxSum += limiterGain - boxRing[box];
+        boxRing[box] = limiterGain;
+        float g = (float) (boxSum / lookahead);
+        if (g < minLimiterGain) {
+            minLimiterGain = g;
+        }
+        return g;
+    }
+
+    private void advance() {
+        sampleIndex++;
+        gain += gainStep;
+        if (++frameCount < agcFrameSamples) {
+            return;
+        }
+        float rmsDb = (float) (10 * Math.log10(frameEnergy / (frameCount * channels) + 1e-12));
+        frameEnergy = 0;
+        frameCount = 0;
+        if (rmsDb >= noiseGateDb) {
+            float desired = Math.max(-maxGainDb, Math.min(maxGainDb, targetLevelDb - rmsDb));
+            gainDb += (desired - gainDb) * (desired < gainDb ? attackCoef : releaseCoef);
+        }
+        //下一帧内线性过渡到新增益
+        float next = (float) Math.pow(10, gainDb / 20);
+        gainStep = (next - gain) / agcFrameSamples;
+    }
+
+    private static short toShort(float value) {
+        int s = Math.round(value * SCALE);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, s));
+    }
+
+    /**
+     * 当前 AGC 增益 dB
+     */
+    public float getGainDb() {
+        return gainDb;
+    }
+
+    /**
+     * 迄今为止限幅器的最大压缩量 dB（<=0）
+     */
+    public float getMaxLimiterReductionDb() {
+        return (float) (20 * Math.log10(minLimiterGain));
+    }
+
+    /**
+     * 输出相对输入的延迟（每声道样本数）
+     */
+    public int getLatencySamples() {
+        return lookahead - 1;
+    }
+}
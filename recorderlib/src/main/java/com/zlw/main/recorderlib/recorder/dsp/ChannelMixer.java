@@ -0,0 +1,87 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+/**
+ * 交错PCM的声道处理：混为单声道（原地）与提取单个声道
+ * 混音取各声道平均值，不会削波
+ */
+public class ChannelMixer {
+
+    private ChannelMixer() {
+    }
+
+    /**
+     * 原地混为单声道，数据前移到缓冲区开头
+     *
+     * @param count 样本数（所有声道）
+     * @return 混音后的样本数
+     */
+    public static int downmix(short[] data, int count, int channels) {
+        if (channels <= 1) {
+            return count;
+        }
+        int frames = count / channels;
+        for (int f = 0, i = 0; f < frames; f++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += data[i++];
+            }
+            data[f] = (short) (sum / channels);
+        }
+        return frames;
+    }
+
+    /**
+     * 原地混为单声道，数据前移到缓冲区开头
+     *
+     * @param len  字节数
+     * @param bits 位宽，8bit 为无符号，16bit 为小端有符号
+     * @return 混音后的字节数
+     */
+    public static int downmix(byte[] data, int len, int channels, int bits) {
+        if (channels <= 1) {
+            return len;
+        }
+        if (bits == 8) {
+            int frames = len / channels;
+            for (int f = 0, i = 0; f < frames; f++) {
+                int sum = 0;
+                for (int c = 0; c < channels; c++) {
+                    sum += data[i++] & 0xff;
+                }
+                data[f] = (byte) (sum / channels);
+            }
+            return frames;
+        }
+        int frames = len / 2 / channels;
+        for (int f = 0, i = 0; f < frames; f++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++, i += 2) {
+                sum += (short) ((data[i] & 0xff) | (data[i + 1] << 8));
+            }
+            int s = sum / channels;
+            data[f * 2] = (byte) s;
+            data[f * 2 + 1] = (byte) (s >> 8);
+        }
+        return frames * 2;
+    }
+
+    /**
+     * 提取一个声道
+     *
+     * @param len            输入字节数
+     * @param channel        声道序号，从0开始
+     * @param bytesPerSample 每个样本的字节数
+     * @param out            输出，长度不小于 len/channels
+     * @return 输出字节数
+     */
+    public static int extract(byte[] data, int len, int channel, int channels, int bytesPerSample, byte[] out) {
+        int frameBytes = channels * bytesPerSample;
+        int frames = len / frameBytes;
+        for (int f = 0, i = channel * bytesPerSample, o = 0; f < frames; f++, i += frameBytes) {
+            for (int b = 0; b < bytesPerSample; b++) {
+                out[o++] = data[i + b];
+            }
+        }
+        return frames * bytesPerSample;
+    }
+}
@@ -0,0 +1,165 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+/**
+ * 流式电平表
+ * 直接在采集缓冲区上单次遍历，统计峰值、RMS、削波次数和直流偏移，不分配内存。
+ * 多次 process 的结果累积，读取后调用 {@link #reset()} 开始下一个统计周期；非线程安全，应在同一线程中使用
+ */
+public class LevelMeter {
+    /**
+     * 无声时的下限，约为16bit的动态范围
+     */
+    public static final float MIN_DBFS = -96f;
+    private static final float FULL_SCALE = 32768f;
+    /**
+     * 达到该幅度视为削波
+     */
+    private static final int CLIP_LEVEL = 32767;
+
+    private final int bitsPerSample;
+    private int peak;
+    private long sumSquares;
+    private long sum;
+    private int sampleCount;
+    private int clipCount;
+
+    /**
+     * @param bitsPerSample 8 或 16，8bit为无符号PCM
+     */
+    public LevelMeter(int bitsPerSample) {
+        this.bitsPerSample = bitsPerSample;
+    }
+
+    /**
+     * 统计一段小端PCM数据
+     */
+    public void process(byte[] pcm, int offset, int len) {
+        int peak = this.peak;
+        long sumSquares = this.sumSquares;
+        long sum = this.sum;
+        int clipCount = this.clipCount;
+        int end = offset + len;
+        if (bitsPerSample == 8) {
+            for (int i = offset; i < end; i++) {
+                //8bit无符号转换为16bit的幅度
+                int sample = ((pcm[i] & 0xff) - 128) << 8;
+                int abs = sample < 0 ? -sample : sample;
+                if (abs > peak) {
+                    peak = abs;
+                }
+                if (abs >= CLIP_LEVEL) {
+                    clipCount++;
+                }
+                sumSquares += sample * sample;
+                sum += sample;
+            }
+            sampleCount += len;
+        } else {
+            end -= (end - offset) & 1;
+            for (int i = offset; i < end; i += 2) {
+                int sample = (short) ((pcm[i] & 0xff) | (pcm[i + 1] << 8));
+                int abs = sample < 0 ? -sample : sample;
+                if (abs > peak) {
+                    peak = abs;
+                }
+                if (abs >= CLIP_LEVEL) {
+                    clipCount++;
+                }
+                sumSquares += sample * sample;
+                sum += sample;
+            }
+            sampleCount += (end - offset) >> 1;
+        }
+        this.peak = peak;
+        this.sumSquares = sumSquares;
+        this.sum = sum;
+        this.clipCount = clipCount;
+    }
+
+    /**
+     * 统计一段16bit PCM数据
+     */
+    public void process(short[] pcm, int offset, int count) {
+        int peak = this.peak;
+        long sumSquares = this.sumSquares;
+        long sum = this.sum;
+        int clipCount = this.clipCount;
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            int sample = pcm[i];
+            int abs = sample < 0 ? -sample : sample;
+            if (abs > peak) {
+                peak = abs;
+            }
+            if (abs >= CLIP_LEVEL) {
+                clipCount++;
+            }
+            sumSquares += sample * sample;
+            sum += sample;
+        }
+        sampleCount += count;
+        this.peak = peak;
+        this.sumSquares = sumSquares;
+        this.sum = sum;
+        this.clipCount = clipCount;
+    }
+
+    public void reset() {
+        peak = 0;
+        sumSquares = 0;
+        sum = 0;
+        sampleCount = 0;
+        clipCount = 0;
+    }
+
+    /**
+     * @return 已统计的样本数（所有声道）
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+
+    /**
+     * @return 峰值幅度 0~32768
+     */
+    public int getPeak() {
+        return peak;
+    }
+
+    public float getRms() {
+        return sampleCount == 0 ? 0 : (float) Math.sqrt((double) sumSquares / sampleCount);
+    }
+
+    public float getPeakDbfs() {
+        return toDbfs(peak);
+    }
+
+    public float getRmsDbfs() {
+        return toDbfs(getRms());
+    }
+
+    public int getClipCount() {
+        return clipCount;
+    }
+
+    /**
+     * @return 直流偏移，相对满幅 -1~1
+     */
+    public float getDcOffset() {
+        return sampleCount == 0 ? 0 : sum / (float) sampleCount / FULL_SCALE;
+    }
+
+    /**
+     * @return 与 {@link com.zlw.main.recorderlib.utils.RecordUtils#getMaxDecibels(byte[])} 相同刻度的音量：20 * log10(峰值)
+     */
+    public int getSoundSize() {
+        return (int) Math.round(20 * Math.log10(Math.max(peak, 2)));
+    }
+
+    private static float toDbfs(float amplitude) {
+        if (amplitude <= 0) {
+            return MIN_DBFS;
+        }
+        return Math.max(MIN_DBFS, (float) (20 * Math.log10(amplitude / FULL_SCALE)));
+    }
+}
@@ -0,0 +1,247 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+/**
+ * 流式多相重采样（任意有理数比例 L/M）
+ * 原型滤波器为 Kaiser 窗 sinc，截止频率取输入/输出奈奎斯特频率中较低者的 92%，
+ * 按 L 个相位预先展开成连续的系数表，每个输出样本只做一次长度固定的点积，内层循环为连续数组上的乘加，便于 JIT 向量化。
+ * 历史数据按声道分开存放，容量随输入块大小增长一次后不再分配；实例非线程安全
+ * <p>
+ * 输出与输入时间对齐（起点无延迟），但每个输出需要 halfTaps 个未来样本，
+ * 因此结束时最后约 halfTaps 个输入样本对应的输出不会产生
+ */
+public class PolyphaseResampler {
+    private static final int ZERO_CROSSINGS = 16;
+    private static final double ROLLOFF = 0.92;
+    private static final double KAISER_BETA = 8.0;
+    private static final int MAX_PHASES = 8192;
+
+    private final int inRate;
+    private final int outRate;
+    private final int channels;
+    private final int up;
+    private final int down;
+    private final int halfTaps;
+    private final int taps;
+    /**
+     * up 个相位 × taps 个系数
+     */
+    private final float[] filter;
+
+    private float[][] history;
+    private int historyLen;
+    /**
+     * history[c][0] 对应的输入样本序号（每声道）
+     */
+    private long historyStart;
+    /**
+     * 下一个输出样本的位置：整数部分 center，小数部分 phase/up
+     */
+    private long center;
+    private int phase;
+
+    /**
+     * @param inRate   输入采样率
+     * @param outRate  输出采样率
+     * @param channels 声道数，数据为交错存放
+     */
+    public PolyphaseResampler(int inRate, int outRate, int channels) {
+        if (inRate <= 0 || outRate <= 0) {
+            throw new IllegalArgumentException(String.format("采样率错误: %s -> %s", inRate, outRate));
+        }
+        int gcd = gcd(inRate, outRate);
+        this.inRate = inRate;
+        this.outRate = outRate;
+        this.channels = Math.max(1, channels);
+        this.up = outRate / gcd;
+        this.down = inRate / gcd;
+        if (up > MAX_PHASES) {
+            throw new IllegalArgumentException(String.format("不支持的重采样比例: %s -> %s", inRate, outRate));
+        }
+
+        double cutoff = Math.min(1.0, (double) up / down) * ROLLOFF;
+        double halfWidth = ZERO_CROSSINGS / cutoff;
+        halfTaps = (int) Math.ceil(halfWidth);
+        taps = halfTaps * 2;
+        filter = new float[up * taps];
+        double i0Beta = besselI0(KAISER_BETA);
+        for (int p = 0; p < up; p++) {
+            double sum = 0;
+            int offset = p * taps;
+            for (int j = 0; j < taps; j++) {
+                double t = (double) p / up + halfTaps - 1 - j;
+                double value = 0;
+                if (Math.abs(t) < halfWidth) {
+                    double x = cutoff * t;
+                    double sinc = x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+                    double r = t / halfWidth;
+                    value = cutoff * sinc * besselI0(KAISER_BETA * Math.sqrt(1 - r * r)) / i0Beta;
+                }
+                filter[offset + j] = (float) value;
+                sum += value;
+            }
+            //每个相位的直流增益归一，避免不同相位间的幅度波动
+            for (int j = 0; j < taps; j++) {
+                filter[offset + j] = (float) (filter[offset + j] / sum);
+            }
+        }
+
+        history = new float[this.channels][taps * 4];
+        //用 halfTaps-1 个零补齐起点之前的历史
+        historyLen = halfTaps - 1;
+        historyStart = -(halfTaps - 1);
+    }
+
+    public int getInRate() {
+        return inRate;
+    }
+
+    public int getOutRate() {
+        return outRate;
+    }
+
+    /**
+     * 输入 inCount 个样本（所有声道）时最多输出的样本数
+     */
+    public int getMaxOutput(int inCount) {
+        long frames = (long) (inCount / channels + taps) * up / down + 2;
+        return (int) (frames * channels);
+    }
+
+    /**
+     * @param in      交错的16bit PCM
+     * @param inCount 输入样本数（所有声道），按整帧处理
+     * @param out     输出，长度不小于 {@link #getMaxOutput(int)}
+     * @return 输出样本数（所有声道）
+     */
+    public int process(short[] in, int inCount, short[] out) {
+        int frames = inCount / channels;
+        ensureCapacity(frames);
+        for (int c = 0; c < channels; c++) {
+            float[] x = history[c];
+            for (int i = 0, s = c; i < frames; i++, s += channels) {
+                x[historyLen + i] = in[s];
+            }
+        }
+        historyLen += frames;
+
+        int outFrames = 0;
+        long end = historyStart + historyLen;
+        while (center + halfTaps < end) {
+            int base = (int) (center - halfTaps + 1 - historyStart);
+            int offset = phase * taps;
+            for (int c = 0; c < channels; c++) {
+                out[outFrames * channels + c] = toShort(dot(history[c], base, offset));
+            }
+            outFrames++;
+            advance();
+        }
+        compact();
+        return outFrames * channels;
+    }
+
+    /**
+     * @param in  交错的16bit小端PCM
+     * @param len 输入字节数
+     * @param out 输出，长度不小于 {@link #getMaxOutput(int)} * 2
+     * @return 输出字节数
+     */
+    public int process(byte[] in, int len, byte[] out) {
+        int frames = len / 2 / channels;
+        ensureCapacity(frames);
+        for (int c = 0; c < channels; c++) {
+            float[] x = history[c];
+            for (int i = 0, s = c * 2; i < frames; i++, s += channels * 2) {
+                x[historyLen + i] = (short) ((in[s] & 0xff) | (in[s + 1] << 8));
+            }
+        }
+        historyLen += frames;
+
+        int outIndex = 0;
+        long end = historyStart + historyLen;
+        while (center + halfTaps < end) {
+            int base = (int) (center - halfTaps + 1 - historyStart);
+            int offset = phase * taps;
+            for (int c = 0; c < channels; c++) {
+                short s = toShort(dot(history[c], base, offset));
+                out[outIndex++] = (byte) s;
+                out[outIndex++] = (byte) (s >> 8);
+            }
+            advance();
+        }
+        compact();
+        return outIndex;
+    }
+
+    private float dot(float[] x, int base, int offset) {
+        float sum = 0;
+        for (int j = 0; j < taps; j++) {
+            sum += filter[offset + j] * x[base + j];
+        }
+        return sum;
+    }
+
+    private void advance() {
+        phase += down;
+        center += phase / up;
+        phase %= up;
+    }
+
+    private void ensureCapacity(int frames) {
+        if (historyLen + frames <= history[0].length) {
+            return;
+        }
+        int capacity = Math.max(history[0].length * 2, historyLen + frames);
+        for (int c = 0; c < channels; c++) {
+            float[] grown = new float[capacity];
+            System.arraycopy(history[c], 0, grown, 0, historyLen);
+            history[c] = grown;
+        }
+    }
+
+    /**
+     * 丢弃之后的输出不再需要的历史数据
+     */
+    private void compact() {
+        int drop = (int) (center - halfTaps + 1 - historyStart);
+        if (drop <= 0) {
+            return;
+        }
+        drop = Math.min(drop, historyLen);
+        for (int c = 0; c < channels; c++) {
+            System.arraycopy(history[c], drop, history[c], 0, historyLen - drop);
+        }
+        historyLen -= drop;
+        historyStart += drop;
+    }
+
+    private static short toShort(float value) {
+        int s = Math.round(value);
+        return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, s));
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * 第一类零阶修正贝塞尔函数，级数展开
+     */
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double q = x * x / 4;
+        for (int k = 1; k < 50; k++) {
+            term *= q / (k * k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+}
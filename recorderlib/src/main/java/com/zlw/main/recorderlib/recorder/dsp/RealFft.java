@@ -0,0 +1,135 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+/**
+ * 实数输入的 radix-2 FFT
+ * 将 N 点实序列视为 N/2 点复序列做复数 FFT，再拆分得到 0..N/2 共 N/2+1 个频点
+ * 旋转因子与位反转表在构造时预先计算，变换过程不分配内存；实例非线程安全
+ */
+public class RealFft {
+    private final int size;
+    private final int half;
+    /**
+     * N/2 点复数 FFT 的旋转因子 cos/sin(2πj/(N/2))，j < N/4
+     */
+    private final float[] cos;
+    private final float[] sin;
+    /**
+     * 拆分步骤的旋转因子 cos/sin(2πk/N)，k <= N/2
+     */
+    private final float[] splitCos;
+    private final float[] splitSin;
+    private final int[] bitReverse;
+    private final float[] workRe;
+    private final float[] workIm;
+
+    /**
+     * @param size 变换长度，2的整数次幂且不小于4
+     */
+    public RealFft(int size) {
+        if (size < 4 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("FFT长度必须是不小于4的2的整数次幂: " + size);
+        }
+        this.size = size;
+        this.half = size / 2;
+        cos = new float[half / 2];
+        sin = new float[half / 2];
+        for (int j = 0; j < half / 2; j++) {
+            double angle = 2 * Math.PI * j / half;
+            cos[j] = (float) Math.cos(angle);
+            sin[j] = (float) Math.sin(angle);
+        }
+        splitCos = new float[half + 1];
+        splitSin = new float[half + 1];
+        for (int k = 0; k <= half; k++) {
+            double angle = 2 * Math.PI * k / size;
+            splitCos[k] = (float) Math.cos(angle);
+            splitSin[k] = (float) Math.sin(angle);
+        }
+        bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++) {
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+        workRe = new float[half];
+        workIm = new float[half];
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * 正变换
+     *
+     * @param input 长度为 N 的实序列，不会被修改
+     * @param re    输出实部，长度不小于 N/2+1
+     * @param im    输出虚部，长度不小于 N/2+1
+     */
+    public void forward(float[] input, float[] re, float[] im) {
+        //偶数下标作实部、奇数下标作虚部，按位反转顺序装入
+        for (int i = 0; i < half; i++) {
+            int j = bitReverse[i];
+            workRe[j] = input[2 * i];
+            workIm[j] = input[2 * i + 1];
+        }
+        complexFft(workRe, workIm);
+
+        //X[k] = Fe[k] + W^k * Fo[k]，其中 Fe/Fo 为偶/奇下标序列的频谱
+        re[0] = workRe[0] + workIm[0];
+        im[0] = 0;
+        re[half] = workRe[0] - workIm[0];
+        im[half] = 0;
+        for (int k = 1; k < half; k++) {
+            float a = workRe[k];
+            float b = workIm[k];
+            float c = workRe[half - k];
+            float d = workIm[half - k];
+            float evenRe = (a + c) * 0.5f;
+            float evenIm = (b - d) * 0.5f;
+            float oddRe = (b + d) * 0.5f;
+            float oddIm = (c - a) * 0.5f;
+            float wr = splitCos[k];
+            float wi = -splitSin[k];
+            re[k] = evenRe + wr * oddRe - wi * oddIm;
+            im[k] = evenIm + wr * oddIm + wi * oddRe;
+        }
+    }
+
+    /**
+     * 计算幅度谱 |X[k]|，k = 0..N/2
+     *
+     * @param magnitude 输出，长度不小于 N/2+1
+     * @param re        工作缓冲区，长度不小于 N/2+1
+     * @param im        工作缓冲区，长度不小于 N/2+1
+     */
+    public void magnitude(float[] input, float[] magnitude, float[] re, float[] im) {
+        forward(input, re, im);
+        for (int k = 0; k <= half; k++) {
+            magnitude[k] = (float) Math.sqrt(re[k] * re[k] + im[k] * im[k]);
+        }
+    }
+
+    /**
+     * 原地迭代 radix-2 复数 FFT，输入已按位反转排列
+     */
+    private void complexFft(float[] re, float[] im) {
+        for (int len = 2; len <= half; len <<= 1) {
+            int step = half / len;
+            int halfLen = len >> 1;
+            for (int start = 0; start < half; start += len) {
+                for (int j = 0; j < halfLen; j++) {
+                    float wr = cos[j * step];
+                    float wi = -sin[j * step];
+                    int p = start + j;
+                    int q = p + halfLen;
+                    float tr = wr * re[q] - wi * im[q];
+                    float ti = wr * im[q] + wi * re[q];
+                    re[q] = re[p] - tr;
+                    im[q] = im[p] - ti;
+                    re[p] += tr;
+                    im[p] += ti;
+                }
+            }
+        }
+    }
+}
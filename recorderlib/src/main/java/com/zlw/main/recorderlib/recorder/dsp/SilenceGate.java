@@ -0,0 +1,251 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 静音跳过
+ * 位于采集和编码之间，按帧做语音检测，删除（或压缩为较短的）静音段，并记录删除的区间以便还原原始时间轴。
+ * 直接在采集缓冲区上原地处理，缓冲区需预留 {@link #getExtraCapacity()} 个样本的空间；只在采集线程中使用
+ */
+public class SilenceGate {
+    private final VoiceActivityDetector vad;
+    private final int channels;
+    private final int hangoverFrames;
+    private final int maxSilenceSamples;
+
+    private final short[] frame;
+    private int frameFill;
+    /**
+     * 最近被删除的静音，语音开始时补回
+     */
+    private final short[] preRoll;
+    private int preRollStart;
+    private int preRollSize;
+
+    private short[] inScratch = new short[0];
+    private short[] outScratch = new short[0];
+
+    private boolean speaking;
+    private int hangoverLeft;
+    private int silenceKept;
+    /**
+     * 已判定的帧在原始时间轴上的位置（每声道样本数）
+     */
+    private long position;
+    private long removedSamples;
+    private final List<long[]> removedIntervals = new ArrayList<>();
+
+    public SilenceGate(VadConfig config, int sampleRate, int channels) {
+        this.vad = new VoiceActivityDetector(config.getThresholdDb());
+        this.channels = Math.max(channels, 1);
+        int frameSamples = Math.max(1, sampleRate * config.getFrameMs() / 1000);
+        this.frame = new short[frameSamples * this.channels];
+        this.hangoverFrames = config.getHangoverMs() / Math.max(1, config.getFrameMs());
+        this.maxSilenceSamples = sampleRate * config.getMaxSilenceMs() / 1000 * this.channels;
+        this.preRoll = new short[sampleRate * config.getPreRollMs() / 1000 * this.channels];
+    }
+
+    /**
+     * @return 处理后的数据最多比输入多出的样本数（补回的预录 + 上一次未满一帧的数据）
+     */
+    public int getExtraCapacity() {
+        return preRoll.length + frame.length;
+    }
+
+    /**
+     * 原地处理16bit PCM
+     *
+     * @param buffer 输入输出缓冲区，长度至少为 count + {@link #getExtraCapacity()}
+     * @param count  输入样本数（所有声道）
+     * @return 输出的样本数
+     */
+    public int process(short[] buffer, int count) {
+        if (count <= 0) {
+            return 0;
+        }
+        int outLen = processInternal(buffer, count);
+        System.arraycopy(outScratch, 0, buffer, 0, outLen);
+        return outLen;
+    }
+
+    /**
+     * 原地处理16bit小端PCM
+     *
+     * @param buffer 输入输出缓冲区，长度至少为 len + {@link #getExtraCapacity()} * 2
+     * @param len    输入字节数
+     * @return 输出的字节数
+     */
+    public int process(byte[] buffer, int len) {
+        int count = len / 2;
+        if (count <= 0) {
+            return 0;
+        }
+        if (inScratch.length < count) {
+            inScratch = new short[count];
+        }
+        for (int i = 0; i < count; i++) {
+            inScratch[i] = (short) ((buffer[2 * i] & 0xff) | (buffer[2 * i + 1] << 8));
+        }
+        int outLen = processInternal(inScratch, count);
+        for (int i = 0; i < outLen; i++) {
+            short sample = outScratch[i];
+            buffer[2 * i] = (byte) sample;
+            buffer[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return outLen * 2;
+    }
+
+    private int processInternal(short[] input, int count) {
+        if (outScratch.length < count + getExtraCapacity()) {
+            outScratch = new short[count + getExtraCapacity()];
+        }
+        int outLen = 0;
+        int offset = 0;
+        while (offset < count) {
+            int n = Math.min(count - offset, frame.length - frameFill);
+            System.arraycopy(input, offset, frame, frameFill, n);
+            frameFill += n;
+            offset += n;
+            if (frameFill == frame.length) {
+                outLen = decide(outLen);
+                frameFill = 0;
+            }
+        }
+        return outLen;
+    }
+
+    private int decide(int outLen) {
+        int frameSamples = frame.length / channels;
+        boolean speech = vad.isSpeech(frame, 0, frame.length, channels);
+        if (speech) {
+            if (!speaking && preRollSize > 0) {
+                outLen = emitPreRoll(outLen);
+            }
+            speaking = true;
+            hangoverLeft = hangoverFrames;
+            silenceKept = 0;
+            outLen = emitFrame(outLen);
+        } else if (speaking && hangoverLeft > 0) {
+            hangoverLeft--;
+            outLen = emitFrame(outLen);
+        } else {
+            speaking = false;
+            if (silenceKept + frame.length <= maxSilenceSamples) {
+                silenceKept += frame.length;
+                outLen = emitFrame(outLen);
+            } else {
+                addRemoved(position, frameSamples);
+                pushPreRoll();
+            }
+        }
+        position += frameSamples;
+        return outLen;
+    }
+
+    private int emitFrame(int outLen) {
+        System.arraycopy(frame, 0, outScratch, outLen, frame.length);
+        return outLen + frame.length;
+    }
+
+    private void pushPreRoll() {
+        if (preRoll.length == 0) {
+            return;
+        }
+        for (short sample : frame) {
+            int index = (preRollStart + preRollSize) % preRoll.length;
+            preRoll[index] = sample;
+            if (preRollSize < preRoll.length) {
+                preRollSize++;
+            } else {
+                preRollStart = (preRollStart + 1) % preRoll.length;
+            }
+        }
+    }
+
+    /**
+     * 补回语音开始前的静音，它们是当前删除区间的末尾，从区间中扣除
+     */
+    private int emitPreRoll(int outLen) {
+        for (int i = 0; i < preRollSize; i++) {
+            outScratch[outLen++] = preRoll[(preRollStart + i) % preRoll.length];
+        }
+        long restored = preRollSize / channels;
+        long[] last = removedIntervals.get(removedIntervals.size() - 1);
+        last[1] -= restored;
+        removedSamples -= restored;
+        if (last[1] <= 0) {
+            removedIntervals.remove(removedIntervals.size() - 1);
+        }
+        preRollStart = 0;
+        preRollSize = 0;
+        return outLen;
+    }
+
+    private void addRemoved(long start, long length) {
+        if (!removedIntervals.isEmpty()) {
+            long[] last = removedIntervals.get(removedIntervals.size() - 1);
+            if (last[0] + last[1] == start) {
+                last[1] += length;
+                removedSamples += length;
+                return;
+            }
+        }
+        removedIntervals.add(new long[]{start, length});
+        removedSamples += length;
+    }
+
+    /**
+     * 录音结束，最后不足一帧的数据未输出，计入删除区间
+     */
+    public void finish() {
+        if (frameFill > 0) {
+            addRemoved(position, frameFill / channels);
+            position += frameFill / channels;
+            frameFill = 0;
+        }
+    }
+
+    /**
+     * @return 删除的区间 {原始起始位置, 长度}，单位为每声道样本数
+     */
+    public List<long[]> getRemovedIntervals() {
+        return removedIntervals;
+    }
+
+    /**
+     * @return 原始时长中被删除的比例
+     */
+    public float getRemovedRatio() {
+        return position == 0 ? 0 : (float) removedSamples / position;
+    }
+
+    /**
+     * 写出删除区间的映射文件（JSON），用于还原原始时间轴
+     */
+    public void writeSidecar(File file, int sampleRate) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "{\"sampleRate\":%d,\"originalSamples\":%d,\"removedSamples\":%d,\"removed\":[",
+                sampleRate, position, removedSamples));
+        for (int i = 0; i < removedIntervals.size(); i++) {
+            long[] interval = removedIntervals.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('[').append(interval[0]).append(',').append(interval[1]).append(']');
+        }
+        sb.append("]}");
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(sb.toString());
+        } finally {
+            writer.close();
+        }
+    }
+}
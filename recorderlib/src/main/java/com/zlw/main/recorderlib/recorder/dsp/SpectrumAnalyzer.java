@@ -0,0 +1,307 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.util.Arrays;
+
+/**
+ * 实时频谱分析
+ * 采集线程通过 {@link #write} 将PCM混为单声道写入环形缓冲区（不阻塞，满时丢弃），
+ * 独立的 DSP 线程按 FFT 长度与重叠比例分帧、加 Hann 窗并做 FFT，按对数间隔聚合为频带，
+ * 每累计 publishIntervalMs 的音频回调一次，期间各帧取每个频带的最大值
+ * 运行过程中不分配内存，频带结果通过 {@link #readBands(float[])} 拷贝到调用方复用的数组中
+ * 仅支持16bit PCM
+ */
+public class SpectrumAnalyzer {
+    private static final String TAG = SpectrumAnalyzer.class.getSimpleName();
+    public static final float MIN_DBFS = -120f;
+
+    private final int channels;
+    private final int fftSize;
+    private final int hop;
+    private final int publishSamples;
+    private final RealFft fft;
+    private final float[] window;
+    /**
+     * 满幅正弦波对应 0dBFS 的幅度系数
+     */
+    private final float magnitudeScale;
+    /**
+     * 每个频带的起始频点，长度 bandCount+1，最后一个为结束频点（不含）
+     */
+    private final int[] bandStartBins;
+    private final float[] bandEdges;
+
+    private final float[] ring;
+    private final int ringMask;
+    private volatile long writePos;
+    private volatile long readPos;
+    private volatile long droppedSamples;
+    private final Object lock = new Object();
+
+    private final float[] frame;
+    private final float[] windowed;
+    private final float[] magnitude;
+    private final float[] re;
+    private final float[] im;
+    private final float[] holdBands;
+    private final float[] publishedBands;
+    private volatile long publishCount;
+
+    private volatile boolean running;
+    private Thread thread;
+    private Callback callback;
+
+    /**
+     * @param config     频谱配置
+     * @param sampleRate 采样率
+     * @param channels   声道数，多声道取平均
+     */
+    public SpectrumAnalyzer(SpectrumConfig config, int sampleRate, int channels) {
+        this.channels = Math.max(1, channels);
+        this.fftSize = config.getFftSize();
+        this.fft = new RealFft(fftSize);
+        float overlap = Math.max(0f, Math.min(config.getOverlap(), 0.95f));
+        this.hop = Math.max(1, Math.round(fftSize * (1 - overlap)));
+        this.publishSamples = Math.max(1, sampleRate * config.getPublishIntervalMs() / 1000);
+
+        window = new float[fftSize];
+        double windowSum = 0;
+        for (int i = 0; i < fftSize; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / fftSize));
+            windowSum += window[i];
+        }
+        magnitudeScale = (float) (2 / windowSum);
+
+        int half = fftSize / 2;
+        int bandCount = config.getBandCount();
+        if (bandCount <= 0) {
+            throw new IllegalArgumentException("频带个数必须大于0: " + bandCount);
+        }
+        float binHz = (float) sampleRate / fftSize;
+        double nyquist = sampleRate / 2.0;
+        double minFrequency = Math.max(config.getMinFrequency(), binHz);
+        bandStartBins = new int[bandCount + 1];
+        bandEdges = new float[bandCount + 1];
+        int previous = 0;
+        for (int b = 0; b < bandCount; b++) {
+            double frequency = minFrequency * Math.pow(nyquist / minFrequency, (double) b / bandCount);
+            int bin = (int) Math.round(frequency / binHz);
+            if (b > 0) {
+                bin = Math.max(bin, previous + 1);
+            }
+            if (bin > half) {
+                throw new IllegalArgumentException(String.format("FFT长度 %s 不足以划分 %s 个频带", fftSize, bandCount));
+            }
+            bandStartBins[b] = bin;
+            bandEdges[b] = bin * binHz;
+            previous = bin;
+        }
+        bandStartBins[bandCount] = half + 1;
+        bandEdges[bandCount] = (float) nyquist;
+
+        int capacity = Integer.highestOneBit(Math.max(fftSize * 4, sampleRate / 2) - 1) << 1;
+        ring = new float[capacity];
+        ringMask = capacity - 1;
+
+        frame = new float[fftSize];
+        windowed = new float[fftSize];
+        magnitude = new float[half + 1];
+        re = new float[half + 1];
+        im = new float[half + 1];
+        holdBands = new float[bandCount];
+        publishedBands = new float[bandCount];
+        Arrays.fill(publishedBands, MIN_DBFS);
+    }
+
+    /**
+     * 启动 DSP 线程
+     *
+     * @param callback 每次产生新的频带结果时在 DSP 线程中回调
+     */
+    public synchronized void start(Callback callback) {
+        if (running) {
+            return;
+        }
+        this.callback = callback;
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "dsp-spectrum");
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        thread = null;
+    }
+
+    /**
+     * 在采集线程中写入交错的16bit PCM，不阻塞
+     */
+    public void write(short[] data, int count) {
+        int frames = count / channels;
+        long start = writePos;
+        int writable = (int) Math.min(frames, ring.length - (start - readPos));
+        int offset = 0;
+        for (int i = 0; i < writable; i++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += data[offset++];
+            }
+            ring[(int) (start + i) & ringMask] = sum / (32768f * channels);
+        }
+        commit(start, writable, frames);
+    }
+
+    /**
+     * 在采集线程中写入交错的16bit小端PCM，不阻塞
+     */
+    public void write(byte[] data, int len) {
+        int frames = len / 2 / channels;
+        long start = writePos;
+        int writable = (int) Math.min(frames, ring.length - (start - readPos));
+        int offset = 0;
+        for (int i = 0; i < writable; i++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += (short) ((data[offset] & 0xff) | (data[offset + 1] << 8));
+                offset += 2;
+            }
+            ring[(int) (start + i) & ringMask] = sum / (32768f * channels);
+        }
+        commit(start, writable, frames);
+    }
+
+    private void commit(long start, int writable, int frames) {
+        if (writable < frames) {
+            droppedSamples += frames - writable;
+        }
+        if (writable <= 0) {
+            return;
+        }
+        writePos = start + writable;
+        synchronized (lock) {
+            lock.notify();
+        }
+    }
+
+    /**
+     * 拷贝最近一次的频带结果 dBFS，满幅正弦波所在频带为 0dBFS
+     *
+     * @param out 长度不小于频带个数
+     */
+    public void readBands(float[] out) {
+        synchronized (publishedBands) {
+            System.arraycopy(publishedBands, 0, out, 0, publishedBands.length);
+        }
+    }
+
+    public int getBandCount() {
+        return holdBands.length;
+    }
+
+    /**
+     * 频带边界 Hz，长度为频带个数+1，第 i 个频带为 [edges[i], edges[i+1])
+     */
+    public float[] getBandEdges() {
+        return bandEdges.clone();
+    }
+
+    /**
+     * DSP 线程跟不上时丢弃的样本数（单声道）
+     */
+    public long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    /**
+     * 已产生的频带结果次数
+     */
+    public long getPublishCount() {
+        return publishCount;
+    }
+
+    private void loop() {
+        int filled = 0;
+        int sincePublish = 0;
+        while (running) {
+            synchronized (lock) {
+                while (running && writePos - readPos < hop) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Logger.e(e, TAG, e.getMessage());
+                    }
+                }
+            }
+            if (!running) {
+                break;
+            }
+            long start = readPos;
+            System.arraycopy(frame, hop, frame, 0, fftSize - hop);
+            int tail = fftSize - hop;
+            for (int i = 0; i < hop; i++) {
+                frame[tail + i] = ring[(int) (start + i) & ringMask];
+            }
+            readPos = start + hop;
+            sincePublish += hop;
+            if (filled < fftSize) {
+                filled += hop;
+                if (filled < fftSize) {
+                    continue;
+                }
+            }
+            analyzeFrame();
+            if (sincePublish >= publishSamples) {
+                sincePublish = 0;
+                publish();
+            }
+        }
+        Logger.d(TAG, "频谱分析结束，丢弃样本：%s", droppedSamples);
+    }
+
+    private void analyzeFrame() {
+        for (int i = 0; i < fftSize; i++) {
+            windowed[i] = frame[i] * window[i];
+        }
+        fft.magnitude(windowed, magnitude, re, im);
+        for (int b = 0; b < holdBands.length; b++) {
+            float max = holdBands[b];
+            for (int k = bandStartBins[b], end = bandStartBins[b + 1]; k < end; k++) {
+                if (magnitude[k] > max) {
+                    max = magnitude[k];
+                }
+            }
+            holdBands[b] = max;
+        }
+    }
+
+    private void publish() {
+        synchronized (publishedBands) {
+            for (int b = 0; b < holdBands.length; b++) {
+                float value = holdBands[b] * magnitudeScale;
+                publishedBands[b] = value > 0 ? Math.max(MIN_DBFS, (float) (20 * Math.log10(value))) : MIN_DBFS;
+                holdBands[b] = 0;
+            }
+        }
+        publishCount++;
+        Callback callback = this.callback;
+        if (callback != null) {
+            callback.onSpectrumReady(this);
+        }
+    }
+
+    public interface Callback {
+        /**
+         * 新的频带结果已就绪，在 DSP 线程中回调，应尽快返回
+         */
+        void onSpectrumReady(SpectrumAnalyzer analyzer);
+    }
+}
@@ -0,0 +1,76 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import java.io.Serializable;
+
+/**
+ * 实时频谱分析配置
+ */
+public class SpectrumConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * FFT 长度，2的整数次幂
+     */
+    private int fftSize = 1024;
+    /**
+     * 相邻分析帧的重叠比例 [0, 1)
+     */
+    private float overlap = 0.5f;
+    /**
+     * 输出的频带个数，按对数间隔划分
+     */
+    private int bandCount = 32;
+    /**
+     * 最低频带的起始频率 Hz
+     */
+    private int minFrequency = 50;
+    /**
+     * 回调间隔 ms，期间各帧取每个频带的最大值
+     */
+    private int publishIntervalMs = 50;
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    public SpectrumConfig setFftSize(int fftSize) {
+        this.fftSize = fftSize;
+        return this;
+    }
+
+    public float getOverlap() {
+        return overlap;
+    }
+
+    public SpectrumConfig setOverlap(float overlap) {
+        this.overlap = overlap;
+        return this;
+    }
+
+    public int getBandCount() {
+        return bandCount;
+    }
+
+    public SpectrumConfig setBandCount(int bandCount) {
+        this.bandCount = bandCount;
+        return this;
+    }
+
+    public int getMinFrequency() {
+        return minFrequency;
+    }
+
+    public SpectrumConfig setMinFrequency(int minFrequency) {
+        this.minFrequency = minFrequency;
+        return this;
+    }
+
+    public int getPublishIntervalMs() {
+        return publishIntervalMs;
+    }
+
+    public SpectrumConfig setPublishIntervalMs(int publishIntervalMs) {
+        this.publishIntervalMs = publishIntervalMs;
+        return this;
+    }
+}
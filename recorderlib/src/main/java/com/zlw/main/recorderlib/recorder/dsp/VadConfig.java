@@ -0,0 +1,76 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import java.io.Serializable;
+
+/**
+ * 静音跳过（VAD）配置
+ */
+public class VadConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 能量高于噪声底多少 dB 判定为语音
+     */
+    private float thresholdDb = 10f;
+    /**
+     * 语音结束后继续保留的时长 ms，避免截断词尾
+     */
+    private int hangoverMs = 300;
+    /**
+     * 语音开始前补回的时长 ms，避免截断词头
+     */
+    private int preRollMs = 200;
+    /**
+     * 每段静音最多保留的时长 ms，超出部分被删除；0：删除全部静音
+     */
+    private int maxSilenceMs = 300;
+    /**
+     * 分析帧长 ms
+     */
+    private int frameMs = 20;
+
+    public float getThresholdDb() {
+        return thresholdDb;
+    }
+
+    public VadConfig setThresholdDb(float thresholdDb) {
+        this.thresholdDb = thresholdDb;
+        return this;
+    }
+
+    public int getHangoverMs() {
+        return hangoverMs;
+    }
+
+    public VadConfig setHangoverMs(int hangoverMs) {
+        this.hangoverMs = hangoverMs;
+        return this;
+    }
+
+    public int getPreRollMs() {
+        return preRollMs;
+    }
+
+    public VadConfig setPreRollMs(int preRollMs) {
+        this.preRollMs = preRollMs;
+        return this;
+    }
+
+    public int getMaxSilenceMs() {
+        return maxSilenceMs;
+    }
+
+    public VadConfig setMaxSilenceMs(int maxSilenceMs) {
+        this.maxSilenceMs = maxSilenceMs;
+        return this;
+    }
+
+    public int getFrameMs() {
+        return frameMs;
+    }
+
+    public VadConfig setFrameMs(int frameMs) {
+        this.frameMs = frameMs;
+        return this;
+    }
+}
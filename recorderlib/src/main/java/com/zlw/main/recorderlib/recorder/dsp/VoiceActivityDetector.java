@@ -0,0 +1,92 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+/**
+ * 基于能量和过零率的语音检测
+ * 噪声底在非语音帧上自适应跟踪，能量高于噪声底一定阈值判定为语音；
+ * 过零率很高且能量不够突出的帧（如底噪、风声）判定为非语音
+ */
+public class VoiceActivityDetector {
+    /**
+     * 低于该能量一定不是语音
+     */
+    private static final float MIN_SPEECH_DBFS = -55f;
+    private static final float INITIAL_NOISE_DBFS = -60f;
+    /**
+     * 过零率高于该值视为类噪声
+     */
+    private static final float NOISE_LIKE_ZCR = 0.5f;
+    /**
+     * 噪声底上升的平滑系数，下降时立即跟随
+     */
+    private static final float NOISE_RISE = 0.05f;
+    /**
+     * 语音帧上噪声底缓慢上升，环境噪声持续变大时最终能够跟上
+     */
+    private static final float NOISE_RISE_IN_SPEECH = 0.002f;
+
+    private final float thresholdDb;
+    private float noiseFloorDb = INITIAL_NOISE_DBFS;
+    private float lastEnergyDb;
+    private float lastZcr;
+
+    public VoiceActivityDetector(float thresholdDb) {
+        this.thresholdDb = thresholdDb;
+    }
+
+    /**
+     * @param frame    交错的PCM
+     * @param offset   帧起始位置
+     * @param count    样本数（所有声道）
+     * @param channels 声道数，过零率只统计第一个声道
+     * @return 是否为语音帧
+     */
+    public boolean isSpeech(short[] frame, int offset, int count, int channels) {
+        if (count <= 0) {
+            return false;
+        }
+        long sumSquares = 0;
+        int zeroCrossings = 0;
+        int last = frame[offset];
+        int end = offset + count;
+        for (int i = offset; i < end; i++) {
+            int sample = frame[i];
+            sumSquares += sample * sample;
+        }
+        for (int i = offset + channels; i < end; i += channels) {
+            int sample = frame[i];
+            if ((sample ^ last) < 0) {
+                zeroCrossings++;
+            }
+            last = sample;
+        }
+        double meanSquare = (double) sumSquares / count;
+        float energyDb = meanSquare <= 0 ? LevelMeter.MIN_DBFS
+                : Math.max(LevelMeter.MIN_DBFS, (float) (10 * Math.log10(meanSquare / (32768.0 * 32768.0))));
+        int frames = count / channels;
+        float zcr = frames > 1 ? (float) zeroCrossings / (frames - 1) : 0;
+        lastEnergyDb = energyDb;
+        lastZcr = zcr;
+
+        float margin = energyDb - noiseFloorDb;
+        boolean speech = energyDb > MIN_SPEECH_DBFS && margin > thresholdDb
+                && !(zcr > NOISE_LIKE_ZCR && margin < thresholdDb * 2);
+        if (energyDb < noiseFloorDb) {
+            noiseFloorDb = energyDb;
+        } else {
+            noiseFloorDb += (energyDb - noiseFloorDb) * (speech ? NOISE_RISE_IN_SPEECH : NOISE_RISE);
+        }
+        return speech;
+    }
+
+    public float getNoiseFloorDb() {
+        return noiseFloorDb;
+    }
+
+    public float getLastEnergyDb() {
+        return lastEnergyDb;
+    }
+
+    public float getLastZcr() {
+        return lastZcr;
+    }
+}
@@ -0,0 +1,93 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import android.media.MediaFormat;
+import android.os.Build;
+
+import com.zlw.main.recorderlib.recorder.RecordConfig;
+import com.zlw.main.recorderlib.recorder.aac.AACEncoder;
+import com.zlw.main.recorderlib.recorder.aac.AacSink;
+import com.zlw.main.recorderlib.recorder.aac.AdtsFileSink;
+import com.zlw.main.recorderlib.recorder.aac.Mp4FileSink;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * AAC 输出，MediaCodec 自带输入输出线程，这里只负责送数据和等待结束
+ */
+class AacOutputEncoder implements OutputEncoder {
+    private static final String TAG = AacOutputEncoder.class.getSimpleName();
+
+    private final AACEncoder encoder;
+    private final AacSink sink;
+    private final boolean realtime;
+
+    /**
+     * @param realtime true: 编码跟不上时丢帧；false: 阻塞等待，用于离线编码
+     */
+    AacOutputEncoder(File file, RecordConfig config, RecordConfig.RecordFormat format, int bitRate,
+                     boolean realtime) throws IOException {
+        this.realtime = realtime;
+        if (format == RecordConfig.RecordFormat.AAC
+                && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            sink = new Mp4FileSink(file);
+        } else {
+            sink = new AdtsFileSink(file);
+        }
+        encoder = AACEncoder.newInstance(config, bitRate);
+        encoder.setCallback(new AACEncoder.Callback() {
+            @Override
+            public void outputFormatChanged(MediaFormat format) {
+                sink.onFormatChanged(format);
+            }
+
+            @Override
+            public void outputAudioData(byte[] aac, int len, int nTimeStamp) {
+                try {
+                    sink.writePacket(aac, len, nTimeStamp);
+                } catch (IOException e) {
+                    Logger.e(e, TAG, e.getMessage());
+                } finally {
+                    encoder.recyclePacket(aac);
+                }
+            }
+        });
+        encoder.start();
+    }
+
+    @Override
+    public void encode(byte[] pcm, int len) throws IOException {
+        if (realtime) {
+            encoder.putAudioData(pcm, len);
+            return;
+        }
+        try {
+            encoder.putAudioDataBlocking(pcm, len);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("AAC编码被中断");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        encoder.stop(new AACEncoder.EncodeFinishListener() {
+            @Override
+            public void onFinish() {
+                latch.countDown();
+            }
+        });
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (encoder.getDroppedFrames() > 0) {
+            Logger.w(TAG, "AAC编码器丢弃帧数：%s", encoder.getDroppedFrames());
+        }
+        sink.close();
+    }
+}
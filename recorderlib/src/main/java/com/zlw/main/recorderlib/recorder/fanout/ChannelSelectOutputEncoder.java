@@ -0,0 +1,40 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.dsp.ChannelMixer;
+
+import java.io.IOException;
+
+/**
+ * 只取其中一个声道交给实际的编码器，在该路的工作线程中执行
+ */
+class ChannelSelectOutputEncoder implements OutputEncoder {
+    private final OutputEncoder encoder;
+    private final int channel;
+    private final int channels;
+    private final int bytesPerSample;
+    private byte[] buffer = new byte[0];
+
+    ChannelSelectOutputEncoder(OutputEncoder encoder, int channel, int channels, int bytesPerSample) {
+        this.encoder = encoder;
+        this.channel = channel;
+        this.channels = channels;
+        this.bytesPerSample = bytesPerSample;
+    }
+
+    @Override
+    public void encode(byte[] pcm, int len) throws IOException {
+        int capacity = len / channels;
+        if (buffer.length < capacity) {
+            buffer = new byte[capacity];
+        }
+        int outLen = ChannelMixer.extract(pcm, len, channel, channels, bytesPerSample, buffer);
+        if (outLen > 0) {
+            encoder.encode(buffer, outLen);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        encoder.close();
+    }
+}
@@ -0,0 +1,185 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.RecordConfig;
+import com.zlw.main.recorderlib.recorder.RecordOutput;
+import com.zlw.main.recorderlib.recorder.mp3.Mp3Encoder;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 一次采集、多路编码
+ * 采集到的PCM按配置的多路输出分发，每一路拥有独立的队列和编码线程，互不影响
+ */
+public class FanOutRecorder {
+    private static final String TAG = FanOutRecorder.class.getSimpleName();
+    /**
+     * 等待延迟编码让出 LAME 的最长时间
+     */
+    private static final long MP3_ACQUIRE_TIMEOUT_MS = 1000;
+
+    private final RecordConfig config;
+    private final File baseFile;
+    private final Listener listener;
+    private final List<FanOutWorker> workers = new ArrayList<>();
+    private int finishedCount;
+
+    /**
+     * @param config   录音配置，使用其中的多路输出
+     * @param baseFile 未指定路径的输出以该文件名加各自格式后缀命名
+     * @param listener 回调，在编码线程中回调
+     */
+    public FanOutRecorder(RecordConfig config, File baseFile, Listener listener) {
+        this.config = config;
+        this.baseFile = baseFile;
+        this.listener = listener;
+    }
+
+    /**
+     * 创建各路编码器并启动编码线程，创建失败的输出会被跳过并回调 {@link Listener#onOutputError(RecordOutput, String)}；
+     * MP3 输出最多等待 {@value #MP3_ACQUIRE_TIMEOUT_MS} ms 让出 LAME，需在录音线程中调用
+     *
+     * @return 是否至少有一路输出启动成功
+     */
+    public boolean start() {
+        long bytesPerSecond = (long) config.getSampleRate() * config.getRoutedChannelCount() * config.getEncoding() / 8;
+        Set<String> usedPaths = new HashSet<>();
+        List<RecordOutput> outputs = config.getRoutedOutputs();
+        boolean hasMp3 = false;
+        for (RecordOutput output : outputs) {
+            boolean mp3 = output.getFormat() == RecordConfig.RecordFormat.MP3;
+            if (mp3) {
+                //LAME 只有一个实例
+                if (hasMp3) {
+                    listener.onOutputError(output, "仅支持一路MP3输出");
+                    continue;
+                }
+                if (!Mp3Encoder.acquire(this, MP3_ACQUIRE_TIMEOUT_MS)) {
+                    listener.onOutputError(output, "MP3编码器正被占用");
+                    continue;
+                }
+                hasMp3 = true;
+            }
+            File file = resolveFile(output, usedPaths);
+            OutputEncoder encoder;
+            try {
+                encoder = OutputEncoders.create(config, output, file, true);
+            } catch (Exception e) {
+                Logger.e(e, TAG, "%s 编码器初始化失败", output);
+                listener.onOutputError(output, output.getFormat().name() + "编码器初始化失败");
+                if (mp3) {
+                    Mp3Encoder.release(this);
+                    hasMp3 = false;
+                }
+                continue;
+            }
+            workers.add(new FanOutWorker(output, file, encoder, bytesPerSecond, new FanOutWorker.FinishListener() {
+                @Override
+                public void onFinish(FanOutWorker worker) {
+                    onWorkerFinish(worker);
+                }
+            }));
+        }
+        for (FanOutWorker worker : workers) {
+            worker.start();
+        }
+        Logger.d(TAG, "多路输出启动 %s/%s", workers.size(), outputs.size());
+        return !workers.isEmpty();
+    }
+
+    /**
+     * 分发一段PCM数据，不阻塞
+     */
+    public void write(byte[] data, int len) {
+        for (int i = 0; i < workers.size(); i++) {
+            workers.get(i).offer(data, len);
+        }
+    }
+
+    /**
+     * 各路剩余数据编码完成后依次回调 {@link Listener#onOutputFinish}，全部完成后回调 {@link Listener#onAllFinish}
+     */
+    public void stop() {
+        if (workers.isEmpty()) {
+            listener.onAllFinish(getStats());
+            return;
+        }
+        for (FanOutWorker worker : workers) {
+            worker.finish();
+        }
+    }
+
+    /**
+     * @return 各路输出当前的统计
+     */
+    public List<OutputStats> getStats() {
+        List<OutputStats> stats = new ArrayList<>(workers.size());
+        for (FanOutWorker worker : workers) {
+            stats.add(worker.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * @return 第一路启动成功的输出文件
+     */
+    public File getPrimaryFile() {
+        return workers.isEmpty() ? null : workers.get(0).getFile();
+    }
+
+    private void onWorkerFinish(FanOutWorker worker) {
+        if (worker.getOutput().getFormat() == RecordConfig.RecordFormat.MP3) {
+            Mp3Encoder.release(this);
+        }
+        listener.onOutputFinish(worker.getOutput(), worker.getFile(), worker.getStats());
+        boolean allFinished;
+        synchronized (this) {
+            allFinished = ++finishedCount == workers.size();
+        }
+        if (allFinished) {
+            listener.onAllFinish(getStats());
+        }
+    }
+
+    private File resolveFile(RecordOutput output, Set<String> usedPaths) {
+        String path = output.getFilePath();
+        if (path == null) {
+            String base = baseFile.getAbsolutePath();
+            int dot = base.lastIndexOf('.');
+            if (dot > base.lastIndexOf(File.separatorChar)) {
+                base = base.substring(0, dot);
+            }
+            if (output.getChannel() >= 0) {
+                base = base + "_ch" + output.getChannel();
+            }
+            String extension = output.getFormat().getExtension();
+            path = base + extension;
+            for (int i = 2; usedPaths.contains(path); i++) {
+                path = base + "_" + i + extension;
+            }
+        }
+        usedPaths.add(path);
+        return new File(path);
+    }
+
+    public interface Listener {
+        /**
+         * 某一路输出初始化失败，该路被跳过
+         */
+        void onOutputError(RecordOutput output, String error);
+
+        /**
+         * 某一路输出完成
+         */
+        void onOutputFinish(RecordOutput output, File file, OutputStats stats);
+
+        /**
+         * 全部输出完成
+         */
+        void onAllFinish(List<OutputStats> stats);
+    }
+}
@@ -0,0 +1,156 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.RecordOutput;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单路输出的工作线程
+ * 采集线程只做一次拷贝并非阻塞入队，队列满时丢弃该帧，保证采集不被慢的编码器拖慢
+ */
+class FanOutWorker extends Thread {
+    private static final String TAG = FanOutWorker.class.getSimpleName();
+    /**
+     * 每路最多排队的帧数
+     */
+    private static final int MAX_PENDING_FRAMES = 128;
+
+    private final RecordOutput output;
+    private final File file;
+    private final OutputEncoder encoder;
+    private final long bytesPerSecond;
+    private final ArrayBlockingQueue<Frame> pendingFrames = new ArrayBlockingQueue<>(MAX_PENDING_FRAMES);
+    private final ArrayBlockingQueue<Frame> freeFrames = new ArrayBlockingQueue<>(MAX_PENDING_FRAMES);
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final FinishListener finishListener;
+
+    private volatile long droppedFrames;
+    private volatile long maxLagMs;
+    private volatile long encodedBytes;
+    private volatile boolean failed;
+
+    FanOutWorker(RecordOutput output, File file, OutputEncoder encoder, long bytesPerSecond,
+                 FinishListener finishListener) {
+        super("fanout-" + output.getFormat().name().toLowerCase());
+        this.output = output;
+        this.file = file;
+        this.encoder = encoder;
+        this.bytesPerSecond = Math.max(bytesPerSecond, 1);
+        this.finishListener = finishListener;
+    }
+
+    /**
+     * 拷贝并入队，不阻塞
+     *
+     * @return false: 队列已满或已出错，该帧被丢弃
+     */
+    boolean offer(byte[] data, int len) {
+        if (failed || len <= 0) {
+            return false;
+        }
+        Frame frame = freeFrames.poll();
+        if (frame == null) {
+            frame = new Frame();
+        }
+        frame.set(data, len);
+        if (!pendingFrames.offer(frame)) {
+            droppedFrames++;
+            freeFrames.offer(frame);
+            return false;
+        }
+        long lagMs = pendingBytes.addAndGet(len) * 1000 / bytesPerSecond;
+        if (lagMs > maxLagMs) {
+            maxLagMs = lagMs;
+        }
+        return true;
+    }
+
+    /**
+     * 已入队的数据编码完成后结束该路输出
+     */
+    void finish() {
+        try {
+            pendingFrames.put(Frame.END_OF_STREAM);
+        } catch (InterruptedException e) {
+            Logger.e(e, TAG, e.getMessage());
+        }
+    }
+
+    /**
+     * 编码出错（包括运行时异常）只结束本路输出，编码器仍会关闭，并且总会回调 {@link FinishListener}
+     */
+    @Override
+    public void run() {
+        try {
+            for (; ; ) {
+                Frame frame;
+                try {
+                    frame = pendingFrames.take();
+                } catch (InterruptedException e) {
+                    Logger.e(e, TAG, e.getMessage());
+                    continue;
+                }
+                if (frame == Frame.END_OF_STREAM) {
+                    break;
+                }
+                if (!failed) {
+                    try {
+                        encoder.encode(frame.data, frame.len);
+                        encodedBytes += frame.len;
+                    } catch (Throwable t) {
+                        Logger.e(t, TAG, "%s 编码失败", output);
+                        failed = true;
+                    }
+                }
+                pendingBytes.addAndGet(-frame.len);
+                freeFrames.offer(frame);
+            }
+        } finally {
+            try {
+                encoder.close();
+            } catch (Throwable t) {
+                Logger.e(t, TAG, "%s 结束失败", output);
+                failed = true;
+            }
+            Logger.d(TAG, "输出完成 %s", getStats());
+            if (finishListener != null) {
+                finishListener.onFinish(this);
+            }
+        }
+    }
+
+    RecordOutput getOutput() {
+        return output;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    OutputStats getStats() {
+        return new OutputStats(output, file, pendingBytes.get() * 1000 / bytesPerSecond, maxLagMs,
+                droppedFrames, encodedBytes, failed);
+    }
+
+    interface FinishListener {
+        void onFinish(FanOutWorker worker);
+    }
+
+    private static class Frame {
+        static final Frame END_OF_STREAM = new Frame();
+
+        byte[] data = new byte[0];
+        int len;
+
+        void set(byte[] src, int length) {
+            if (data.length < length) {
+                data = new byte[length];
+            }
+            System.arraycopy(src, 0, data, 0, length);
+            len = length;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.flac.FlacEncoder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * FLAC 输出
+ */
+class FlacOutputEncoder implements OutputEncoder {
+    /**
+     * 离线编码时已提交未写出的最大帧数
+     */
+    private static final int OFFLINE_MAX_IN_FLIGHT = 8;
+
+    private final FlacEncoder encoder;
+
+    /**
+     * @param realtime true: 编码跟不上时丢帧；false: 阻塞等待，用于离线编码
+     */
+    FlacOutputEncoder(File file, int sampleRate, int channels, int bitsPerSample, boolean realtime) throws IOException {
+        encoder = realtime
+                ? new FlacEncoder(file, sampleRate, channels, bitsPerSample)
+                : new FlacEncoder(file, sampleRate, channels, bitsPerSample, 1, OFFLINE_MAX_IN_FLIGHT);
+    }
+
+    @Override
+    public void encode(byte[] pcm, int len) throws IOException {
+        encoder.write(pcm, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        encoder.close();
+    }
+}
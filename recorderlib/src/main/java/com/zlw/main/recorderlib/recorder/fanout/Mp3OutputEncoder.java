@@ -0,0 +1,92 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.mp3.Mp3Encoder;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * MP3 输出
+ * LAME 在 native 层只有一个实例，创建前调用方需通过 {@link Mp3Encoder#acquire} 或 {@link Mp3Encoder#tryAcquire} 占用，
+ * 关闭后释放，因此同一时间只能有一路 MP3 输出
+ */
+class Mp3OutputEncoder implements OutputEncoder {
+    private static final String TAG = Mp3OutputEncoder.class.getSimpleName();
+    /**
+     * 默认码率 kbit/s，与实时MP3录音一致
+     */
+    private static final int DEFAULT_BITRATE_KBPS = 32;
+
+    private final OutputStream os;
+    private final int channels;
+    private short[] left = new short[0];
+    private short[] right = new short[0];
+    private byte[] mp3Buffer = new byte[0];
+
+    /**
+     * @param bits PCM 位宽，LAME 只接受16位
+     */
+    Mp3OutputEncoder(File file, int sampleRate, int channels, int bits, int bitRate) throws IOException {
+        if (bits != 16) {
+            throw new IllegalArgumentException("MP3输出仅支持16位PCM: " + bits);
+        }
+        this.channels = channels;
+        int kbps = bitRate > 0 ? bitRate / 1000 : DEFAULT_BITRATE_KBPS;
+        Mp3Encoder.init(sampleRate, channels, sampleRate, kbps);
+        try {
+            this.os = new BufferedOutputStream(new FileOutputStream(file), 16 * 1024);
+        } catch (IOException e) {
+            Mp3Encoder.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void encode(byte[] pcm, int len) throws IOException {
+        int samples = len / 2 / channels;
+        if (samples <= 0) {
+            return;
+        }
+        ensureCapacity(samples);
+        //拆分左右声道，单声道时左右使用同一数组
+        for (int i = 0; i < samples; i++) {
+            int offset = i * 2 * channels;
+            left[i] = (short) ((pcm[offset] & 0xff) | (pcm[offset + 1] << 8));
+            if (channels == 2) {
+                right[i] = (short) ((pcm[offset + 2] & 0xff) | (pcm[offset + 3] << 8));
+            }
+        }
+        int encodedSize = Mp3Encoder.encode(left, channels == 2 ? right : left, samples, mp3Buffer);
+        if (encodedSize < 0) {
+            Logger.e(TAG, "Lame encoded size: %s", encodedSize);
+            return;
+        }
+        os.write(mp3Buffer, 0, encodedSize);
+    }
+
+    private void ensureCapacity(int samples) {
+        if (left.length < samples) {
+            left = new short[samples];
+            right = new short[samples];
+            mp3Buffer = new byte[(int) (7200 + samples * 1.25)];
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            byte[] flushBuffer = new byte[7200];
+            int flushResult = Mp3Encoder.flush(flushBuffer);
+            if (flushResult > 0) {
+                os.write(flushBuffer, 0, flushResult);
+            }
+        } finally {
+            os.close();
+            Mp3Encoder.close();
+        }
+    }
+}
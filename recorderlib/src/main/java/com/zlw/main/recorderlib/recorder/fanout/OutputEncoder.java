@@ -0,0 +1,19 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import java.io.IOException;
+
+/**
+ * 单路输出的编码器，通过 {@link OutputEncoders#create} 创建，只在一个线程中调用
+ */
+public interface OutputEncoder {
+
+    /**
+     * 编码一段交错的小端PCM数据
+     */
+    void encode(byte[] pcm, int len) throws IOException;
+
+    /**
+     * 编码剩余数据并完成文件
+     */
+    void close() throws IOException;
+}
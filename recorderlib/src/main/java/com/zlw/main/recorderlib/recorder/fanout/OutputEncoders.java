@@ -0,0 +1,73 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import android.media.AudioFormat;
+
+import com.zlw.main.recorderlib.recorder.RecordConfig;
+import com.zlw.main.recorderlib.recorder.RecordOutput;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 按输出格式创建编码器
+ */
+public class OutputEncoders {
+
+    private OutputEncoders() {
+    }
+
+    /**
+     * @param config   PCM 参数（采样率、声道路由后的声道、位宽）
+     * @param output   输出格式、码率、采样率及声道
+     * @param file     输出文件
+     * @param realtime 是否为实时编码，false 时编码器不会因积压丢帧
+     *                 <p>
+     *                 MP3 使用 LAME 的全局实例，调用前需通过 {@link com.zlw.main.recorderlib.recorder.mp3.Mp3Encoder#acquire}
+     *                 占用，编码器关闭后释放
+     */
+    public static OutputEncoder create(RecordConfig config, RecordOutput output, File file, boolean realtime) throws IOException {
+        int channels = config.getRoutedChannelCount();
+        int channel = output.getChannel();
+        if (channel >= channels) {
+            throw new IllegalArgumentException(String.format("声道 %s 不存在，共 %s 个声道", channel, channels));
+        }
+        boolean selectChannel = channel >= 0 && channels > 1;
+        int outputRate = output.getSampleRate();
+        boolean resample = outputRate > 0 && outputRate != config.getSampleRate() && config.getEncoding() == 16;
+        if (!selectChannel && !resample && channels == config.getChannelCount()) {
+            return createEncoder(config, output, file, realtime);
+        }
+
+        RecordConfig outputConfig = new RecordConfig(config.getFormat(),
+                selectChannel ? AudioFormat.CHANNEL_IN_MONO : config.getRoutedChannelConfig(),
+                config.getEncodingConfig(), resample ? outputRate : config.getSampleRate());
+        OutputEncoder encoder = createEncoder(outputConfig, output, file, realtime);
+        if (resample) {
+            encoder = new ResamplingOutputEncoder(encoder, config.getSampleRate(), outputRate, outputConfig.getChannelCount());
+        }
+        if (selectChannel) {
+            encoder = new ChannelSelectOutputEncoder(encoder, channel, channels, config.getEncoding() / 8);
+        }
+        return encoder;
+    }
+
+    private static OutputEncoder createEncoder(RecordConfig config, RecordOutput output, File file, boolean realtime) throws IOException {
+        int sampleRate = config.getSampleRate();
+        int channels = config.getChannelCount();
+        int bits = config.getEncoding();
+        switch (output.getFormat()) {
+            case WAV:
+                return new PcmOutputEncoder(file, true, sampleRate, channels, bits);
+            case MP3:
+                return new Mp3OutputEncoder(file, sampleRate, channels, bits, output.getBitRate());
+            case AAC:
+            case AAC_ADTS:
+                return new AacOutputEncoder(file, config, output.getFormat(), output.getBitRate(), realtime);
+            case FLAC:
+                return new FlacOutputEncoder(file, sampleRate, channels, bits, realtime);
+            case PCM:
+            default:
+                return new PcmOutputEncoder(file, false, sampleRate, channels, bits);
+        }
+    }
+}
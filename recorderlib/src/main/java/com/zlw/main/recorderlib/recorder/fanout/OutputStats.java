@@ -0,0 +1,79 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.RecordOutput;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * 单路输出的运行统计
+ */
+public class OutputStats {
+    private final RecordOutput output;
+    private final File file;
+    private final long lagMs;
+    private final long maxLagMs;
+    private final long droppedFrames;
+    private final long encodedBytes;
+    private final boolean failed;
+
+    OutputStats(RecordOutput output, File file, long lagMs, long maxLagMs, long droppedFrames,
+                long encodedBytes, boolean failed) {
+        this.output = output;
+        this.file = file;
+        this.lagMs = lagMs;
+        this.maxLagMs = maxLagMs;
+        this.droppedFrames = droppedFrames;
+        this.encodedBytes = encodedBytes;
+        this.failed = failed;
+    }
+
+    public RecordOutput getOutput() {
+        return output;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * @return 当前排队等待编码的音频时长 ms
+     */
+    public long getLagMs() {
+        return lagMs;
+    }
+
+    /**
+     * @return 录音过程中排队音频时长的最大值 ms
+     */
+    public long getMaxLagMs() {
+        return maxLagMs;
+    }
+
+    /**
+     * @return 因编码跟不上、队列已满而丢弃的帧数
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return 已编码的PCM字节数
+     */
+    public long getEncodedBytes() {
+        return encodedBytes;
+    }
+
+    /**
+     * @return 该路编码是否出错
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.getDefault(), "%s 延迟：%s ms, 最大延迟：%s ms, 丢帧：%s, 已编码：%s bytes%s",
+                output, lagMs, maxLagMs, droppedFrames, encodedBytes, failed ? ", 失败" : "");
+    }
+}
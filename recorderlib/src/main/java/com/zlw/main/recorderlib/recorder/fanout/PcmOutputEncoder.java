@@ -0,0 +1,49 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.wav.WavUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * PCM / WAV 输出，WAV 先预留文件头，结束时回填
+ */
+class PcmOutputEncoder implements OutputEncoder {
+    private static final int WAV_HEADER_SIZE = 44;
+
+    private final File file;
+    private final OutputStream os;
+    private final boolean wav;
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+
+    PcmOutputEncoder(File file, boolean wav, int sampleRate, int channels, int bitsPerSample) throws IOException {
+        this.file = file;
+        this.wav = wav;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.os = new BufferedOutputStream(new FileOutputStream(file), 16 * 1024);
+        if (wav) {
+            os.write(new byte[WAV_HEADER_SIZE]);
+        }
+    }
+
+    @Override
+    public void encode(byte[] pcm, int len) throws IOException {
+        os.write(pcm, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        os.close();
+        if (wav) {
+            byte[] header = WavUtils.generateWavFileHeader((int) file.length(), sampleRate, channels, bitsPerSample);
+            WavUtils.writeHeader(file, header);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.dsp.PolyphaseResampler;
+
+import java.io.IOException;
+
+/**
+ * 先重采样到该路输出的采样率，再交给实际的编码器，在该路的工作线程中执行
+ */
+class ResamplingOutputEncoder implements OutputEncoder {
+    private final OutputEncoder encoder;
+    private final PolyphaseResampler resampler;
+    private byte[] buffer = new byte[0];
+
+    ResamplingOutputEncoder(OutputEncoder encoder, int inRate, int outRate, int channels) {
+        this.encoder = encoder;
+        this.resampler = new PolyphaseResampler(inRate, outRate, channels);
+    }
+
+    @Override
+    public void encode(byte[] pcm, int len) throws IOException {
+        int capacity = resampler.getMaxOutput(len / 2) * 2;
+        if (buffer.length < capacity) {
+            buffer = new byte[capacity];
+        }
+        int outLen = resampler.process(pcm, len, buffer);
+        if (outLen > 0) {
+            encoder.encode(buffer, outLen);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        encoder.close();
+    }
+}
@@ -0,0 +1,141 @@
+package com.zlw.main.recorderlib.recorder.feature;
+
+import java.io.Serializable;
+
+/**
+ * 流式 log-mel / MFCC 特征提取配置
+ */
+public class FeatureConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 分析窗长 ms，FFT 长度取不小于窗长的2的整数次幂
+     */
+    private int windowMs = 25;
+    /**
+     * 帧移 ms
+     */
+    private int hopMs = 10;
+    /**
+     * mel 滤波器个数
+     */
+    private int melBands = 40;
+    /**
+     * MFCC 系数个数（含 c0），0：只输出 log-mel
+     */
+    private int mfccCount = 13;
+    /**
+     * mel 滤波器组的最低频率 Hz
+     */
+    private int minFrequency = 20;
+    /**
+     * mel 滤波器组的最高频率 Hz，0：奈奎斯特频率
+     */
+    private int maxFrequency = 0;
+    /**
+     * 预加重系数，0：不做预加重
+     */
+    private float preEmphasis = 0f;
+    /**
+     * 输出环形缓冲区可容纳的帧数，回调跟不上时丢弃最旧的帧
+     */
+    private int ringFrames = 256;
+    /**
+     * 回调间隔 ms
+     */
+    private int publishIntervalMs = 100;
+    /**
+     * 是否在录音文件旁写入特征文件 .feat
+     */
+    private boolean sidecarEnabled = false;
+
+    public int getWindowMs() {
+        return windowMs;
+    }
+
+    public FeatureConfig setWindowMs(int windowMs) {
+        this.windowMs = windowMs;
+        return this;
+    }
+
+    public int getHopMs() {
+        return hopMs;
+    }
+
+    public FeatureConfig setHopMs(int hopMs) {
+        this.hopMs = hopMs;
+        return this;
+    }
+
+    public int getMelBands() {
+        return melBands;
+    }
+
+    public FeatureConfig setMelBands(int melBands) {
+        this.melBands = melBands;
+        return this;
+    }
+
+    public int getMfccCount() {
+        return mfccCount;
+    }
+
+    public FeatureConfig setMfccCount(int mfccCount) {
+        this.mfccCount = mfccCount;
+        return this;
+    }
+
+    public int getMinFrequency() {
+        return minFrequency;
+    }
+
+    public FeatureConfig setMinFrequency(int minFrequency) {
+        this.minFrequency = minFrequency;
+        return this;
+    }
+
+    public int getMaxFrequency() {
+        return maxFrequency;
+    }
+
+    public FeatureConfig setMaxFrequency(int maxFrequency) {
+        this.maxFrequency = maxFrequency;
+        return this;
+    }
+
+    public float getPreEmphasis() {
+        return preEmphasis;
+    }
+
+    public FeatureConfig setPreEmphasis(float preEmphasis) {
+        this.preEmphasis = preEmphasis;
+        return this;
+    }
+
+    public int getRingFrames() {
+        return ringFrames;
+    }
+
+    public FeatureConfig setRingFrames(int ringFrames) {
+        this.ringFrames = ringFrames;
+        return this;
+    }
+
+    public int getPublishIntervalMs() {
+        return publishIntervalMs;
+    }
+
+    public FeatureConfig setPublishIntervalMs(int publishIntervalMs) {
+        this.publishIntervalMs = publishIntervalMs;
+        return this;
+    }
+
+    public boolean isSidecarEnabled() {
+        return sidecarEnabled;
+    }
+
+    public FeatureConfig setSidecarEnabled(boolean sidecarEnabled) {
+        this.sidecarEnabled = sidecarEnabled;
+        return this;
+    }
+}
@@ -0,0 +1,290 @@
+package com.zlw.main.recorderlib.recorder.feature;
+
+import com.zlw.main.recorderlib.recorder.dsp.RealFft;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.IOException;
+
+/**
+ * 流式 log-mel / MFCC 特征提取
+ * 在采集线程中增量处理：多声道取平均并做可选的预加重，每凑满一个分析窗计算一帧：
+ * Hann 窗 → FFT 功率谱 → mel 滤波器组 → 自然对数 → 正交 DCT-II 得到 MFCC。
+ * 第一帧在凑满第一个窗长后产生（不在开头补零），第 i 帧对应样本 [i*hop, i*hop+window)
+ * <p>
+ * 窗、FFT 与中间结果的缓冲区在构造时分配并复用，处理过程不分配内存。
+ * 结果写入固定容量的环形缓冲区，由其他线程通过 {@link #read} 取走；读取跟不上时覆盖最旧的帧并计入丢帧数
+ * 仅支持16bit PCM
+ */
+public class FeatureExtractor {
+    private static final String TAG = FeatureExtractor.class.getSimpleName();
+    /**
+     * 取对数前的能量下限，对应 log-mel 最小值约 -23
+     */
+    public static final float LOG_FLOOR = 1e-10f;
+
+    private final int channels;
+    private final int windowSamples;
+    private final int hopSamples;
+    private final int fftSize;
+    private final int melBands;
+    private final int mfccCount;
+    private final float preEmphasis;
+    private final RealFft fft;
+    private final MelFilterBank melFilterBank;
+    private final float[] window;
+    /**
+     * mfccCount × melBands
+     */
+    private final float[] dct;
+
+    private final float[] samples;
+    private int filled;
+    private float previousSample;
+    private final float[] windowed;
+    private final float[] re;
+    private final float[] im;
+    private final float[] power;
+    private final float[] melEnergy;
+    private final float[] logMel;
+    private final float[] mfcc;
+
+    private final Object lock = new Object();
+    private final int capacity;
+    private final float[] melRing;
+    private final float[] mfccRing;
+    private long writeFrame;
+    private long readFrame;
+    private long lastReadFrame;
+    private long droppedFrames;
+
+    private FeatureSidecarWriter sidecar;
+
+    /**
+     * @param config     特征配置
+     * @param sampleRate 采样率
+     * @param channels   声道数，多声道取平均
+     */
+    public FeatureExtractor(FeatureConfig config, int sampleRate, int channels) {
+        this.channels = Math.max(1, channels);
+        windowSamples = sampleRate * config.getWindowMs() / 1000;
+        hopSamples = sampleRate * config.getHopMs() / 1000;
+        if (windowSamples < 4 || hopSamples <= 0 || hopSamples > windowSamples) {
+            throw new IllegalArgumentException(String.format("窗长/帧移错误: %sms/%sms", config.getWindowMs(), config.getHopMs()));
+        }
+        melBands = config.getMelBands();
+        mfccCount = config.getMfccCount();
+        if (mfccCount < 0 || mfccCount > melBands) {
+            throw new IllegalArgumentException(String.format("MFCC个数 %s 应在 0-%s 之间", mfccCount, melBands));
+        }
+        preEmphasis = config.getPreEmphasis();
+        fftSize = Integer.highestOneBit(windowSamples - 1) << 1;
+        fft = new RealFft(fftSize);
+        float maxFrequency = config.getMaxFrequency() > 0 ? config.getMaxFrequency() : sampleRate / 2f;
+        melFilterBank = new MelFilterBank(fftSize, sampleRate, melBands, config.getMinFrequency(), maxFrequency);
+
+        window = new float[windowSamples];
+        for (int i = 0; i < windowSamples; i++) {
+            window[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / windowSamples));
+        }
+        dct = new float[mfccCount * melBands];
+        for (int k = 0; k < mfccCount; k++) {
+            double scale = Math.sqrt((k == 0 ? 1.0 : 2.0) / melBands);
+            for (int m = 0; m < melBands; m++) {
+                dct[k * melBands + m] = (float) (scale * Math.cos(Math.PI * k * (m + 0.5) / melBands));
+            }
+        }
+
+        samples = new float[windowSamples];
+        windowed = new float[fftSize];
+        re = new float[fftSize / 2 + 1];
+        im = new float[fftSize / 2 + 1];
+        power = new float[fftSize / 2 + 1];
+        melEnergy = new float[melBands];
+        logMel = new float[melBands];
+        mfcc = new float[mfccCount];
+
+        capacity = Math.max(1, config.getRingFrames());
+        melRing = new float[capacity * melBands];
+        mfccRing = new float[capacity * mfccCount];
+    }
+
+    /**
+     * 每计算一帧同时追加到特征文件，在采集线程中写入；写入失败后不再写入
+     */
+    public void setSidecar(FeatureSidecarWriter sidecar) {
+        this.sidecar = sidecar;
+    }
+
+    /**
+     * 处理交错的16bit PCM
+     *
+     * @return 新产生的帧数
+     */
+    public int process(short[] data, int count) {
+        int frames = count / channels;
+        int produced = 0;
+        for (int f = 0, offset = 0; f < frames; f++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += data[offset++];
+            }
+            if (append(sum / (32768f * channels))) {
+                produced++;
+            }
+        }
+        return produced;
+    }
+
+    /**
+     * 处理交错的16bit小端PCM
+     *
+     * @return 新产生的帧数
+     */
+    public int process(byte[] data, int len) {
+        int frames = len / 2 / channels;
+        int produced = 0;
+        for (int f = 0, offset = 0; f < frames; f++) {
+            int sum = 0;
+            for (int c = 0; c < channels; c++) {
+                sum += (short) ((data[offset] & 0xff) | (data[offset + 1] << 8));
+                offset += 2;
+            }
+            if (append(sum / (32768f * channels))) {
+                produced++;
+            }
+        }
+        return produced;
+    }
+
+    private boolean append(float x) {
+        samples[filled++] = x - preEmphasis * previousSample;
+        previousSample = x;
+        if (filled < windowSamples) {
+            return false;
+        }
+        computeFrame();
+        System.arraycopy(samples, hopSamples, samples, 0, windowSamples - hopSamples);
+        filled = windowSamples - hopSamples;
+        return true;
+    }
+
+    private void computeFrame() {
+        for (int i = 0; i < windowSamples; i++) {
+            windowed[i] = samples[i] * window[i];
+        }
+        fft.forward(windowed, re, im);
+        for (int k = 0; k < power.length; k++) {
+            power[k] = re[k] * re[k] + im[k] * im[k];
+        }
+        melFilterBank.apply(power, melEnergy);
+        for (int m = 0; m < melBands; m++) {
+            logMel[m] = (float) Math.log(Math.max(melEnergy[m], LOG_FLOOR));
+        }
+        for (int k = 0, row = 0; k < mfccCount; k++, row += melBands) {
+            float sum = 0;
+            for (int m = 0; m < melBands; m++) {
+                sum += dct[row + m] * logMel[m];
+            }
+            mfcc[k] = sum;
+        }
+
+        synchronized (lock) {
+            int slot = (int) (writeFrame % capacity);
+            System.arraycopy(logMel, 0, melRing, slot * melBands, melBands);
+            System.arraycopy(mfcc, 0, mfccRing, slot * mfccCount, mfccCount);
+            writeFrame++;
+            if (writeFrame - readFrame > capacity) {
+                readFrame = writeFrame - capacity;
+                droppedFrames++;
+            }
+        }
+
+        FeatureSidecarWriter sidecar = this.sidecar;
+        if (sidecar != null) {
+            try {
+                sidecar.append(logMel, mfcc);
+            } catch (IOException e) {
+                Logger.e(e, TAG, "特征文件写入失败：%s", e.getMessage());
+                this.sidecar = null;
+            }
+        }
+    }
+
+    /**
+     * 取走尚未读取的帧，按帧依次存放
+     *
+     * @param logMel    输出，长度不小于 maxFrames*melBands
+     * @param mfcc      输出，长度不小于 maxFrames*mfccCount；null：不需要
+     * @param maxFrames 最多读取的帧数
+     * @return 读取的帧数，第一帧的序号见 {@link #getLastReadFrame()}
+     */
+    public int read(float[] logMel, float[] mfcc, int maxFrames) {
+        synchronized (lock) {
+            int frames = (int) Math.min(maxFrames, writeFrame - readFrame);
+            for (int i = 0; i < frames; i++) {
+                int slot = (int) ((readFrame + i) % capacity);
+                System.arraycopy(melRing, slot * melBands, logMel, i * melBands, melBands);
+                if (mfcc != null) {
+                    System.arraycopy(mfccRing, slot * mfccCount, mfcc, i * mfccCount, mfccCount);
+                }
+            }
+            lastReadFrame = readFrame;
+            readFrame += frames;
+            return frames;
+        }
+    }
+
+    /**
+     * 最近一次 {@link #read} 读取的第一帧的序号，乘以帧移即为在采集时间轴上的起始样本
+     */
+    public long getLastReadFrame() {
+        synchronized (lock) {
+            return lastReadFrame;
+        }
+    }
+
+    /**
+     * 已产生的帧数
+     */
+    public long getFrameCount() {
+        synchronized (lock) {
+            return writeFrame;
+        }
+    }
+
+    /**
+     * 读取跟不上被覆盖的帧数
+     */
+    public long getDroppedFrames() {
+        synchronized (lock) {
+            return droppedFrames;
+        }
+    }
+
+    /**
+     * 环形缓冲区容量（帧）
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getMelBands() {
+        return melBands;
+    }
+
+    public int getMfccCount() {
+        return mfccCount;
+    }
+
+    public int getWindowSamples() {
+        return windowSamples;
+    }
+
+    public int getHopSamples() {
+        return hopSamples;
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+}
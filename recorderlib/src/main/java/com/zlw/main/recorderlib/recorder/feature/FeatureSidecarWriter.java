@@ -0,0 +1,99 @@
+package com.zlw.main.recorderlib.recorder.feature;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * 将特征帧以16bit定点数顺序写入 .feat 文件，帧数在关闭时回填
+ * <p>
+ * 文件格式（小端）：
+ * <pre>
+ * int   magic 'FEAT'
+ * int   version
+ * int   sampleRate
+ * int   windowSamples
+ * int   hopSamples
+ * int   melBands
+ * int   mfccCount
+ * float scale          定点数 = round(值 * scale)
+ * long  frameCount
+ * 每帧：melBands 个 short log-mel，mfccCount 个 short MFCC
+ * </pre>
+ */
+public class FeatureSidecarWriter implements Closeable {
+    static final int MAGIC = 0x46454154;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 7 * 4 + 4 + 8;
+    static final int FRAME_COUNT_OFFSET = HEADER_SIZE - 8;
+    /**
+     * 分辨率 0.01，可表示 ±327
+     */
+    static final float SCALE = 100f;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
+    private long frameCount;
+
+    public FeatureSidecarWriter(File file, int sampleRate, FeatureExtractor extractor) throws IOException {
+        this.file = new RandomAccessFile(file, "rw");
+        this.file.setLength(0);
+        channel = this.file.getChannel();
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sampleRate)
+                .putInt(extractor.getWindowSamples()).putInt(extractor.getHopSamples())
+                .putInt(extractor.getMelBands()).putInt(extractor.getMfccCount())
+                .putFloat(SCALE).putLong(0);
+    }
+
+    void append(float[] logMel, float[] mfcc) throws IOException {
+        if (buffer.remaining() < (logMel.length + mfcc.length) * 2) {
+            flush();
+        }
+        putAll(logMel);
+        putAll(mfcc);
+        frameCount++;
+    }
+
+    private void putAll(float[] values) {
+        for (float value : values) {
+            int q = Math.round(value * SCALE);
+            buffer.putShort((short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, q)));
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer count = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            count.putLong(0, frameCount);
+            channel.write(count, FRAME_COUNT_OFFSET);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * 录音文件对应的特征文件
+     */
+    public static File sidecarOf(File recordFile) {
+        return new File(recordFile.getAbsolutePath() + ".feat");
+    }
+}
@@ -0,0 +1,83 @@
+package com.zlw.main.recorderlib.recorder.feature;
+
+/**
+ * HTK mel 刻度的三角滤波器组
+ * 只保存每个滤波器非零部分的起始频点与权重，apply 的开销与频点数成正比
+ */
+class MelFilterBank {
+    private final int[] startBins;
+    private final float[][] weights;
+
+    /**
+     * @param fftSize    FFT 长度
+     * @param sampleRate 采样率
+     * @param bands      滤波器个数
+     * @param minHz      最低频率
+     * @param maxHz      最高频率
+     */
+    MelFilterBank(int fftSize, int sampleRate, int bands, float minHz, float maxHz) {
+        if (bands <= 0 || minHz < 0 || maxHz <= minHz || maxHz > sampleRate / 2f) {
+            throw new IllegalArgumentException(String.format("mel滤波器参数错误: %s个 %s-%sHz", bands, minHz, maxHz));
+        }
+        int half = fftSize / 2;
+        float binHz = (float) sampleRate / fftSize;
+        double minMel = toMel(minHz);
+        double maxMel = toMel(maxHz);
+        double[] edges = new double[bands + 2];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = toHz(minMel + (maxMel - minMel) * i / (bands + 1));
+        }
+        startBins = new int[bands];
+        weights = new float[bands][];
+        for (int b = 0; b < bands; b++) {
+            double left = edges[b];
+            double center = edges[b + 1];
+            double right = edges[b + 2];
+            int first = (int) Math.ceil(left / binHz);
+            int last = Math.min(half, (int) Math.floor(right / binHz));
+            if (last < first) {
+                //滤波器比频点间隔还窄时至少覆盖最近的一个频点
+                first = last = Math.min(half, (int) Math.round(center / binHz));
+            }
+            float[] w = new float[last - first + 1];
+            for (int k = first; k <= last; k++) {
+                double hz = k * binHz;
+                double value = hz <= center ? (hz - left) / (center - left) : (right - hz) / (right - center);
+                w[k - first] = (float) Math.max(0, value);
+            }
+            if (w.length == 1 && w[0] == 0) {
+                w[0] = 1;
+            }
+            startBins[b] = first;
+            weights[b] = w;
+        }
+    }
+
+    int getBandCount() {
+        return weights.length;
+    }
+
+    /**
+     * @param power 功率谱，长度 fftSize/2+1
+     * @param out   各滤波器的能量
+     */
+    void apply(float[] power, float[] out) {
+        for (int b = 0; b < weights.length; b++) {
+            float[] w = weights[b];
+            int start = startBins[b];
+            float sum = 0;
+            for (int i = 0; i < w.length; i++) {
+                sum += w[i] * power[start + i];
+            }
+            out[b] = sum;
+        }
+    }
+
+    static double toMel(double hz) {
+        return 2595 * Math.log10(1 + hz / 700);
+    }
+
+    static double toHz(double mel) {
+        return 700 * (Math.pow(10, mel / 2595) - 1);
+    }
+}
@@ -0,0 +1,132 @@
+package com.zlw.main.recorderlib.recorder.flac;
+
+import java.util.Arrays;
+
+/**
+ * 按位写入的可复用缓冲，高位在前
+ */
+class BitWriter {
+    private static final int[] CRC8_TABLE = new int[256];
+    private static final int[] CRC16_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc8 = i;
+            int crc16 = i << 8;
+            for (int j = 0; j < 8; j++) {
+                crc8 = (crc8 & 0x80) != 0 ? (crc8 << 1) ^ 0x07 : crc8 << 1;
+                crc16 = (crc16 & 0x8000) != 0 ? (crc16 << 1) ^ 0x8005 : crc16 << 1;
+            }
+            CRC8_TABLE[i] = crc8 & 0xFF;
+            CRC16_TABLE[i] = crc16 & 0xFFFF;
+        }
+    }
+
+    private byte[] buffer;
+    private int byteCount;
+    private long cache;
+    private int cacheBits;
+
+    BitWriter(int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    void reset() {
+        byteCount = 0;
+        cache = 0;
+        cacheBits = 0;
+    }
+
+    /**
+     * 写入 value 的低 bits 位，bits <= 32
+     */
+    void writeBits(long value, int bits) {
+        if (bits == 0) {
+            return;
+        }
+        cache = (cache << bits) | (value & ((1L << bits) - 1));
+        cacheBits += bits;
+        while (cacheBits >= 8) {
+            cacheBits -= 8;
+            put((byte) (cache >>> cacheBits));
+        }
+    }
+
+    void writeSigned(int value, int bits) {
+        writeBits(value, bits);
+    }
+
+    /**
+     * Rice 编码一个有符号残差
+     */
+    void writeRice(int value, int parameter) {
+        int u = (value << 1) ^ (value >> 31);
+        int quotient = u >>> parameter;
+        while (quotient >= 32) {
+            writeBits(0, 32);
+            quotient -= 32;
+        }
+        writeBits(1, quotient + 1);
+        writeBits(u, parameter);
+    }
+
+    /**
+     * FLAC 的 UTF-8 风格变长整数编码
+     */
+    void writeUtf8(long value) {
+        if (value < 0x80) {
+            writeBits(value, 8);
+            return;
+        }
+        int bytes = 2;
+        while (bytes < 7 && value >= (1L << (5 * bytes + 1))) {
+            bytes++;
+        }
+        int shift = (bytes - 1) * 6;
+        writeBits((0xFF00 >> bytes) & 0xFF | (value >>> shift), 8);
+        while (shift > 0) {
+            shift -= 6;
+            writeBits(0x80 | ((value >>> shift) & 0x3F), 8);
+        }
+    }
+
+    void alignToByte() {
+        if (cacheBits > 0) {
+            writeBits(0, 8 - cacheBits);
+        }
+    }
+
+    int crc8(int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc = CRC8_TABLE[(crc ^ buffer[i]) & 0xFF];
+        }
+        return crc;
+    }
+
+    int crc16(int from, int to) {
+        int crc = 0;
+        for (int i = from; i < to; i++) {
+            crc = ((crc << 8) ^ CRC16_TABLE[((crc >>> 8) ^ buffer[i]) & 0xFF]) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    /**
+     * 已对齐时的字节数
+     */
+    int length() {
+        return byteCount;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    private void put(byte b) {
+        if (byteCount == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        buffer[byteCount++] = b;
+    }
+}
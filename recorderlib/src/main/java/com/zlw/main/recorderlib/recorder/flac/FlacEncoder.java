@@ -0,0 +1,467 @@
+package com.zlw.main.recorderlib.recorder.flac;
+
+import com.zlw.main.recorderlib.recorder.StartupMetrics;
+import com.zlw.main.recorderlib.utils.ByteUtils;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 纯Java FLAC编码器
+ * 输入按固定块长切分为互相独立的帧，在工作线程池中并行编码并按序写出，
+ * 关闭时回填 STREAMINFO（帧长范围、总样本数、MD5）与 SEEKTABLE
+ * <p>
+ * 实时模式下积压超过上限时丢弃整块而不阻塞录音线程，丢弃的块不计入总样本数和帧序号，
+ * 此时 MD5 与输入不再一致，STREAMINFO 中的 MD5 写0（表示未知）
+ */
+public class FlacEncoder {
+    private static final String TAG = FlacEncoder.class.getSimpleName();
+
+    private static final int BLOCK_SIZE = 4096;
+    /**
+     * 预留的 SEEKTABLE 点数
+     */
+    private static final int SEEK_POINTS = 100;
+    private static final int SEEK_POINT_SIZE = 18;
+    private static final int STREAMINFO_SIZE = 34;
+    private static final int STREAMINFO_OFFSET = 4 + 4;
+    private static final int SEEKTABLE_OFFSET = STREAMINFO_OFFSET + STREAMINFO_SIZE + 4;
+    private static final int AUDIO_OFFSET = SEEKTABLE_OFFSET + SEEK_POINTS * SEEK_POINT_SIZE;
+    /**
+     * 实时模式下允许积压的帧数，约数十秒音频
+     */
+    private static final int REALTIME_MAX_IN_FLIGHT = 256;
+
+    private final File file;
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final int bytesPerSample;
+
+    private final ExecutorService executor;
+    private final Semaphore inFlight;
+    private final boolean dropOnOverflow;
+    private final ThreadLocal<FlacFrameEncoder> frameEncoders;
+    private final ArrayBlockingQueue<int[][]> freeBlocks;
+    private final MessageDigest md5;
+    private byte[] md5Scratch;
+
+    private int[][] block;
+    private int blockFill;
+    private final byte[] carry;
+    private int carryCount;
+    private long submittedFrames;
+    private long totalSamples;
+    private long droppedFrames;
+
+    private final OutputStream os;
+    private final Map<Long, EncodedFrame> completedFrames = new HashMap<>();
+    private long nextFrameToWrite;
+    private long audioBytes;
+    private int minFrameSize = Integer.MAX_VALUE;
+    private int maxFrameSize;
+    private long[] frameSampleOffsets = new long[1024];
+    private long[] frameByteOffsets = new long[1024];
+    private int[] frameSampleCounts = new int[1024];
+    private IOException writeError;
+    private StartupMetrics startupMetrics;
+
+    /**
+     * 实时录音使用，单个编码线程，积压超过上限时丢弃新的块，{@link #write(byte[], int, int)} 不阻塞
+     */
+    public FlacEncoder(File file, int sampleRate, int channels, int bitsPerSample) throws IOException {
+        this(file, sampleRate, channels, bitsPerSample, 1, REALTIME_MAX_IN_FLIGHT, true);
+    }
+
+    /**
+     * @param threads     编码线程数
+     * @param maxInFlight 已提交未写出的最大帧数，超出时 {@link #write(byte[], int, int)} 阻塞
+     */
+    public FlacEncoder(File file, int sampleRate, int channels, int bitsPerSample, int threads, int maxInFlight) throws IOException {
+        this(file, sampleRate, channels, bitsPerSample, threads, maxInFlight, false);
+    }
+
+    /**
+     * @param dropOnOverflow 积压超过 maxInFlight 时 true: 丢弃该块；false: 阻塞等待
+     */
+    FlacEncoder(File file, int sampleRate, int channels, int bitsPerSample, int threads, int maxInFlight,
+                boolean dropOnOverflow) throws IOException {
+        if (bitsPerSample != 8 && bitsPerSample != 16) {
+            throw new IllegalArgumentException("不支持的位宽: " + bitsPerSample);
+        }
+        if (channels < 1 || channels > 8) {
+            throw new IllegalArgumentException("不支持的声道数: " + channels);
+        }
+        this.file = file;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.bytesPerSample = bitsPerSample / 8;
+        try {
+            this.md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        this.inFlight = new Semaphore(maxInFlight);
+        this.dropOnOverflow = dropOnOverflow;
+        this.freeBlocks = new ArrayBlockingQueue<>(threads * 2 + 2);
+        this.frameEncoders = new ThreadLocal<FlacFrameEncoder>() {
+            @Override
+            protected FlacFrameEncoder initialValue() {
+                return new FlacFrameEncoder(FlacEncoder.this.channels, FlacEncoder.this.bitsPerSample,
+                        FlacEncoder.this.sampleRate, BLOCK_SIZE);
+            }
+        };
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count;
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "flac-encode-" + count++);
+            }
+        });
+        this.block = new int[channels][BLOCK_SIZE];
+        this.carry = new byte[bytesPerSample * channels];
+        this.os = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+        writeMetadata(os, null, 0, 0, 0);
+    }
+
+    public void setStartupMetrics(StartupMetrics startupMetrics) {
+        this.startupMetrics = startupMetrics;
+    }
+
+    /**
+     * @return 实时模式下因积压丢弃的帧数（每帧 {@value #BLOCK_SIZE} 个样本）
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * 写入交错的小端PCM数据（8bit为无符号）
+     */
+    public void write(byte[] pcm, int offset, int len) throws IOException {
+        if (writeError != null) {
+            throw writeError;
+        }
+        updateMd5(pcm, offset, len);
+        int end = offset + len;
+        int i = offset;
+        //上次未凑满一个采样帧的字节
+        while (carryCount > 0 && carryCount < carry.length && i < end) {
+            carry[carryCount++] = pcm[i++];
+        }
+        if (carryCount == carry.length) {
+            putSampleFrame(carry, 0);
+            carryCount = 0;
+        }
+        int frameBytes = carry.length;
+        for (; i + frameBytes <= end; i += frameBytes) {
+            putSampleFrame(pcm, i);
+        }
+        while (i < end) {
+            carry[carryCount++] = pcm[i++];
+        }
+    }
+
+    private void putSampleFrame(byte[] pcm, int i) throws IOException {
+        for (int c = 0; c < channels; c++, i += bytesPerSample) {
+            block[c][blockFill] = bytesPerSample == 2
+                    ? (short) ((pcm[i] & 0xFF) | (pcm[i + 1] << 8))
+                    : (pcm[i] & 0xFF) - 128;
+        }
+        if (++blockFill == BLOCK_SIZE) {
+            submitBlock(true);
+        }
+    }
+
+    /**
+     * 编码剩余数据，等待全部帧写出并回填文件头
+     */
+    public void close() throws IOException {
+        try {
+            if (blockFill > 0) {
+                //最后一块不丢弃
+                submitBlock(false);
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            if (writeError != null) {
+                throw writeError;
+            }
+        } finally {
+            os.close();
+        }
+        patchMetadata();
+        Logger.d(TAG, "FLAC编码完成 帧数：%s, 样本数：%s, 丢弃帧数：%s, 大小：%s",
+                submittedFrames, totalSamples, droppedFrames, file.length());
+    }
+
+    /**
+     * @param mayDrop 实时模式下积压时是否可以丢弃该块
+     */
+    private void submitBlock(boolean mayDrop) throws IOException {
+        if (dropOnOverflow && mayDrop) {
+            if (!inFlight.tryAcquire()) {
+                if (droppedFrames++ % 50 == 0) {
+                    Logger.w(TAG, "FLAC编码跟不上，已丢弃 %s 帧", droppedFrames);
+                }
+                blockFill = 0;
+                return;
+            }
+        } else {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+        final int[][] samples = block;
+        final int size = blockFill;
+        final long frameNumber = submittedFrames++;
+        final long sampleOffset = totalSamples;
+        totalSamples += size;
+        int[][] next = freeBlocks.poll();
+        block = next != null ? next : new int[channels][BLOCK_SIZE];
+        blockFill = 0;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                FlacFrameEncoder encoder = frameEncoders.get();
+                int length = encoder.encode(samples, size, frameNumber);
+                freeBlocks.offer(samples);
+                onFrameEncoded(frameNumber, sampleOffset, size, encoder.buffer(), length);
+            }
+        });
+    }
+
+    /**
+     * 按帧序号顺序写出；当前帧正好是下一帧时直接从编码缓冲写出，否则拷贝暂存
+     */
+    private synchronized void onFrameEncoded(long frameNumber, long sampleOffset, int samples, byte[] data, int length) {
+        if (frameNumber != nextFrameToWrite) {
+            completedFrames.put(frameNumber, new EncodedFrame(sampleOffset, samples, Arrays.copyOf(data, length)));
+            return;
+        }
+        writeFrame(sampleOffset, samples, data, length);
+        EncodedFrame frame;
+        while ((frame = completedFrames.remove(nextFrameToWrite)) != null) {
+            writeFrame(frame.sampleOffset, frame.samples, frame.data, frame.data.length);
+        }
+    }
+
+    private void writeFrame(long sampleOffset, int samples, byte[] data, int length) {
+        int index = (int) nextFrameToWrite;
+        if (index == frameSampleOffsets.length) {
+            frameSampleOffsets = Arrays.copyOf(frameSampleOffsets, index * 2);
+            frameByteOffsets = Arrays.copyOf(frameByteOffsets, index * 2);
+            frameSampleCounts = Arrays.copyOf(frameSampleCounts, index * 2);
+        }
+        frameSampleOffsets[index] = sampleOffset;
+        frameByteOffsets[index] = audioBytes;
+        frameSampleCounts[index] = samples;
+        try {
+            os.write(data, 0, length);
+        } catch (IOException e) {
+            Logger.e(e, TAG, e.getMessage());
+            writeError = e;
+        }
+        audioBytes += length;
+        minFrameSize = Math.min(minFrameSize, length);
+        maxFrameSize = Math.max(maxFrameSize, length);
+        nextFrameToWrite++;
+        inFlight.release();
+        if (startupMetrics != null) {
+            startupMetrics.markFirstPacket();
+        }
+    }
+
+    private void updateMd5(byte[] pcm, int offset, int len) {
+        if (bytesPerSample == 2) {
+            md5.update(pcm, offset, len);
+            return;
+        }
+        //FLAC 的 MD5 基于有符号样本
+        if (md5Scratch == null || md5Scratch.length < len) {
+            md5Scratch = new byte[len];
+        }
+        for (int i = 0; i < len; i++) {
+            md5Scratch[i] = (byte) ((pcm[offset + i] & 0xFF) - 128);
+        }
+        md5.update(md5Scratch, 0, len);
+    }
+
+    private void patchMetadata() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            ByteArrayOutputStream header = new ByteArrayOutputStream(AUDIO_OFFSET);
+            int frames = (int) nextFrameToWrite;
+            writeMetadata(header, droppedFrames > 0 ? null : md5.digest(), minFrameSize == Integer.MAX_VALUE ? 0 : minFrameSize, maxFrameSize, frames);
+            raf.seek(0);
+            raf.write(header.toByteArray());
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * 写出 fLaC 标识、STREAMINFO 和 SEEKTABLE，frames 为 0 时 SEEKTABLE 全部为占位点，digest 为 null 时 MD5 写0
+     */
+    private void writeMetadata(OutputStream out, byte[] digest, int minFrame, int maxFrame, int frames) throws IOException {
+        BitWriter writer = new BitWriter(AUDIO_OFFSET);
+        writer.writeBits(0x664C6143, 32);
+        //STREAMINFO
+        writer.writeBits(0, 1);
+        writer.writeBits(0, 7);
+        writer.writeBits(STREAMINFO_SIZE, 24);
+        writer.writeBits(BLOCK_SIZE, 16);
+        writer.writeBits(BLOCK_SIZE, 16);
+        writer.writeBits(minFrame, 24);
+        writer.writeBits(maxFrame, 24);
+        writer.writeBits(sampleRate, 20);
+        writer.writeBits(channels - 1, 3);
+        writer.writeBits(bitsPerSample - 1, 5);
+        writer.writeBits(totalSamples >>> 32, 4);
+        writer.writeBits(totalSamples, 32);
+        for (int i = 0; i < 16; i++) {
+            writer.writeBits(digest == null ? 0 : digest[i], 8);
+        }
+        //SEEKTABLE
+        writer.writeBits(1, 1);
+        writer.writeBits(3, 7);
+        writer.writeBits(SEEK_POINTS * SEEK_POINT_SIZE, 24);
+        int written = 0;
+        int lastFrame = -1;
+        for (int i = 0; i < SEEK_POINTS && frames > 0; i++) {
+            long target = totalSamples * i / SEEK_POINTS;
+            int frame = findFrame(target, frames);
+            if (frame == lastFrame) {
+                continue;
+            }
+            lastFrame = frame;
+            writer.writeBits(frameSampleOffsets[frame] >>> 32, 32);
+            writer.writeBits(frameSampleOffsets[frame], 32);
+            writer.writeBits(frameByteOffsets[frame] >>> 32, 32);
+            writer.writeBits(frameByteOffsets[frame], 32);
+            writer.writeBits(frameSampleCounts[frame], 16);
+            written++;
+        }
+        for (int i = written; i < SEEK_POINTS; i++) {
+            writer.writeBits(0xFFFFFFFFL, 32);
+            writer.writeBits(0xFFFFFFFFL, 32);
+            writer.writeBits(0, 32);
+            writer.writeBits(0, 32);
+            writer.writeBits(0, 16);
+        }
+        out.write(writer.buffer(), 0, writer.length());
+    }
+
+    /**
+     * 二分查找起始样本不大于 target 的最后一帧
+     */
+    private int findFrame(long target, int frames) {
+        int low = 0;
+        int high = frames - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (frameSampleOffsets[mid] <= target) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 离线将PCM文件编码为FLAC，按CPU核数并行
+     *
+     * @param pcmFile       小端PCM文件，WAV文件需跳过头部时指定 headerSize
+     * @param headerSize    需跳过的文件头长度
+     * @param bitsPerSample 8/16
+     */
+    public static void encodeFile(File pcmFile, long headerSize, File flacFile,
+                                  int sampleRate, int channels, int bitsPerSample) throws IOException {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        Logger.TimeCalculator timeCalculator = new Logger.TimeCalculator();
+        FlacEncoder encoder = new FlacEncoder(flacFile, sampleRate, channels, bitsPerSample, threads, threads * 4);
+        InputStream is = new FileInputStream(pcmFile);
+        try {
+            long skipped = 0;
+            while (skipped < headerSize) {
+                long n = is.skip(headerSize - skipped);
+                if (n <= 0) {
+                    break;
+                }
+                skipped += n;
+            }
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = is.read(buffer)) > 0) {
+                encoder.write(buffer, 0, len);
+            }
+        } finally {
+            is.close();
+            encoder.close();
+        }
+        Logger.d(TAG, "离线FLAC编码 线程数：%s, 耗时：%s ms", threads, timeCalculator.end());
+    }
+
+    /**
+     * 离线将本库生成的WAV文件（44字节标准头）编码为FLAC
+     */
+    public static void encodeWavFile(File wavFile, File flacFile) throws IOException {
+        byte[] header = new byte[44];
+        InputStream is = new FileInputStream(wavFile);
+        try {
+            if (is.read(header) != header.length) {
+                throw new IOException("WAV头读取失败");
+            }
+        } finally {
+            is.close();
+        }
+        if (header[0] != 'R' || header[8] != 'W' || header[36] != 'd') {
+            throw new IOException("不支持的WAV格式");
+        }
+        int channels = (header[22] & 0xFF) | ((header[23] & 0xFF) << 8);
+        int sampleRate = ByteUtils.toInt(header, 24);
+        int bitsPerSample = (header[34] & 0xFF) | ((header[35] & 0xFF) << 8);
+        encodeFile(wavFile, header.length, flacFile, sampleRate, channels, bitsPerSample);
+    }
+
+    private static class EncodedFrame {
+        final long sampleOffset;
+        final int samples;
+        final byte[] data;
+
+        EncodedFrame(long sampleOffset, int samples, byte[] data) {
+            this.sampleOffset = sampleOffset;
+            this.samples = samples;
+            this.data = data;
+        }
+    }
+}
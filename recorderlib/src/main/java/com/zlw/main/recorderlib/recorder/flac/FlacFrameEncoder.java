@@ -0,0 +1,497 @@
+package com.zlw.main.recorderlib.recorder.flac;
+
+/**
+ * 单个FLAC帧的编码器，持有可复用的中间缓冲，每个工作线程一个实例
+ * 每个声道在 CONSTANT / VERBATIM / FIXED(0-4) / LPC 之间按实际比特数择优，
+ * 双声道时同时尝试 left-side / side-right / mid-side 去相关
+ */
+class FlacFrameEncoder {
+    private static final int MAX_LPC_ORDER = 8;
+    private static final int LPC_PRECISION = 12;
+    private static final int MAX_RICE_PARAMETER = 14;
+    private static final int MAX_PARTITION_ORDER = 8;
+
+    private static final int CHANNEL_INDEPENDENT = -1;
+    private static final int CHANNEL_LEFT_SIDE = 8;
+    private static final int CHANNEL_SIDE_RIGHT = 9;
+    private static final int CHANNEL_MID_SIDE = 10;
+
+    private final int channels;
+    private final int bitsPerSample;
+    private final int sampleRateCode;
+    private final int sampleSizeCode;
+
+    private final BitWriter writer;
+    private final int[] mid;
+    private final int[] side;
+    private final int[] residual;
+    private final int[] bestResidual;
+    private final double[] window;
+    private final double[] windowed;
+    private final double[] autocorrelation = new double[MAX_LPC_ORDER + 1];
+    private final double[][] lpc = new double[MAX_LPC_ORDER][MAX_LPC_ORDER];
+    private final double[] lpcError = new double[MAX_LPC_ORDER];
+    private final int[] qlp = new int[MAX_LPC_ORDER];
+    private final long[] partitionSums = new long[1 << (MAX_PARTITION_ORDER + 1)];
+    private final int[] riceParameters = new int[1 << MAX_PARTITION_ORDER];
+
+    /**
+     * 当前候选子帧的描述
+     */
+    private int bestType;
+    private int bestOrder;
+    private int bestShift;
+    private final int[] bestQlp = new int[MAX_LPC_ORDER];
+    private int bestPartitionOrder;
+    private final int[] bestRiceParameters = new int[1 << MAX_PARTITION_ORDER];
+    private int candidatePartitionOrder;
+
+    private static final int TYPE_CONSTANT = 0;
+    private static final int TYPE_VERBATIM = 1;
+    private static final int TYPE_FIXED = 2;
+    private static final int TYPE_LPC = 3;
+
+    FlacFrameEncoder(int channels, int bitsPerSample, int sampleRate, int blockSize) {
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.sampleRateCode = getSampleRateCode(sampleRate);
+        this.sampleSizeCode = bitsPerSample == 8 ? 1 : 4;
+        this.writer = new BitWriter(blockSize * channels * bitsPerSample / 8 + 64);
+        this.mid = new int[blockSize];
+        this.side = new int[blockSize];
+        this.residual = new int[blockSize];
+        this.bestResidual = new int[blockSize];
+        this.windowed = new double[blockSize];
+        this.window = new double[blockSize];
+        //Welch 窗
+        for (int i = 0; i < blockSize; i++) {
+            double x = (2.0 * i - (blockSize - 1)) / (blockSize + 1);
+            window[i] = 1 - x * x;
+        }
+    }
+
+    /**
+     * 编码一帧，结果位于 {@link #buffer()} 的 [0, 返回值)
+     *
+     * @param samples     每声道的样本
+     * @param blockSize   本帧样本数
+     * @param frameNumber 帧序号
+     * @return 帧长度
+     */
+    int encode(int[][] samples, int blockSize, long frameNumber) {
+        writer.reset();
+        int assignment = CHANNEL_INDEPENDENT;
+        if (channels == 2) {
+            assignment = chooseStereoAssignment(samples[0], samples[1], blockSize);
+        }
+        writeFrameHeader(blockSize, frameNumber, assignment);
+        if (assignment == CHANNEL_INDEPENDENT) {
+            for (int c = 0; c < channels; c++) {
+                encodeSubframe(samples[c], blockSize, bitsPerSample);
+            }
+        } else if (assignment == CHANNEL_LEFT_SIDE) {
+            encodeSubframe(samples[0], blockSize, bitsPerSample);
+            encodeSubframe(side, blockSize, bitsPerSample + 1);
+        } else if (assignment == CHANNEL_SIDE_RIGHT) {
+            encodeSubframe(side, blockSize, bitsPerSample + 1);
+            encodeSubframe(samples[1], blockSize, bitsPerSample);
+        } else {
+            encodeSubframe(mid, blockSize, bitsPerSample);
+            encodeSubframe(side, blockSize, bitsPerSample + 1);
+        }
+        writer.alignToByte();
+        int crc16 = writer.crc16(0, writer.length());
+        writer.writeBits(crc16, 16);
+        return writer.length();
+    }
+
+    byte[] buffer() {
+        return writer.buffer();
+    }
+
+    private void writeFrameHeader(int blockSize, long frameNumber, int assignment) {
+        writer.writeBits(0xFFF8, 16);
+        int blockSizeCode;
+        if (blockSize == 4096) {
+            blockSizeCode = 12;
+        } else if (blockSize <= 256) {
+            blockSizeCode = 6;
+        } else {
+            blockSizeCode = 7;
+        }
+        writer.writeBits(blockSizeCode, 4);
+        writer.writeBits(sampleRateCode, 4);
+        writer.writeBits(assignment == CHANNEL_INDEPENDENT ? channels - 1 : assignment, 4);
+        writer.writeBits(sampleSizeCode, 3);
+        writer.writeBits(0, 1);
+        writer.writeUtf8(frameNumber);
+        if (blockSizeCode == 6) {
+            writer.writeBits(blockSize - 1, 8);
+        } else if (blockSizeCode == 7) {
+            writer.writeBits(blockSize - 1, 16);
+        }
+        writer.writeBits(writer.crc8(0, writer.length()), 8);
+    }
+
+    /**
+     * 用一阶差分的绝对值和估计各声道组合的代价
+     */
+    private int chooseStereoAssignment(int[] left, int[] right, int blockSize) {
+        long sumLeft = 0;
+        long sumRight = 0;
+        long sumMid = 0;
+        long sumSide = 0;
+        for (int i = 0; i < blockSize; i++) {
+            mid[i] = (left[i] + right[i]) >> 1;
+            side[i] = left[i] - right[i];
+            if (i > 0) {
+                sumLeft += Math.abs(left[i] - left[i - 1]);
+                sumRight += Math.abs(right[i] - right[i - 1]);
+                sumMid += Math.abs(mid[i] - mid[i - 1]);
+                sumSide += Math.abs(side[i] - side[i - 1]);
+            }
+        }
+        long independent = sumLeft + sumRight;
+        long leftSide = sumLeft + sumSide;
+        long sideRight = sumSide + sumRight;
+        long midSide = sumMid + sumSide;
+        long min = Math.min(Math.min(independent, leftSide), Math.min(sideRight, midSide));
+        if (min == independent) {
+            return CHANNEL_INDEPENDENT;
+        } else if (min == midSide) {
+            return CHANNEL_MID_SIDE;
+        } else if (min == leftSide) {
+            return CHANNEL_LEFT_SIDE;
+        }
+        return CHANNEL_SIDE_RIGHT;
+    }
+
+    private void encodeSubframe(int[] x, int n, int bps) {
+        boolean constant = true;
+        for (int i = 1; i < n; i++) {
+            if (x[i] != x[0]) {
+                constant = false;
+                break;
+            }
+        }
+        if (constant) {
+            writer.writeBits(0, 8);
+            writer.writeSigned(x[0], bps);
+            return;
+        }
+
+        long bestBits = (long) n * bps;
+        bestType = TYPE_VERBATIM;
+
+        for (int order = 0; order <= 4 && order < n; order++) {
+            computeFixedResidual(x, n, order);
+            long bits = order * bps + estimateResidualBits(n, order);
+            if (bits < bestBits) {
+                bestBits = bits;
+                keepCandidate(TYPE_FIXED, order, n);
+            }
+        }
+
+        int lpcOrder = computeLpc(x, n);
+        if (lpcOrder > 0) {
+            int shift = quantizeLpc(lpcOrder);
+            if (shift >= 0) {
+                computeLpcResidual(x, n, lpcOrder, shift);
+                long bits = lpcOrder * bps + 4 + 5 + lpcOrder * LPC_PRECISION + estimateResidualBits(n, lpcOrder);
+                if (bits < bestBits) {
+                    bestBits = bits;
+                    keepCandidate(TYPE_LPC, lpcOrder, n);
+                    bestShift = shift;
+                    System.arraycopy(qlp, 0, bestQlp, 0, lpcOrder);
+                }
+            }
+        }
+
+        switch (bestType) {
+            case TYPE_FIXED:
+                writer.writeBits(0x10 | (bestOrder << 1), 8);
+                for (int i = 0; i < bestOrder; i++) {
+                    writer.writeSigned(x[i], bps);
+                }
+                writeResidual(n, bestOrder);
+                break;
+            case TYPE_LPC:
+                writer.writeBits(0x40 | ((bestOrder - 1) << 1), 8);
+                for (int i = 0; i < bestOrder; i++) {
+                    writer.writeSigned(x[i], bps);
+                }
+                writer.writeBits(LPC_PRECISION - 1, 4);
+                writer.writeSigned(bestShift, 5);
+                for (int i = 0; i < bestOrder; i++) {
+                    writer.writeSigned(bestQlp[i], LPC_PRECISION);
+                }
+                writeResidual(n, bestOrder);
+                break;
+            default:
+                writer.writeBits(0x02, 8);
+                for (int i = 0; i < n; i++) {
+                    writer.writeSigned(x[i], bps);
+                }
+                break;
+        }
+    }
+
+    private void keepCandidate(int type, int order, int n) {
+        bestType = type;
+        bestOrder = order;
+        bestPartitionOrder = candidatePartitionOrder;
+        System.arraycopy(riceParameters, 0, bestRiceParameters, 0, 1 << candidatePartitionOrder);
+        System.arraycopy(residual, 0, bestResidual, 0, n);
+    }
+
+    private void computeFixedResidual(int[] x, int n, int order) {
+        for (int i = 0; i < order; i++) {
+            residual[i] = 0;
+        }
+        switch (order) {
+            case 0:
+                System.arraycopy(x, 0, residual, 0, n);
+                break;
+            case 1:
+                for (int i = 1; i < n; i++) {
+                    residual[i] = x[i] - x[i - 1];
+                }
+                break;
+            case 2:
+                for (int i = 2; i < n; i++) {
+                    residual[i] = x[i] - 2 * x[i - 1] + x[i - 2];
+                }
+                break;
+            case 3:
+                for (int i = 3; i < n; i++) {
+                    residual[i] = x[i] - 3 * x[i - 1] + 3 * x[i - 2] - x[i - 3];
+                }
+                break;
+            default:
+                for (int i = 4; i < n; i++) {
+                    residual[i] = x[i] - 4 * x[i - 1] + 6 * x[i - 2] - 4 * x[i - 3] + x[i - 4];
+                }
+                break;
+        }
+    }
+
+    /**
+     * 自相关 + Levinson-Durbin，返回按误差估计选出的阶数，0 表示不使用LPC
+     */
+    private int computeLpc(int[] x, int n) {
+        int maxOrder = Math.min(MAX_LPC_ORDER, n - 1);
+        if (maxOrder <= 0) {
+            return 0;
+        }
+        for (int i = 0; i < n; i++) {
+            windowed[i] = x[i] * window[i];
+        }
+        for (int lag = 0; lag <= maxOrder; lag++) {
+            double sum = 0;
+            for (int i = lag; i < n; i++) {
+                sum += windowed[i] * windowed[i - lag];
+            }
+            autocorrelation[lag] = sum;
+        }
+        if (autocorrelation[0] == 0) {
+            return 0;
+        }
+
+        double error = autocorrelation[0];
+        double[] previous = null;
+        for (int order = 0; order < maxOrder; order++) {
+            double r = -autocorrelation[order + 1];
+            for (int j = 0; j < order; j++) {
+                r -= previous[j] * autocorrelation[order - j];
+            }
+            r /= error;
+            double[] current = lpc[order];
+            for (int j = 0; j < order; j++) {
+                current[j] = previous[j] + r * previous[order - 1 - j];
+            }
+            current[order] = r;
+            error *= (1 - r * r);
+            lpcError[order] = error;
+            previous = current;
+            if (error <= 0) {
+                maxOrder = order + 1;
+                break;
+            }
+        }
+
+        //按 残差能量估计的每样本比特数 + 系数开销 选择阶数
+        int bestOrder = 0;
+        double bestBits = Double.MAX_VALUE;
+        for (int order = 1; order <= maxOrder; order++) {
+            double err = lpcError[order - 1];
+            double bitsPerSample = err > 0 ? Math.max(0, 0.5 * Math.log(err / n) / Math.log(2)) : 0;
+            double bits = bitsPerSample * (n - order) + order * (LPC_PRECISION + 16);
+            if (bits < bestBits) {
+                bestBits = bits;
+                bestOrder = order;
+            }
+        }
+        return bestOrder;
+    }
+
+    /**
+     * 量化LPC系数（带误差反馈），返回 shift，-1 表示无法量化
+     */
+    private int quantizeLpc(int order) {
+        double[] coefficients = lpc[order - 1];
+        double cmax = 0;
+        for (int i = 0; i < order; i++) {
+            cmax = Math.max(cmax, Math.abs(coefficients[i]));
+        }
+        if (cmax <= 0) {
+            return -1;
+        }
+        int log2cmax = (int) Math.floor(Math.log(cmax) / Math.log(2));
+        int shift = LPC_PRECISION - 2 - log2cmax;
+        if (shift > 15) {
+            shift = 15;
+        } else if (shift < 0) {
+            return -1;
+        }
+        int qmax = (1 << (LPC_PRECISION - 1)) - 1;
+        int qmin = -(1 << (LPC_PRECISION - 1));
+        double errorFeedback = 0;
+        for (int i = 0; i < order; i++) {
+            //Levinson 得到的是 A(z) 的系数，预测系数取反
+            errorFeedback += -coefficients[i] * (1 << shift);
+            int q = (int) Math.round(errorFeedback);
+            q = Math.max(qmin, Math.min(qmax, q));
+            errorFeedback -= q;
+            qlp[i] = q;
+        }
+        return shift;
+    }
+
+    private void computeLpcResidual(int[] x, int n, int order, int shift) {
+        for (int i = 0; i < order; i++) {
+            residual[i] = 0;
+        }
+        for (int i = order; i < n; i++) {
+            long sum = 0;
+            for (int j = 0; j < order; j++) {
+                sum += (long) qlp[j] * x[i - j - 1];
+            }
+            residual[i] = x[i] - (int) (sum >> shift);
+        }
+    }
+
+    /**
+     * 选出最优的分区阶数与各分区 Rice 参数，返回估计的残差比特数
+     */
+    private long estimateResidualBits(int n, int predictorOrder) {
+        int maxPartitionOrder = 0;
+        while (maxPartitionOrder < MAX_PARTITION_ORDER
+                && (n % (1 << (maxPartitionOrder + 1))) == 0
+                && (n >> (maxPartitionOrder + 1)) > predictorOrder) {
+            maxPartitionOrder++;
+        }
+
+        int partitions = 1 << maxPartitionOrder;
+        int partitionSize = n >> maxPartitionOrder;
+        for (int p = 0; p < partitions; p++) {
+            int start = p == 0 ? predictorOrder : p * partitionSize;
+            int end = (p + 1) * partitionSize;
+            long sum = 0;
+            for (int i = start; i < end; i++) {
+                int r = residual[i];
+                sum += (r << 1) ^ (r >> 31);
+            }
+            partitionSums[p] = sum;
+        }
+
+        long bestBits = Long.MAX_VALUE;
+        for (int order = maxPartitionOrder; order >= 0; order--) {
+            int count = 1 << order;
+            if (order < maxPartitionOrder) {
+                for (int p = 0; p < count; p++) {
+                    partitionSums[p] = partitionSums[2 * p] + partitionSums[2 * p + 1];
+                }
+            }
+            long bits = 2 + 4;
+            int size = n >> order;
+            for (int p = 0; p < count; p++) {
+                int samples = p == 0 ? size - predictorOrder : size;
+                int k = riceParameter(partitionSums[p], samples);
+                bits += 4 + (long) samples * (k + 1) + (partitionSums[p] >> k);
+            }
+            if (bits < bestBits) {
+                bestBits = bits;
+                candidatePartitionOrder = order;
+            }
+        }
+        //重新计算选中阶数下的参数
+        int count = 1 << candidatePartitionOrder;
+        int size = n >> candidatePartitionOrder;
+        for (int p = 0; p < count; p++) {
+            int start = p == 0 ? predictorOrder : p * size;
+            int end = (p + 1) * size;
+            long sum = 0;
+            for (int i = start; i < end; i++) {
+                int r = residual[i];
+                sum += (r << 1) ^ (r >> 31);
+            }
+            riceParameters[p] = riceParameter(sum, end - start);
+        }
+        return bestBits;
+    }
+
+    private static int riceParameter(long sum, int samples) {
+        if (samples <= 0 || sum <= samples) {
+            return 0;
+        }
+        long mean = sum / samples;
+        int k = 63 - Long.numberOfLeadingZeros(mean);
+        return Math.min(k, MAX_RICE_PARAMETER);
+    }
+
+    private void writeResidual(int n, int predictorOrder) {
+        writer.writeBits(0, 2);
+        writer.writeBits(bestPartitionOrder, 4);
+        int count = 1 << bestPartitionOrder;
+        int size = n >> bestPartitionOrder;
+        for (int p = 0; p < count; p++) {
+            int k = bestRiceParameters[p];
+            writer.writeBits(k, 4);
+            int start = p == 0 ? predictorOrder : p * size;
+            int end = (p + 1) * size;
+            for (int i = start; i < end; i++) {
+                writer.writeRice(bestResidual[i], k);
+            }
+        }
+    }
+
+    private static int getSampleRateCode(int sampleRate) {
+        switch (sampleRate) {
+            case 88200:
+                return 1;
+            case 176400:
+                return 2;
+            case 192000:
+                return 3;
+            case 8000:
+                return 4;
+            case 16000:
+                return 5;
+            case 22050:
+                return 6;
+            case 24000:
+                return 7;
+            case 32000:
+                return 8;
+            case 44100:
+                return 9;
+            case 48000:
+                return 10;
+            case 96000:
+                return 11;
+            default:
+                //从 STREAMINFO 获取
+                return 0;
+        }
+    }
+}
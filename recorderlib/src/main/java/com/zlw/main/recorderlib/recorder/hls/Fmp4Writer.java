@@ -0,0 +1,307 @@
+package com.zlw.main.recorderlib.recorder.hls;
+
+import java.util.Arrays;
+
+/**
+ * 单音轨 AAC 的 fragmented MP4（ISO/IEC 14496-12）封装
+ * 初始化分片为 ftyp + moov（空样本表 + mvex），媒体分片为 moof + mdat，
+ * 样本时长固定为 1024，由 trex 给出，trun 中只记录每个样本的长度
+ */
+class Fmp4Writer {
+    static final int TRACK_ID = 1;
+    static final int SAMPLES_PER_FRAME = 1024;
+    /**
+     * tfhd: default-base-is-moof
+     */
+    private static final int TFHD_DEFAULT_BASE_IS_MOOF = 0x020000;
+    /**
+     * trun: data-offset-present | sample-size-present
+     */
+    private static final int TRUN_FLAGS = 0x000001 | 0x000200;
+    private static final int[] UNITY_MATRIX = {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+
+    private byte[] data = new byte[1024];
+    private int size;
+    private int[] boxStarts = new int[16];
+    private int depth;
+
+    /**
+     * @param audioSpecificConfig AAC 解码配置（csd-0）
+     */
+    byte[] initSegment(int sampleRate, int channels, byte[] audioSpecificConfig) {
+        size = 0;
+        start("ftyp");
+        fourCC("iso6");
+        u32(0);
+        fourCC("iso6");
+        fourCC("cmfc");
+        fourCC("mp41");
+        end();
+
+        start("moov");
+        start("mvhd");
+        u32(0);
+        u32(0);
+        u32(0);
+        u32(sampleRate);
+        u32(0);
+        u32(0x00010000);
+        u16(0x0100);
+        zeros(10);
+        matrix();
+        zeros(24);
+        u32(TRACK_ID + 1);
+        end();
+
+        start("trak");
+        start("tkhd");
+        //track_enabled | track_in_movie | track_in_preview
+        u32(0x000007);
+        u32(0);
+        u32(0);
+        u32(TRACK_ID);
+        u32(0);
+        u32(0);
+        zeros(8);
+        u16(0);
+        u16(1);
+        u16(0x0100);
+        u16(0);
+        matrix();
+        u32(0);
+        u32(0);
+        end();
+
+        start("mdia");
+        start("mdhd");
+        u32(0);
+        u32(0);
+        u32(0);
+        u32(sampleRate);
+        u32(0);
+        //language: und
+        u16(0x55c4);
+        u16(0);
+        end();
+        start("hdlr");
+        u32(0);
+        u32(0);
+        fourCC("soun");
+        zeros(12);
+        bytes("SoundHandler\0".getBytes());
+        end();
+
+        start("minf");
+        start("smhd");
+        u32(0);
+        u32(0);
+        end();
+        start("dinf");
+        start("dref");
+        u32(0);
+        u32(1);
+        start("url ");
+        //self-contained
+        u32(1);
+        end();
+        end();
+        end();
+
+        start("stbl");
+        start("stsd");
+        u32(0);
+        u32(1);
+        mp4a(sampleRate, channels, audioSpecificConfig);
+        end();
+        emptyTable("stts");
+        emptyTable("stsc");
+        start("stsz");
+        u32(0);
+        u32(0);
+        u32(0);
+        end();
+        emptyTable("stco");
+        end();
+        end();
+        end();
+        end();
+
+        start("mvex");
+        start("trex");
+        u32(0);
+        u32(TRACK_ID);
+        u32(1);
+        u32(SAMPLES_PER_FRAME);
+        u32(0);
+        u32(0);
+        end();
+        end();
+        end();
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * 媒体分片的 moof，其后紧跟 mdat 头和样本数据
+     *
+     * @param sequence           分片序号，从1开始
+     * @param baseMediaDecodeTime 第一个样本的解码时间（采样率为单位）
+     * @param sampleSizes        各样本长度
+     * @param sampleCount        样本数
+     * @param mdatSize           样本数据总长度
+     * @return moof + mdat 头，长度为 {@link #size()}，内部数组在下次调用时复用
+     */
+    byte[] fragmentHeader(int sequence, long baseMediaDecodeTime, int[] sampleSizes, int sampleCount, int mdatSize) {
+        size = 0;
+        start("moof");
+        start("mfhd");
+        u32(0);
+        u32(sequence);
+        end();
+        start("traf");
+        start("tfhd");
+        u32(TFHD_DEFAULT_BASE_IS_MOOF);
+        u32(TRACK_ID);
+        end();
+        start("tfdt");
+        //version 1，64位解码时间
+        u32(0x01000000);
+        u32((int) (baseMediaDecodeTime >>> 32));
+        u32((int) baseMediaDecodeTime);
+        end();
+        start("trun");
+        u32(TRUN_FLAGS);
+        u32(sampleCount);
+        int dataOffsetPos = size;
+        u32(0);
+        for (int i = 0; i < sampleCount; i++) {
+            u32(sampleSizes[i]);
+        }
+        end();
+        end();
+        end();
+        //样本数据从 mdat 头之后开始，偏移相对 moof 起点
+        putU32(dataOffsetPos, size + 8);
+        u32(8 + mdatSize);
+        fourCC("mdat");
+        return data;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void mp4a(int sampleRate, int channels, byte[] asc) {
+        start("mp4a");
+        zeros(6);
+        u16(1);
+        zeros(8);
+        u16(channels);
+        u16(16);
+        u16(0);
+        u16(0);
+        u32(sampleRate <= 0xffff ? sampleRate << 16 : 0);
+
+        start("esds");
+        u32(0);
+        //ES_Descriptor
+        u8(0x03);
+        u8(3 + 2 + 13 + 2 + asc.length + 3);
+        u16(0);
+        u8(0);
+        //DecoderConfigDescriptor：MPEG-4 Audio，音频流
+        u8(0x04);
+        u8(13 + 2 + asc.length);
+        u8(0x40);
+        u8(0x15);
+        u8(0);
+        u16(0);
+        u32(0);
+        u32(0);
+        //DecoderSpecificInfo
+        u8(0x05);
+        u8(asc.length);
+        bytes(asc);
+        //SLConfigDescriptor
+        u8(0x06);
+        u8(1);
+        u8(0x02);
+        end();
+        end();
+    }
+
+    private void emptyTable(String type) {
+        start(type);
+        u32(0);
+        u32(0);
+        end();
+    }
+
+    private void matrix() {
+        for (int value : UNITY_MATRIX) {
+            u32(value);
+        }
+    }
+
+    private void start(String type) {
+        if (depth == boxStarts.length) {
+            boxStarts = Arrays.copyOf(boxStarts, depth * 2);
+        }
+        boxStarts[depth++] = size;
+        u32(0);
+        fourCC(type);
+    }
+
+    private void end() {
+        int start = boxStarts[--depth];
+        putU32(start, size - start);
+    }
+
+    private void ensure(int n) {
+        if (size + n > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, size + n));
+        }
+    }
+
+    private void u8(int value) {
+        ensure(1);
+        data[size++] = (byte) value;
+    }
+
+    private void u16(int value) {
+        ensure(2);
+        data[size++] = (byte) (value >> 8);
+        data[size++] = (byte) value;
+    }
+
+    private void u32(int value) {
+        ensure(4);
+        putU32(size, value);
+        size += 4;
+    }
+
+    private void putU32(int pos, int value) {
+        data[pos] = (byte) (value >> 24);
+        data[pos + 1] = (byte) (value >> 16);
+        data[pos + 2] = (byte) (value >> 8);
+        data[pos + 3] = (byte) value;
+    }
+
+    private void fourCC(String type) {
+        ensure(4);
+        for (int i = 0; i < 4; i++) {
+            data[size++] = (byte) type.charAt(i);
+        }
+    }
+
+    private void zeros(int n) {
+        ensure(n);
+        Arrays.fill(data, size, size + n, (byte) 0);
+        size += n;
+    }
+
+    private void bytes(byte[] value) {
+        ensure(value.length);
+        System.arraycopy(value, 0, data, size, value.length);
+        size += value.length;
+    }
+}
@@ -0,0 +1,65 @@
+package com.zlw.main.recorderlib.recorder.hls;
+
+import java.io.Serializable;
+
+/**
+ * 录音过程中输出 HLS（fMP4 分片 + 滚动播放列表）的配置
+ */
+public class HlsConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 分片和播放列表的输出目录，为空时使用 录音文件路径_hls
+     */
+    private String directory;
+    /**
+     * 分片时长 ms，实际时长按 AAC 帧对齐，略大于该值
+     */
+    private int segmentDurationMs = 4000;
+    /**
+     * 播放列表中保留的分片数，离开播放列表的分片再保留同样数量后删除；0：保留全部分片（EVENT 类型播放列表）
+     */
+    private int playlistSize = 6;
+    private String playlistName = "index.m3u8";
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public HlsConfig setDirectory(String directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    public int getSegmentDurationMs() {
+        return segmentDurationMs;
+    }
+
+    public HlsConfig setSegmentDurationMs(int segmentDurationMs) {
+        this.segmentDurationMs = segmentDurationMs;
+        return this;
+    }
+
+    public int getPlaylistSize() {
+        return playlistSize;
+    }
+
+    public HlsConfig setPlaylistSize(int playlistSize) {
+        this.playlistSize = playlistSize;
+        return this;
+    }
+
+    public String getPlaylistName() {
+        return playlistName;
+    }
+
+    public HlsConfig setPlaylistName(String playlistName) {
+        this.playlistName = playlistName;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HLS 分片：%s ms, 播放列表：%s 个分片", segmentDurationMs, playlistSize);
+    }
+}
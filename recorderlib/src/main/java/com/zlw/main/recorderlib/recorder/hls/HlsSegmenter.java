@@ -0,0 +1,308 @@
+package com.zlw.main.recorderlib.recorder.hls;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 将编码输出的 AAC 帧切分为 fMP4 分片，并维护滚动的 HLS 播放列表（RFC 8216，版本7，EXT-X-MAP）
+ * <p>
+ * 调用线程（编码输出线程）只把去掉 ADTS 头的帧追加到当前分片的内存缓冲；
+ * 分片满时整块交给单独的写出线程，由它写分片文件、更新播放列表并删除过期分片。
+ * 文件均先写临时文件再重命名，本地文件服务器任何时刻读到的播放列表和分片都是完整的
+ * <p>
+ * 输出目录中的 init.mp4、segment_*.m4s 和播放列表在开始时清除
+ */
+public class HlsSegmenter {
+    private static final String TAG = HlsSegmenter.class.getSimpleName();
+    public static final String INIT_NAME = "init.mp4";
+    private static final String SEGMENT_PREFIX = "segment_";
+    private static final String SEGMENT_SUFFIX = ".m4s";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int ADTS_HEADER_SIZE = 7;
+    private static final int ADTS_CRC_SIZE = 2;
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+    private static final int[] SAMPLE_RATES = {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050,
+            16000, 12000, 11025, 8000, 7350};
+
+    private final HlsConfig config;
+    private final File directory;
+    private final File playlistFile;
+    private final ExecutorService writer;
+
+    private int sampleRate;
+    private int segmentFrames;
+    private Segment current;
+    private int nextSequence;
+    private long decodeTime;
+    private boolean closed;
+
+    /**
+     * 仅在写出线程中访问
+     */
+    private final Fmp4Writer fmp4Writer = new Fmp4Writer();
+    private final ArrayDeque<Segment> playlist = new ArrayDeque<>();
+    private final ArrayDeque<Segment> expired = new ArrayDeque<>();
+
+    public HlsSegmenter(HlsConfig config, File directory) {
+        if (config.getSegmentDurationMs() <= 0 || config.getPlaylistSize() < 0) {
+            throw new IllegalArgumentException(String.format("HLS 配置错误: %s", config));
+        }
+        this.config = config;
+        this.directory = directory;
+        this.playlistFile = new File(directory, config.getPlaylistName());
+        this.writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "hls-segment");
+            }
+        });
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                prepareDirectory();
+            }
+        });
+    }
+
+    public File getPlaylistFile() {
+        return playlistFile;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 写入一个带 ADTS 头的 AAC 帧；第一帧的 ADTS 头决定采样率、声道数和初始化分片
+     */
+    public void writeAdts(byte[] packet, int len) {
+        if (closed || len < ADTS_HEADER_SIZE || (packet[0] & 0xff) != 0xff || (packet[1] & 0xf0) != 0xf0) {
+            return;
+        }
+        if (current == null) {
+            if (!startStream(packet)) {
+                return;
+            }
+        }
+        int headerSize = (packet[1] & 0x01) == 0 ? ADTS_HEADER_SIZE + ADTS_CRC_SIZE : ADTS_HEADER_SIZE;
+        current.append(packet, headerSize, len - headerSize);
+        if (current.frames >= segmentFrames) {
+            cutSegment();
+        }
+    }
+
+    /**
+     * 输出剩余的分片，播放列表加上 EXT-X-ENDLIST，等待写出线程完成
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (current != null && current.frames > 0) {
+            cutSegment();
+        }
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                writePlaylist(true);
+            }
+        });
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                Logger.w(TAG, "HLS 分片写出超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean startStream(byte[] adts) {
+        int profile = (adts[2] & 0xff) >> 6;
+        int rateIndex = (adts[2] >> 2) & 0x0f;
+        int channels = ((adts[2] & 0x01) << 2) | ((adts[3] & 0xff) >> 6);
+        if (rateIndex >= SAMPLE_RATES.length || channels == 0) {
+            Logger.w(TAG, "不支持的 ADTS 参数：rateIndex=%s, channels=%s", rateIndex, channels);
+            closed = true;
+            return false;
+        }
+        sampleRate = SAMPLE_RATES[rateIndex];
+        segmentFrames = (int) Math.max(1, (long) config.getSegmentDurationMs() * sampleRate / 1000 / Fmp4Writer.SAMPLES_PER_FRAME);
+        //AudioSpecificConfig：audioObjectType(5) samplingFrequencyIndex(4) channelConfiguration(4) 000
+        final byte[] asc = {
+                (byte) (((profile + 1) << 3) | (rateIndex >> 1)),
+                (byte) (((rateIndex & 1) << 7) | (channels << 3))
+        };
+        final int rate = sampleRate;
+        final int channelCount = channels;
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    byte[] init = fmp4Writer.initSegment(rate, channelCount, asc);
+                    writeAtomically(new File(directory, INIT_NAME), init, init.length, null, 0);
+                } catch (IOException e) {
+                    Logger.e(e, TAG, "HLS 初始化分片写入失败：%s", e.getMessage());
+                }
+            }
+        });
+        current = new Segment(nextSequence, decodeTime);
+        return true;
+    }
+
+    /**
+     * 结束当前分片，交给写出线程
+     */
+    private void cutSegment() {
+        final Segment segment = current;
+        decodeTime += (long) segment.frames * Fmp4Writer.SAMPLES_PER_FRAME;
+        nextSequence++;
+        current = new Segment(nextSequence, decodeTime);
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                writeSegment(segment);
+            }
+        });
+    }
+
+    private void prepareDirectory() {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Logger.e(TAG, "HLS 目录创建失败：%s", directory.getAbsolutePath());
+            return;
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.equals(INIT_NAME) || name.equals(playlistFile.getName())
+                    || (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))) {
+                file.delete();
+            }
+        }
+    }
+
+    private void writeSegment(Segment segment) {
+        byte[] header = fmp4Writer.fragmentHeader(segment.sequence + 1, segment.decodeTime,
+                segment.sampleSizes, segment.frames, segment.size);
+        try {
+            writeAtomically(segment.file(directory), header, fmp4Writer.size(), segment.data, segment.size);
+        } catch (IOException e) {
+            Logger.e(e, TAG, "HLS 分片写入失败：%s", e.getMessage());
+            return;
+        }
+        //只保留写出后需要的信息
+        segment.data = null;
+        segment.sampleSizes = null;
+        playlist.addLast(segment);
+        int playlistSize = config.getPlaylistSize();
+        if (playlistSize > 0) {
+            while (playlist.size() > playlistSize) {
+                expired.addLast(playlist.removeFirst());
+            }
+            //离开播放列表的分片可能仍在被播放器下载，再保留一个播放列表长度
+            while (expired.size() > playlistSize) {
+                expired.removeFirst().file(directory).delete();
+            }
+        }
+        writePlaylist(false);
+    }
+
+    private void writePlaylist(boolean ended) {
+        if (playlist.isEmpty()) {
+            return;
+        }
+        StringBuilder builder = new StringBuilder(256 + playlist.size() * 48);
+        builder.append("#EXTM3U\n#EXT-X-VERSION:7\n");
+        builder.append("#EXT-X-TARGETDURATION:").append((config.getSegmentDurationMs() + 999) / 1000).append('\n');
+        builder.append("#EXT-X-MEDIA-SEQUENCE:").append(playlist.peekFirst().sequence).append('\n');
+        if (config.getPlaylistSize() == 0) {
+            builder.append("#EXT-X-PLAYLIST-TYPE:EVENT\n");
+        }
+        builder.append("#EXT-X-INDEPENDENT-SEGMENTS\n");
+        builder.append("#EXT-X-MAP:URI=\"").append(INIT_NAME).append("\"\n");
+        for (Segment segment : playlist) {
+            double seconds = (double) segment.frames * Fmp4Writer.SAMPLES_PER_FRAME / sampleRate;
+            builder.append(String.format(Locale.US, "#EXTINF:%.3f,\n", seconds));
+            builder.append(segment.name()).append('\n');
+        }
+        if (ended) {
+            builder.append("#EXT-X-ENDLIST\n");
+        }
+        try {
+            byte[] bytes = builder.toString().getBytes("UTF-8");
+            writeAtomically(playlistFile, bytes, bytes.length, null, 0);
+        } catch (IOException e) {
+            Logger.e(e, TAG, "HLS 播放列表写入失败：%s", e.getMessage());
+        }
+    }
+
+    /**
+     * 写入临时文件后重命名
+     *
+     * @param body 可为 null
+     */
+    private static void writeAtomically(File file, byte[] header, int headerLen, byte[] body, int bodyLen) throws IOException {
+        File tmp = new File(file.getAbsolutePath() + TMP_SUFFIX);
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(header, 0, headerLen);
+            if (body != null) {
+                out.write(body, 0, bodyLen);
+            }
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            throw new IOException("重命名失败: " + file.getAbsolutePath());
+        }
+    }
+
+    private static class Segment {
+        private final int sequence;
+        private final long decodeTime;
+        private byte[] data = new byte[16 * 1024];
+        private int[] sampleSizes = new int[256];
+        private int size;
+        private int frames;
+
+        Segment(int sequence, long decodeTime) {
+            this.sequence = sequence;
+            this.decodeTime = decodeTime;
+        }
+
+        void append(byte[] au, int offset, int len) {
+            if (size + len > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + len));
+            }
+            if (frames == sampleSizes.length) {
+                sampleSizes = Arrays.copyOf(sampleSizes, frames * 2);
+            }
+            System.arraycopy(au, offset, data, size, len);
+            size += len;
+            sampleSizes[frames++] = len;
+        }
+
+        String name() {
+            return SEGMENT_PREFIX + sequence + SEGMENT_SUFFIX;
+        }
+
+        File file(File directory) {
+            return new File(directory, name());
+        }
+    }
+}
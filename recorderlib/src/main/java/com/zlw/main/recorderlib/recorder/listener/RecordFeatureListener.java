@@ -0,0 +1,17 @@
+package com.zlw.main.recorderlib.recorder.listener;
+
+/**
+ * log-mel / MFCC 特征回调，按 {@link com.zlw.main.recorderlib.recorder.feature.FeatureConfig#setPublishIntervalMs(int)} 的间隔在主线程回调
+ */
+public interface RecordFeatureListener {
+
+    /**
+     * 两个数组在每次回调中复用，如需保留请自行拷贝
+     *
+     * @param firstFrame 第一帧的序号，乘以帧移即为在采集时间轴上的起始时间
+     * @param frameCount 本次的帧数
+     * @param logMel     按帧依次存放，每帧 melBands 个自然对数能量
+     * @param mfcc       按帧依次存放，每帧 mfccCount 个系数
+     */
+    void onFeatures(long firstFrame, int frameCount, float[] logMel, float[] mfcc);
+}
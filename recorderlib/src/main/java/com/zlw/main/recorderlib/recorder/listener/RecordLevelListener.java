@@ -0,0 +1,15 @@
+package com.zlw.main.recorderlib.recorder.listener;
+
+/**
+ * 录音电平回调，按 {@link com.zlw.main.recorderlib.recorder.RecordConfig#setLevelIntervalMs(int)} 的间隔在主线程回调
+ */
+public interface RecordLevelListener {
+
+    /**
+     * @param peakDbfs  峰值 dBFS，无声时为 -96
+     * @param rmsDbfs   RMS dBFS
+     * @param clipCount 该周期内削波的样本数
+     * @param dcOffset  直流偏移，相对满幅 -1~1
+     */
+    void onLevel(float peakDbfs, float rmsDbfs, int clipCount, float dcOffset);
+}
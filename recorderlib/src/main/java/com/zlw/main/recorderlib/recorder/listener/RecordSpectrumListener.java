@@ -0,0 +1,15 @@
+package com.zlw.main.recorderlib.recorder.listener;
+
+/**
+ * 实时频谱回调，按 {@link com.zlw.main.recorderlib.recorder.dsp.SpectrumConfig#setPublishIntervalMs(int)} 的间隔在主线程回调
+ */
+public interface RecordSpectrumListener {
+
+    /**
+     * 两个数组在每次回调中复用，如需保留请自行拷贝
+     *
+     * @param bandDbfs    各频带的幅度 dBFS，满幅正弦波所在频带为 0，无声时为 -120
+     * @param bandEdgesHz 频带边界 Hz，长度为频带个数+1，第 i 个频带为 [bandEdgesHz[i], bandEdgesHz[i+1])
+     */
+    void onSpectrum(float[] bandDbfs, float[] bandEdgesHz);
+}
@@ -0,0 +1,61 @@
+package com.zlw.main.recorderlib.recorder.loudness;
+
+/**
+ * ITU-R BS.1770 K 计权滤波：高频搁架 + RLB 高通两级双二阶，系数按采样率由模拟原型换算
+ */
+class KWeightingFilter {
+    private final double b0;
+    private final double b1;
+    private final double b2;
+    private final double a1;
+    private final double a2;
+    private final double hb0;
+    private final double hb1;
+    private final double hb2;
+    private final double ha1;
+    private final double ha2;
+
+    private double x1;
+    private double x2;
+    private double y1;
+    private double y2;
+    private double z1;
+    private double z2;
+
+    KWeightingFilter(int sampleRate) {
+        double f0 = 1681.974450955533;
+        double gain = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / sampleRate);
+        double vh = Math.pow(10, gain / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        b0 = (vh + vb * k / q + k * k) / a0;
+        b1 = 2 * (k * k - vh) / a0;
+        b2 = (vh - vb * k / q + k * k) / a0;
+        a1 = 2 * (k * k - 1) / a0;
+        a2 = (1 - k / q + k * k) / a0;
+
+        f0 = 38.13547087602444;
+        q = 0.5003270373238773;
+        k = Math.tan(Math.PI * f0 / sampleRate);
+        double h0 = 1 + k / q + k * k;
+        hb0 = 1;
+        hb1 = -2;
+        hb2 = 1;
+        ha1 = 2 * (k * k - 1) / h0;
+        ha2 = (1 - k / q + k * k) / h0;
+    }
+
+    double process(double x) {
+        double y = b0 * x + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2;
+        x2 = x1;
+        x1 = x;
+        double z = hb0 * y + hb1 * y1 + hb2 * y2 - ha1 * z1 - ha2 * z2;
+        y2 = y1;
+        y1 = y;
+        z2 = z1;
+        z1 = z;
+        return z;
+    }
+}
@@ -0,0 +1,64 @@
+package com.zlw.main.recorderlib.recorder.loudness;
+
+/**
+ * 400ms 测量块的响度直方图，0.1 LU 一格，每格记录块数与能量和
+ * 内存固定，与文件时长无关；相对门限所在的格整体计入，误差不超过 0.1 LU
+ */
+class LoudnessHistogram {
+    static final double ABSOLUTE_GATE = -70;
+    private static final double RELATIVE_GATE = -10;
+    private static final double MAX_LOUDNESS = 10;
+    private static final double BIN_WIDTH = 0.1;
+    private static final int BINS = (int) Math.round((MAX_LOUDNESS - ABSOLUTE_GATE) / BIN_WIDTH);
+
+    private final long[] counts = new long[BINS];
+    private final double[] energies = new double[BINS];
+
+    static double toLoudness(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    void add(double energy) {
+        if (energy <= 0) {
+            return;
+        }
+        double loudness = toLoudness(energy);
+        if (loudness <= ABSOLUTE_GATE) {
+            return;
+        }
+        int bin = Math.min(BINS - 1, (int) ((loudness - ABSOLUTE_GATE) / BIN_WIDTH));
+        counts[bin]++;
+        energies[bin] += energy;
+    }
+
+    void merge(LoudnessHistogram other) {
+        for (int i = 0; i < BINS; i++) {
+            counts[i] += other.counts[i];
+            energies[i] += other.energies[i];
+        }
+    }
+
+    /**
+     * @return 门限后的综合响度 LUFS，没有有效块时为 {@link Double#NEGATIVE_INFINITY}
+     */
+    double integratedLoudness() {
+        double energy = 0;
+        long count = 0;
+        for (int i = 0; i < BINS; i++) {
+            energy += energies[i];
+            count += counts[i];
+        }
+        if (count == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double relativeGate = toLoudness(energy / count) + RELATIVE_GATE;
+        int first = Math.max(0, (int) ((relativeGate - ABSOLUTE_GATE) / BIN_WIDTH));
+        energy = 0;
+        count = 0;
+        for (int i = first; i < BINS; i++) {
+            energy += energies[i];
+            count += counts[i];
+        }
+        return count == 0 ? Double.NEGATIVE_INFINITY : toLoudness(energy / count);
+    }
+}
@@ -0,0 +1,357 @@
+package com.zlw.main.recorderlib.recorder.loudness;
+
+import com.zlw.main.recorderlib.recorder.wav.PcmFileInfo;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 已完成的 WAV/PCM 录音的响度归一（EBU R128）
+ * <p>
+ * 第一遍：按 100ms 子块对齐切分文件，多个线程各自以内存映射窗口顺序读取自己的分段，
+ * K 计权后按 400ms 块、75% 重叠计算能量并计入固定大小的响度直方图，合并后做绝对/相对门限得到综合响度；
+ * 分段起点前多读一段数据用于滤波器预热，分段末尾多读 3 个子块以补齐跨段的测量块
+ * <p>
+ * 第二遍：按同样的分段并行地原地乘以增益（输出到新文件时先整体拷贝再原地处理）
+ * <p>
+ * 映射窗口大小固定，内存占用与文件大小无关，可处理数 GB 的文件；仅支持16bit，方法会阻塞，需在后台线程中调用
+ */
+public class LoudnessNormalizer {
+    private static final String TAG = LoudnessNormalizer.class.getSimpleName();
+    /**
+     * 每次映射的字节数
+     */
+    private static final int WINDOW_BYTES = 8 * 1024 * 1024;
+    private static final int SUB_BLOCKS_PER_BLOCK = 4;
+    /**
+     * 分段起点前用于滤波器预热的子块数（500ms）
+     */
+    private static final int WARM_UP_SUB_BLOCKS = 5;
+    /**
+     * 每个分段至少包含的子块数，避免预热开销占比过大
+     */
+    private static final int MIN_SUB_BLOCKS_PER_CHUNK = 600;
+
+    private double targetLufs = -23;
+    private double maxPeakDbfs = -1;
+    private int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * 目标响度，默认 -23 LUFS（EBU R128），播客等场景常用 -16
+     */
+    public LoudnessNormalizer setTargetLufs(double targetLufs) {
+        this.targetLufs = targetLufs;
+        return this;
+    }
+
+    /**
+     * 归一后的样本峰值上限 dBFS，增益会被限制以避免削波
+     */
+    public LoudnessNormalizer setMaxPeakDbfs(double maxPeakDbfs) {
+        this.maxPeakDbfs = maxPeakDbfs;
+        return this;
+    }
+
+    public LoudnessNormalizer setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+        return this;
+    }
+
+    /**
+     * 测量 WAV 文件的响度，不修改文件
+     */
+    public LoudnessResult measureWav(File wav) throws IOException {
+        return measure(wav, PcmFileInfo.ofWav(wav));
+    }
+
+    /**
+     * 测量16bit小端 PCM 文件的响度，不修改文件
+     */
+    public LoudnessResult measurePcm(File pcm, int sampleRate, int channels) throws IOException {
+        return measure(pcm, PcmFileInfo.ofPcm(pcm, sampleRate, channels));
+    }
+
+    /**
+     * 归一 WAV 文件
+     *
+     * @param out 输出文件，null 或与 in 相同时原地修改
+     */
+    public LoudnessResult normalizeWav(File in, File out) throws IOException {
+        File target = prepareTarget(in, out);
+        return normalize(target, PcmFileInfo.ofWav(target));
+    }
+
+    /**
+     * 归一16bit小端 PCM 文件
+     *
+     * @param out 输出文件，null 或与 in 相同时原地修改
+     */
+    public LoudnessResult normalizePcm(File in, File out, int sampleRate, int channels) throws IOException {
+        File target = prepareTarget(in, out);
+        return normalize(target, PcmFileInfo.ofPcm(target, sampleRate, channels));
+    }
+
+    private LoudnessResult normalize(File file, PcmFileInfo info) throws IOException {
+        LoudnessResult measured = measure(file, info);
+        if (measured.getGainDb() != 0) {
+            applyGain(file, info, Math.pow(10, measured.getGainDb() / 20));
+        }
+        Logger.i(TAG, "响度归一 %s: %s", file.getName(), measured);
+        return measured;
+    }
+
+    private static File prepareTarget(File in, File out) throws IOException {
+        if (out == null || out.getAbsoluteFile().equals(in.getAbsoluteFile())) {
+            return in;
+        }
+        FileChannel src = new FileInputStream(in).getChannel();
+        try {
+            FileChannel dst = new FileOutputStream(out).getChannel();
+            try {
+                long size = src.size();
+                long position = 0;
+                while (position < size) {
+                    position += src.transferTo(position, size - position, dst);
+                }
+            } finally {
+                dst.close();
+            }
+        } finally {
+            src.close();
+        }
+        return out;
+    }
+
+    private LoudnessResult measure(File file, PcmFileInfo info) throws IOException {
+        if (info.getBitsPerSample() != 16 || info.getChannels() <= 0 || info.getSampleRate() <= 0) {
+            throw new IOException("仅支持16bit PCM: " + info);
+        }
+        Logger.TimeCalculator timeCalculator = new Logger.TimeCalculator();
+        final int subBlockFrames = Math.round(info.getSampleRate() * 0.1f);
+        long totalFrames = info.getFrames();
+        long totalSubBlocks = totalFrames / subBlockFrames;
+        long blockCount = totalSubBlocks - SUB_BLOCKS_PER_BLOCK + 1;
+
+        final LoudnessHistogram histogram = new LoudnessHistogram();
+        int peak = 0;
+        if (blockCount > 0) {
+            List<MeasureTask> tasks = new ArrayList<>();
+            long perChunk = Math.max(MIN_SUB_BLOCKS_PER_CHUNK, (blockCount + threads * 4 - 1) / (threads * 4));
+            for (long first = 0; first < blockCount; first += perChunk) {
+                tasks.add(new MeasureTask(file, info, subBlockFrames, first, Math.min(blockCount, first + perChunk)));
+            }
+            for (MeasureTask task : runAll(tasks)) {
+                histogram.merge(task.histogram);
+                peak = Math.max(peak, task.peak);
+            }
+        }
+
+        double integrated = histogram.integratedLoudness();
+        double peakDb = peak > 0 ? 20 * Math.log10(peak / 32768.0) : Double.NEGATIVE_INFINITY;
+        double gainDb = 0;
+        boolean limited = false;
+        if (!Double.isInfinite(integrated)) {
+            gainDb = targetLufs - integrated;
+            if (peak > 0 && peakDb + gainDb > maxPeakDbfs) {
+                gainDb = maxPeakDbfs - peakDb;
+                limited = true;
+            }
+        }
+        Logger.d(TAG, "响度测量耗时：%s ms，%s", timeCalculator.end(), info);
+        return new LoudnessResult(integrated, peakDb, gainDb, limited, totalFrames * 1000 / info.getSampleRate());
+    }
+
+    private void applyGain(File file, PcmFileInfo info, double gain) throws IOException {
+        List<GainTask> tasks = new ArrayList<>();
+        long frameBytes = info.getFrameBytes();
+        long chunkBytes = Math.max(WINDOW_BYTES / frameBytes, info.getFrames() / (threads * 4) + 1) * frameBytes;
+        long dataLength = info.getFrames() * frameBytes;
+        for (long start = 0; start < dataLength; start += chunkBytes) {
+            tasks.add(new GainTask(file, info.getDataOffset() + start, Math.min(chunkBytes, dataLength - start), (float) gain));
+        }
+        runAll(tasks);
+    }
+
+    private <T extends Callable<Void>> List<T> runAll(List<T> tasks) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, tasks.size())));
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (T task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            return tasks;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("响度处理被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 按固定大小的窗口依次映射 [start, end) 范围的数据
+     */
+    private abstract static class WindowedTask implements Callable<Void> {
+        private final File file;
+        private final boolean writable;
+
+        WindowedTask(File file, boolean writable) {
+            this.file = file;
+            this.writable = writable;
+        }
+
+        void forEachWindow(long start, long end, int frameBytes) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                int windowBytes = WINDOW_BYTES / frameBytes * frameBytes;
+                for (long position = start; position < end; position += windowBytes) {
+                    int size = (int) Math.min(windowBytes, end - position);
+                    MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                            position, size);
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    onWindow(buffer, size);
+                    if (writable) {
+                        buffer.force();
+                    }
+                }
+            } finally {
+                raf.close();
+            }
+        }
+
+        abstract void onWindow(MappedByteBuffer buffer, int size);
+    }
+
+    /**
+     * 测量 [firstBlock, endBlock) 范围内起始的测量块
+     */
+    private static class MeasureTask extends WindowedTask {
+        private final PcmFileInfo info;
+        private final int subBlockFrames;
+        private final long firstBlock;
+        private final long endBlock;
+        final LoudnessHistogram histogram = new LoudnessHistogram();
+        int peak;
+
+        private KWeightingFilter[] filters;
+        private final double[] subEnergies = new double[SUB_BLOCKS_PER_BLOCK];
+        private long subBlockIndex;
+        private int subFrames;
+        private double subEnergy;
+
+        MeasureTask(File file, PcmFileInfo info, int subBlockFrames, long firstBlock, long endBlock) {
+            super(file, false);
+            this.info = info;
+            this.subBlockFrames = subBlockFrames;
+            this.firstBlock = firstBlock;
+            this.endBlock = endBlock;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            filters = new KWeightingFilter[info.getChannels()];
+            for (int c = 0; c < info.getChannels(); c++) {
+                filters[c] = new KWeightingFilter(info.getSampleRate());
+            }
+            long startSubBlock = Math.max(0, firstBlock - WARM_UP_SUB_BLOCKS);
+            long endFrame = (endBlock + SUB_BLOCKS_PER_BLOCK - 1) * subBlockFrames;
+            if (endFrame + subBlockFrames > info.getFrames()) {
+                //最后一段读到文件末尾，不足一个子块的数据只参与峰值统计
+                endFrame = info.getFrames();
+            }
+            subBlockIndex = startSubBlock;
+            int frameBytes = info.getFrameBytes();
+            forEachWindow(info.getDataOffset() + startSubBlock * subBlockFrames * frameBytes,
+                    info.getDataOffset() + endFrame * frameBytes, frameBytes);
+            return null;
+        }
+
+        @Override
+        void onWindow(MappedByteBuffer buffer, int size) {
+            int channels = info.getChannels();
+            int frames = size / (channels * 2);
+            int index = 0;
+            for (int f = 0; f < frames; f++) {
+                for (int c = 0; c < channels; c++) {
+                    short sample = buffer.getShort(index);
+                    index += 2;
+                    int abs = Math.abs(sample);
+                    if (abs > peak) {
+                        peak = abs;
+                    }
+                    double y = filters[c].process(sample / 32768.0);
+                    subEnergy += y * y;
+                }
+                if (++subFrames == subBlockFrames) {
+                    onSubBlock();
+                }
+            }
+        }
+
+        private void onSubBlock() {
+            subEnergies[(int) (subBlockIndex % SUB_BLOCKS_PER_BLOCK)] = subEnergy / subBlockFrames;
+            long block = subBlockIndex - SUB_BLOCKS_PER_BLOCK + 1;
+            //预热阶段的子块只用于滤波器稳定，不计入
+            if (block >= firstBlock && block < endBlock) {
+                double energy = 0;
+                for (double e : subEnergies) {
+                    energy += e;
+                }
+                histogram.add(energy / SUB_BLOCKS_PER_BLOCK);
+            }
+            subBlockIndex++;
+            subFrames = 0;
+            subEnergy = 0;
+        }
+    }
+
+    private static class GainTask extends WindowedTask {
+        private final long start;
+        private final long length;
+        private final float gain;
+
+        GainTask(File file, long start, long length, float gain) {
+            super(file, true);
+            this.start = start;
+            this.length = length;
+            this.gain = gain;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            forEachWindow(start, start + length, 2);
+            return null;
+        }
+
+        @Override
+        void onWindow(MappedByteBuffer buffer, int size) {
+            for (int index = 0; index + 1 < size; index += 2) {
+                int value = Math.round(buffer.getShort(index) * gain);
+                buffer.putShort(index, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value)));
+            }
+        }
+    }
+}
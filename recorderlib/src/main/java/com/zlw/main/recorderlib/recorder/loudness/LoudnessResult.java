@@ -0,0 +1,60 @@
+package com.zlw.main.recorderlib.recorder.loudness;
+
+import java.util.Locale;
+
+/**
+ * 响度测量/归一结果
+ */
+public class LoudnessResult {
+    private final double integratedLufs;
+    private final double samplePeakDbfs;
+    private final double gainDb;
+    private final boolean peakLimited;
+    private final long durationMs;
+
+    LoudnessResult(double integratedLufs, double samplePeakDbfs, double gainDb, boolean peakLimited, long durationMs) {
+        this.integratedLufs = integratedLufs;
+        this.samplePeakDbfs = samplePeakDbfs;
+        this.gainDb = gainDb;
+        this.peakLimited = peakLimited;
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * 综合响度 LUFS（EBU R128 / ITU-R BS.1770），全静音时为负无穷
+     */
+    public double getIntegratedLufs() {
+        return integratedLufs;
+    }
+
+    /**
+     * 样本峰值 dBFS
+     */
+    public double getSamplePeakDbfs() {
+        return samplePeakDbfs;
+    }
+
+    /**
+     * 达到目标响度所需（或已施加）的增益 dB
+     */
+    public double getGainDb() {
+        return gainDb;
+    }
+
+    /**
+     * 增益是否因峰值上限被压低，此时结果响度低于目标
+     */
+    public boolean isPeakLimited() {
+        return peakLimited;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%.1f LUFS, peak %.1f dBFS, gain %.2f dB%s, %s ms",
+                integratedLufs, samplePeakDbfs, gainDb, peakLimited ? " (peak limited)" : "", durationMs);
+    }
+}
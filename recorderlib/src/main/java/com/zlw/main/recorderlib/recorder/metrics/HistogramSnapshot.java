@@ -0,0 +1,53 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import java.util.Locale;
+
+/**
+ * {@link LatencyHistogram} 某一时刻的统计，单位 μs
+ */
+public class HistogramSnapshot {
+    private final long count;
+    private final long mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long max;
+
+    HistogramSnapshot(long count, long mean, long p50, long p90, long p99, long max) {
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p90 = p90;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMean() {
+        return mean;
+    }
+
+    public long getP50() {
+        return p50;
+    }
+
+    public long getP90() {
+        return p90;
+    }
+
+    public long getP99() {
+        return p99;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "n=%d mean=%dus p50=%dus p90=%dus p99=%dus max=%dus", count, mean, p50, p90, p99, max);
+    }
+}
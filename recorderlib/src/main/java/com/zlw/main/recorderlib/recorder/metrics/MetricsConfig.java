@@ -0,0 +1,44 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import java.io.Serializable;
+
+/**
+ * 录音过程中定期将运行统计写入文件的配置
+ */
+public class MetricsConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 统计文件路径，每次写入覆盖上一次的内容，录音结束时写入最终结果
+     */
+    private final String dumpFile;
+    /**
+     * 写入间隔 ms
+     */
+    private int dumpIntervalMs = 5000;
+
+    public MetricsConfig(String dumpFile) {
+        if (dumpFile == null || dumpFile.isEmpty()) {
+            throw new IllegalArgumentException("统计文件路径不能为空");
+        }
+        this.dumpFile = dumpFile;
+    }
+
+    public String getDumpFile() {
+        return dumpFile;
+    }
+
+    public int getDumpIntervalMs() {
+        return dumpIntervalMs;
+    }
+
+    public MetricsConfig setDumpIntervalMs(int dumpIntervalMs) {
+        this.dumpIntervalMs = dumpIntervalMs;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("运行统计：%s, 间隔 %s ms", dumpFile, dumpIntervalMs);
+    }
+}
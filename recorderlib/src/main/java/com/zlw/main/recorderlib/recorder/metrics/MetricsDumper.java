@@ -0,0 +1,106 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按 {@link MetricsConfig} 定期将 {@link RecordMetrics} 的快照写入文件，先写临时文件再重命名，读取方不会看到写了一半的内容
+ */
+public class MetricsDumper {
+    private static final String TAG = MetricsDumper.class.getSimpleName();
+
+    private final MetricsConfig config;
+    private final RecordMetrics metrics;
+    private final String title;
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param title 写在文件开头，如录音配置
+     */
+    public MetricsDumper(MetricsConfig config, RecordMetrics metrics, String title) {
+        this.config = config;
+        this.metrics = metrics;
+        this.title = title;
+    }
+
+    public synchronized void start() {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "record-metrics");
+            }
+        });
+        long interval = Math.max(100, config.getDumpIntervalMs());
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                dump();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 停止定期写入，并写入最终结果
+     */
+    public void stop() {
+        ScheduledExecutorService e;
+        synchronized (this) {
+            e = executor;
+            executor = null;
+        }
+        if (e != null) {
+            e.shutdown();
+            try {
+                e.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        dump();
+    }
+
+    synchronized void dump() {
+        File file = new File(config.getDumpFile());
+        File tmp = new File(file.getAbsolutePath() + ".tmp");
+        String time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US).format(new Date());
+        String content = String.format(Locale.US, "%s%n%s%n%s", time, title, metrics.snapshot());
+        OutputStream os = null;
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            if (dir != null && !dir.exists() && !dir.mkdirs()) {
+                throw new IOException("无法创建目录: " + dir);
+            }
+            os = new FileOutputStream(tmp);
+            os.write(content.getBytes("UTF-8"));
+            os.close();
+            os = null;
+            if (!tmp.renameTo(file)) {
+                throw new IOException("重命名失败: " + file);
+            }
+        } catch (IOException e) {
+            Logger.e(e, TAG, "写入运行统计失败：%s", e.getMessage());
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (IOException e) {
+                    Logger.w(TAG, e.getMessage());
+                }
+            }
+        }
+    }
+}
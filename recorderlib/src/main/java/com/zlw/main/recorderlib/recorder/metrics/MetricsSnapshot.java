@@ -0,0 +1,117 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * {@link RecordMetrics} 某一时刻的统计，toString 为多行文本，可直接附在问题报告中
+ */
+public class MetricsSnapshot {
+    private final long elapsedMs;
+    private final HistogramSnapshot captureRead;
+    private final long overruns;
+    private final long readErrors;
+    private final Map<String, HistogramSnapshot> stages;
+    private final List<QueueStats> queues;
+    private final HistogramSnapshot encode;
+    private final float realtimeFactor;
+    private final HistogramSnapshot write;
+
+    MetricsSnapshot(long elapsedMs, HistogramSnapshot captureRead, long overruns, long readErrors,
+                    Map<String, HistogramSnapshot> stages, List<QueueStats> queues, HistogramSnapshot encode,
+                    float realtimeFactor, HistogramSnapshot write) {
+        this.elapsedMs = elapsedMs;
+        this.captureRead = captureRead;
+        this.overruns = overruns;
+        this.readErrors = readErrors;
+        this.stages = stages;
+        this.queues = queues;
+        this.encode = encode;
+        this.realtimeFactor = realtimeFactor;
+        this.write = write;
+    }
+
+    /**
+     * @return 从录音开始到统计时的时长 ms
+     */
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public HistogramSnapshot getCaptureRead() {
+        return captureRead;
+    }
+
+    /**
+     * @return 估计的 AudioRecord 溢出（丢失采集数据）次数
+     */
+    public long getOverruns() {
+        return overruns;
+    }
+
+    public long getReadErrors() {
+        return readErrors;
+    }
+
+    /**
+     * @return 流水线各环节处理一块数据的耗时，按处理顺序
+     */
+    public Map<String, HistogramSnapshot> getStages() {
+        return stages;
+    }
+
+    /**
+     * @return 编码器输入队列和流水线异步环节队列的统计
+     */
+    public List<QueueStats> getQueues() {
+        return queues;
+    }
+
+    /**
+     * @return 编码一块数据的耗时
+     */
+    public HistogramSnapshot getEncode() {
+        return encode;
+    }
+
+    /**
+     * @return 编码耗时 / 音频时长，大于1时编码跟不上实时；0：没有编码数据
+     */
+    public float getRealtimeFactor() {
+        return realtimeFactor;
+    }
+
+    public HistogramSnapshot getWrite() {
+        return write;
+    }
+
+    /**
+     * @return 所有队列因积压丢弃的数量之和
+     */
+    public long getDroppedFrames() {
+        long dropped = 0;
+        for (QueueStats queue : queues) {
+            dropped += queue.getDropped();
+        }
+        return dropped;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "elapsed: %d ms%n", elapsedMs));
+        builder.append(String.format(Locale.US, "capture read: %s%n", captureRead));
+        builder.append(String.format(Locale.US, "overruns: %d, read errors: %d, dropped frames: %d%n",
+                overruns, readErrors, getDroppedFrames()));
+        for (Map.Entry<String, HistogramSnapshot> entry : stages.entrySet()) {
+            builder.append(String.format(Locale.US, "stage %s: %s%n", entry.getKey(), entry.getValue()));
+        }
+        for (QueueStats queue : queues) {
+            builder.append(String.format(Locale.US, "queue %s: %s%n", queue.getName(), queue));
+        }
+        builder.append(String.format(Locale.US, "encode: %s, realtime factor: %.3f%n", encode, realtimeFactor));
+        builder.append(String.format(Locale.US, "write: %s%n", write));
+        return builder.toString();
+    }
+}
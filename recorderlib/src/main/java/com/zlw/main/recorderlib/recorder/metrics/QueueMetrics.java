@@ -0,0 +1,51 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一个生产者-消费者队列的统计：深度、等待时间和因积压丢弃的数量，可在多个线程中同时记录
+ */
+public class QueueMetrics {
+    private final String name;
+    private final LatencyHistogram wait = new LatencyHistogram();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+
+    QueueMetrics(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param depth 入队后的队列深度
+     */
+    public void onEnqueue(int depth) {
+        this.depth.set(depth);
+        int max;
+        do {
+            max = maxDepth.get();
+        } while (depth > max && !maxDepth.compareAndSet(max, depth));
+    }
+
+    /**
+     * @param waitNanos 在队列中等待的时间
+     * @param depth     出队后的队列深度
+     */
+    public void onDequeue(long waitNanos, int depth) {
+        wait.recordNanos(waitNanos);
+        this.depth.set(depth);
+    }
+
+    public void onDrop() {
+        dropped.incrementAndGet();
+    }
+
+    public QueueStats snapshot() {
+        return new QueueStats(name, depth.get(), maxDepth.get(), dropped.get(), wait.snapshot());
+    }
+}
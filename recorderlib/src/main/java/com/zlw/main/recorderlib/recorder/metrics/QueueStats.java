@@ -0,0 +1,56 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import java.util.Locale;
+
+/**
+ * {@link QueueMetrics} 某一时刻的统计
+ */
+public class QueueStats {
+    private final String name;
+    private final int depth;
+    private final int maxDepth;
+    private final long dropped;
+    private final HistogramSnapshot wait;
+
+    QueueStats(String name, int depth, int maxDepth, long dropped, HistogramSnapshot wait) {
+        this.name = name;
+        this.depth = depth;
+        this.maxDepth = maxDepth;
+        this.dropped = dropped;
+        this.wait = wait;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 最近一次入队或出队后的深度
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return 因积压丢弃的数量
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return 在队列中的等待时间
+     */
+    public HistogramSnapshot getWait() {
+        return wait;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "depth=%d max=%d dropped=%d wait[%s]", depth, maxDepth, dropped, wait);
+    }
+}
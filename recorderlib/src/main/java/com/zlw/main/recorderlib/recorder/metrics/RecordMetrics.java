@@ -0,0 +1,114 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 一次录音的运行统计：采集读取耗时与溢出、流水线各环节耗时、编码队列、编码实时率、写入耗时和丢帧
+ * <p>
+ * 各记录方法在采集、编码、写入线程中调用，只做原子操作；{@link #snapshot()} 可在任意线程随时调用
+ */
+public class RecordMetrics {
+    private final long startNanos = System.nanoTime();
+    private volatile long finishNanos;
+    private final LatencyHistogram captureRead = new LatencyHistogram();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong readErrors = new AtomicLong();
+    private final LatencyHistogram encode = new LatencyHistogram();
+    private final AtomicLong encodedAudioMicros = new AtomicLong();
+    private final LatencyHistogram write = new LatencyHistogram();
+    /**
+     * 按名称注册，注册在流水线/编码器创建时进行
+     */
+    private final Map<String, LatencyHistogram> stages = new LinkedHashMap<>();
+    private final Map<String, QueueMetrics> queues = new LinkedHashMap<>();
+
+    /**
+     * 一次 AudioRecord.read 的耗时（包含等待数据的时间）
+     */
+    public void recordCaptureRead(long nanos) {
+        captureRead.recordNanos(nanos);
+    }
+
+    /**
+     * 两次读取之间的间隔超过 AudioRecord 缓冲区的时长，缓冲区已满，期间的数据被丢弃
+     */
+    public void countOverrun() {
+        overruns.incrementAndGet();
+    }
+
+    public void countReadError() {
+        readErrors.incrementAndGet();
+    }
+
+    /**
+     * @param encodeNanos 编码一块数据的耗时
+     * @param audioNanos  该块数据的时长
+     */
+    public void recordEncode(long encodeNanos, long audioNanos) {
+        encode.recordNanos(encodeNanos);
+        encodedAudioMicros.addAndGet(audioNanos / 1000);
+    }
+
+    /**
+     * 一次文件写入的耗时
+     */
+    public void recordWrite(long nanos) {
+        write.recordNanos(nanos);
+    }
+
+    /**
+     * @return 名为 name 的流水线环节的耗时直方图，不存在时创建
+     */
+    public synchronized LatencyHistogram getStage(String name) {
+        LatencyHistogram histogram = stages.get(name);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            stages.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /**
+     * @return 名为 name 的队列的统计，不存在时创建
+     */
+    public synchronized QueueMetrics getQueue(String name) {
+        QueueMetrics queue = queues.get(name);
+        if (queue == null) {
+            queue = new QueueMetrics(name);
+            queues.put(name, queue);
+        }
+        return queue;
+    }
+
+    /**
+     * 采集结束，之后的快照时长不再增加；编码器排空剩余数据的统计仍会继续记录
+     */
+    public void finish() {
+        if (finishNanos == 0) {
+            finishNanos = System.nanoTime();
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, HistogramSnapshot> stageSnapshots = new LinkedHashMap<>();
+        List<QueueStats> queueStats = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<String, LatencyHistogram> entry : stages.entrySet()) {
+                stageSnapshots.put(entry.getKey(), entry.getValue().snapshot());
+            }
+            for (QueueMetrics queue : queues.values()) {
+                queueStats.add(queue.snapshot());
+            }
+        }
+        long audioMicros = encodedAudioMicros.get();
+        float realtimeFactor = audioMicros > 0 ? (float) encode.getTotal() / audioMicros : 0;
+        long end = finishNanos != 0 ? finishNanos : System.nanoTime();
+        return new MetricsSnapshot((end - startNanos) / 1000000L, captureRead.snapshot(),
+                overruns.get(), readErrors.get(), stageSnapshots, queueStats, encode.snapshot(), realtimeFactor,
+                write.snapshot());
+    }
+}
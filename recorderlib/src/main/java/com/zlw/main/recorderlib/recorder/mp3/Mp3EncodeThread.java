@@ -2,6 +2,10 @@ package com.zlw.main.recorderlib.recorder.mp3;
 
 import com.zlw.main.recorderlib.recorder.RecordConfig;
 import com.zlw.main.recorderlib.recorder.RecordService;
+import com.zlw.main.recorderlib.recorder.StartupMetrics;
+import com.zlw.main.recorderlib.recorder.adaptive.AdaptiveQualityController;
+import com.zlw.main.recorderlib.recorder.metrics.QueueMetrics;
+import com.zlw.main.recorderlib.recorder.metrics.RecordMetrics;
 import com.zlw.main.recorderlib.utils.Logger;
 
 import java.io.File;
@@ -22,12 +26,33 @@ public class Mp3EncodeThread extends Thread {
      * mp3文件的码率 32kbit/s = 4kb/s
      */
     private static final int OUT_BITRATE = 32;
+    /**
+     * 自适应质量的档位 {码率 kbit/s, LAME quality}，0为默认配置
+     */
+    private static final int[][] QUALITY_LEVELS = {{OUT_BITRATE, 7}, {OUT_BITRATE, 9}, {24, 9}, {16, 9}};
+    public static final int MAX_QUALITY_LEVEL = QUALITY_LEVELS.length - 1;
+    /**
+     * 等待延迟编码等其他使用方让出 LAME 的最长时间
+     */
+    private static final long ACQUIRE_TIMEOUT_MS = 1000;
 
     private List<ChangeBuffer> cacheBufferList = Collections.synchronizedList(new LinkedList<ChangeBuffer>());
     private File file;
     private FileOutputStream os;
     private byte[] mp3Buffer;
+    /**
+     * 立体声时拆分出的左右声道
+     */
+    private short[] left = new short[0];
+    private short[] right = new short[0];
     private EncordFinishListener encordFinishListener;
+    private StartupMetrics startupMetrics;
+    private AdaptiveQualityController qualityController;
+    private final int qualityLevel;
+    private volatile RecordMetrics metrics;
+    private volatile QueueMetrics queueMetrics;
+    private final int sampleRate;
+    private final int channels;
 
     /**
      * 是否已停止录音
@@ -40,11 +65,93 @@ public class Mp3EncodeThread extends Thread {
     private volatile boolean start = true;
 
     public Mp3EncodeThread(File file, int bufferSize) {
+        this(file, bufferSize, false, 0);
+    }
+
+    /**
+     * 未预热时最多等待 {@value #ACQUIRE_TIMEOUT_MS} ms 让出 LAME，需在录音线程中创建
+     *
+     * @param encoderReady LAME 是否已按当前配置初始化（预热），是且档位为0时跳过初始化
+     * @param qualityLevel 本次录音使用的质量档位 0 ~ {@link #MAX_QUALITY_LEVEL}，编码过程中不再改变
+     * @throws IllegalStateException 等待 LAME 超时
+     */
+    public Mp3EncodeThread(File file, int bufferSize, boolean encoderReady, int qualityLevel) {
         this.file = file;
         mp3Buffer = new byte[(int) (7200 + (bufferSize * 2 * 1.25))];
-        RecordConfig currentConfig = RecordService.getCurrentConfig();
-        int sampleRate = currentConfig.getSampleRate();
-        Mp3Encoder.init(sampleRate, currentConfig.getChannelCount(), sampleRate, OUT_BITRATE);
+        RecordConfig config = RecordService.getCurrentConfig();
+        sampleRate = config.getSampleRate();
+        channels = Math.max(config.getRoutedChannelCount(), 1);
+        this.qualityLevel = Math.max(0, Math.min(MAX_QUALITY_LEVEL, qualityLevel));
+        if (!encoderReady && !Mp3Encoder.acquire(Mp3EncodeThread.class, ACQUIRE_TIMEOUT_MS)) {
+            throw new IllegalStateException("LAME 正被占用");
+        }
+        //预热按档位0初始化，其他档位在开始编码前重新初始化
+        if (!encoderReady || this.qualityLevel != 0) {
+            int[] params = QUALITY_LEVELS[this.qualityLevel];
+            Mp3Encoder.init(sampleRate, channels, sampleRate, params[0], params[1]);
+        }
+    }
+
+    /**
+     * 按录音配置预先初始化 LAME，供预热使用，不等待其他使用方；
+     * 预热的 LAME 为待机占用，延迟编码等其他使用方需要时会被收回
+     *
+     * @return false: LAME 正被延迟编码等占用
+     */
+    public static boolean initStandbyEncoder(RecordConfig config) {
+        int sampleRate = config.getSampleRate();
+        return Mp3Encoder.initStandby(Mp3EncodeThread.class, sampleRate, config.getRoutedChannelCount(), sampleRate, OUT_BITRATE);
+    }
+
+    /**
+     * 取用预热的 LAME
+     *
+     * @return false: 已被其他使用方收回
+     */
+    public static boolean claimStandbyEncoder() {
+        return Mp3Encoder.claimStandby(Mp3EncodeThread.class);
+    }
+
+    /**
+     * @return 预热的 LAME 是否仍可取用
+     */
+    public static boolean hasStandbyEncoder() {
+        return Mp3Encoder.hasStandby(Mp3EncodeThread.class);
+    }
+
+    /**
+     * 释放未被取用的预热 LAME
+     */
+    public static void releaseStandbyEncoder() {
+        Mp3Encoder.releaseStandby(Mp3EncodeThread.class);
+    }
+
+    /**
+     * 关闭 LAME 并释放占用
+     */
+    public static void releaseEncoder() {
+        Mp3Encoder.close();
+        Mp3Encoder.release(Mp3EncodeThread.class);
+    }
+
+    public void setStartupMetrics(StartupMetrics startupMetrics) {
+        this.startupMetrics = startupMetrics;
+    }
+
+    /**
+     * 记录输入队列、编码耗时和文件写入耗时
+     */
+    public void setRecordMetrics(RecordMetrics metrics) {
+        this.metrics = metrics;
+        this.queueMetrics = metrics != null ? metrics.getQueue("mp3") : null;
+    }
+
+    /**
+     * 开启自适应质量：编码过程中只统计实时率和队列深度，由控制器给出档位，
+     * 在下一次录音开始时生效（见 {@link #Mp3EncodeThread(File, int, boolean, int)}）
+     */
+    public void setQualityController(AdaptiveQualityController qualityController) {
+        this.qualityController = qualityController;
     }
 
     @Override
@@ -53,6 +160,7 @@ public class Mp3EncodeThread extends Thread {
             this.os = new FileOutputStream(file);
         } catch (FileNotFoundException e) {
             Logger.e(e, TAG, e.getMessage());
+            releaseEncoder();
             return;
         }
 
@@ -66,6 +174,10 @@ public class Mp3EncodeThread extends Thread {
     public void addChangeBuffer(ChangeBuffer changeBuffer) {
         if (changeBuffer != null) {
             cacheBufferList.add(changeBuffer);
+            QueueMetrics queue = queueMetrics;
+            if (queue != null) {
+                queue.onEnqueue(cacheBufferList.size());
+            }
             synchronized (this) {
                 notify();
             }
@@ -94,11 +206,30 @@ public class Mp3EncodeThread extends Thread {
                     Logger.e(e, TAG, e.getMessage());
                 }
             } else {
-                return cacheBufferList.remove(0);
+                ChangeBuffer buffer = cacheBufferList.remove(0);
+                QueueMetrics queue = queueMetrics;
+                if (queue != null) {
+                    queue.onDequeue(System.nanoTime() - buffer.createdNanos, cacheBufferList.size());
+                }
+                return buffer;
             }
         }
     }
 
+    /**
+     * LAME 按声道分别接收数据，采集数据为左右交错
+     */
+    private void deinterleave(short[] buffer, int samples) {
+        if (left.length < samples) {
+            left = new short[samples];
+            right = new short[samples];
+        }
+        for (int i = 0; i < samples; i++) {
+            left[i] = buffer[i * 2];
+            right[i] = buffer[i * 2 + 1];
+        }
+    }
+
     private void lameData(ChangeBuffer changeBuffer) {
         if (changeBuffer == null) {
             return;
@@ -106,15 +237,38 @@ public class Mp3EncodeThread extends Thread {
         short[] buffer = changeBuffer.getData();
         int readSize = changeBuffer.getReadSize();
         if (readSize > 0) {
-            int encodedSize = Mp3Encoder.encode(buffer, buffer, readSize, mp3Buffer);
+            long encodeStart = System.nanoTime();
+            int samples = readSize / channels;
+            int encodedSize;
+            if (channels == 2) {
+                deinterleave(buffer, samples);
+                encodedSize = Mp3Encoder.encode(left, right, samples, mp3Buffer);
+            } else {
+                encodedSize = Mp3Encoder.encode(buffer, buffer, samples, mp3Buffer);
+            }
+            long encodeNanos = System.nanoTime() - encodeStart;
             if (encodedSize < 0) {
                 Logger.e(TAG, "Lame encoded size: " + encodedSize);
+            } else if (encodedSize > 0 && startupMetrics != null) {
+                startupMetrics.markFirstPacket();
             }
+            long audioNanos = samples * 1000000000L / sampleRate;
+            RecordMetrics recordMetrics = metrics;
+            long writeStart = System.nanoTime();
             try {
                 os.write(mp3Buffer, 0, encodedSize);
             } catch (IOException e) {
                 Logger.e(e, TAG, "Unable to write to file");
             }
+            if (recordMetrics != null) {
+                recordMetrics.recordWrite(System.nanoTime() - writeStart);
+                recordMetrics.recordEncode(encodeNanos, audioNanos);
+            }
+            //LAME 中途重新初始化会写出补零的末帧并引入新的编码延迟，造成可听见的间断和时间轴偏移，
+            //因此录音中只统计，不切换档位
+            if (qualityController != null) {
+                qualityController.onEncoded(audioNanos, encodeNanos, cacheBufferList.size());
+            }
         }
     }
 
@@ -129,6 +283,7 @@ public class Mp3EncodeThread extends Thread {
                 Logger.e(TAG, e.getMessage());
             }
         }
+        releaseEncoder();
         Logger.d(TAG, "转换结束 :%s", file.length());
         if (encordFinishListener != null) {
             encordFinishListener.onFinish();
@@ -138,6 +293,10 @@ public class Mp3EncodeThread extends Thread {
     public static class ChangeBuffer {
         private short[] rawData;
         private int readSize;
+        /**
+         * 入队时刻，用于统计在队列中的等待时间
+         */
+        private final long createdNanos = System.nanoTime();
 
         public ChangeBuffer(short[] rawData, int readSize) {
             this.rawData = rawData.clone();
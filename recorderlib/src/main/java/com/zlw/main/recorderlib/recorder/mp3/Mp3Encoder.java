@@ -20,4 +20,129 @@ public class Mp3Encoder {
     public static void init(int inSampleRate, int outChannel, int outSampleRate, int outBitrate) {
         init(inSampleRate, outChannel, outSampleRate, outBitrate, 7);
     }
+
+    /**
+     * 当前占用全局实例的使用方
+     */
+    private static Object owner;
+    private static int waiters;
+    /**
+     * 当前占用是否为预热的待机占用，其他使用方占用时直接收回
+     */
+    private static boolean standby;
+
+    /**
+     * native 层只有一个全局 LAME 实例，实时录音、预热、多路输出和延迟编码在 init 之前占用，close 之后释放，
+     * 避免互相覆盖编码状态。不等待，有使用方正在等待时也不会成功；待机占用会被收回
+     *
+     * @return false: 正被其他使用方占用
+     */
+    public static synchronized boolean tryAcquire(Object user) {
+        if (owner == user) {
+            standby = false;
+            return true;
+        }
+        reclaimStandby();
+        if (owner != null || waiters > 0) {
+            return false;
+        }
+        owner = user;
+        return true;
+    }
+
+    /**
+     * 等待其他使用方释放后占用，等待期间 {@link #hasWaiters()} 为 true，后台的使用方应尽快结束并释放
+     *
+     * @return false: 超时或被中断
+     */
+    public static synchronized boolean acquire(Object user, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        waiters++;
+        try {
+            reclaimStandby();
+            while (owner != null && owner != user) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                Mp3Encoder.class.wait(remaining);
+            }
+            owner = user;
+            standby = false;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiters--;
+        }
+    }
+
+    /**
+     * @return 是否有使用方在等待占用
+     */
+    public static synchronized boolean hasWaiters() {
+        return waiters > 0;
+    }
+
+    public static synchronized void release(Object user) {
+        if (owner == user) {
+            owner = null;
+            standby = false;
+            Mp3Encoder.class.notifyAll();
+        }
+    }
+
+    /**
+     * 空闲时占用并初始化，作为待机占用：其他使用方需要 LAME 时直接关闭并收回，不必等待预热超时释放
+     *
+     * @return false: 正被其他使用方占用或等待
+     */
+    public static synchronized boolean initStandby(Object user, int inSampleRate, int outChannel, int outSampleRate, int outBitrate) {
+        if (owner != null && owner != user || waiters > 0) {
+            return false;
+        }
+        owner = user;
+        standby = true;
+        init(inSampleRate, outChannel, outSampleRate, outBitrate);
+        return true;
+    }
+
+    /**
+     * 将待机占用转为正式占用，之后不会再被收回
+     *
+     * @return false: 已被其他使用方收回，需要重新占用并初始化
+     */
+    public static synchronized boolean claimStandby(Object user) {
+        if (owner != user || !standby) {
+            return false;
+        }
+        standby = false;
+        return true;
+    }
+
+    /**
+     * 关闭并释放待机占用，已被收回或已转为正式占用时不处理
+     */
+    public static synchronized void releaseStandby(Object user) {
+        if (owner == user && standby) {
+            close();
+            release(user);
+        }
+    }
+
+    /**
+     * @return 是否仍持有待机占用
+     */
+    public static synchronized boolean hasStandby(Object user) {
+        return owner == user && standby;
+    }
+
+    private static void reclaimStandby() {
+        if (owner != null && standby) {
+            close();
+            owner = null;
+            standby = false;
+        }
+    }
 }
\ No newline at end of file
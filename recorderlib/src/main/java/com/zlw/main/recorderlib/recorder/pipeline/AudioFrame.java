@@ -0,0 +1,75 @@
+package com.zlw.main.recorderlib.recorder.pipeline;
+
+/**
+ * 在流水线环节之间传递的一块采集数据，按录音格式为 byte[]（小端PCM）或 short[] 之一
+ * <p>
+ * 由 {@link Pipeline} 分配并循环使用，环节在 {@link Stage#process(AudioFrame)} 返回后不能继续持有，需要时自行拷贝
+ */
+public final class AudioFrame {
+    private final byte[] bytes;
+    private final short[] shorts;
+    /**
+     * 有效数据长度：byte[] 时为字节数，short[] 时为样本数；小于0时为 AudioRecord 的错误码
+     */
+    private int length;
+    /**
+     * 读取完成的时刻 nanoTime
+     */
+    private long captureNanos;
+    /**
+     * 进入异步环节队列的时刻，用于统计等待时间
+     */
+    long enqueueNanos;
+
+    AudioFrame(byte[] bytes, short[] shorts) {
+        this.bytes = bytes;
+        this.shorts = shorts;
+    }
+
+    /**
+     * @return 是否为 short[] 数据，否则为 byte[]
+     */
+    public boolean isShortSamples() {
+        return shorts != null;
+    }
+
+    /**
+     * @return byte[] 数据，short[] 帧时为 null
+     */
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return short[] 数据，byte[] 帧时为 null
+     */
+    public short[] getShorts() {
+        return shorts;
+    }
+
+    /**
+     * @return 缓冲容量，单位与 {@link #getLength()} 相同
+     */
+    public int getCapacity() {
+        return shorts != null ? shorts.length : bytes.length;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 修改有效长度，如丢弃（0）或原地改写后长度变化，不能超过 {@link #getCapacity()}
+     */
+    public void setLength(int length) {
+        this.length = length;
+    }
+
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+
+    public void setCaptureNanos(long captureNanos) {
+        this.captureNanos = captureNanos;
+    }
+}
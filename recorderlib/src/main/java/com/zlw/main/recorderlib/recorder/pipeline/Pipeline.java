@@ -0,0 +1,343 @@
+package com.zlw.main.recorderlib.recorder.pipeline;
+
+import com.zlw.main.recorderlib.recorder.metrics.LatencyHistogram;
+import com.zlw.main.recorderlib.recorder.metrics.QueueMetrics;
+import com.zlw.main.recorderlib.recorder.metrics.RecordMetrics;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 一段采集的处理流水线：数据源（录音线程）→ 处理器 → 编码器 → 写入目标，按添加顺序依次处理每块 {@link AudioFrame}
+ * <p>
+ * 环节默认在录音线程中同步运行；通过 {@link #add(String, Stage, int)} 指定队列容量的环节及其后的环节在独立线程中运行，
+ * 与前面的环节之间用有界队列连接，队列满时录音线程等待（背压），不丢弃数据。
+ * 数据块由流水线分配并循环使用，数量上限为各队列容量之和加上正在处理的块，采集过程中不再分配内存
+ * <p>
+ * 使用顺序：add → {@link #start()} → 循环 {@link #obtain()} / {@link #push(AudioFrame)} → {@link #finish()}，
+ * 除异步环节外均在同一线程中调用
+ */
+public class Pipeline {
+    private static final String TAG = Pipeline.class.getSimpleName();
+    /**
+     * 结束标记，随数据之后进入队列
+     */
+    private static final AudioFrame END = new AudioFrame(new byte[0], null);
+
+    private final boolean shortSamples;
+    private final int frameCapacity;
+    /**
+     * 按线程划分的环节组，第一组在调用方线程中运行
+     */
+    private final List<Segment> segments = new ArrayList<>();
+    private ArrayBlockingQueue<AudioFrame> freeFrames;
+    private int maxFrames = 1;
+    private int allocatedFrames;
+    private boolean started;
+    private boolean finished;
+    private volatile Exception asyncError;
+    private RecordMetrics metrics;
+
+    /**
+     * @param shortSamples  数据块为 short[]，否则为 byte[]
+     * @param frameCapacity 每块的容量，单位与 {@link AudioFrame#getLength()} 相同
+     */
+    public Pipeline(boolean shortSamples, int frameCapacity) {
+        this.shortSamples = shortSamples;
+        this.frameCapacity = frameCapacity;
+        segments.add(new Segment(null, 0));
+    }
+
+    /**
+     * 添加在当前线程（上一个异步环节之后为其线程）中运行的环节
+     *
+     * @param stage null 时忽略
+     */
+    public Pipeline add(String name, Stage stage) {
+        return add(name, stage, 0);
+    }
+
+    /**
+     * @param queueCapacity 大于0时该环节及之后的环节在新线程中运行，与前面环节之间的队列容量（块）
+     */
+    public Pipeline add(String name, Stage stage, int queueCapacity) {
+        if (started) {
+            throw new IllegalStateException("流水线已开始");
+        }
+        if (stage == null) {
+            return this;
+        }
+        if (queueCapacity > 0) {
+            segments.add(new Segment(name, queueCapacity));
+            maxFrames += queueCapacity + 1;
+        }
+        segments.get(segments.size() - 1).add(name, stage);
+        return this;
+    }
+
+    /**
+     * 记录各环节处理每块数据的耗时和异步队列的深度、等待时间，在 {@link #start()} 之前设置
+     */
+    public Pipeline setMetrics(RecordMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public boolean isShortSamples() {
+        return shortSamples;
+    }
+
+    /**
+     * @return 环节名称，按处理顺序
+     */
+    public List<String> getStageNames() {
+        List<String> names = new ArrayList<>();
+        for (Segment segment : segments) {
+            names.addAll(segment.names);
+        }
+        return names;
+    }
+
+    /**
+     * 启动异步环节的线程
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        freeFrames = new ArrayBlockingQueue<>(maxFrames);
+        for (int i = 0; i < segments.size(); i++) {
+            segments.get(i).bindMetrics();
+        }
+        for (int i = 1; i < segments.size(); i++) {
+            segments.get(i).start(i);
+        }
+        Logger.d(TAG, "流水线：%s", getStageNames());
+    }
+
+    /**
+     * 取一块空闲数据，所有数据块都在处理中时等待
+     */
+    public AudioFrame obtain() throws InterruptedException {
+        AudioFrame frame = freeFrames.poll();
+        if (frame == null) {
+            if (allocatedFrames < maxFrames) {
+                allocatedFrames++;
+                return shortSamples ? new AudioFrame(null, new short[frameCapacity]) : new AudioFrame(new byte[frameCapacity], null);
+            }
+            frame = freeFrames.take();
+        }
+        return frame;
+    }
+
+    /**
+     * 在调用方线程中运行同步环节，之后交给下一个异步环节或回收
+     *
+     * @throws IOException 同步环节失败，或之前某个异步环节已失败
+     */
+    public void push(AudioFrame frame) throws IOException {
+        checkAsyncError();
+        try {
+            segments.get(0).process(frame);
+        } catch (IOException | RuntimeException e) {
+            freeFrames.offer(frame);
+            throw e;
+        }
+        forward(0, frame);
+    }
+
+    /**
+     * 结束本段采集：等待队列中的数据处理完，依次调用各环节的 {@link Stage#finish()} 并结束异步线程，可重复调用
+     *
+     * @throws IOException 任一环节失败
+     */
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        IOException syncError = null;
+        try {
+            segments.get(0).finish();
+        } catch (IOException e) {
+            syncError = e;
+        }
+        if (started && segments.size() > 1) {
+            try {
+                forward(0, END);
+                for (int i = 1; i < segments.size(); i++) {
+                    segments.get(i).join();
+                }
+            } catch (InterruptedIOException e) {
+                Logger.w(TAG, "等待异步环节结束时被中断");
+                throw e;
+            }
+        }
+        if (syncError != null) {
+            throw syncError;
+        }
+        checkAsyncError();
+    }
+
+    private void checkAsyncError() throws IOException {
+        Exception e = asyncError;
+        if (e instanceof IOException) {
+            throw (IOException) e;
+        }
+        if (e != null) {
+            throw new IOException(e);
+        }
+    }
+
+    private void forward(int index, AudioFrame frame) throws InterruptedIOException {
+        if (index + 1 >= segments.size()) {
+            if (frame != END) {
+                freeFrames.offer(frame);
+            }
+            return;
+        }
+        Segment next = segments.get(index + 1);
+        try {
+            frame.enqueueNanos = System.nanoTime();
+            next.queue.put(frame);
+            if (next.queueMetrics != null && frame != END) {
+                next.queueMetrics.onEnqueue(next.queue.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (frame != END) {
+                freeFrames.offer(frame);
+            }
+            throw new InterruptedIOException("流水线队列等待被中断");
+        }
+    }
+
+    private class Segment {
+        private final List<String> names = new ArrayList<>();
+        private final List<Stage> stages = new ArrayList<>();
+        private final ArrayBlockingQueue<AudioFrame> queue;
+        private final String threadName;
+        private Thread thread;
+        private LatencyHistogram[] histograms;
+        private QueueMetrics queueMetrics;
+
+        Segment(String threadName, int queueCapacity) {
+            this.threadName = threadName;
+            this.queue = queueCapacity > 0 ? new ArrayBlockingQueue<AudioFrame>(queueCapacity) : null;
+        }
+
+        void add(String name, Stage stage) {
+            names.add(name);
+            stages.add(stage);
+        }
+
+        void bindMetrics() {
+            if (metrics == null) {
+                return;
+            }
+            histograms = new LatencyHistogram[stages.size()];
+            for (int i = 0; i < histograms.length; i++) {
+                histograms[i] = metrics.getStage(names.get(i));
+            }
+            if (queue != null) {
+                queueMetrics = metrics.getQueue("pipeline-" + threadName);
+            }
+        }
+
+        void process(AudioFrame frame) throws IOException {
+            LatencyHistogram[] h = histograms;
+            for (int i = 0; i < stages.size(); i++) {
+                if (h == null) {
+                    stages.get(i).process(frame);
+                    continue;
+                }
+                long start = System.nanoTime();
+                stages.get(i).process(frame);
+                h[i].recordNanos(System.nanoTime() - start);
+            }
+        }
+
+        void finish() throws IOException {
+            IOException error = null;
+            for (Stage stage : stages) {
+                try {
+                    stage.finish();
+                } catch (IOException e) {
+                    if (error == null) {
+                        error = e;
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+
+        void start(final int index) {
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    loop(index);
+                }
+            }, "pipeline-" + threadName);
+            thread.start();
+        }
+
+        /**
+         * 出错后继续取出并回收数据直到结束标记，避免录音线程在队列上一直等待
+         */
+        private void loop(int index) {
+            try {
+                while (true) {
+                    AudioFrame frame = queue.take();
+                    if (queueMetrics != null && frame != END) {
+                        queueMetrics.onDequeue(System.nanoTime() - frame.enqueueNanos, queue.size());
+                    }
+                    if (frame == END) {
+                        try {
+                            finish();
+                        } catch (IOException | RuntimeException e) {
+                            fail(e);
+                        }
+                        forward(index, END);
+                        return;
+                    }
+                    if (asyncError == null) {
+                        try {
+                            process(frame);
+                        } catch (IOException | RuntimeException e) {
+                            fail(e);
+                        }
+                    }
+                    forward(index, frame);
+                }
+            } catch (InterruptedException | InterruptedIOException e) {
+                Logger.w(TAG, "环节线程被中断：%s", threadName);
+            }
+        }
+
+        private void fail(Exception e) {
+            Logger.e(e, TAG, "环节处理失败：%s", threadName);
+            if (asyncError == null) {
+                asyncError = e;
+            }
+        }
+
+        void join() throws InterruptedIOException {
+            if (thread == null) {
+                return;
+            }
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("等待环节线程结束被中断");
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.zlw.main.recorderlib.recorder.pipeline;
+
+import com.zlw.main.recorderlib.recorder.RecordConfig;
+
+import java.io.IOException;
+
+/**
+ * 流水线中的一个处理环节：处理器（原地修改数据）、编码器或写入目标均实现此接口
+ * <p>
+ * 同一个环节的方法总在同一个线程中按顺序调用：同步环节在录音线程，异步环节在其独立线程
+ */
+public interface Stage {
+
+    /**
+     * 处理一块数据，可原地修改内容和 {@link AudioFrame#setLength(int)}，修改对之后的环节可见
+     *
+     * @throws IOException 录音以失败结束
+     */
+    void process(AudioFrame frame) throws IOException;
+
+    /**
+     * 一段采集结束（停止或暂停）且之前的数据都已处理完
+     */
+    void finish() throws IOException;
+
+    /**
+     * 按录音配置创建环节，每段采集（开始或继续录音）创建一次
+     */
+    interface Factory {
+        /**
+         * @return null：本次录音不需要该环节
+         */
+        Stage create(RecordConfig config);
+    }
+}
@@ -0,0 +1,39 @@
+package com.zlw.main.recorderlib.recorder.pipeline;
+
+/**
+ * 通过 {@link com.zlw.main.recorderlib.recorder.RecordConfig#addStage} 添加的自定义环节
+ */
+public final class StageSpec {
+    private final String name;
+    private final Stage.Factory factory;
+    private final int queueCapacity;
+
+    /**
+     * @param queueCapacity 大于0时在独立线程中运行，与前一环节之间的队列容量（块）；0：在录音线程中同步运行
+     */
+    public StageSpec(String name, Stage.Factory factory, int queueCapacity) {
+        if (factory == null || queueCapacity < 0) {
+            throw new IllegalArgumentException(String.format("环节参数错误: %s, %s", name, queueCapacity));
+        }
+        this.name = name;
+        this.factory = factory;
+        this.queueCapacity = queueCapacity;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Stage.Factory getFactory() {
+        return factory;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return queueCapacity > 0 ? String.format("%s(队列 %s)", name, queueCapacity) : name;
+    }
+}
@@ -0,0 +1,127 @@
+package com.zlw.main.recorderlib.recorder.preroll;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 定长环形缓冲，保存最近一段采集数据（小端PCM，按整帧存放）
+ * 数据放在堆外（direct buffer），容量在构造时确定，写入时覆盖最旧的数据，读写过程不分配内存；
+ * 读和写不能同时进行，由调用方保证（待机线程写入，交接后录音线程读取）
+ */
+public class PreRollBuffer {
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private final int frameBytes;
+    /**
+     * 最旧数据的位置和有效长度
+     */
+    private int head;
+    private int size;
+
+    /**
+     * @param capacityFrames 容量（帧数）
+     * @param frameBytes     每帧字节数：声道数 × 每样本字节数
+     */
+    public PreRollBuffer(int capacityFrames, int frameBytes) {
+        if (capacityFrames <= 0 || frameBytes <= 0) {
+            throw new IllegalArgumentException(String.format("预录缓冲参数错误: %s x %s", capacityFrames, frameBytes));
+        }
+        this.frameBytes = frameBytes;
+        this.capacity = capacityFrames * frameBytes;
+        this.buffer = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * @return 容量 byte
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getFrameBytes() {
+        return frameBytes;
+    }
+
+    /**
+     * @return 缓冲中的数据 byte
+     */
+    public int available() {
+        return size;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * 写入采集数据，超出容量时丢弃最旧的数据；末尾不足一帧的部分丢弃
+     */
+    public void write(byte[] data, int offset, int len) {
+        len -= len % frameBytes;
+        if (len >= capacity) {
+            //只保留最后 capacity 字节
+            offset += len - capacity;
+            len = capacity;
+        }
+        int tail = (head + size) % capacity;
+        int first = Math.min(len, capacity - tail);
+        buffer.position(tail);
+        buffer.put(data, offset, first);
+        if (first < len) {
+            buffer.position(0);
+            buffer.put(data, offset + first, len - first);
+        }
+        int overflow = size + len - capacity;
+        if (overflow > 0) {
+            head = (head + overflow) % capacity;
+            size = capacity;
+        } else {
+            size += len;
+        }
+    }
+
+    /**
+     * 按时间顺序取出最旧的数据，按整帧读取
+     *
+     * @return 读取的字节数，0：已读完
+     */
+    public int read(byte[] dst, int offset, int len) {
+        int n = Math.min(len - len % frameBytes, size);
+        int first = Math.min(n, capacity - head);
+        buffer.position(head);
+        buffer.get(dst, offset, first);
+        if (first < n) {
+            buffer.position(0);
+            buffer.get(dst, offset + first, n - first);
+        }
+        consume(n);
+        return n;
+    }
+
+    /**
+     * 按时间顺序取出最旧的16bit样本，按整帧读取
+     *
+     * @param count 最多读取的样本数（所有声道）
+     * @return 读取的样本数，0：已读完
+     */
+    public int read(short[] dst, int offset, int count) {
+        int frameSamples = frameBytes / 2;
+        int n = Math.min(count - count % frameSamples, size / 2);
+        int position = head;
+        for (int i = 0; i < n; i++) {
+            dst[offset + i] = buffer.getShort(position);
+            position += 2;
+            if (position == capacity) {
+                position = 0;
+            }
+        }
+        consume(n * 2);
+        return n;
+    }
+
+    private void consume(int bytes) {
+        head = (head + bytes) % capacity;
+        size -= bytes;
+    }
+}
@@ -0,0 +1,70 @@
+package com.zlw.main.recorderlib.recorder.rtp;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+/**
+ * AAC 的 RTP 打包，RFC 3640 mpeg4-generic AAC-hbr 模式：
+ * sizeLength=13; indexLength=3; indexDeltaLength=3，每个数据包一个 AU，
+ * 负载为 16bit AU-headers-length + 16bit AU-header（13bit 长度 + 3bit 序号）+ 去掉 ADTS 头的 AAC 帧；
+ * 超过 MTU 的帧分片发送，各分片的 AU-header 均为整帧长度，只有最后一个分片设置 M 位
+ * <p>
+ * 时间戳每帧递增 1024，与 {@link RtpSender} 的时钟（采样率）一致
+ */
+public class AacRtpPacketizer {
+    private static final String TAG = AacRtpPacketizer.class.getSimpleName();
+    public static final int SAMPLES_PER_FRAME = 1024;
+    public static final int AU_HEADER_SECTION_SIZE = 4;
+    private static final int ADTS_HEADER_SIZE = 7;
+    private static final int ADTS_CRC_SIZE = 2;
+    private static final int MAX_AU_SIZE = (1 << 13) - 1;
+
+    private final RtpSender sender;
+    private final byte[] payload;
+    private long frame;
+
+    public AacRtpPacketizer(RtpSender sender) {
+        this.sender = sender;
+        this.payload = new byte[sender.getMaxPayloadSize()];
+    }
+
+    public RtpSender getSender() {
+        return sender;
+    }
+
+    /**
+     * 发送一个带 ADTS 头的 AAC 帧
+     */
+    public void writeAdts(byte[] packet, int len) {
+        if (len < ADTS_HEADER_SIZE || (packet[0] & 0xff) != 0xff || (packet[1] & 0xf0) != 0xf0) {
+            Logger.w(TAG, "不是ADTS数据包，跳过 %s bytes", len);
+            return;
+        }
+        //protection_absent = 0 时头部后跟2字节 CRC
+        int headerSize = (packet[1] & 0x01) == 0 ? ADTS_HEADER_SIZE + ADTS_CRC_SIZE : ADTS_HEADER_SIZE;
+        writeAccessUnit(packet, headerSize, len - headerSize);
+    }
+
+    /**
+     * 发送一个不带 ADTS 头的 AAC 帧（AU）
+     */
+    public void writeAccessUnit(byte[] au, int offset, int size) {
+        if (size <= 0 || size > MAX_AU_SIZE) {
+            Logger.w(TAG, "AAC 帧长度错误：%s", size);
+            frame += SAMPLES_PER_FRAME;
+            return;
+        }
+        payload[0] = 0;
+        payload[1] = 16;
+        payload[2] = (byte) (size >> 5);
+        payload[3] = (byte) ((size & 0x1f) << 3);
+        int maxFragment = payload.length - AU_HEADER_SECTION_SIZE;
+        int sent = 0;
+        while (sent < size) {
+            int n = Math.min(maxFragment, size - sent);
+            System.arraycopy(au, offset + sent, payload, AU_HEADER_SECTION_SIZE, n);
+            sent += n;
+            sender.send(payload, AU_HEADER_SECTION_SIZE + n, frame, SAMPLES_PER_FRAME, sent == size);
+        }
+        frame += SAMPLES_PER_FRAME;
+    }
+}
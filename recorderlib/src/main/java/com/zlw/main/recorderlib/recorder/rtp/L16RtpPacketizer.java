@@ -0,0 +1,73 @@
+package com.zlw.main.recorderlib.recorder.rtp;
+
+/**
+ * 16bit PCM 的 RTP 打包（RFC 3551 L16）：样本按网络字节序（大端）交错存放，
+ * 每包 packetTimeMs 的整帧数据，MTU 不够时缩短包时长；只有第一个数据包设置 M 位
+ */
+public class L16RtpPacketizer {
+    private final RtpSender sender;
+    private final int frameBytes;
+    private final byte[] payload;
+    private int filled;
+    private long frame;
+    private boolean first = true;
+
+    /**
+     * @param channels     声道数
+     * @param packetTimeMs 每包时长 ms
+     */
+    public L16RtpPacketizer(RtpSender sender, int channels, int packetTimeMs) {
+        this.sender = sender;
+        this.frameBytes = Math.max(1, channels) * 2;
+        int frames = Math.max(1, sender.getClockRate() * packetTimeMs / 1000);
+        frames = Math.max(1, Math.min(frames, sender.getMaxPayloadSize() / frameBytes));
+        this.payload = new byte[frames * frameBytes];
+    }
+
+    public RtpSender getSender() {
+        return sender;
+    }
+
+    /**
+     * @return 每个数据包的样本数（每声道）
+     */
+    public int getPacketFrames() {
+        return payload.length / frameBytes;
+    }
+
+    /**
+     * 写入16bit小端交错PCM，凑满一包即发送
+     *
+     * @param len 字节数
+     */
+    public void write(byte[] pcm, int offset, int len) {
+        int end = offset + (len & ~1);
+        for (int i = offset; i < end; i += 2) {
+            payload[filled] = pcm[i + 1];
+            payload[filled + 1] = pcm[i];
+            filled += 2;
+            if (filled == payload.length) {
+                sendPacket(filled);
+                filled = 0;
+            }
+        }
+    }
+
+    /**
+     * 发送不足一包的剩余整帧数据
+     */
+    public void flush() {
+        int bytes = filled / frameBytes * frameBytes;
+        if (bytes > 0) {
+            sendPacket(bytes);
+        }
+        filled = 0;
+    }
+
+    private void sendPacket(int bytes) {
+        int frames = bytes / frameBytes;
+        sender.send(payload, bytes, frame, frames, first);
+        first = false;
+        frame += frames;
+    }
+}
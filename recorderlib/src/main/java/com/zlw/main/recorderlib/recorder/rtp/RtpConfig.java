@@ -0,0 +1,120 @@
+package com.zlw.main.recorderlib.recorder.rtp;
+
+import java.io.Serializable;
+
+/**
+ * 录音过程中通过 RTP/UDP 实时发送音频的配置
+ * AAC 格式按 RFC 3640（AAC-hbr）打包编码器输出，PCM/WAV 格式按 L16（网络字节序）打包采集数据
+ */
+public class RtpConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String host;
+    private int port;
+    /**
+     * 动态负载类型，需与接收端 SDP 一致
+     */
+    private int payloadType = 96;
+    /**
+     * 0：随机生成
+     */
+    private int ssrc;
+    /**
+     * 单个 UDP 数据报的最大长度 byte（含12字节 RTP 头），超出时 AAC 帧分片、L16 缩短包时长
+     */
+    private int mtu = 1400;
+    /**
+     * 按媒体时钟匀速发送，编码器成批输出时不会瞬间发出一串数据包；关闭时数据包产生后立即发送
+     */
+    private boolean pacing;
+    /**
+     * L16 每个数据包的时长 ms
+     */
+    private int packetTimeMs = 20;
+    /**
+     * 开启 pacing 时发送队列的最大数据包数，队列满时丢弃新的数据包
+     */
+    private int maxQueuePackets = 256;
+
+    public RtpConfig(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public RtpConfig setHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public RtpConfig setPort(int port) {
+        this.port = port;
+        return this;
+    }
+
+    public int getPayloadType() {
+        return payloadType;
+    }
+
+    public RtpConfig setPayloadType(int payloadType) {
+        this.payloadType = payloadType;
+        return this;
+    }
+
+    public int getSsrc() {
+        return ssrc;
+    }
+
+    public RtpConfig setSsrc(int ssrc) {
+        this.ssrc = ssrc;
+        return this;
+    }
+
+    public int getMtu() {
+        return mtu;
+    }
+
+    public RtpConfig setMtu(int mtu) {
+        this.mtu = mtu;
+        return this;
+    }
+
+    public boolean isPacing() {
+        return pacing;
+    }
+
+    public RtpConfig setPacing(boolean pacing) {
+        this.pacing = pacing;
+        return this;
+    }
+
+    public int getPacketTimeMs() {
+        return packetTimeMs;
+    }
+
+    public RtpConfig setPacketTimeMs(int packetTimeMs) {
+        this.packetTimeMs = packetTimeMs;
+        return this;
+    }
+
+    public int getMaxQueuePackets() {
+        return maxQueuePackets;
+    }
+
+    public RtpConfig setMaxQueuePackets(int maxQueuePackets) {
+        this.maxQueuePackets = maxQueuePackets;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("rtp://%s:%s pt=%s, mtu=%s, pacing=%s", host, port, payloadType, mtu, pacing);
+    }
+}
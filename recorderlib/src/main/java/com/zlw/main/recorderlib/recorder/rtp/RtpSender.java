@@ -0,0 +1,336 @@
+package com.zlw.main.recorderlib.recorder.rtp;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RTP 数据包的封装和 UDP 发送（RFC 3550，不含 RTCP）
+ * 序列号和时间戳的起始值随机，时间戳按媒体时钟（采样率）以样本数递增；
+ * {@link #send} 只能在同一个线程中调用，由打包器在编码输出线程或采集线程中调用
+ * <p>
+ * 不开启 pacing 时数据包在调用线程中直接发出；开启时放入有界队列，由发送线程按媒体时钟匀速发出：
+ * 以第一个数据包为基准，每个包不早于 基准 + 媒体时长 发出，已经落后时立即发出并以它为新的基准
+ * <p>
+ * 延迟：采集线程通过 {@link #markCaptured} 登记 第几个样本在什么时刻采集到，
+ * 发送时以 发送时刻 - 包内最后一个样本的采集时刻 作为该包从采集到 socket 的延迟
+ */
+public class RtpSender {
+    private static final String TAG = RtpSender.class.getSimpleName();
+    public static final int HEADER_SIZE = 12;
+    private static final int VERSION = 2;
+    private static final int MIN_MTU = HEADER_SIZE + 64;
+    private static final long NO_ORIGIN = Long.MIN_VALUE;
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long CLOSE_TIMEOUT_MS = POLL_TIMEOUT_MS * 2;
+
+    private final RtpConfig config;
+    private final int clockRate;
+    private final int mtu;
+    private final int payloadType;
+    private final int ssrc;
+    private final int timestampBase;
+    private int sequence;
+
+    private volatile boolean open;
+    private DatagramSocket socket;
+    private InetAddress address;
+    private Packet inlinePacket;
+    private ArrayBlockingQueue<Packet> queue;
+    private ArrayBlockingQueue<Packet> freePackets;
+    private Thread pacer;
+    private Clock clock = Clock.SYSTEM;
+
+    /**
+     * 第0个样本的采集时刻 nanoTime
+     */
+    private volatile long captureOriginNanos = NO_ORIGIN;
+    private volatile long packetsSent;
+    private volatile long bytesSent;
+    private final AtomicLong droppedPackets = new AtomicLong();
+    private volatile boolean sendFailed;
+    private volatile long lastLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile long latencySumNanos;
+    private volatile long latencyCount;
+
+    /**
+     * @param clockRate RTP 时钟频率，音频为采样率
+     */
+    public RtpSender(RtpConfig config, int clockRate) {
+        if (config.getHost() == null || config.getPort() <= 0 || config.getPort() > 0xffff) {
+            throw new IllegalArgumentException(String.format("RTP 地址错误: %s:%s", config.getHost(), config.getPort()));
+        }
+        if (config.getPayloadType() < 0 || config.getPayloadType() > 127) {
+            throw new IllegalArgumentException("RTP 负载类型错误: " + config.getPayloadType());
+        }
+        if (clockRate <= 0) {
+            throw new IllegalArgumentException("RTP 时钟频率错误: " + clockRate);
+        }
+        this.config = config;
+        this.clockRate = clockRate;
+        this.mtu = Math.max(MIN_MTU, config.getMtu());
+        this.payloadType = config.getPayloadType();
+        Random random = new Random();
+        this.ssrc = config.getSsrc() != 0 ? config.getSsrc() : random.nextInt();
+        this.timestampBase = random.nextInt();
+        this.sequence = random.nextInt(0x10000);
+    }
+
+    /**
+     * 解析地址并打开 socket，包含网络操作，不能在主线程中调用
+     */
+    public synchronized void open() throws IOException {
+        if (open) {
+            return;
+        }
+        address = InetAddress.getByName(config.getHost());
+        socket = new DatagramSocket();
+        socket.connect(address, config.getPort());
+        inlinePacket = new Packet(mtu, address, config.getPort());
+        if (config.isPacing()) {
+            int capacity = Math.max(1, config.getMaxQueuePackets());
+            queue = new ArrayBlockingQueue<>(capacity);
+            freePackets = new ArrayBlockingQueue<>(capacity + 1);
+            pacer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    pace();
+                }
+            }, "rtp-send");
+            pacer.setPriority(Thread.MAX_PRIORITY);
+        }
+        open = true;
+        if (pacer != null) {
+            pacer.start();
+        }
+    }
+
+    /**
+     * 替换 pacing 和延迟统计使用的时钟，需在 {@link #open()} 之前调用
+     */
+    void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    public int getClockRate() {
+        return clockRate;
+    }
+
+    public int getSsrc() {
+        return ssrc;
+    }
+
+    /**
+     * @return 单个数据包负载的最大长度 byte
+     */
+    public int getMaxPayloadSize() {
+        return mtu - HEADER_SIZE;
+    }
+
+    /**
+     * 登记采集进度，采集线程每读取一块数据调用一次
+     *
+     * @param frames 到目前为止采集的样本数（每声道）
+     * @param nanos  最后一个样本采集到的时刻 {@link System#nanoTime()}
+     */
+    public void markCaptured(long frames, long nanos) {
+        captureOriginNanos = nanos - framesToNanos(frames);
+    }
+
+    /**
+     * 封装并发送一个 RTP 数据包，未打开时丢弃
+     *
+     * @param payload    负载
+     * @param len        负载长度，不超过 {@link #getMaxPayloadSize()}
+     * @param frame      包内第一个样本的序号，决定 RTP 时间戳
+     * @param frameCount 包内的样本数（每声道），用于延迟统计和 pacing
+     * @param marker     RTP 头的 M 位
+     */
+    public void send(byte[] payload, int len, long frame, int frameCount, boolean marker) {
+        if (len > getMaxPayloadSize()) {
+            throw new IllegalArgumentException(String.format("RTP 负载过长: %s > %s", len, getMaxPayloadSize()));
+        }
+        if (!open) {
+            return;
+        }
+        int seq = sequence;
+        sequence = (sequence + 1) & 0xffff;
+        if (queue == null) {
+            inlinePacket.fill(payload, len, seq, frame, frameCount, marker);
+            transmit(inlinePacket);
+            return;
+        }
+        Packet packet = freePackets.poll();
+        if (packet == null) {
+            packet = new Packet(mtu, address, config.getPort());
+        }
+        packet.fill(payload, len, seq, frame, frameCount, marker);
+        if (!queue.offer(packet)) {
+            droppedPackets.incrementAndGet();
+            freePackets.offer(packet);
+        }
+    }
+
+    /**
+     * 停止发送并关闭 socket；开启 pacing 时队列中剩余的数据包由发送线程立即发出后再关闭，
+     * 最多等待发送线程 {@value #CLOSE_TIMEOUT_MS} ms，之后 {@link #getStats()} 为最终结果
+     */
+    public synchronized void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        if (pacer == null) {
+            socket.close();
+            return;
+        }
+        try {
+            pacer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void pace() {
+        long anchorNanos = 0;
+        long anchorFrame = 0;
+        boolean anchored = false;
+        try {
+            while (true) {
+                Packet packet = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (packet == null) {
+                    if (!open) {
+                        break;
+                    }
+                    continue;
+                }
+                long endFrame = packet.frame + packet.frameCount;
+                long now = clock.nanoTime();
+                long due = anchorNanos + framesToNanos(endFrame - anchorFrame);
+                if (!anchored || due <= now || !open) {
+                    anchored = true;
+                    anchorNanos = now;
+                    anchorFrame = endFrame;
+                } else {
+                    while ((now = clock.nanoTime()) < due && open) {
+                        clock.parkNanos(due - now);
+                    }
+                }
+                transmit(packet);
+                freePackets.offer(packet);
+            }
+        } catch (InterruptedException e) {
+            Logger.w(TAG, "RTP 发送线程中断");
+        } finally {
+            socket.close();
+        }
+    }
+
+    private void transmit(Packet packet) {
+        try {
+            socket.send(packet.datagram);
+        } catch (IOException e) {
+            droppedPackets.incrementAndGet();
+            if (!sendFailed) {
+                sendFailed = true;
+                Logger.e(e, TAG, "RTP 发送失败：%s", e.getMessage());
+            }
+            return;
+        }
+        long now = clock.nanoTime();
+        packetsSent++;
+        bytesSent += packet.datagram.getLength();
+        long origin = captureOriginNanos;
+        if (origin != NO_ORIGIN) {
+            long latency = Math.max(0, now - origin - framesToNanos(packet.frame + packet.frameCount));
+            lastLatencyNanos = latency;
+            if (latency > maxLatencyNanos) {
+                maxLatencyNanos = latency;
+            }
+            latencySumNanos += latency;
+            latencyCount++;
+        }
+    }
+
+    private long framesToNanos(long frames) {
+        return frames * 1000000000L / clockRate;
+    }
+
+    /**
+     * @return 发送统计的快照
+     */
+    public RtpStats getStats() {
+        long count = latencyCount;
+        return new RtpStats(ssrc, packetsSent, bytesSent, droppedPackets.get(), lastLatencyNanos / 1000000f,
+                maxLatencyNanos / 1000000f, count > 0 ? latencySumNanos / count / 1000000f : 0f);
+    }
+
+    /**
+     * 时刻与 {@link System#nanoTime()} 同一基准，{@link #markCaptured} 登记的时刻也按它计算
+     */
+    interface Clock {
+        Clock SYSTEM = new Clock() {
+            @Override
+            public long nanoTime() {
+                return System.nanoTime();
+            }
+
+            @Override
+            public void parkNanos(long nanos) {
+                LockSupport.parkNanos(nanos);
+            }
+        };
+
+        long nanoTime();
+
+        /**
+         * 等待最多 nanos，可以提前返回
+         */
+        void parkNanos(long nanos);
+    }
+
+    private class Packet {
+        private final byte[] data;
+        private final DatagramPacket datagram;
+        private long frame;
+        private int frameCount;
+
+        Packet(int mtu, InetAddress address, int port) {
+            data = new byte[mtu];
+            datagram = new DatagramPacket(data, 0, address, port);
+        }
+
+        void fill(byte[] payload, int len, int seq, long frame, int frameCount, boolean marker) {
+            int timestamp = (int) (timestampBase + frame);
+            data[0] = (byte) (VERSION << 6);
+            data[1] = (byte) ((marker ? 0x80 : 0) | payloadType);
+            data[2] = (byte) (seq >> 8);
+            data[3] = (byte) seq;
+            data[4] = (byte) (timestamp >> 24);
+            data[5] = (byte) (timestamp >> 16);
+            data[6] = (byte) (timestamp >> 8);
+            data[7] = (byte) timestamp;
+            data[8] = (byte) (ssrc >> 24);
+            data[9] = (byte) (ssrc >> 16);
+            data[10] = (byte) (ssrc >> 8);
+            data[11] = (byte) ssrc;
+            System.arraycopy(payload, 0, data, HEADER_SIZE, len);
+            datagram.setLength(HEADER_SIZE + len);
+            this.frame = frame;
+            this.frameCount = frameCount;
+        }
+    }
+}
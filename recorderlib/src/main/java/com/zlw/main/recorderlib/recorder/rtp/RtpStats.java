@@ -0,0 +1,70 @@
+package com.zlw.main.recorderlib.recorder.rtp;
+
+import java.util.Locale;
+
+/**
+ * RTP 发送统计
+ */
+public class RtpStats {
+    private final int ssrc;
+    private final long packetsSent;
+    private final long bytesSent;
+    private final long droppedPackets;
+    private final float lastLatencyMs;
+    private final float maxLatencyMs;
+    private final float averageLatencyMs;
+
+    RtpStats(int ssrc, long packetsSent, long bytesSent, long droppedPackets, float lastLatencyMs,
+             float maxLatencyMs, float averageLatencyMs) {
+        this.ssrc = ssrc;
+        this.packetsSent = packetsSent;
+        this.bytesSent = bytesSent;
+        this.droppedPackets = droppedPackets;
+        this.lastLatencyMs = lastLatencyMs;
+        this.maxLatencyMs = maxLatencyMs;
+        this.averageLatencyMs = averageLatencyMs;
+    }
+
+    public int getSsrc() {
+        return ssrc;
+    }
+
+    public long getPacketsSent() {
+        return packetsSent;
+    }
+
+    /**
+     * @return 已发送的字节数，含 RTP 头
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * @return 因发送队列已满或 socket 错误而丢弃的数据包数
+     */
+    public long getDroppedPackets() {
+        return droppedPackets;
+    }
+
+    /**
+     * @return 最近一个数据包从采集到 socket 的延迟 ms
+     */
+    public float getLastLatencyMs() {
+        return lastLatencyMs;
+    }
+
+    public float getMaxLatencyMs() {
+        return maxLatencyMs;
+    }
+
+    public float getAverageLatencyMs() {
+        return averageLatencyMs;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.getDefault(), "ssrc=%08x, 发送：%s 包 %s bytes, 丢弃：%s, 延迟：最近 %.1f ms 平均 %.1f ms 最大 %.1f ms",
+                ssrc, packetsSent, bytesSent, droppedPackets, lastLatencyMs, averageLatencyMs, maxLatencyMs);
+    }
+}
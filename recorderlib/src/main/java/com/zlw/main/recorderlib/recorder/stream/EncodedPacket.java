@@ -0,0 +1,22 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+/**
+ * 一个编码后的数据包，AAC 为带 ADTS 头的一帧
+ */
+public class EncodedPacket {
+    private final byte[] data;
+    private final int timeStampMs;
+
+    public EncodedPacket(byte[] data, int timeStampMs) {
+        this.data = data;
+        this.timeStampMs = timeStampMs;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getTimeStampMs() {
+        return timeStampMs;
+    }
+}
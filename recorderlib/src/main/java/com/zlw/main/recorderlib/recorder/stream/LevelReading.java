@@ -0,0 +1,50 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+import java.util.Locale;
+
+/**
+ * 一个周期的电平读数，周期见 {@link com.zlw.main.recorderlib.recorder.RecordConfig#setLevelIntervalMs(int)}
+ */
+public class LevelReading {
+    private final float peakDbfs;
+    private final float rmsDbfs;
+    private final int clipCount;
+    private final float dcOffset;
+
+    public LevelReading(float peakDbfs, float rmsDbfs, int clipCount, float dcOffset) {
+        this.peakDbfs = peakDbfs;
+        this.rmsDbfs = rmsDbfs;
+        this.clipCount = clipCount;
+        this.dcOffset = dcOffset;
+    }
+
+    /**
+     * @return 峰值 dBFS，无声时为 -96
+     */
+    public float getPeakDbfs() {
+        return peakDbfs;
+    }
+
+    public float getRmsDbfs() {
+        return rmsDbfs;
+    }
+
+    /**
+     * @return 该周期内削波的样本数
+     */
+    public int getClipCount() {
+        return clipCount;
+    }
+
+    /**
+     * @return 直流偏移，相对满幅 -1~1
+     */
+    public float getDcOffset() {
+        return dcOffset;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "peak: %.1f dBFS, rms: %.1f dBFS, clip: %s", peakDbfs, rmsDbfs, clipCount);
+    }
+}
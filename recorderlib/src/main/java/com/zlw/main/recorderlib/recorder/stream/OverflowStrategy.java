@@ -0,0 +1,19 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+/**
+ * 订阅者的缓冲已满（处理速度跟不上）时的处理方式，发布方始终不会等待
+ */
+public enum OverflowStrategy {
+    /**
+     * 丢弃缓冲中最旧的数据，保留最新的
+     */
+    DROP_OLDEST,
+    /**
+     * 丢弃新到的数据
+     */
+    DROP_NEWEST,
+    /**
+     * 以 {@link Subscriber#onError(Throwable)} 结束订阅
+     */
+    ERROR
+}
@@ -0,0 +1,25 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+/**
+ * 一块采集数据（经过声道路由、静音跳过、增益等内置处理，小端PCM）
+ */
+public class PcmChunk {
+    private final byte[] data;
+    private final long captureNanos;
+
+    public PcmChunk(byte[] data, long captureNanos) {
+        this.data = data;
+        this.captureNanos = captureNanos;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return 读取完成的时刻 System.nanoTime()
+     */
+    public long getCaptureNanos() {
+        return captureNanos;
+    }
+}
@@ -0,0 +1,12 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+/**
+ * 数据发布者，接口与 java.util.concurrent.Flow.Publisher（API 30+）一致，低版本系统也可使用
+ */
+public interface Publisher<T> {
+
+    /**
+     * 添加订阅者，之后回调 {@link Subscriber#onSubscribe(Subscription)}
+     */
+    void subscribe(Subscriber<? super T> subscriber);
+}
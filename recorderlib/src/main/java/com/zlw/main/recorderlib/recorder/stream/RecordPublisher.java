@@ -0,0 +1,215 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按订阅者的请求量（request(n)）推送数据的发布者
+ * <p>
+ * 发布方调用 {@link #offer(Object)} 时只把数据放入各订阅者自己的有界缓冲并立即返回，不会等待任何订阅者；
+ * 每个订阅者在 executor 中依次收到回调，处理慢的订阅者只会让自己的缓冲按 {@link OverflowStrategy} 溢出，
+ * 不影响采集和其他订阅者。发布的数据会被多个订阅者共享，订阅者不能修改
+ * <p>
+ * 发布者与录音库同生命周期，一次录音结束不会 onComplete，订阅在取消前持续接收之后的录音数据
+ */
+public class RecordPublisher<T> implements Publisher<T> {
+    private static final String TAG = RecordPublisher.class.getSimpleName();
+    public static final int DEFAULT_BUFFER_SIZE = 64;
+
+    private final String name;
+    private final Executor executor;
+    private final List<SubscriptionImpl> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param executor 执行订阅者回调，需要支持多个任务同时进行，否则慢订阅者会占用其他订阅者的线程
+     */
+    public RecordPublisher(String name, Executor executor) {
+        this.name = name;
+        this.executor = executor;
+    }
+
+    /**
+     * 以默认缓冲 {@link #DEFAULT_BUFFER_SIZE} 和 {@link OverflowStrategy#DROP_OLDEST} 订阅
+     */
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        subscribe(subscriber, DEFAULT_BUFFER_SIZE, OverflowStrategy.DROP_OLDEST);
+    }
+
+    /**
+     * @param bufferSize 已发布但订阅者尚未请求或尚未处理的最大数量
+     * @param strategy   缓冲已满时的处理方式
+     */
+    public void subscribe(Subscriber<? super T> subscriber, int bufferSize, OverflowStrategy strategy) {
+        if (subscriber == null || strategy == null || bufferSize <= 0) {
+            throw new IllegalArgumentException(String.format("订阅参数错误: %s, %s", bufferSize, strategy));
+        }
+        SubscriptionImpl subscription = new SubscriptionImpl(subscriber, bufferSize, strategy);
+        subscriptions.add(subscription);
+        subscription.schedule();
+    }
+
+    /**
+     * @return 是否有订阅者，没有时发布方可以跳过数据的准备
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * 发布一个数据，不等待
+     */
+    public void offer(T item) {
+        for (SubscriptionImpl subscription : subscriptions) {
+            subscription.offer(item);
+        }
+    }
+
+    private class SubscriptionImpl implements Subscription, Runnable {
+        private final Subscriber<? super T> subscriber;
+        private final int bufferSize;
+        private final OverflowStrategy strategy;
+        private final ArrayDeque<T> buffer = new ArrayDeque<>();
+        /**
+         * 调度计数，不为0时已有任务在 executor 中处理，保证回调依次进行
+         */
+        private final AtomicInteger wip = new AtomicInteger();
+        private boolean subscribed;
+        private long demand;
+        private long dropped;
+        private Throwable error;
+        private volatile boolean cancelled;
+
+        SubscriptionImpl(Subscriber<? super T> subscriber, int bufferSize, OverflowStrategy strategy) {
+            this.subscriber = subscriber;
+            this.bufferSize = bufferSize;
+            this.strategy = strategy;
+        }
+
+        void offer(T item) {
+            synchronized (this) {
+                if (cancelled || error != null) {
+                    return;
+                }
+                if (buffer.size() >= bufferSize) {
+                    if (strategy == OverflowStrategy.ERROR) {
+                        error = new IllegalStateException(String.format("%s 订阅者处理过慢，缓冲已满: %s", name, bufferSize));
+                        buffer.clear();
+                    } else {
+                        if (dropped++ % 100 == 0) {
+                            Logger.w(TAG, "%s 订阅者处理过慢，已丢弃：%s", name, dropped);
+                        }
+                        if (strategy == OverflowStrategy.DROP_NEWEST) {
+                            return;
+                        }
+                        buffer.poll();
+                        buffer.add(item);
+                        return;
+                    }
+                } else {
+                    buffer.add(item);
+                    if (demand == 0) {
+                        return;
+                    }
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (n <= 0) {
+                    error = new IllegalArgumentException("request 的数量必须大于0: " + n);
+                    buffer.clear();
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (!subscribed) {
+                subscribed = true;
+                try {
+                    subscriber.onSubscribe(this);
+                } catch (RuntimeException e) {
+                    Logger.e(e, TAG, "%s onSubscribe 异常，取消订阅", name);
+                    cancel();
+                    return;
+                }
+            }
+            while (true) {
+                T item;
+                Throwable failure = null;
+                synchronized (this) {
+                    if (cancelled) {
+                        buffer.clear();
+                        return;
+                    }
+                    if (error != null) {
+                        failure = error;
+                        item = null;
+                    } else if (demand == 0 || buffer.isEmpty()) {
+                        return;
+                    } else {
+                        item = buffer.poll();
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                    }
+                }
+                if (failure != null) {
+                    cancel();
+                    try {
+                        subscriber.onError(failure);
+                    } catch (RuntimeException e) {
+                        Logger.e(e, TAG, "%s onError 异常", name);
+                    }
+                    return;
+                }
+                try {
+                    subscriber.onNext(item);
+                } catch (RuntimeException e) {
+                    Logger.e(e, TAG, "%s onNext 异常，取消订阅", name);
+                    cancel();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+/**
+ * 订阅者，接口与 java.util.concurrent.Flow.Subscriber 一致；同一订阅者的回调依次进行，不会并发
+ */
+public interface Subscriber<T> {
+
+    /**
+     * 订阅成功，通过 {@link Subscription#request(long)} 请求数据后才会收到 onNext
+     */
+    void onSubscribe(Subscription subscription);
+
+    void onNext(T item);
+
+    /**
+     * 订阅因错误结束（如按 {@link OverflowStrategy#ERROR} 缓冲溢出），之后不再回调
+     */
+    void onError(Throwable throwable);
+
+    void onComplete();
+}
@@ -0,0 +1,19 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+/**
+ * 订阅关系，接口与 java.util.concurrent.Flow.Subscription 一致，可在任意线程调用
+ */
+public interface Subscription {
+
+    /**
+     * 增加请求的数量，累计超过 Long.MAX_VALUE 时视为不限
+     *
+     * @param n 必须大于0，否则以 IllegalArgumentException 结束订阅
+     */
+    void request(long n);
+
+    /**
+     * 取消订阅，之后不再回调（已在进行中的回调除外）
+     */
+    void cancel();
+}
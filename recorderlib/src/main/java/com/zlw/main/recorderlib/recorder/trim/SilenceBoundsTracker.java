@@ -0,0 +1,80 @@
+package com.zlw.main.recorderlib.recorder.trim;
+
+/**
+ * 在采集线程中记录第一个和最后一个非静音样本的位置（每声道样本数），
+ * 用于无法直接分析样本的压缩格式（MP3/ADTS）的静音裁剪
+ */
+public class SilenceBoundsTracker {
+    private final int channels;
+    private final int threshold;
+    private long position;
+    private long first = -1;
+    private long last = -1;
+
+    /**
+     * @param thresholdDb 样本幅度高于该值 dBFS 视为非静音
+     */
+    public SilenceBoundsTracker(int channels, float thresholdDb) {
+        this.channels = Math.max(1, channels);
+        this.threshold = (int) (32768 * Math.pow(10, thresholdDb / 20));
+    }
+
+    public void process(short[] data, int count) {
+        int frames = count / channels;
+        for (int f = 0, i = 0; f < frames; f++) {
+            boolean loud = false;
+            for (int c = 0; c < channels; c++, i++) {
+                int s = data[i];
+                if (s > threshold || -s > threshold) {
+                    loud = true;
+                }
+            }
+            mark(loud);
+        }
+    }
+
+    /**
+     * 16bit 小端 PCM
+     */
+    public void process(byte[] data, int len) {
+        int frames = len / 2 / channels;
+        for (int f = 0, i = 0; f < frames; f++) {
+            boolean loud = false;
+            for (int c = 0; c < channels; c++, i += 2) {
+                int s = (short) ((data[i] & 0xff) | (data[i + 1] << 8));
+                if (s > threshold || -s > threshold) {
+                    loud = true;
+                }
+            }
+            mark(loud);
+        }
+    }
+
+    private void mark(boolean loud) {
+        if (loud) {
+            if (first < 0) {
+                first = position;
+            }
+            last = position;
+        }
+        position++;
+    }
+
+    /**
+     * @return 第一个非静音样本，全部静音时为 -1
+     */
+    public long getFirst() {
+        return first;
+    }
+
+    /**
+     * @return 最后一个非静音样本，全部静音时为 -1
+     */
+    public long getLast() {
+        return last;
+    }
+
+    public long getTotal() {
+        return position;
+    }
+}
@@ -0,0 +1,362 @@
+package com.zlw.main.recorderlib.recorder.trim;
+
+import com.zlw.main.recorderlib.recorder.wav.PcmFileInfo;
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 原地裁剪录音开头和结尾的静音
+ * <p>
+ * WAV/PCM：以内存映射窗口分别从两端向中间扫描，找到第一个和最后一个超过门限的样本帧；
+ * 只有开头需要裁剪时才把保留的区间前移，否则只截断文件并回填 WAV 头
+ * <p>
+ * MP3/ADTS：只解析帧头，按帧边界裁剪，不重新编码；静音的范围需由调用方给出（如录音时的 {@link SilenceBoundsTracker}）。
+ * MP3 的 Xing/Info 帧在裁剪后不再准确，会被一并删除；保留区间的第一帧可能引用已删除帧的比特池，解码时开头有极短的静音
+ * <p>
+ * 方法会阻塞，需在后台线程中调用；仅支持16bit PCM
+ */
+public class SilenceTrimmer {
+    private static final String TAG = SilenceTrimmer.class.getSimpleName();
+    /**
+     * 默认静音门限 dBFS
+     */
+    public static final float DEFAULT_THRESHOLD_DB = -50f;
+    /**
+     * 默认在非静音部分前后保留的时长 ms
+     */
+    public static final int DEFAULT_PADDING_MS = 200;
+
+    private static final int SCAN_WINDOW_BYTES = 1024 * 1024;
+    private static final int COPY_BUFFER_BYTES = 256 * 1024;
+
+    private static final int[] MPEG1_BITRATES = {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320};
+    private static final int[] MPEG2_BITRATES = {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160};
+    private static final int[][] MPEG_SAMPLE_RATES = {
+            {11025, 12000, 8000}, null, {22050, 24000, 16000}, {44100, 48000, 32000}};
+    private static final int[] ADTS_SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+
+    private SilenceTrimmer() {
+    }
+
+    public static TrimResult trimWav(File file) throws IOException {
+        return trimWav(file, DEFAULT_THRESHOLD_DB, DEFAULT_PADDING_MS);
+    }
+
+    public static TrimResult trimWav(File file, float thresholdDb, int paddingMs) throws IOException {
+        return trimPcmFile(file, PcmFileInfo.ofWav(file), thresholdDb, paddingMs);
+    }
+
+    /**
+     * 裁剪16bit小端裸 PCM 文件
+     */
+    public static TrimResult trimPcm(File file, int sampleRate, int channels, float thresholdDb, int paddingMs) throws IOException {
+        return trimPcmFile(file, PcmFileInfo.ofPcm(file, sampleRate, channels), thresholdDb, paddingMs);
+    }
+
+    /**
+     * 按帧裁剪 MP3，保留与 [startMs, endMs) 有重叠的帧
+     */
+    public static TrimResult trimMp3(File file, long startMs, long endMs) throws IOException {
+        return trimFrames(file, true, startMs, endMs);
+    }
+
+    /**
+     * 按帧裁剪 AAC ADTS 裸流，保留与 [startMs, endMs) 有重叠的帧
+     */
+    public static TrimResult trimAdts(File file, long startMs, long endMs) throws IOException {
+        return trimFrames(file, false, startMs, endMs);
+    }
+
+    private static TrimResult trimPcmFile(File file, PcmFileInfo info, float thresholdDb, int paddingMs) throws IOException {
+        if (info.getBitsPerSample() != 16) {
+            throw new IOException("仅支持16bit PCM: " + info);
+        }
+        int threshold = (int) (32768 * Math.pow(10, thresholdDb / 20));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long frames = info.getFrames();
+            long first = scanForward(channel, info, threshold);
+            if (first < 0) {
+                //全部静音时不处理，由调用方决定是否保留
+                return TrimResult.NONE;
+            }
+            long last = scanBackward(channel, info, threshold);
+            long padding = (long) paddingMs * info.getSampleRate() / 1000;
+            long start = Math.max(0, first - padding);
+            long end = Math.min(frames, last + 1 + padding);
+            if (start == 0 && end == frames) {
+                return TrimResult.NONE;
+            }
+
+            int frameBytes = info.getFrameBytes();
+            long dataOffset = info.getDataOffset();
+            long newDataLength = (end - start) * frameBytes;
+            long oldLength = channel.size();
+            long tailStart = dataOffset + info.getDataLength();
+            long tailLength = Math.max(0, oldLength - tailStart);
+            if (start > 0) {
+                copyRange(channel, dataOffset + start * frameBytes, dataOffset, newDataLength);
+            }
+            if (tailLength > 0) {
+                //data 块之后的其他 RIFF 块一并前移
+                copyRange(channel, tailStart, dataOffset + newDataLength, tailLength);
+            }
+            long newLength = dataOffset + newDataLength + tailLength;
+            channel.truncate(newLength);
+            if (info.isWav()) {
+                writeIntLe(channel, 4, newLength - 8);
+                writeIntLe(channel, dataOffset - 4, newDataLength);
+            }
+            TrimResult result = new TrimResult(start * 1000 / info.getSampleRate(),
+                    (frames - end) * 1000 / info.getSampleRate(), oldLength - newLength);
+            Logger.i(TAG, "静音裁剪 %s: %s", file.getName(), result);
+            return result;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * @return 第一个超过门限的样本帧，全部静音时为 -1
+     */
+    private static long scanForward(FileChannel channel, PcmFileInfo info, int threshold) throws IOException {
+        int frameBytes = info.getFrameBytes();
+        int window = SCAN_WINDOW_BYTES / frameBytes * frameBytes;
+        long dataBytes = info.getFrames() * frameBytes;
+        for (long offset = 0; offset < dataBytes; offset += window) {
+            int size = (int) Math.min(window, dataBytes - offset);
+            MappedByteBuffer buffer = map(channel, info.getDataOffset() + offset, size);
+            for (int i = 0; i < size; i += 2) {
+                if (isLoud(buffer.getShort(i), threshold)) {
+                    return (offset + i) / frameBytes;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 最后一个超过门限的样本帧，全部静音时为 -1
+     */
+    private static long scanBackward(FileChannel channel, PcmFileInfo info, int threshold) throws IOException {
+        int frameBytes = info.getFrameBytes();
+        int window = SCAN_WINDOW_BYTES / frameBytes * frameBytes;
+        long dataBytes = info.getFrames() * frameBytes;
+        for (long end = dataBytes; end > 0; end -= window) {
+            long offset = Math.max(0, end - window);
+            int size = (int) (end - offset);
+            MappedByteBuffer buffer = map(channel, info.getDataOffset() + offset, size);
+            for (int i = size - 2; i >= 0; i -= 2) {
+                if (isLoud(buffer.getShort(i), threshold)) {
+                    return (offset + i) / frameBytes;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isLoud(short sample, int threshold) {
+        return sample > threshold || -sample > threshold;
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long position, int size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    private static TrimResult trimFrames(File file, boolean mp3, long startMs, long endMs) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long oldLength = channel.size();
+            if (oldLength > Integer.MAX_VALUE) {
+                throw new IOException("文件过大");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, oldLength);
+            int size = (int) oldLength;
+            int prefixEnd = mp3 ? id3v2Length(buffer) : 0;
+            int pos = prefixEnd;
+            boolean dropInfoFrame = false;
+            int sampleRate = 0;
+            int samplesPerFrame = 0;
+            long frameIndex = 0;
+            long firstKeep = 0;
+            long endKeep = Long.MAX_VALUE;
+            int keepStart = -1;
+            int keepEnd = -1;
+            int[] frame = new int[3];
+            while (pos + 7 <= size && (mp3 ? parseMp3Header(buffer, pos, frame) : parseAdtsHeader(buffer, pos, frame))) {
+                if (pos + frame[0] > size) {
+                    //末尾不完整的帧
+                    break;
+                }
+                if (mp3 && frameIndex == 0 && !dropInfoFrame && keepStart < 0 && isXingFrame(buffer, pos)) {
+                    dropInfoFrame = true;
+                    pos += frame[0];
+                    continue;
+                }
+                if (sampleRate == 0) {
+                    sampleRate = frame[2];
+                    samplesPerFrame = frame[1];
+                    firstKeep = Math.max(0, startMs) * sampleRate / 1000 / samplesPerFrame;
+                    endKeep = (endMs * sampleRate / 1000 + samplesPerFrame - 1) / samplesPerFrame;
+                }
+                if (frameIndex == firstKeep) {
+                    keepStart = pos;
+                }
+                if (frameIndex == endKeep) {
+                    keepEnd = pos;
+                }
+                pos += frame[0];
+                frameIndex++;
+            }
+            if (keepStart < 0 || sampleRate == 0) {
+                return TrimResult.NONE;
+            }
+            int framesEnd = pos;
+            if (keepEnd < 0) {
+                keepEnd = framesEnd;
+            }
+            //保留结尾的 ID3v1 标签
+            int suffixStart = framesEnd;
+            int suffixLength = size - framesEnd == 128 && buffer.get(framesEnd) == 'T' && buffer.get(framesEnd + 1) == 'A'
+                    && buffer.get(framesEnd + 2) == 'G' ? 128 : 0;
+            if (keepStart == prefixEnd && keepEnd == framesEnd && !dropInfoFrame) {
+                return TrimResult.NONE;
+            }
+            long keepLength = keepEnd - keepStart;
+            copyRange(channel, keepStart, prefixEnd, keepLength);
+            if (suffixLength > 0) {
+                copyRange(channel, suffixStart, prefixEnd + keepLength, suffixLength);
+            }
+            long newLength = prefixEnd + keepLength + suffixLength;
+            channel.truncate(newLength);
+            long endFrame = Math.min(endKeep, frameIndex);
+            TrimResult result = new TrimResult(firstKeep * samplesPerFrame * 1000 / sampleRate,
+                    (frameIndex - endFrame) * samplesPerFrame * 1000 / sampleRate, oldLength - newLength);
+            Logger.i(TAG, "静音裁剪 %s: %s", file.getName(), result);
+            return result;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int id3v2Length(ByteBuffer buffer) {
+        if (buffer.limit() < 10 || buffer.get(0) != 'I' || buffer.get(1) != 'D' || buffer.get(2) != '3') {
+            return 0;
+        }
+        int size = ((buffer.get(6) & 0x7f) << 21) | ((buffer.get(7) & 0x7f) << 14)
+                | ((buffer.get(8) & 0x7f) << 7) | (buffer.get(9) & 0x7f);
+        boolean footer = (buffer.get(5) & 0x10) != 0;
+        return Math.min(buffer.limit(), 10 + size + (footer ? 10 : 0));
+    }
+
+    /**
+     * 解析 MPEG Layer III 帧头
+     *
+     * @param out 帧长度、每帧样本数、采样率
+     */
+    private static boolean parseMp3Header(ByteBuffer buffer, int pos, int[] out) {
+        int header = buffer.order(ByteOrder.BIG_ENDIAN).getInt(pos);
+        if ((header & 0xffe00000) != 0xffe00000) {
+            return false;
+        }
+        int version = (header >>> 19) & 3;
+        int layer = (header >>> 17) & 3;
+        int bitrateIndex = (header >>> 12) & 0xf;
+        int sampleRateIndex = (header >>> 10) & 3;
+        int padding = (header >>> 9) & 1;
+        if (version == 1 || layer != 1 || bitrateIndex == 0 || bitrateIndex == 15 || sampleRateIndex == 3) {
+            return false;
+        }
+        int sampleRate = MPEG_SAMPLE_RATES[version][sampleRateIndex];
+        boolean mpeg1 = version == 3;
+        int bitrate = (mpeg1 ? MPEG1_BITRATES : MPEG2_BITRATES)[bitrateIndex] * 1000;
+        out[0] = (mpeg1 ? 144 : 72) * bitrate / sampleRate + padding;
+        out[1] = mpeg1 ? 1152 : 576;
+        out[2] = sampleRate;
+        return true;
+    }
+
+    /**
+     * LAME 等编码器写在第一帧的 Xing/Info 标签
+     */
+    private static boolean isXingFrame(ByteBuffer buffer, int pos) {
+        int header = buffer.order(ByteOrder.BIG_ENDIAN).getInt(pos);
+        boolean mpeg1 = ((header >>> 19) & 3) == 3;
+        boolean mono = ((header >>> 6) & 3) == 3;
+        int sideInfo = mpeg1 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        int tag = pos + 4 + sideInfo;
+        if (tag + 4 > buffer.limit()) {
+            return false;
+        }
+        int id = buffer.getInt(tag);
+        return id == 0x58696e67 || id == 0x496e666f;
+    }
+
+    /**
+     * 解析 ADTS 帧头
+     *
+     * @param out 帧长度、每帧样本数、采样率
+     */
+    private static boolean parseAdtsHeader(ByteBuffer buffer, int pos, int[] out) {
+        if ((buffer.get(pos) & 0xff) != 0xff || (buffer.get(pos + 1) & 0xf0) != 0xf0) {
+            return false;
+        }
+        int sampleRateIndex = (buffer.get(pos + 2) >> 2) & 0xf;
+        if (sampleRateIndex >= ADTS_SAMPLE_RATES.length) {
+            return false;
+        }
+        int frameLength = ((buffer.get(pos + 3) & 0x3) << 11) | ((buffer.get(pos + 4) & 0xff) << 3)
+                | ((buffer.get(pos + 5) & 0xff) >> 5);
+        if (frameLength < 7) {
+            return false;
+        }
+        out[0] = frameLength;
+        out[1] = 1024 * ((buffer.get(pos + 6) & 0x3) + 1);
+        out[2] = ADTS_SAMPLE_RATES[sampleRateIndex];
+        return true;
+    }
+
+    /**
+     * 在同一文件内把 [src, src+count) 拷贝到 dst，dst <= src，顺序拷贝不会覆盖未读数据
+     */
+    private static void copyRange(FileChannel channel, long src, long dst, long count) throws IOException {
+        if (src == dst || count <= 0) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_BYTES, count));
+        long done = 0;
+        while (done < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - done));
+            int read = channel.read(buffer, src + done);
+            if (read <= 0) {
+                throw new IOException("读取失败");
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, dst + done + buffer.position());
+            }
+            done += read;
+        }
+    }
+
+    private static void writeIntLe(FileChannel channel, long position, long value) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0, (int) value);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.zlw.main.recorderlib.recorder.trim;
+
+import java.util.Locale;
+
+/**
+ * 静音裁剪结果
+ */
+public class TrimResult {
+    static final TrimResult NONE = new TrimResult(0, 0, 0);
+
+    private final long removedLeadingMs;
+    private final long removedTrailingMs;
+    private final long removedBytes;
+
+    TrimResult(long removedLeadingMs, long removedTrailingMs, long removedBytes) {
+        this.removedLeadingMs = removedLeadingMs;
+        this.removedTrailingMs = removedTrailingMs;
+        this.removedBytes = removedBytes;
+    }
+
+    /**
+     * 开头删除的时长，原时间轴上的位置减去该值即为裁剪后文件中的位置
+     */
+    public long getRemovedLeadingMs() {
+        return removedLeadingMs;
+    }
+
+    public long getRemovedTrailingMs() {
+        return removedTrailingMs;
+    }
+
+    public long getRemovedBytes() {
+        return removedBytes;
+    }
+
+    public boolean isTrimmed() {
+        return removedBytes > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "leading %s ms, trailing %s ms, %s bytes", removedLeadingMs, removedTrailingMs, removedBytes);
+    }
+}
@@ -0,0 +1,750 @@
+package com.zlw.main.recorderlib.recorder.upload;
+
+import com.zlw.main.recorderlib.utils.Logger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 录音过程中将编码数据按固定大小分块，通过 HTTP 并行上传，服务端无需等待录音结束即可开始处理
+ * <p>
+ * 协议：每个分块发送一个 PUT {endpoint} 请求，请求头
+ * <pre>
+ * X-Upload-Session: 会话ID
+ * Content-Range: bytes 起始-结束/总长度     总长度未知时为 *
+ * </pre>
+ * 分块可能乱序到达，服务端按 Content-Range 拼接，返回 2xx 或 308 表示已接收。
+ * 带总长度的最后一块（数据恰好整块时为长度0、Content-Range 为 bytes *&#47;总长度 的结束请求）在其余分块全部确认后才发送。
+ * 查询进度：长度为0、Content-Range 为 bytes *&#47;* 的 PUT，服务端以 308 + Range: bytes=0-N 返回连续收到的前缀，
+ * 200/201 表示已完整接收，404 表示没有该会话
+ * <p>
+ * 写入不阻塞网络：内存中待上传的数据超过 memoryBufferBytes 后，新的分块写入磁盘（在写入线程中）；
+ * 请求失败的分块重新排队，按指数退避重试，重试前先查询服务端进度并跳过已确认的部分。
+ * {@link #stop()} 后尚未确认的分块全部保存在磁盘上，可通过 {@link #resume} 按会话ID继续上传（包括进程重启之后）
+ */
+public class ChunkedUploader {
+    private static final String TAG = ChunkedUploader.class.getSimpleName();
+    static final String HEADER_SESSION = "X-Upload-Session";
+    static final int HTTP_RESUME_INCOMPLETE = 308;
+    private static final long SERVER_COMPLETE = -2;
+    private static final String CHUNK_SUFFIX = ".chunk";
+    private static final String TOTAL_SUFFIX = ".total";
+    private static final int COPY_BUFFER_SIZE = 8 * 1024;
+    /**
+     * take() 返回该值表示需要先查询服务端进度
+     */
+    private static final Chunk SYNC = new Chunk(-1, 0);
+
+    private final UploadConfig config;
+    private final File spillDir;
+    private final String sessionId;
+    private final Listener listener;
+    private final int chunkSize;
+
+    private final Object lock = new Object();
+    /**
+     * 待发送的分块，按偏移排序
+     */
+    private final TreeMap<Long, Chunk> pending = new TreeMap<>();
+    /**
+     * 已确认但与前缀不连续的区间：起始 → 结束
+     */
+    private final TreeMap<Long, Long> ackedAhead = new TreeMap<>();
+    private final ArrayDeque<byte[]> freeBuffers = new ArrayDeque<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private long total = -1;
+    private long ackedOffset;
+    private long memoryBytes;
+    private long spilledBytes;
+    private int inFlight;
+    private int failures;
+    private long nextAttemptAt;
+    private boolean needsSync;
+    private boolean syncing;
+    private boolean running;
+    private boolean done;
+
+    /**
+     * 以下仅在写入线程中访问
+     */
+    private byte[] current;
+    private int currentLen;
+    private volatile long written;
+
+    /**
+     * @param spillDir  分块写入磁盘的目录
+     * @param sessionId 会话ID，同一份数据续传时保持不变
+     */
+    public ChunkedUploader(UploadConfig config, File spillDir, String sessionId, Listener listener) {
+        if (config.getEndpoint() == null) {
+            throw new IllegalArgumentException("未设置上传地址");
+        }
+        this.config = config;
+        this.spillDir = spillDir;
+        this.sessionId = sessionId;
+        this.listener = listener;
+        this.chunkSize = Math.max(1024, config.getChunkSize());
+    }
+
+    /**
+     * 继续上传 {@link #stop()} 后留在磁盘上的分块
+     * 若之前已调用过 {@link #finish()}，启动后直接上传剩余部分；否则可以继续写入
+     */
+    public static ChunkedUploader resume(UploadConfig config, File spillDir, String sessionId, Listener listener) throws IOException {
+        ChunkedUploader uploader = new ChunkedUploader(config, spillDir, sessionId, listener);
+        String prefix = sessionId + "_";
+        File[] files = spillDir.listFiles();
+        long end = 0;
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (!name.startsWith(prefix) || !name.endsWith(CHUNK_SUFFIX)) {
+                    continue;
+                }
+                long offset;
+                try {
+                    offset = Long.parseLong(name.substring(prefix.length(), name.length() - CHUNK_SUFFIX.length()));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                Chunk chunk = new Chunk(offset, (int) file.length());
+                chunk.file = file;
+                uploader.pending.put(offset, chunk);
+                uploader.spilledBytes += chunk.length;
+                end = Math.max(end, offset + chunk.length);
+            }
+        }
+        File totalFile = uploader.totalFile();
+        if (totalFile.isFile()) {
+            long total = Long.parseLong(new String(readFile(totalFile), "US-ASCII").trim());
+            Chunk last = null;
+            for (Chunk chunk : uploader.pending.values()) {
+                if (chunk.offset + chunk.length == total) {
+                    last = chunk;
+                }
+            }
+            if (last == null) {
+                last = new Chunk(total, 0);
+                uploader.pending.put(total, last);
+            }
+            last.last = true;
+            last.total = total;
+            uploader.total = total;
+            end = total;
+        }
+        uploader.written = end;
+        uploader.needsSync = true;
+        Logger.i(TAG, "续传 %s：%s 个分块，已写入 %s bytes", sessionId, uploader.pending.size(), end);
+        return uploader;
+    }
+
+    /**
+     * 删除会话留在磁盘上的分块
+     */
+    public static void discard(File spillDir, String sessionId) {
+        File[] files = spillDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().startsWith(sessionId + "_") || file.getName().equals(sessionId + TOTAL_SUFFIX)) {
+                file.delete();
+            }
+        }
+    }
+
+    public void start() {
+        synchronized (lock) {
+            if (running) {
+                return;
+            }
+            running = true;
+        }
+        int count = Math.max(1, config.getParallelUploads());
+        for (int i = 0; i < count; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    work();
+                }
+            }, "upload-" + i);
+            workers.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * 在写入线程中追加数据，凑满一块后交给上传线程；不等待网络
+     */
+    public void write(byte[] data, int offset, int len) {
+        while (len > 0) {
+            if (current == null) {
+                current = obtainBuffer();
+            }
+            int n = Math.min(len, chunkSize - currentLen);
+            System.arraycopy(data, offset, current, currentLen, n);
+            currentLen += n;
+            offset += n;
+            len -= n;
+            written += n;
+            if (currentLen == chunkSize) {
+                seal(false);
+            }
+        }
+    }
+
+    /**
+     * 数据已全部写入，剩余分块上传完成后回调 {@link Listener#onComplete}
+     */
+    public void finish() {
+        seal(true);
+    }
+
+    /**
+     * 停止上传线程（等待进行中的请求结束），将未确认的分块全部写入磁盘以便 {@link #resume}
+     * 不能与 {@link #write} 同时调用
+     */
+    public void stop() {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        for (Thread worker : workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Logger.e(e, TAG, e.getMessage());
+            }
+        }
+        workers.clear();
+        synchronized (lock) {
+            if (done) {
+                return;
+            }
+        }
+        if (currentLen > 0) {
+            seal(false);
+        }
+        List<Chunk> memoryChunks = new ArrayList<>();
+        long knownTotal;
+        synchronized (lock) {
+            for (Chunk chunk : pending.values()) {
+                if (chunk.data != null) {
+                    memoryChunks.add(chunk);
+                }
+            }
+            knownTotal = total;
+        }
+        try {
+            for (Chunk chunk : memoryChunks) {
+                File file = spillFile(chunk.offset);
+                writeFile(file, chunk.data, chunk.length);
+                synchronized (lock) {
+                    chunk.file = file;
+                    chunk.data = null;
+                    memoryBytes -= chunk.length;
+                    spilledBytes += chunk.length;
+                }
+            }
+            if (knownTotal >= 0) {
+                byte[] text = String.valueOf(knownTotal).getBytes("US-ASCII");
+                writeFile(totalFile(), text, text.length);
+            }
+        } catch (IOException e) {
+            Logger.e(e, TAG, "保存未上传分块失败：%s", e.getMessage());
+        }
+        Logger.i(TAG, "上传暂停 %s，已确认 %s bytes", sessionId, getAckedOffset());
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    /**
+     * 服务端已确认的连续前缀长度
+     */
+    public long getAckedOffset() {
+        synchronized (lock) {
+            return ackedOffset;
+        }
+    }
+
+    public long getWrittenBytes() {
+        return written;
+    }
+
+    /**
+     * 内存中待上传的字节数
+     */
+    public long getBufferedBytes() {
+        synchronized (lock) {
+            return memoryBytes;
+        }
+    }
+
+    /**
+     * 累计写入磁盘的字节数
+     */
+    public long getSpilledBytes() {
+        synchronized (lock) {
+            return spilledBytes;
+        }
+    }
+
+    private void seal(boolean last) {
+        long offset = written - currentLen;
+        Chunk chunk = new Chunk(offset, currentLen);
+        chunk.last = last;
+        chunk.total = last ? written : -1;
+        if (currentLen > 0) {
+            boolean spill;
+            synchronized (lock) {
+                spill = memoryBytes + currentLen > config.getMemoryBufferBytes();
+            }
+            if (spill) {
+                try {
+                    File file = spillFile(offset);
+                    writeFile(file, current, currentLen);
+                    chunk.file = file;
+                } catch (IOException e) {
+                    //写磁盘失败时仍放在内存中
+                    Logger.e(e, TAG, "分块写入磁盘失败：%s", e.getMessage());
+                    spill = false;
+                }
+            }
+            synchronized (lock) {
+                if (spill) {
+                    spilledBytes += currentLen;
+                } else {
+                    chunk.data = current;
+                    memoryBytes += currentLen;
+                }
+            }
+            if (!spill) {
+                current = null;
+            }
+        }
+        currentLen = 0;
+        synchronized (lock) {
+            if (last) {
+                total = chunk.total;
+            }
+            pending.put(offset, chunk);
+            lock.notifyAll();
+        }
+    }
+
+    private byte[] obtainBuffer() {
+        synchronized (lock) {
+            byte[] buffer = freeBuffers.poll();
+            return buffer != null ? buffer : new byte[chunkSize];
+        }
+    }
+
+    private void work() {
+        byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = take();
+            } catch (InterruptedException e) {
+                Logger.e(e, TAG, e.getMessage());
+                return;
+            }
+            if (chunk == null) {
+                return;
+            }
+            if (chunk == SYNC) {
+                sync();
+                continue;
+            }
+            int code;
+            try {
+                code = put(chunk, copyBuffer);
+            } catch (IOException e) {
+                retry(chunk, e.getMessage());
+                continue;
+            }
+            if ((code >= 200 && code < 300) || code == HTTP_RESUME_INCOMPLETE) {
+                ack(chunk);
+            } else if (code == 408 || code == 429 || code >= 500) {
+                retry(chunk, "HTTP " + code);
+            } else {
+                fail(chunk, "HTTP " + code);
+            }
+        }
+    }
+
+    private Chunk take() throws InterruptedException {
+        synchronized (lock) {
+            while (running && !done) {
+                long wait = nextAttemptAt - System.currentTimeMillis();
+                if (wait > 0) {
+                    lock.wait(wait);
+                    continue;
+                }
+                if (needsSync) {
+                    if (!syncing && inFlight == 0) {
+                        syncing = true;
+                        return SYNC;
+                    }
+                } else if (!pending.isEmpty()) {
+                    //最后一块排在最后，只有其余分块都确认后才会取到
+                    Chunk first = pending.firstEntry().getValue();
+                    if (!first.last || inFlight == 0) {
+                        pending.remove(first.offset);
+                        inFlight++;
+                        return first;
+                    }
+                }
+                lock.wait();
+            }
+            return null;
+        }
+    }
+
+    private void ack(Chunk chunk) {
+        boolean complete;
+        long acked;
+        synchronized (lock) {
+            inFlight--;
+            failures = 0;
+            release(chunk);
+            markAcked(chunk.offset, chunk.offset + chunk.length);
+            complete = chunk.last;
+            done |= complete;
+            acked = ackedOffset;
+            lock.notifyAll();
+        }
+        if (chunk.file != null) {
+            chunk.file.delete();
+        }
+        if (listener != null) {
+            listener.onProgress(sessionId, acked, written);
+        }
+        if (complete) {
+            onComplete(chunk.total);
+        }
+    }
+
+    private void retry(Chunk chunk, String reason) {
+        long delay;
+        synchronized (lock) {
+            inFlight--;
+            pending.put(chunk.offset, chunk);
+            delay = scheduleRetry();
+            lock.notifyAll();
+        }
+        Logger.w(TAG, "分块 %s 上传失败：%s，%s ms 后重试", chunk.offset, reason, delay);
+    }
+
+    private void fail(Chunk chunk, String error) {
+        synchronized (lock) {
+            inFlight--;
+            pending.put(chunk.offset, chunk);
+            done = true;
+            lock.notifyAll();
+        }
+        Logger.e(TAG, "上传失败 %s：%s", sessionId, error);
+        if (listener != null) {
+            listener.onError(sessionId, error);
+        }
+    }
+
+    /**
+     * 需持有 lock
+     */
+    private long scheduleRetry() {
+        failures++;
+        long delay = Math.min((long) config.getMaxRetryDelayMs(), (long) config.getRetryDelayMs() << Math.min(failures - 1, 16));
+        nextAttemptAt = System.currentTimeMillis() + delay;
+        needsSync = true;
+        return delay;
+    }
+
+    /**
+     * 查询服务端进度，确认已收到的分块
+     */
+    private void sync() {
+        long serverOffset;
+        try {
+            serverOffset = queryOffset();
+        } catch (IOException e) {
+            long delay;
+            synchronized (lock) {
+                syncing = false;
+                delay = scheduleRetry();
+                lock.notifyAll();
+            }
+            Logger.w(TAG, "查询上传进度失败：%s，%s ms 后重试", e.getMessage(), delay);
+            return;
+        }
+        List<File> ackedFiles = new ArrayList<>();
+        long completeTotal = -1;
+        long acked;
+        synchronized (lock) {
+            syncing = false;
+            needsSync = false;
+            boolean serverComplete = serverOffset == SERVER_COMPLETE;
+            if (serverComplete) {
+                serverOffset = total >= 0 ? total : ackedOffset;
+            }
+            Iterator<Map.Entry<Long, Chunk>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Chunk chunk = iterator.next().getValue();
+                //结束请求只有服务端确认完整接收后才能跳过
+                boolean received = chunk.length > 0 ? chunk.offset + chunk.length <= serverOffset : serverComplete;
+                if (!received) {
+                    continue;
+                }
+                iterator.remove();
+                release(chunk);
+                if (chunk.file != null) {
+                    ackedFiles.add(chunk.file);
+                }
+                if (chunk.last) {
+                    completeTotal = chunk.total;
+                    done = true;
+                }
+            }
+            markAcked(0, serverOffset);
+            acked = ackedOffset;
+            lock.notifyAll();
+        }
+        for (File file : ackedFiles) {
+            file.delete();
+        }
+        Logger.i(TAG, "服务端已确认 %s bytes", acked);
+        if (completeTotal >= 0) {
+            onComplete(completeTotal);
+        }
+    }
+
+    private void onComplete(long totalBytes) {
+        totalFile().delete();
+        Logger.i(TAG, "上传完成 %s：%s bytes", sessionId, totalBytes);
+        if (listener != null) {
+            listener.onComplete(sessionId, totalBytes);
+        }
+    }
+
+    /**
+     * 需持有 lock
+     */
+    private void release(Chunk chunk) {
+        if (chunk.data != null) {
+            memoryBytes -= chunk.length;
+            if (chunk.data.length == chunkSize && (freeBuffers.size() + 1) * (long) chunkSize <= config.getMemoryBufferBytes()) {
+                freeBuffers.add(chunk.data);
+            }
+            chunk.data = null;
+        }
+    }
+
+    /**
+     * 需持有 lock
+     */
+    private void markAcked(long start, long end) {
+        if (start > ackedOffset) {
+            Long previous = ackedAhead.get(start);
+            ackedAhead.put(start, previous == null ? end : Math.max(previous, end));
+            return;
+        }
+        ackedOffset = Math.max(ackedOffset, end);
+        while (!ackedAhead.isEmpty() && ackedAhead.firstKey() <= ackedOffset) {
+            ackedOffset = Math.max(ackedOffset, ackedAhead.pollFirstEntry().getValue());
+        }
+    }
+
+    private int put(Chunk chunk, byte[] copyBuffer) throws IOException {
+        String range;
+        if (chunk.length == 0) {
+            range = "bytes */" + chunk.total;
+        } else {
+            range = "bytes " + chunk.offset + "-" + (chunk.offset + chunk.length - 1) + "/" + (chunk.last ? String.valueOf(chunk.total) : "*");
+        }
+        HttpURLConnection connection = open(range);
+        try {
+            connection.setFixedLengthStreamingMode(chunk.length);
+            OutputStream os = connection.getOutputStream();
+            try {
+                byte[] data;
+                File file;
+                synchronized (lock) {
+                    data = chunk.data;
+                    file = chunk.file;
+                }
+                if (data != null) {
+                    os.write(data, 0, chunk.length);
+                } else if (file != null) {
+                    InputStream is = new FileInputStream(file);
+                    try {
+                        int read;
+                        while ((read = is.read(copyBuffer)) > 0) {
+                            os.write(copyBuffer, 0, read);
+                        }
+                    } finally {
+                        is.close();
+                    }
+                }
+            } finally {
+                os.close();
+            }
+            return readResponse(connection);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @return 服务端连续收到的字节数，已完整接收时为 {@link #SERVER_COMPLETE}
+     */
+    private long queryOffset() throws IOException {
+        HttpURLConnection connection = open("bytes */*");
+        try {
+            connection.setFixedLengthStreamingMode(0);
+            connection.getOutputStream().close();
+            int code = readResponse(connection);
+            if (code == HTTP_RESUME_INCOMPLETE) {
+                return parseRangeEnd(connection.getHeaderField("Range"));
+            } else if (code == 404) {
+                return 0;
+            } else if (code >= 200 && code < 300) {
+                return SERVER_COMPLETE;
+            }
+            throw new IOException("HTTP " + code);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Range: bytes=0-N
+     */
+    static long parseRangeEnd(String range) {
+        if (range == null) {
+            return 0;
+        }
+        int dash = range.lastIndexOf('-');
+        try {
+            return dash < 0 ? 0 : Long.parseLong(range.substring(dash + 1).trim()) + 1;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private HttpURLConnection open(String contentRange) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(config.getEndpoint()).openConnection();
+        connection.setRequestMethod("PUT");
+        connection.setDoOutput(true);
+        connection.setInstanceFollowRedirects(false);
+        connection.setUseCaches(false);
+        connection.setConnectTimeout(config.getConnectTimeoutMs());
+        connection.setReadTimeout(config.getReadTimeoutMs());
+        connection.setRequestProperty("Content-Type", config.getContentType());
+        connection.setRequestProperty(HEADER_SESSION, sessionId);
+        connection.setRequestProperty("Content-Range", contentRange);
+        return connection;
+    }
+
+    private static int readResponse(HttpURLConnection connection) throws IOException {
+        int code = connection.getResponseCode();
+        //读完响应体以便连接复用
+        InputStream is = code >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (is != null) {
+            try {
+                byte[] buffer = new byte[256];
+                while (is.read(buffer) > 0) {
+                    //丢弃
+                }
+            } finally {
+                is.close();
+            }
+        }
+        return code;
+    }
+
+    private File spillFile(long offset) {
+        return new File(spillDir, sessionId + "_" + offset + CHUNK_SUFFIX);
+    }
+
+    private File totalFile() {
+        return new File(spillDir, sessionId + TOTAL_SUFFIX);
+    }
+
+    private void writeFile(File file, byte[] data, int len) throws IOException {
+        if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+            throw new IOException("无法创建目录 " + spillDir);
+        }
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(data, 0, len);
+        } finally {
+            os.close();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        InputStream is = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int read;
+            while (offset < data.length && (read = is.read(data, offset, data.length - offset)) > 0) {
+                offset += read;
+            }
+        } finally {
+            is.close();
+        }
+        return data;
+    }
+
+    private static class Chunk {
+        final long offset;
+        final int length;
+        boolean last;
+        long total = -1;
+        /**
+         * 内存中的数据与磁盘文件二选一，均为空表示长度为0的结束请求
+         */
+        byte[] data;
+        File file;
+
+        Chunk(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * 服务端确认了新的分块，在上传线程中回调
+         *
+         * @param ackedBytes   已确认的连续前缀长度
+         * @param writtenBytes 已写入的总长度
+         */
+        void onProgress(String sessionId, long ackedBytes, long writtenBytes);
+
+        /**
+         * 全部数据已上传
+         */
+        void onComplete(String sessionId, long totalBytes);
+
+        /**
+         * 服务端拒绝（4xx），上传终止，未确认的分块仍保留在内存/磁盘中
+         */
+        void onError(String sessionId, String error);
+    }
+}
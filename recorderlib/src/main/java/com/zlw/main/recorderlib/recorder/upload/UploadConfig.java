@@ -0,0 +1,146 @@
+package com.zlw.main.recorderlib.recorder.upload;
+
+import java.io.Serializable;
+
+/**
+ * 录音过程中分块上传编码数据的配置
+ */
+public class UploadConfig implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 接收上传的地址，每个分块以 PUT 请求发送，协议见 {@link ChunkedUploader}
+     */
+    private String endpoint;
+    private String contentType = "audio/aac";
+    /**
+     * 分块大小 byte，最后一块可能更小
+     */
+    private int chunkSize = 64 * 1024;
+    /**
+     * 同时上传的分块数
+     */
+    private int parallelUploads = 2;
+    /**
+     * 内存中最多缓存的待上传数据 byte，超出后写入磁盘
+     */
+    private int memoryBufferBytes = 1024 * 1024;
+    /**
+     * 分块写入磁盘的目录，为空时使用录音文件所在目录下的 .upload
+     */
+    private String spillDir;
+    private int connectTimeoutMs = 10000;
+    private int readTimeoutMs = 15000;
+    /**
+     * 失败后的重试间隔 ms，连续失败时翻倍直至 maxRetryDelayMs
+     */
+    private int retryDelayMs = 1000;
+    private int maxRetryDelayMs = 30000;
+    private transient ChunkedUploader.Listener listener;
+
+    public UploadConfig(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public UploadConfig setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+        return this;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public UploadConfig setContentType(String contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public UploadConfig setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    public int getParallelUploads() {
+        return parallelUploads;
+    }
+
+    public UploadConfig setParallelUploads(int parallelUploads) {
+        this.parallelUploads = parallelUploads;
+        return this;
+    }
+
+    public int getMemoryBufferBytes() {
+        return memoryBufferBytes;
+    }
+
+    public UploadConfig setMemoryBufferBytes(int memoryBufferBytes) {
+        this.memoryBufferBytes = memoryBufferBytes;
+        return this;
+    }
+
+    public String getSpillDir() {
+        return spillDir;
+    }
+
+    public UploadConfig setSpillDir(String spillDir) {
+        this.spillDir = spillDir;
+        return this;
+    }
+
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public UploadConfig setConnectTimeoutMs(int connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+        return this;
+    }
+
+    public int getReadTimeoutMs() {
+        return readTimeoutMs;
+    }
+
+    public UploadConfig setReadTimeoutMs(int readTimeoutMs) {
+        this.readTimeoutMs = readTimeoutMs;
+        return this;
+    }
+
+    public int getRetryDelayMs() {
+        return retryDelayMs;
+    }
+
+    public UploadConfig setRetryDelayMs(int retryDelayMs) {
+        this.retryDelayMs = retryDelayMs;
+        return this;
+    }
+
+    public int getMaxRetryDelayMs() {
+        return maxRetryDelayMs;
+    }
+
+    public UploadConfig setMaxRetryDelayMs(int maxRetryDelayMs) {
+        this.maxRetryDelayMs = maxRetryDelayMs;
+        return this;
+    }
+
+    public ChunkedUploader.Listener getListener() {
+        return listener;
+    }
+
+    /**
+     * 上传进度及结果回调，在上传线程中回调
+     */
+    public UploadConfig setListener(ChunkedUploader.Listener listener) {
+        this.listener = listener;
+        return this;
+    }
+}
@@ -0,0 +1,123 @@
+package com.zlw.main.recorderlib.recorder.wav;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * PCM 数据在文件中的位置与格式
+ * WAV 按 RIFF 块结构查找 fmt 和 data 块，不假定文件头固定为44字节
+ */
+public class PcmFileInfo {
+    private final long dataOffset;
+    private final long dataLength;
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+
+    public PcmFileInfo(long dataOffset, long dataLength, int sampleRate, int channels, int bitsPerSample) {
+        this.dataOffset = dataOffset;
+        this.dataLength = dataLength;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+    }
+
+    /**
+     * PCM 数据在文件中的起始位置，裸 PCM 为0
+     */
+    public long getDataOffset() {
+        return dataOffset;
+    }
+
+    public long getDataLength() {
+        return dataLength;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getBitsPerSample() {
+        return bitsPerSample;
+    }
+
+    public int getFrameBytes() {
+        return channels * bitsPerSample / 8;
+    }
+
+    public long getFrames() {
+        return dataLength / getFrameBytes();
+    }
+
+    /**
+     * 是否为带 RIFF 头的 WAV 文件
+     */
+    public boolean isWav() {
+        return dataOffset > 0;
+    }
+
+    /**
+     * 16bit 小端裸 PCM 文件
+     */
+    public static PcmFileInfo ofPcm(File file, int sampleRate, int channels) {
+        return new PcmFileInfo(0, file.length(), sampleRate, channels, 16);
+    }
+
+    public static PcmFileInfo ofWav(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+            raf.readFully(header.array(), 0, 12);
+            if (header.getInt(0) != 0x46464952 || header.getInt(8) != 0x45564157) {
+                throw new IOException("不是WAV文件: " + file);
+            }
+            long position = 12;
+            long fileLength = raf.length();
+            int sampleRate = 0;
+            int channels = 0;
+            int bits = 0;
+            while (position + 8 <= fileLength) {
+                raf.seek(position);
+                raf.readFully(header.array(), 0, 8);
+                int id = header.getInt(0);
+                long size = header.getInt(4) & 0xffffffffL;
+                long body = position + 8;
+                if (id == 0x20746d66) {
+                    //fmt
+                    raf.readFully(header.array(), 0, 16);
+                    int audioFormat = header.getShort(0) & 0xffff;
+                    channels = header.getShort(2) & 0xffff;
+                    sampleRate = header.getInt(4);
+                    bits = header.getShort(14) & 0xffff;
+                    if (audioFormat != 1 && audioFormat != 0xfffe) {
+                        throw new IOException("不支持的WAV编码: " + audioFormat);
+                    }
+                } else if (id == 0x61746164) {
+                    //data，录音中断时长度可能未回填，以文件实际长度为准
+                    if (channels == 0) {
+                        throw new IOException("WAV缺少fmt块");
+                    }
+                    long length = size == 0 || body + size > fileLength ? fileLength - body : size;
+                    return new PcmFileInfo(body, length, sampleRate, channels, bits);
+                }
+                position = body + size + (size & 1);
+            }
+            throw new IOException("WAV缺少data块");
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%sHz %sch %sbit, %s bytes @%s", sampleRate, channels, bitsPerSample, dataLength, dataOffset);
+    }
+}
@@ -0,0 +1,170 @@
+package com.zlw.main.recorderlib.recorder.waveform;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 通过内存映射读取 {@link PeakIndexWriter} 生成的波形峰值索引
+ * 查询时按每像素对应的样本数选择最粗的可用层级，绘制耗时与像素数成正比，与录音时长无关
+ * 实例非线程安全
+ */
+public class PeakIndex implements Closeable {
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int sampleRate;
+    private final int channels;
+    private final long totalSamples;
+    private final int[] bucketSizes;
+    private final int[] bucketCounts;
+    private final int[] dataOffsets;
+
+    private PeakIndex(RandomAccessFile file) throws IOException {
+        this.file = file;
+        FileChannel channel = file.getChannel();
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < PeakIndexWriter.HEADER_SIZE || buffer.getInt(0) != PeakIndexWriter.MAGIC) {
+            throw new IOException("不是波形索引文件");
+        }
+        int version = buffer.getInt(4);
+        if (version != PeakIndexWriter.VERSION) {
+            throw new IOException("不支持的索引版本: " + version);
+        }
+        sampleRate = buffer.getInt(8);
+        channels = buffer.getInt(12);
+        totalSamples = buffer.getLong(16);
+        int levelCount = buffer.getInt(24);
+        if (levelCount <= 0 || PeakIndexWriter.HEADER_SIZE + (long) levelCount * PeakIndexWriter.LEVEL_HEADER_SIZE > buffer.limit()) {
+            throw new IOException("索引文件已损坏");
+        }
+        bucketSizes = new int[levelCount];
+        bucketCounts = new int[levelCount];
+        dataOffsets = new int[levelCount];
+        for (int level = 0; level < levelCount; level++) {
+            int position = PeakIndexWriter.HEADER_SIZE + level * PeakIndexWriter.LEVEL_HEADER_SIZE;
+            bucketSizes[level] = buffer.getInt(position);
+            bucketCounts[level] = buffer.getInt(position + 4);
+            long offset = buffer.getLong(position + 8);
+            if (offset + (long) bucketCounts[level] * PeakIndexWriter.BUCKET_BYTES > buffer.limit()) {
+                throw new IOException("索引文件已损坏");
+            }
+            dataOffsets[level] = (int) offset;
+        }
+    }
+
+    public static PeakIndex open(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            return new PeakIndex(raf);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开录音文件对应的索引文件
+     */
+    public static PeakIndex openForRecording(File recordFile) throws IOException {
+        return open(PeakIndexWriter.sidecarOf(recordFile));
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    /**
+     * 每声道样本数
+     */
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public long getDurationMs() {
+        return sampleRate > 0 ? totalSamples * 1000 / sampleRate : 0;
+    }
+
+    public int getLevelCount() {
+        return bucketSizes.length;
+    }
+
+    public int getBucketSize(int level) {
+        return bucketSizes[level];
+    }
+
+    /**
+     * 按时间查询，见 {@link #query(long, long, int, short[], short[])}
+     */
+    public int queryMs(long startMs, long endMs, int pixels, short[] min, short[] max) {
+        return query(startMs * sampleRate / 1000, endMs * sampleRate / 1000, pixels, min, max);
+    }
+
+    /**
+     * 查询 [startSample, endSample) 范围内每个像素的最小/最大值
+     * 每像素样本数小于最细层级的桶大小时，相邻像素可能落在同一个桶中
+     *
+     * @param startSample 起始样本（每声道）
+     * @param endSample   结束样本（每声道，不含）
+     * @param pixels      像素个数
+     * @param min         输出，长度不小于 pixels
+     * @param max         输出，长度不小于 pixels
+     * @return 实际填充的像素数，超出录音长度的部分不填充
+     */
+    public int query(long startSample, long endSample, int pixels, short[] min, short[] max) {
+        if (pixels <= 0 || endSample <= startSample || startSample >= totalSamples) {
+            return 0;
+        }
+        double samplesPerPixel = (double) (endSample - startSample) / pixels;
+        int level = 0;
+        while (level + 1 < bucketSizes.length && bucketSizes[level + 1] <= samplesPerPixel) {
+            level++;
+        }
+        int bucketSize = bucketSizes[level];
+        int bucketCount = bucketCounts[level];
+        int offset = dataOffsets[level];
+        int filled = 0;
+        for (int p = 0; p < pixels; p++) {
+            long from = startSample + (long) (p * samplesPerPixel);
+            if (from >= totalSamples) {
+                break;
+            }
+            long to = startSample + (long) ((p + 1) * samplesPerPixel);
+            int firstBucket = (int) (from / bucketSize);
+            int lastBucket = (int) Math.min(bucketCount, Math.max(firstBucket + 1, (to + bucketSize - 1) / bucketSize));
+            int lo = Short.MAX_VALUE;
+            int hi = Short.MIN_VALUE;
+            for (int b = firstBucket; b < lastBucket; b++) {
+                int position = offset + b * PeakIndexWriter.BUCKET_BYTES;
+                short bucketMin = buffer.getShort(position);
+                short bucketMax = buffer.getShort(position + 2);
+                if (bucketMin < lo) {
+                    lo = bucketMin;
+                }
+                if (bucketMax > hi) {
+                    hi = bucketMax;
+                }
+            }
+            if (lo > hi) {
+                lo = hi = 0;
+            }
+            min[p] = (short) lo;
+            max[p] = (short) hi;
+            filled++;
+        }
+        return filled;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,239 @@
+package com.zlw.main.recorderlib.recorder.waveform;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * 在采集过程中增量构建多级波形峰值索引（min/max mipmap），录音结束后写入 .peaks 文件
+ * 第0级直接统计样本，更高级由下一级的桶合并得到，每个样本只处理一次；多声道取所有声道的最值
+ * <p>
+ * 文件格式（小端）：
+ * <pre>
+ * int   magic 'PKIX'
+ * int   version
+ * int   sampleRate
+ * int   channels
+ * long  totalSamples   每声道样本数
+ * int   levelCount
+ * 每级：int samplesPerBucket, int bucketCount, long dataOffset
+ * 每级数据：bucketCount 个 (short min, short max)
+ * </pre>
+ */
+public class PeakIndexWriter {
+    static final int MAGIC = 0x504B4958;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 * 4 + 8 + 4;
+    static final int LEVEL_HEADER_SIZE = 4 + 4 + 8;
+    static final int BUCKET_BYTES = 4;
+
+    /**
+     * 默认的各级桶大小（每声道样本数）
+     */
+    public static final int[] DEFAULT_BUCKET_SIZES = {256, 4096, 65536};
+
+    private final int sampleRate;
+    private final int channels;
+    private final int bits;
+    private final int[] bucketSizes;
+    /**
+     * 每级的桶数据，min/max 交错
+     */
+    private final short[][] levels;
+    private final int[] bucketCounts;
+    private final int[] pendingMin;
+    private final int[] pendingMax;
+    /**
+     * 每级当前未完成的桶已包含的样本数（每声道）
+     */
+    private final int[] pendingSamples;
+    private int channelIndex;
+    private long totalSamples;
+    private boolean finished;
+
+    public PeakIndexWriter(int sampleRate, int channels, int bits) {
+        this(sampleRate, channels, bits, DEFAULT_BUCKET_SIZES);
+    }
+
+    /**
+     * @param bits        位宽，支持 8/16
+     * @param bucketSizes 各级桶大小，递增且每级为上一级的整数倍
+     */
+    public PeakIndexWriter(int sampleRate, int channels, int bits, int[] bucketSizes) {
+        if (bits != 8 && bits != 16) {
+            throw new IllegalArgumentException("不支持的位宽: " + bits);
+        }
+        for (int i = 0; i < bucketSizes.length; i++) {
+            if (bucketSizes[i] <= 0 || (i > 0 && (bucketSizes[i] <= bucketSizes[i - 1] || bucketSizes[i] % bucketSizes[i - 1] != 0))) {
+                throw new IllegalArgumentException("桶大小必须递增且为上一级的整数倍");
+            }
+        }
+        this.sampleRate = sampleRate;
+        this.channels = Math.max(1, channels);
+        this.bits = bits;
+        this.bucketSizes = bucketSizes.clone();
+        int levelCount = bucketSizes.length;
+        levels = new short[levelCount][];
+        bucketCounts = new int[levelCount];
+        pendingMin = new int[levelCount];
+        pendingMax = new int[levelCount];
+        pendingSamples = new int[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            //初始容量约为1分钟的录音
+            levels[i] = new short[2 * Math.max(16, sampleRate * 60 / bucketSizes[i])];
+            resetPending(i);
+        }
+    }
+
+    /**
+     * 在采集线程中调用，16bit 时为小端字节序，8bit 时为无符号
+     */
+    public void process(byte[] data, int len) {
+        if (bits == 16) {
+            for (int i = 0; i + 1 < len; i += 2) {
+                add((short) ((data[i] & 0xff) | (data[i + 1] << 8)));
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                add(((data[i] & 0xff) - 128) << 8);
+            }
+        }
+    }
+
+    public void process(short[] data, int count) {
+        for (int i = 0; i < count; i++) {
+            add(data[i]);
+        }
+    }
+
+    private void add(int sample) {
+        if (sample < pendingMin[0]) {
+            pendingMin[0] = sample;
+        }
+        if (sample > pendingMax[0]) {
+            pendingMax[0] = sample;
+        }
+        if (++channelIndex < channels) {
+            return;
+        }
+        channelIndex = 0;
+        totalSamples++;
+        if (++pendingSamples[0] == bucketSizes[0]) {
+            closeBucket(0);
+        }
+    }
+
+    /**
+     * 结束当前桶并合并到上一级
+     */
+    private void closeBucket(int level) {
+        int min = pendingMin[level];
+        int max = pendingMax[level];
+        int samples = pendingSamples[level];
+        append(level, min, max);
+        resetPending(level);
+        int next = level + 1;
+        if (next < bucketSizes.length) {
+            pendingMin[next] = Math.min(pendingMin[next], min);
+            pendingMax[next] = Math.max(pendingMax[next], max);
+            pendingSamples[next] += samples;
+            if (pendingSamples[next] == bucketSizes[next]) {
+                closeBucket(next);
+            }
+        }
+    }
+
+    private void append(int level, int min, int max) {
+        short[] data = levels[level];
+        int index = bucketCounts[level] * 2;
+        if (index + 2 > data.length) {
+            short[] grown = new short[data.length * 2];
+            System.arraycopy(data, 0, grown, 0, data.length);
+            levels[level] = data = grown;
+        }
+        data[index] = (short) min;
+        data[index + 1] = (short) max;
+        bucketCounts[level]++;
+    }
+
+    private void resetPending(int level) {
+        pendingMin[level] = Short.MAX_VALUE;
+        pendingMax[level] = Short.MIN_VALUE;
+        pendingSamples[level] = 0;
+    }
+
+    /**
+     * 写出末尾不足一个桶的数据，之后不再接收数据
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        for (int level = 0; level < bucketSizes.length; level++) {
+            if (pendingSamples[level] > 0) {
+                closeBucket(level);
+            }
+        }
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public int getBucketCount(int level) {
+        return bucketCounts[level];
+    }
+
+    /**
+     * 写出索引文件，会先调用 {@link #finish()}
+     */
+    public void write(File file) throws IOException {
+        finish();
+        int levelCount = bucketSizes.length;
+        ByteBuffer buffer = ByteBuffer.allocate(8192).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sampleRate).putInt(channels)
+                .putLong(totalSamples).putInt(levelCount);
+        long offset = HEADER_SIZE + (long) LEVEL_HEADER_SIZE * levelCount;
+        for (int level = 0; level < levelCount; level++) {
+            buffer.putInt(bucketSizes[level]).putInt(bucketCounts[level]).putLong(offset);
+            offset += (long) bucketCounts[level] * BUCKET_BYTES;
+        }
+
+        FileOutputStream fos = new FileOutputStream(file);
+        FileChannel channel = fos.getChannel();
+        try {
+            for (int level = 0; level < levelCount; level++) {
+                short[] data = levels[level];
+                int count = bucketCounts[level] * 2;
+                for (int i = 0; i < count; i++) {
+                    if (buffer.remaining() < 2) {
+                        flush(buffer, channel);
+                    }
+                    buffer.putShort(data[i]);
+                }
+            }
+            flush(buffer, channel);
+        } finally {
+            fos.close();
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 录音文件对应的索引文件：录音文件名.peaks
+     */
+    public static File sidecarOf(File recordFile) {
+        return new File(recordFile.getAbsolutePath() + ".peaks");
+    }
+}
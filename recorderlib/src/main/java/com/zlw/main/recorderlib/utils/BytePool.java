@@ -0,0 +1,42 @@
+package com.zlw.main.recorderlib.utils;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 固定长度 byte[] 复用池
+ * 池为空时直接新建，回收时超出容量的数组交给GC，因此不会阻塞调用方
+ */
+public class BytePool {
+    private final ArrayBlockingQueue<byte[]> pool;
+    private final int bufferSize;
+
+    /**
+     * @param bufferSize 每个数组的长度
+     * @param maxPooled  池中最多缓存的数组个数
+     */
+    public BytePool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.pool = new ArrayBlockingQueue<>(maxPooled);
+    }
+
+    /**
+     * 获取一个长度为 {@link #getBufferSize()} 的数组，内容未清零
+     */
+    public byte[] obtain() {
+        byte[] buffer = pool.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+
+    /**
+     * 归还数组，长度不匹配的数组将被忽略
+     */
+    public void recycle(byte[] buffer) {
+        if (buffer != null && buffer.length == bufferSize) {
+            pool.offer(buffer);
+        }
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -13,7 +13,13 @@ public class ByteUtils {
      * short[] 转 byte[]
      */
     public static byte[] toBytes(short[] src) {
-        int count = src.length;
+        return toBytes(src, src.length);
+    }
+
+    /**
+     * 只转换前 count 个 short
+     */
+    public static byte[] toBytes(short[] src, int count) {
         byte[] dest = new byte[count << 1];
         for (int i = 0; i < count; i++) {
             dest[i * 2] = (byte) (src[i]);
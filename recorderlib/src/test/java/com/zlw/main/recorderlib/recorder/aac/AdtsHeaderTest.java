@@ -0,0 +1,105 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdtsHeaderTest {
+    private static final int[] SAMPLE_RATES = {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+    /**
+     * 帧长度为13位，覆盖各字节边界和上限 8191
+     */
+    private static final int[] PACKET_LENGTHS = {7, 8, 255, 256, 2047, 2048, 4095, 4096, 6151, 8190, 8191};
+
+    /**
+     * 按 ISO/IEC 13818-7 的字段顺序从高位读取
+     */
+    private static class Fields {
+        private final byte[] data;
+        private int pos;
+
+        Fields(byte[] data) {
+            this.data = data;
+        }
+
+        int read(int bits) {
+            int value = 0;
+            for (int i = 0; i < bits; i++, pos++) {
+                value = value << 1 | (data[pos >> 3] >> (7 - (pos & 7)) & 1);
+            }
+            return value;
+        }
+    }
+
+    private static byte[] header(int sampleRate, int channels, int packetLen) {
+        byte[] fixed = new byte[AACEncoder.ADTS_HEADER_SIZE];
+        AACEncoder.initAdtsHeader(fixed, sampleRate, channels);
+        byte[] packet = new byte[AACEncoder.ADTS_HEADER_SIZE + 2];
+        packet[7] = 0x55;
+        packet[8] = (byte) 0xAA;
+        AACEncoder.writeAdtsHeader(fixed, packet, packetLen);
+        //不改动头部之后的数据
+        assertEquals(0x55, packet[7]);
+        assertEquals((byte) 0xAA, packet[8]);
+        return packet;
+    }
+
+    private static void checkHeader(byte[] packet, int freqIdx, int channels, int packetLen) {
+        Fields fields = new Fields(packet);
+        assertEquals(0xFFF, fields.read(12));
+        //ID: MPEG-2
+        assertEquals(1, fields.read(1));
+        //layer
+        assertEquals(0, fields.read(2));
+        //protection_absent，无CRC
+        assertEquals(1, fields.read(1));
+        //profile: AAC LC 为 1
+        assertEquals(1, fields.read(2));
+        assertEquals(freqIdx, fields.read(4));
+        assertEquals(0, fields.read(1));
+        assertEquals(channels, fields.read(3));
+        //original_copy, home, copyright_id_bit, copyright_id_start
+        assertEquals(0, fields.read(4));
+        assertEquals(packetLen, fields.read(13));
+        //buffer fullness 0x7FF 表示可变码率
+        assertEquals(0x7FF, fields.read(11));
+        //number_of_raw_data_blocks_in_frame - 1
+        assertEquals(0, fields.read(2));
+        assertEquals(AACEncoder.ADTS_HEADER_SIZE * 8, fields.pos);
+    }
+
+    @Test
+    public void encodesEveryFieldForAllRatesChannelsAndLengths() {
+        for (int freqIdx = 0; freqIdx < SAMPLE_RATES.length; freqIdx++) {
+            for (int channels = 1; channels <= 7; channels++) {
+                for (int packetLen : PACKET_LENGTHS) {
+                    checkHeader(header(SAMPLE_RATES[freqIdx], channels, packetLen), freqIdx, channels, packetLen);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void frequencyIndexMatchesTable() {
+        for (int i = 0; i < SAMPLE_RATES.length; i++) {
+            assertEquals(i, AACEncoder.getAdtsFrequencyIndex(SAMPLE_RATES[i]));
+        }
+    }
+
+    @Test
+    public void unsupportedRateFallsBackTo44100() {
+        assertEquals(4, AACEncoder.getAdtsFrequencyIndex(44000));
+        checkHeader(header(44000, 2, 300), 4, 2, 300);
+    }
+
+    @Test
+    public void reusedPacketIsFullyOverwritten() {
+        byte[] fixed = new byte[AACEncoder.ADTS_HEADER_SIZE];
+        AACEncoder.initAdtsHeader(fixed, 16000, 1);
+        byte[] packet = new byte[AACEncoder.ADTS_HEADER_SIZE];
+        AACEncoder.writeAdtsHeader(fixed, packet, 8191);
+        //复用池中的包会带着上一帧的头部，长度字段不能受影响
+        AACEncoder.writeAdtsHeader(fixed, packet, 100);
+        checkHeader(packet, 8, 1, 100);
+    }
+}
@@ -0,0 +1,225 @@
+package com.zlw.main.recorderlib.recorder.aac;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class Mp4FastStartTest {
+    private static final int FTYP_SIZE = 16;
+    private static final int MDAT_PAYLOAD = 100;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("faststart", ".m4a");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getAbsolutePath() + ".faststart").delete();
+    }
+
+    private static byte[] atom(String type, byte[]... children) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        for (byte[] child : children) {
+            body.write(child, 0, child.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8 + body.size());
+        buffer.putInt(8 + body.size()).put(type.getBytes()).put(body.toByteArray());
+        return buffer.array();
+    }
+
+    /**
+     * 64位长度的 atom 头
+     */
+    private static byte[] largeAtom(String type, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + body.length);
+        buffer.putInt(1).put(type.getBytes()).putLong(16 + body.length).put(body);
+        return buffer.array();
+    }
+
+    private static byte[] stco(long... offsets) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + offsets.length * 4);
+        buffer.putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            buffer.putInt((int) offset);
+        }
+        return atom("stco", buffer.array());
+    }
+
+    private static byte[] co64(long... offsets) {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + offsets.length * 8);
+        buffer.putInt(0).putInt(offsets.length);
+        for (long offset : offsets) {
+            buffer.putLong(offset);
+        }
+        return atom("co64", buffer.array());
+    }
+
+    private static byte[] trak(byte[] chunkOffsets) {
+        return atom("trak", atom("tkhd", new byte[12]),
+                atom("mdia", atom("minf", atom("stbl", atom("stsd", new byte[8]), chunkOffsets))));
+    }
+
+    private static byte[] ftyp() {
+        return atom("ftyp", "M4A ".getBytes(), new byte[4]);
+    }
+
+    private static byte[] payload() {
+        byte[] payload = new byte[MDAT_PAYLOAD];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (i * 7 + 1);
+        }
+        return payload;
+    }
+
+    private void write(byte[]... atoms) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            for (byte[] atom : atoms) {
+                out.write(atom);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private byte[] read() throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                offset += in.read(data, offset, data.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private static String type(byte[] data, int pos) {
+        return new String(data, pos + 4, 4);
+    }
+
+    private static int find(byte[] data, String type) {
+        for (int i = 0; i + 4 <= data.length; i++) {
+            if (new String(data, i, 4).equals(type)) {
+                return i - 4;
+            }
+        }
+        throw new AssertionError("未找到 " + type);
+    }
+
+    @Test
+    public void movesMoovBeforeMdatAndShiftsOffsets() throws IOException {
+        byte[] payload = payload();
+        int mdatBody = FTYP_SIZE + 8;
+        //两个 chunk，分别位于 mdat 数据的开头和中间
+        byte[] moov = atom("moov", atom("mvhd", new byte[20]),
+                trak(stco(mdatBody, mdatBody + 40)),
+                trak(co64(mdatBody + 60)));
+        byte[] free = atom("free", new byte[4]);
+        write(ftyp(), atom("mdat", payload), moov, free);
+        long length = file.length();
+
+        assertTrue(Mp4FastStart.relocateMoov(file));
+
+        byte[] data = read();
+        assertEquals(length, data.length);
+        assertEquals("ftyp", type(data, 0));
+        assertEquals("moov", type(data, FTYP_SIZE));
+        int mdatPos = FTYP_SIZE + moov.length;
+        assertEquals("mdat", type(data, mdatPos));
+        assertEquals("free", type(data, mdatPos + 8 + payload.length));
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int stco = find(data, "stco");
+        assertEquals(2, buffer.getInt(stco + 12));
+        long first = buffer.getInt(stco + 16) & 0xFFFFFFFFL;
+        long second = buffer.getInt(stco + 20) & 0xFFFFFFFFL;
+        int co64 = find(data, "co64");
+        assertEquals(1, buffer.getInt(co64 + 12));
+        long third = buffer.getLong(co64 + 16);
+        assertEquals(mdatBody + moov.length, first);
+        assertEquals(mdatBody + 40 + moov.length, second);
+        assertEquals(mdatBody + 60 + moov.length, third);
+        //修正后的偏移仍然指向原来的数据
+        assertEquals(payload[0], data[(int) first]);
+        assertEquals(payload[40], data[(int) second]);
+        assertEquals(payload[60], data[(int) third]);
+        assertFalse(new File(file.getAbsolutePath() + ".faststart").exists());
+    }
+
+    @Test
+    public void handlesLargeSizeMdatHeader() throws IOException {
+        byte[] payload = payload();
+        int mdatBody = FTYP_SIZE + 16;
+        byte[] moov = atom("moov", trak(stco(mdatBody + 10)));
+        write(ftyp(), largeAtom("mdat", payload), moov);
+
+        assertTrue(Mp4FastStart.relocateMoov(file));
+
+        byte[] data = read();
+        assertEquals("moov", type(data, FTYP_SIZE));
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        int mdatPos = FTYP_SIZE + moov.length;
+        assertEquals(1, buffer.getInt(mdatPos));
+        assertEquals(16 + payload.length, buffer.getLong(mdatPos + 8));
+        long offset = buffer.getInt(find(data, "stco") + 16) & 0xFFFFFFFFL;
+        assertEquals(mdatBody + 10 + moov.length, offset);
+        assertEquals(payload[10], data[(int) offset]);
+    }
+
+    @Test
+    public void keepsFileWhenStcoWouldOverflow() throws IOException {
+        //偏移加上 moov 长度后超出32位，需要 co64，放弃 fast-start
+        byte[] moov = atom("moov", trak(stco(FTYP_SIZE + 8, 0xFFFFFFF0L)));
+        write(ftyp(), atom("mdat", payload()), moov);
+        byte[] original = read();
+
+        assertFalse(Mp4FastStart.relocateMoov(file));
+
+        assertArrayEquals(original, read());
+        assertFalse(new File(file.getAbsolutePath() + ".faststart").exists());
+    }
+
+    @Test
+    public void moovFirstIsNoOp() throws IOException {
+        byte[] moov = atom("moov", trak(stco(FTYP_SIZE + 8)));
+        write(ftyp(), moov, atom("mdat", payload()));
+        byte[] original = read();
+        long modified = file.lastModified();
+
+        assertTrue(Mp4FastStart.relocateMoov(file));
+
+        assertArrayEquals(original, read());
+        assertEquals(modified, file.lastModified());
+    }
+
+    @Test
+    public void rejectsTruncatedAtom() throws IOException {
+        byte[] mdat = atom("mdat", payload());
+        //声明的长度超出文件末尾
+        ByteBuffer.wrap(mdat).putInt(0, mdat.length + 100);
+        write(ftyp(), mdat);
+        byte[] original = read();
+
+        assertFalse(Mp4FastStart.relocateMoov(file));
+
+        assertArrayEquals(original, read());
+    }
+}
@@ -0,0 +1,138 @@
+package com.zlw.main.recorderlib.recorder.adaptive;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveQualityControllerTest {
+    private static final long SECOND = 1000000000L;
+    private static final int MAX_LEVEL = 3;
+    private static final int HIGH_QUEUE = 8;
+
+    private AdaptiveQualityController controller;
+
+    @Before
+    public void setUp() {
+        controller = new AdaptiveQualityController("test", MAX_LEVEL, HIGH_QUEUE);
+    }
+
+    /**
+     * 上报一个完整的1秒窗口
+     *
+     * @param rtf 编码耗时 / 音频时长
+     */
+    private int window(double rtf, int queueDepth) {
+        return controller.onEncoded(SECOND, Math.round(rtf * SECOND), queueDepth);
+    }
+
+    private void windows(int count, double rtf, int queueDepth) {
+        for (int i = 0; i < count; i++) {
+            window(rtf, queueDepth);
+        }
+    }
+
+    @Test
+    public void stepsDownAfterTwoBehindWindowsThenCoolsDown() {
+        assertEquals(0, window(0.9, 0));
+        assertEquals(1, window(0.9, 0));
+        //调整后冷却2个窗口
+        assertEquals(1, window(0.9, 0));
+        assertEquals(1, window(0.9, 0));
+        assertEquals(1, window(0.9, 0));
+        assertEquals(2, window(0.9, 0));
+
+        List<QualityChangeEvent> events = controller.getEvents();
+        assertEquals(2, events.size());
+        assertEquals(0, events.get(0).getFromLevel());
+        assertEquals(1, events.get(0).getToLevel());
+        assertEquals(2, events.get(1).getToLevel());
+    }
+
+    @Test
+    public void queueDepthAloneCountsAsBehind() {
+        assertEquals(0, window(0.1, HIGH_QUEUE));
+        assertEquals(1, window(0.1, HIGH_QUEUE));
+    }
+
+    @Test
+    public void severeBacklogStepsDownImmediately() {
+        assertEquals(1, window(0.1, HIGH_QUEUE * 2));
+    }
+
+    @Test
+    public void thresholdsAreExclusive() {
+        //实时率正好为0.85不算跟不上，正好为0.5不算有余量
+        windows(10, 0.85, 0);
+        assertEquals(0, controller.getLevel());
+
+        windows(2, 0.9, 0);
+        assertEquals(1, controller.getLevel());
+        windows(10, 0.5, 0);
+        assertEquals(1, controller.getLevel());
+    }
+
+    @Test
+    public void stepsUpOnlyAfterFiveSlackWindows() {
+        windows(2, 0.9, 0);
+        assertEquals(1, controller.getLevel());
+        //冷却期间的窗口不计入
+        windows(2, 0.1, 0);
+        windows(4, 0.1, 0);
+        assertEquals(1, controller.getLevel());
+        assertEquals(0, window(0.1, 0));
+        assertEquals(0, window(0.1, 0));
+    }
+
+    @Test
+    public void hysteresisBandKeepsLevel() {
+        windows(2, 0.9, 0);
+        assertEquals(1, controller.getLevel());
+        //介于两个阈值之间、或队列有积压时既不降档也不升档
+        windows(20, 0.7, 0);
+        assertEquals(1, controller.getLevel());
+        windows(20, 0.1, 2);
+        assertEquals(1, controller.getLevel());
+    }
+
+    @Test
+    public void interruptedSlackRunRestartsCount() {
+        windows(2, 0.9, 0);
+        windows(2, 0.1, 0);
+        windows(4, 0.1, 0);
+        window(0.7, 0);
+        windows(4, 0.1, 0);
+        assertEquals(1, controller.getLevel());
+        assertEquals(0, window(0.1, 0));
+    }
+
+    @Test
+    public void partialWindowsAccumulate() {
+        //0.25s 一次，4次组成一个窗口
+        for (int i = 0; i < 7; i++) {
+            assertEquals(0, controller.onEncoded(SECOND / 4, SECOND / 4, 0));
+        }
+        assertEquals(1, controller.onEncoded(SECOND / 4, SECOND / 4, 0));
+    }
+
+    @Test
+    public void levelIsClampedToMax() {
+        for (int i = 0; i < 20; i++) {
+            window(0.1, HIGH_QUEUE * 2);
+        }
+        assertEquals(MAX_LEVEL, controller.getLevel());
+        assertEquals(MAX_LEVEL, controller.getEvents().size());
+    }
+
+    @Test
+    public void startsFromPreviousLevel() {
+        controller = new AdaptiveQualityController("test", MAX_LEVEL, HIGH_QUEUE, 2);
+        assertEquals(2, controller.getLevel());
+        assertEquals(3, window(0.1, HIGH_QUEUE * 2));
+        assertEquals(2, controller.getEvents().get(0).getFromLevel());
+        //超出范围的起始档位被限制
+        assertEquals(MAX_LEVEL, new AdaptiveQualityController("test", MAX_LEVEL, HIGH_QUEUE, 9).getLevel());
+    }
+}
@@ -0,0 +1,93 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * AutoGainControl 的增益收敛、限幅上限与字节/short 两种路径的一致性校验
+ */
+public class AutoGainControlTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BLOCK = SAMPLE_RATE / 50;
+
+    @Test
+    public void quietSpeechReachesTarget() {
+        AgcConfig config = new AgcConfig().setTargetLevelDb(-18f);
+        AutoGainControl agc = new AutoGainControl(config, SAMPLE_RATE, 1);
+        //-30dBFS RMS 的正弦
+        float amplitude = (float) (Math.pow(10, -30 / 20.0) * Math.sqrt(2));
+        short[] block = new short[BLOCK];
+        double energy = 0;
+        int measured = 0;
+        for (int b = 0; b < 500; b++) {
+            fillSine(block, b * BLOCK, amplitude, 440);
+            agc.process(block, block.length);
+            if (b >= 400) {
+                for (short s : block) {
+                    energy += (s / 32768.0) * (s / 32768.0);
+                }
+                measured += block.length;
+            }
+        }
+        float rmsDb = (float) (10 * Math.log10(energy / measured));
+        assertEquals(-18f, rmsDb, 0.5f);
+        assertEquals(12f, agc.getGainDb(), 0.5f);
+    }
+
+    @Test
+    public void limiterHoldsCeiling() {
+        AgcConfig config = new AgcConfig().setMaxGainDb(20f).setLimiterCeilingDb(-1f);
+        AutoGainControl agc = new AutoGainControl(config, SAMPLE_RATE, 2);
+        float quiet = 0.01f;
+        short[] block = new short[BLOCK * 2];
+        int ceiling = (int) Math.ceil(32768 * Math.pow(10, -1 / 20.0));
+        int maxOut = 0;
+        for (int b = 0; b < 300; b++) {
+            //先让AGC增益升高，再突然输入满幅信号
+            float amplitude = b < 250 ? quiet : 1f;
+            for (int i = 0; i < BLOCK; i++) {
+                short s = (short) Math.round(32767 * amplitude * Math.sin(2 * Math.PI * 440 * (b * BLOCK + i) / SAMPLE_RATE));
+                block[2 * i] = s;
+                block[2 * i + 1] = (short) -s;
+            }
+            agc.process(block, block.length);
+            for (short s : block) {
+                maxOut = Math.max(maxOut, Math.abs(s));
+            }
+        }
+        assertTrue("peak " + maxOut, maxOut <= ceiling);
+        assertTrue(agc.getMaxLimiterReductionDb() < -10f);
+    }
+
+    @Test
+    public void byteAndShortPathsMatch() {
+        AgcConfig config = new AgcConfig();
+        AutoGainControl shortAgc = new AutoGainControl(config, SAMPLE_RATE, 1);
+        AutoGainControl byteAgc = new AutoGainControl(config, SAMPLE_RATE, 1);
+        short[] block = new short[BLOCK];
+        byte[] bytes = new byte[BLOCK * 2];
+        for (int b = 0; b < 100; b++) {
+            fillSine(block, b * BLOCK, b % 20 < 10 ? 0.05f : 0.9f, 300);
+            for (int i = 0; i < BLOCK; i++) {
+                bytes[2 * i] = (byte) block[i];
+                bytes[2 * i + 1] = (byte) (block[i] >> 8);
+            }
+            shortAgc.process(block, block.length);
+            byteAgc.process(bytes, bytes.length);
+            short[] fromBytes = new short[BLOCK];
+            for (int i = 0; i < BLOCK; i++) {
+                fromBytes[i] = (short) ((bytes[2 * i] & 0xff) | (bytes[2 * i + 1] << 8));
+            }
+            assertArrayEquals(block, fromBytes);
+        }
+    }
+
+    private static void fillSine(short[] block, int offset, float amplitude, int frequency) {
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (short) Math.round(32767 * amplitude * Math.sin(2 * Math.PI * frequency * (offset + i) / SAMPLE_RATE));
+        }
+    }
+}
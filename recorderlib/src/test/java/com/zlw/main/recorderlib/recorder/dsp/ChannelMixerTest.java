@@ -0,0 +1,45 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ChannelMixerTest {
+
+    @Test
+    public void downmixShortsInPlace() {
+        short[] data = {100, 300, -32768, -32768, 32767, 32767, 5, -5, 77};
+        int count = ChannelMixer.downmix(data, 8, 2);
+        assertEquals(4, count);
+        assertArrayEquals(new short[]{200, -32768, 32767, 0}, new short[]{data[0], data[1], data[2], data[3]});
+    }
+
+    @Test
+    public void downmixBytes16And8Bit() {
+        byte[] pcm16 = new byte[8];
+        short[] samples = {1000, -3000, 32767, 32767};
+        for (int i = 0; i < samples.length; i++) {
+            pcm16[i * 2] = (byte) samples[i];
+            pcm16[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        assertEquals(4, ChannelMixer.downmix(pcm16, pcm16.length, 2, 16));
+        assertEquals(-1000, (short) ((pcm16[0] & 0xff) | (pcm16[1] << 8)));
+        assertEquals(32767, (short) ((pcm16[2] & 0xff) | (pcm16[3] << 8)));
+
+        //8bit 无符号，128 为零点
+        byte[] pcm8 = {(byte) 0, (byte) 255, (byte) 200, (byte) 100};
+        assertEquals(2, ChannelMixer.downmix(pcm8, pcm8.length, 2, 8));
+        assertArrayEquals(new byte[]{127, (byte) 150}, new byte[]{pcm8[0], pcm8[1]});
+    }
+
+    @Test
+    public void extractChannel() {
+        byte[] stereo = {1, 2, 3, 4, 5, 6, 7, 8, 9};
+        byte[] out = new byte[4];
+        assertEquals(4, ChannelMixer.extract(stereo, 8, 1, 2, 2, out));
+        assertArrayEquals(new byte[]{3, 4, 7, 8}, out);
+        assertEquals(4, ChannelMixer.extract(stereo, 8, 0, 2, 2, out));
+        assertArrayEquals(new byte[]{1, 2, 5, 6}, out);
+    }
+}
@@ -0,0 +1,58 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import com.zlw.main.recorderlib.utils.RecordUtils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * LevelMeter 的正确性校验，音量与 RecordUtils.getMaxDecibels 一致
+ */
+public class LevelMeterTest {
+    private static final int SAMPLE_RATE = 16000;
+    /**
+     * 20ms 单声道 16bit
+     */
+    private static final int BUFFER_BYTES = SAMPLE_RATE / 50 * 2;
+
+    @Test
+    public void fullScaleSine() {
+        byte[] pcm = sine(32767, 1000, BUFFER_BYTES * 50);
+        LevelMeter meter = new LevelMeter(16);
+        meter.process(pcm, 0, pcm.length);
+        assertEquals(0f, meter.getPeakDbfs(), 0.01f);
+        assertEquals(-3.01f, meter.getRmsDbfs(), 0.05f);
+        assertEquals(0f, meter.getDcOffset(), 0.001f);
+        assertEquals(RecordUtils.getMaxDecibels(pcm), meter.getSoundSize());
+    }
+
+    @Test
+    public void silenceClipAndDcOffset() {
+        LevelMeter meter = new LevelMeter(16);
+        byte[] silence = new byte[BUFFER_BYTES];
+        meter.process(silence, 0, silence.length);
+        assertEquals(LevelMeter.MIN_DBFS, meter.getPeakDbfs(), 0f);
+        assertEquals(LevelMeter.MIN_DBFS, meter.getRmsDbfs(), 0f);
+
+        meter.reset();
+        byte[] clipped = new byte[BUFFER_BYTES];
+        for (int i = 0; i < clipped.length; i += 2) {
+            clipped[i] = (byte) 0xff;
+            clipped[i + 1] = 0x7f;
+        }
+        meter.process(clipped, 0, clipped.length);
+        assertEquals(BUFFER_BYTES / 2, meter.getClipCount());
+        assertEquals(1f, meter.getDcOffset(), 0.001f);
+    }
+
+    private static byte[] sine(int amplitude, int frequency, int bytes) {
+        byte[] pcm = new byte[bytes];
+        for (int i = 0; i < bytes / 2; i++) {
+            short sample = (short) Math.round(amplitude * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return pcm;
+    }
+}
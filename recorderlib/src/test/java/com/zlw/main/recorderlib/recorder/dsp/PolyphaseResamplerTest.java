@@ -0,0 +1,103 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PolyphaseResampler 的精度、分块无关性以及字节/short 两种路径的一致性校验
+ */
+public class PolyphaseResamplerTest {
+
+    @Test
+    public void sineSurvivesConversion() {
+        int[][] rates = {{44100, 16000}, {48000, 44100}, {8000, 48000}, {48000, 16000}};
+        for (int[] pair : rates) {
+            int inRate = pair[0];
+            int outRate = pair[1];
+            int frequency = 1000;
+            short[] in = sine(inRate, frequency, inRate);
+            PolyphaseResampler resampler = new PolyphaseResampler(inRate, outRate, 1);
+            short[] out = new short[resampler.getMaxOutput(in.length)];
+            int count = resampler.process(in, in.length, out);
+            assertTrue(inRate + "->" + outRate + " count " + count, Math.abs(count - outRate) < 200);
+
+            //跳过两端，与理想正弦比较
+            double signal = 0;
+            double noise = 0;
+            for (int i = 200; i < count - 200; i++) {
+                double expected = 16000 * Math.sin(2 * Math.PI * frequency * i / outRate);
+                signal += expected * expected;
+                noise += (out[i] - expected) * (out[i] - expected);
+            }
+            double snr = 10 * Math.log10(signal / noise);
+            assertTrue(inRate + "->" + outRate + " snr " + snr, snr > 60);
+        }
+    }
+
+    @Test
+    public void blockSizeDoesNotMatter() {
+        short[] in = sine(44100, 440, 44100);
+        PolyphaseResampler whole = new PolyphaseResampler(44100, 16000, 1);
+        short[] expected = new short[whole.getMaxOutput(in.length)];
+        int expectedCount = whole.process(in, in.length, expected);
+
+        PolyphaseResampler chunked = new PolyphaseResampler(44100, 16000, 1);
+        short[] actual = new short[expected.length];
+        int count = 0;
+        int[] chunks = {1, 7, 441, 1024, 3000};
+        int offset = 0;
+        for (int i = 0; offset < in.length; i++) {
+            int len = Math.min(chunks[i % chunks.length], in.length - offset);
+            short[] block = new short[len];
+            System.arraycopy(in, offset, block, 0, len);
+            short[] out = new short[chunked.getMaxOutput(len)];
+            int n = chunked.process(block, len, out);
+            System.arraycopy(out, 0, actual, count, n);
+            count += n;
+            offset += len;
+        }
+        assertEquals(expectedCount, count);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void byteAndShortPathsMatch() {
+        int channels = 2;
+        short[] mono = sine(48000, 700, 4800);
+        short[] in = new short[mono.length * channels];
+        byte[] bytes = new byte[in.length * 2];
+        for (int i = 0; i < mono.length; i++) {
+            in[2 * i] = mono[i];
+            in[2 * i + 1] = (short) (mono[i] / 2);
+        }
+        for (int i = 0; i < in.length; i++) {
+            bytes[2 * i] = (byte) in[i];
+            bytes[2 * i + 1] = (byte) (in[i] >> 8);
+        }
+        PolyphaseResampler shortResampler = new PolyphaseResampler(48000, 22050, channels);
+        PolyphaseResampler byteResampler = new PolyphaseResampler(48000, 22050, channels);
+        short[] out = new short[shortResampler.getMaxOutput(in.length)];
+        byte[] outBytes = new byte[out.length * 2];
+        int count = shortResampler.process(in, in.length, out);
+        int byteCount = byteResampler.process(bytes, bytes.length, outBytes);
+        assertEquals(count * 2, byteCount);
+        short[] fromBytes = new short[count];
+        for (int i = 0; i < count; i++) {
+            fromBytes[i] = (short) ((outBytes[2 * i] & 0xff) | (outBytes[2 * i + 1] << 8));
+        }
+        short[] trimmed = new short[count];
+        System.arraycopy(out, 0, trimmed, 0, count);
+        assertArrayEquals(trimmed, fromBytes);
+    }
+
+    private static short[] sine(int sampleRate, int frequency, int count) {
+        short[] pcm = new short[count];
+        for (int i = 0; i < count; i++) {
+            pcm[i] = (short) Math.round(16000 * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+        }
+        return pcm;
+    }
+}
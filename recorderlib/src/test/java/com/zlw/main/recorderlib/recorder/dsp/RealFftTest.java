@@ -0,0 +1,40 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * RealFft 与直接 DFT 的结果对比
+ */
+public class RealFftTest {
+
+    @Test
+    public void matchesNaiveDft() {
+        int[] sizes = {4, 8, 64, 1024};
+        Random random = new Random(1);
+        for (int size : sizes) {
+            float[] input = new float[size];
+            for (int i = 0; i < size; i++) {
+                input[i] = random.nextFloat() * 2 - 1;
+            }
+            float[] re = new float[size / 2 + 1];
+            float[] im = new float[size / 2 + 1];
+            new RealFft(size).forward(input, re, im);
+            for (int k = 0; k <= size / 2; k++) {
+                double expectedRe = 0;
+                double expectedIm = 0;
+                for (int n = 0; n < size; n++) {
+                    double angle = 2 * Math.PI * k * n / size;
+                    expectedRe += input[n] * Math.cos(angle);
+                    expectedIm -= input[n] * Math.sin(angle);
+                }
+                float tolerance = 1e-4f * size;
+                assertEquals((float) expectedRe, re[k], tolerance);
+                assertEquals((float) expectedIm, im[k], tolerance);
+            }
+        }
+    }
+}
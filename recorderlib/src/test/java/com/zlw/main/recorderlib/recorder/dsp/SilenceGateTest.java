@@ -0,0 +1,84 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SilenceGate：输出长度与删除区间之和应等于输入，语音段不被删除
+ */
+public class SilenceGateTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void removesSilenceAndKeepsTiming() {
+        VadConfig config = new VadConfig().setMaxSilenceMs(0).setPreRollMs(100).setHangoverMs(200);
+        SilenceGate gate = new SilenceGate(config, SAMPLE_RATE, 1);
+        //2s 静音 + 1s 语音 + 3s 静音 + 1s 语音 + 1s 静音
+        short[] input = new short[SAMPLE_RATE * 8];
+        tone(input, SAMPLE_RATE * 2, SAMPLE_RATE);
+        tone(input, SAMPLE_RATE * 6, SAMPLE_RATE);
+        addNoise(input, 30);
+
+        int chunk = 1280;
+        short[] buffer = new short[chunk + gate.getExtraCapacity()];
+        long output = 0;
+        for (int offset = 0; offset < input.length; offset += chunk) {
+            int count = Math.min(chunk, input.length - offset);
+            System.arraycopy(input, offset, buffer, 0, count);
+            output += gate.process(buffer, count);
+        }
+        gate.finish();
+
+        long removed = 0;
+        for (long[] interval : gate.getRemovedIntervals()) {
+            removed += interval[1];
+            //删除区间不与语音重叠
+            assertTrue(interval[0] + interval[1] <= SAMPLE_RATE * 2 || interval[0] >= SAMPLE_RATE * 3);
+            assertTrue(interval[0] + interval[1] <= SAMPLE_RATE * 6 || interval[0] >= SAMPLE_RATE * 7);
+        }
+        assertEquals(input.length, output + removed);
+        assertTrue("removed ratio " + gate.getRemovedRatio(), gate.getRemovedRatio() > 0.6f);
+    }
+
+    @Test
+    public void byteAndShortPathsMatch() {
+        VadConfig config = new VadConfig();
+        SilenceGate shortGate = new SilenceGate(config, SAMPLE_RATE, 1);
+        SilenceGate byteGate = new SilenceGate(config, SAMPLE_RATE, 1);
+        short[] input = new short[SAMPLE_RATE * 3];
+        tone(input, SAMPLE_RATE, SAMPLE_RATE / 2);
+
+        short[] shorts = new short[input.length + shortGate.getExtraCapacity()];
+        System.arraycopy(input, 0, shorts, 0, input.length);
+        int shortOut = shortGate.process(shorts, input.length);
+
+        byte[] bytes = new byte[(input.length + byteGate.getExtraCapacity()) * 2];
+        for (int i = 0; i < input.length; i++) {
+            bytes[2 * i] = (byte) input[i];
+            bytes[2 * i + 1] = (byte) (input[i] >> 8);
+        }
+        int byteOut = byteGate.process(bytes, input.length * 2);
+
+        assertEquals(shortOut * 2, byteOut);
+        for (int i = 0; i < shortOut; i++) {
+            assertEquals(shorts[i], (short) ((bytes[2 * i] & 0xff) | (bytes[2 * i + 1] << 8)));
+        }
+    }
+
+    private static void tone(short[] pcm, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            pcm[start + i] = (short) (8000 * Math.sin(2 * Math.PI * 300 * i / SAMPLE_RATE));
+        }
+    }
+
+    private static void addNoise(short[] pcm, int amplitude) {
+        Random random = new Random(1);
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] += (short) (random.nextGaussian() * amplitude);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.zlw.main.recorderlib.recorder.dsp;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SpectrumAnalyzer 的频带划分与 DSP 线程输出校验
+ */
+public class SpectrumAnalyzerTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void bandEdgesAreIncreasing() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new SpectrumConfig().setFftSize(512).setBandCount(48),
+                SAMPLE_RATE, 1);
+        float[] edges = analyzer.getBandEdges();
+        assertEquals(49, edges.length);
+        for (int i = 1; i < edges.length; i++) {
+            assertTrue(edges[i] > edges[i - 1]);
+        }
+        assertEquals(SAMPLE_RATE / 2f, edges[48], 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyBands() {
+        new SpectrumAnalyzer(new SpectrumConfig().setFftSize(64).setBandCount(64), SAMPLE_RATE, 1);
+    }
+
+    @Test
+    public void fullScaleSinePeaksAtZeroDbfs() throws InterruptedException {
+        int frequency = 1000;
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(new SpectrumConfig(), SAMPLE_RATE, 2);
+        final CountDownLatch latch = new CountDownLatch(3);
+        analyzer.start(new SpectrumAnalyzer.Callback() {
+            @Override
+            public void onSpectrumReady(SpectrumAnalyzer analyzer) {
+                latch.countDown();
+            }
+        });
+        short[] pcm = new short[SAMPLE_RATE / 50 * 2];
+        int offset = 0;
+        for (int block = 0; block < 20; block++) {
+            for (int i = 0; i < pcm.length / 2; i++, offset++) {
+                short sample = (short) Math.round(32767 * Math.sin(2 * Math.PI * frequency * offset / SAMPLE_RATE));
+                pcm[2 * i] = sample;
+                pcm[2 * i + 1] = sample;
+            }
+            analyzer.write(pcm, pcm.length);
+        }
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        analyzer.stop();
+
+        float[] bands = new float[analyzer.getBandCount()];
+        analyzer.readBands(bands);
+        float[] edges = analyzer.getBandEdges();
+        int peakBand = 0;
+        for (int b = 1; b < bands.length; b++) {
+            if (bands[b] > bands[peakBand]) {
+                peakBand = b;
+            }
+        }
+        assertTrue(edges[peakBand] <= frequency && frequency < edges[peakBand + 1]);
+        assertEquals(0f, bands[peakBand], 0.1f);
+        assertTrue(bands[bands.length - 1] < -60);
+        assertEquals(0, analyzer.getDroppedSamples());
+    }
+}
@@ -0,0 +1,94 @@
+package com.zlw.main.recorderlib.recorder.fanout;
+
+import com.zlw.main.recorderlib.recorder.RecordConfig;
+import com.zlw.main.recorderlib.recorder.RecordOutput;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FanOutWorkerTest {
+
+    /**
+     * 第 failAt 次编码时抛出运行时异常
+     */
+    private static class FailingEncoder implements OutputEncoder {
+        final int failAt;
+        int encodeCount;
+        volatile boolean closed;
+
+        FailingEncoder(int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void encode(byte[] pcm, int len) throws IOException {
+            if (++encodeCount == failAt) {
+                throw new IllegalStateException("encoder crashed");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void runtimeExceptionStillClosesAndNotifies() throws Exception {
+        FailingEncoder encoder = new FailingEncoder(2);
+        final CountDownLatch finished = new CountDownLatch(1);
+        FanOutWorker worker = new FanOutWorker(new RecordOutput(RecordConfig.RecordFormat.PCM), new File("out.pcm"),
+                encoder, 1000, new FanOutWorker.FinishListener() {
+            @Override
+            public void onFinish(FanOutWorker worker) {
+                finished.countDown();
+            }
+        });
+        worker.start();
+        byte[] data = new byte[100];
+        for (int i = 0; i < 5; i++) {
+            worker.offer(data, data.length);
+        }
+        worker.finish();
+
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+        assertTrue(encoder.closed);
+        assertTrue(worker.getStats().isFailed());
+        assertEquals(100, worker.getStats().getEncodedBytes());
+        //出错后不再编码
+        assertEquals(2, encoder.encodeCount);
+    }
+
+    @Test
+    public void errorInCloseStillNotifies() throws Exception {
+        final CountDownLatch finished = new CountDownLatch(1);
+        FanOutWorker worker = new FanOutWorker(new RecordOutput(RecordConfig.RecordFormat.PCM), new File("out.pcm"),
+                new OutputEncoder() {
+                    @Override
+                    public void encode(byte[] pcm, int len) {
+                    }
+
+                    @Override
+                    public void close() {
+                        throw new AssertionError("native close failed");
+                    }
+                }, 1000, new FanOutWorker.FinishListener() {
+            @Override
+            public void onFinish(FanOutWorker worker) {
+                finished.countDown();
+            }
+        });
+        worker.start();
+        worker.finish();
+
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+        assertTrue(worker.getStats().isFailed());
+    }
+}
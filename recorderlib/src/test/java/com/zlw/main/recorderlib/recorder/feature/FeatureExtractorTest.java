@@ -0,0 +1,146 @@
+package com.zlw.main.recorderlib.recorder.feature;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeatureExtractorTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void sinePeaksInMatchingMelBand() {
+        FeatureConfig config = new FeatureConfig();
+        FeatureExtractor extractor = new FeatureExtractor(config, SAMPLE_RATE, 1);
+        short[] pcm = sine(1000, SAMPLE_RATE);
+        int produced = extractor.process(pcm, pcm.length);
+        //25ms 窗 400 样本，10ms 帧移 160 样本
+        assertEquals((SAMPLE_RATE - 400) / 160 + 1, produced);
+        assertEquals(512, extractor.getFftSize());
+
+        float[] mel = new float[extractor.getCapacity() * 40];
+        float[] mfcc = new float[extractor.getCapacity() * 13];
+        int frames = extractor.read(mel, mfcc, extractor.getCapacity());
+        assertEquals(produced, frames);
+        int frame = frames / 2;
+        int peak = 0;
+        for (int m = 1; m < 40; m++) {
+            if (mel[frame * 40 + m] > mel[frame * 40 + peak]) {
+                peak = m;
+            }
+        }
+        double minMel = MelFilterBank.toMel(20);
+        double step = (MelFilterBank.toMel(SAMPLE_RATE / 2) - minMel) / 41;
+        double center = MelFilterBank.toHz(minMel + step * (peak + 1));
+        assertTrue("peak band center " + center, Math.abs(center - 1000) < 100);
+
+        //c0 为 log-mel 之和乘以 sqrt(1/M)
+        double sum = 0;
+        for (int m = 0; m < 40; m++) {
+            sum += mel[frame * 40 + m];
+        }
+        assertEquals((float) (sum * Math.sqrt(1.0 / 40)), mfcc[frame * 13], 1e-3f);
+    }
+
+    @Test
+    public void chunkedStereoBytesMatchWholeBuffer() {
+        FeatureConfig config = new FeatureConfig().setPreEmphasis(0.97f);
+        Random random = new Random(7);
+        short[] mono = new short[SAMPLE_RATE / 2];
+        for (int i = 0; i < mono.length; i++) {
+            mono[i] = (short) (random.nextGaussian() * 3000);
+        }
+        FeatureExtractor whole = new FeatureExtractor(config, SAMPLE_RATE, 1);
+        whole.process(mono, mono.length);
+
+        byte[] stereo = new byte[mono.length * 4];
+        for (int i = 0; i < mono.length; i++) {
+            for (int c = 0; c < 2; c++) {
+                stereo[i * 4 + c * 2] = (byte) mono[i];
+                stereo[i * 4 + c * 2 + 1] = (byte) (mono[i] >> 8);
+            }
+        }
+        FeatureExtractor chunked = new FeatureExtractor(config, SAMPLE_RATE, 2);
+        for (int offset = 0; offset < stereo.length; offset += 1236) {
+            int len = Math.min(1236, stereo.length - offset);
+            byte[] chunk = new byte[len];
+            System.arraycopy(stereo, offset, chunk, 0, len);
+            chunked.process(chunk, len);
+        }
+
+        int capacity = whole.getCapacity();
+        float[] expected = new float[capacity * 40];
+        float[] actual = new float[capacity * 40];
+        int frames = whole.read(expected, null, capacity);
+        assertEquals(frames, chunked.read(actual, null, capacity));
+        for (int i = 0; i < frames * 40; i++) {
+            assertEquals(expected[i], actual[i], 1e-4f);
+        }
+    }
+
+    @Test
+    public void ringDropsOldestFrames() {
+        FeatureExtractor extractor = new FeatureExtractor(new FeatureConfig().setRingFrames(4), SAMPLE_RATE, 1);
+        short[] pcm = sine(440, 400 + 160 * 9);
+        assertEquals(10, extractor.process(pcm, pcm.length));
+        float[] mel = new float[4 * 40];
+        assertEquals(4, extractor.read(mel, null, 8));
+        assertEquals(6, extractor.getLastReadFrame());
+        assertEquals(6, extractor.getDroppedFrames());
+        assertEquals(0, extractor.read(mel, null, 8));
+    }
+
+    @Test
+    public void sidecarRoundTrip() throws IOException {
+        File file = File.createTempFile("feature", ".feat");
+        try {
+            FeatureExtractor extractor = new FeatureExtractor(new FeatureConfig(), SAMPLE_RATE, 1);
+            FeatureSidecarWriter writer = new FeatureSidecarWriter(file, SAMPLE_RATE, extractor);
+            extractor.setSidecar(writer);
+            short[] pcm = sine(1000, SAMPLE_RATE);
+            int produced = extractor.process(pcm, pcm.length);
+            writer.close();
+            assertEquals(FeatureSidecarWriter.HEADER_SIZE + produced * (40 + 13) * 2L, file.length());
+
+            float[] mel = new float[extractor.getCapacity() * 40];
+            float[] mfcc = new float[extractor.getCapacity() * 13];
+            extractor.read(mel, mfcc, extractor.getCapacity());
+
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                assertEquals(FeatureSidecarWriter.MAGIC, buffer.getInt(0));
+                assertEquals(400, buffer.getInt(12));
+                assertEquals(160, buffer.getInt(16));
+                assertEquals(40, buffer.getInt(20));
+                assertEquals(13, buffer.getInt(24));
+                assertEquals(produced, buffer.getLong(FeatureSidecarWriter.FRAME_COUNT_OFFSET));
+                int position = FeatureSidecarWriter.HEADER_SIZE;
+                assertEquals(mel[0], buffer.getShort(position) / FeatureSidecarWriter.SCALE, 0.006f);
+                assertEquals(mfcc[0], buffer.getShort(position + 40 * 2) / FeatureSidecarWriter.SCALE, 0.006f);
+            } finally {
+                raf.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    private static short[] sine(int frequency, int count) {
+        short[] pcm = new short[count];
+        for (int i = 0; i < count; i++) {
+            pcm[i] = (short) (16000 * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        return pcm;
+    }
+}
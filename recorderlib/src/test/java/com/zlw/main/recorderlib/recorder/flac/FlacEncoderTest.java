@@ -0,0 +1,636 @@
+package com.zlw.main.recorderlib.recorder.flac;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按 FLAC 格式规范独立解析编码结果，逐样本与输入比较
+ */
+public class FlacEncoderTest {
+    private static final int BLOCK_SIZE = 4096;
+    private static final long PLACEHOLDER = 0xFFFFFFFFFFFFFFFFL;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("flac", ".flac");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * 按位读取，高位在前
+     */
+    private static class BitReader {
+        private final byte[] data;
+        private int pos;
+
+        BitReader(byte[] data, int bytePos) {
+            this.data = data;
+            this.pos = bytePos * 8;
+        }
+
+        long read(int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++, pos++) {
+                value = value << 1 | (data[pos >> 3] >> (7 - (pos & 7)) & 1);
+            }
+            return value;
+        }
+
+        int readInt(int bits) {
+            return (int) read(bits);
+        }
+
+        int readSigned(int bits) {
+            long value = read(bits);
+            if (bits > 0 && (value & 1L << (bits - 1)) != 0) {
+                value -= 1L << bits;
+            }
+            return (int) value;
+        }
+
+        int readUnary() {
+            int zeros = 0;
+            while (read(1) == 0) {
+                zeros++;
+            }
+            return zeros;
+        }
+
+        int readRice(int k) {
+            long u = (long) readUnary() << k | read(k);
+            return (int) (u >>> 1 ^ -(u & 1));
+        }
+
+        long readUtf8() {
+            int first = readInt(8);
+            if ((first & 0x80) == 0) {
+                return first;
+            }
+            int bytes = 1;
+            while ((first << bytes & 0x80) != 0) {
+                bytes++;
+            }
+            long value = first & (0x7F >> bytes);
+            for (int i = 1; i < bytes; i++) {
+                int next = readInt(8);
+                assertEquals(0x80, next & 0xC0);
+                value = value << 6 | (next & 0x3F);
+            }
+            return value;
+        }
+
+        void align() {
+            pos = (pos + 7) & ~7;
+        }
+
+        int bytePos() {
+            return pos >> 3;
+        }
+
+        boolean hasMore() {
+            return pos < data.length * 8;
+        }
+    }
+
+    private static class SeekPoint {
+        long sample;
+        long offset;
+        int samples;
+    }
+
+    private static class Frame {
+        long number;
+        int offset;
+        int length;
+        int blockSize;
+    }
+
+    private static class Decoded {
+        int minBlock;
+        int maxBlock;
+        int minFrame;
+        int maxFrame;
+        int sampleRate;
+        int channels;
+        int bits;
+        long totalSamples;
+        byte[] md5 = new byte[16];
+        List<SeekPoint> seekPoints = new ArrayList<>();
+        int audioOffset;
+        List<Frame> frames = new ArrayList<>();
+        /**
+         * 交错的有符号样本
+         */
+        List<Integer> samples = new ArrayList<>();
+    }
+
+    /**
+     * CRC-8，多项式 0x07，初值0
+     */
+    private static int crc8(byte[] data, int offset, int len) {
+        int crc = 0;
+        for (int i = offset; i < offset + len; i++) {
+            crc ^= data[i] & 0xFF;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x80) != 0 ? (crc << 1 ^ 0x07) & 0xFF : crc << 1 & 0xFF;
+            }
+        }
+        return crc;
+    }
+
+    /**
+     * CRC-16，多项式 0x8005，初值0
+     */
+    private static int crc16(byte[] data, int offset, int len) {
+        int crc = 0;
+        for (int i = offset; i < offset + len; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc & 0x8000) != 0 ? (crc << 1 ^ 0x8005) & 0xFFFF : crc << 1 & 0xFFFF;
+            }
+        }
+        return crc;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                offset += in.read(data, offset, data.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private static Decoded decode(byte[] data) {
+        Decoded result = new Decoded();
+        BitReader reader = new BitReader(data, 0);
+        assertEquals(0x664C6143L, reader.read(32));
+        boolean last = false;
+        while (!last) {
+            last = reader.read(1) == 1;
+            int type = reader.readInt(7);
+            int length = reader.readInt(24);
+            int end = reader.bytePos() + length;
+            if (type == 0) {
+                result.minBlock = reader.readInt(16);
+                result.maxBlock = reader.readInt(16);
+                result.minFrame = reader.readInt(24);
+                result.maxFrame = reader.readInt(24);
+                result.sampleRate = reader.readInt(20);
+                result.channels = reader.readInt(3) + 1;
+                result.bits = reader.readInt(5) + 1;
+                result.totalSamples = reader.read(36);
+                for (int i = 0; i < 16; i++) {
+                    result.md5[i] = (byte) reader.read(8);
+                }
+            } else if (type == 3) {
+                for (int i = 0; i < length / 18; i++) {
+                    SeekPoint point = new SeekPoint();
+                    point.sample = reader.read(64);
+                    point.offset = reader.read(64);
+                    point.samples = reader.readInt(16);
+                    result.seekPoints.add(point);
+                }
+            }
+            reader = new BitReader(data, end);
+        }
+        result.audioOffset = reader.bytePos();
+        while (reader.hasMore()) {
+            result.frames.add(decodeFrame(data, reader, result));
+        }
+        return result;
+    }
+
+    private static Frame decodeFrame(byte[] data, BitReader reader, Decoded stream) {
+        Frame frame = new Frame();
+        int start = reader.bytePos();
+        frame.offset = start - stream.audioOffset;
+        //固定块长
+        assertEquals(0xFFF8, reader.read(16));
+        int blockSizeCode = reader.readInt(4);
+        int sampleRateCode = reader.readInt(4);
+        int assignment = reader.readInt(4);
+        int sampleSizeCode = reader.readInt(3);
+        assertEquals(0, reader.read(1));
+        frame.number = reader.readUtf8();
+        if (blockSizeCode == 12) {
+            frame.blockSize = 4096;
+        } else if (blockSizeCode == 6) {
+            frame.blockSize = reader.readInt(8) + 1;
+        } else if (blockSizeCode == 7) {
+            frame.blockSize = reader.readInt(16) + 1;
+        } else {
+            throw new AssertionError("块长编码: " + blockSizeCode);
+        }
+        if (sampleRateCode == 12) {
+            assertEquals(stream.sampleRate, reader.readInt(8) * 1000);
+        } else if (sampleRateCode == 13) {
+            assertEquals(stream.sampleRate, reader.readInt(16));
+        } else if (sampleRateCode == 14) {
+            assertEquals(stream.sampleRate, reader.readInt(16) * 10);
+        } else if (sampleRateCode != 0) {
+            int[] rates = {0, 88200, 176400, 192000, 8000, 16000, 22050, 24000, 32000, 44100, 48000, 96000};
+            assertEquals(stream.sampleRate, rates[sampleRateCode]);
+        }
+        assertEquals(stream.bits == 8 ? 1 : 4, sampleSizeCode);
+        int headerCrc = crc8(data, start, reader.bytePos() - start);
+        assertEquals(headerCrc, reader.read(8));
+
+        int channels = assignment < 8 ? assignment + 1 : 2;
+        assertEquals(stream.channels, channels);
+        int[][] subframes = new int[channels][];
+        for (int c = 0; c < channels; c++) {
+            boolean side = assignment == 8 && c == 1 || assignment == 9 && c == 0 || assignment == 10 && c == 1;
+            subframes[c] = decodeSubframe(reader, frame.blockSize, stream.bits + (side ? 1 : 0));
+        }
+        reader.align();
+        int frameCrc = crc16(data, start, reader.bytePos() - start);
+        assertEquals(frameCrc, reader.read(16));
+        frame.length = reader.bytePos() - start;
+
+        for (int i = 0; i < frame.blockSize; i++) {
+            if (assignment < 8) {
+                for (int c = 0; c < channels; c++) {
+                    stream.samples.add(subframes[c][i]);
+                }
+                continue;
+            }
+            int left;
+            int right;
+            if (assignment == 8) {
+                left = subframes[0][i];
+                right = left - subframes[1][i];
+            } else if (assignment == 9) {
+                right = subframes[1][i];
+                left = subframes[0][i] + right;
+            } else if (assignment == 10) {
+                int side = subframes[1][i];
+                int mid = subframes[0][i] << 1 | (side & 1);
+                left = (mid + side) >> 1;
+                right = (mid - side) >> 1;
+            } else {
+                throw new AssertionError("声道编码: " + assignment);
+            }
+            stream.samples.add(left);
+            stream.samples.add(right);
+        }
+        return frame;
+    }
+
+    private static int[] decodeSubframe(BitReader reader, int blockSize, int bits) {
+        assertEquals(0, reader.read(1));
+        int type = reader.readInt(6);
+        int wasted = 0;
+        if (reader.read(1) == 1) {
+            wasted = reader.readUnary() + 1;
+            bits -= wasted;
+        }
+        int[] samples = new int[blockSize];
+        if (type == 0) {
+            int value = reader.readSigned(bits);
+            for (int i = 0; i < blockSize; i++) {
+                samples[i] = value;
+            }
+        } else if (type == 1) {
+            for (int i = 0; i < blockSize; i++) {
+                samples[i] = reader.readSigned(bits);
+            }
+        } else if (type >= 8 && type <= 12) {
+            int order = type - 8;
+            for (int i = 0; i < order; i++) {
+                samples[i] = reader.readSigned(bits);
+            }
+            readResidual(reader, samples, order);
+            for (int i = order; i < blockSize; i++) {
+                long prediction;
+                switch (order) {
+                    case 0:
+                        prediction = 0;
+                        break;
+                    case 1:
+                        prediction = samples[i - 1];
+                        break;
+                    case 2:
+                        prediction = 2L * samples[i - 1] - samples[i - 2];
+                        break;
+                    case 3:
+                        prediction = 3L * samples[i - 1] - 3L * samples[i - 2] + samples[i - 3];
+                        break;
+                    default:
+                        prediction = 4L * samples[i - 1] - 6L * samples[i - 2] + 4L * samples[i - 3] - samples[i - 4];
+                        break;
+                }
+                samples[i] += (int) prediction;
+            }
+        } else if (type >= 32) {
+            int order = (type & 31) + 1;
+            for (int i = 0; i < order; i++) {
+                samples[i] = reader.readSigned(bits);
+            }
+            int precision = reader.readInt(4) + 1;
+            int shift = reader.readSigned(5);
+            assertTrue(shift >= 0);
+            int[] coefs = new int[order];
+            for (int i = 0; i < order; i++) {
+                coefs[i] = reader.readSigned(precision);
+            }
+            readResidual(reader, samples, order);
+            for (int i = order; i < blockSize; i++) {
+                long sum = 0;
+                for (int j = 0; j < order; j++) {
+                    sum += (long) coefs[j] * samples[i - j - 1];
+                }
+                samples[i] += (int) (sum >> shift);
+            }
+        } else {
+            throw new AssertionError("子帧类型: " + type);
+        }
+        if (wasted > 0) {
+            for (int i = 0; i < blockSize; i++) {
+                samples[i] <<= wasted;
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 把残差写入 samples[order..]，之后再叠加预测值
+     */
+    private static void readResidual(BitReader reader, int[] samples, int order) {
+        int method = reader.readInt(2);
+        assertTrue(method <= 1);
+        int paramBits = method == 0 ? 4 : 5;
+        int escape = (1 << paramBits) - 1;
+        int partitionOrder = reader.readInt(4);
+        int partitionSize = samples.length >> partitionOrder;
+        int i = order;
+        for (int p = 0; p < 1 << partitionOrder; p++) {
+            int count = p == 0 ? partitionSize - order : partitionSize;
+            int k = reader.readInt(paramBits);
+            if (k == escape) {
+                int bits = reader.readInt(5);
+                for (int n = 0; n < count; n++) {
+                    samples[i++] = reader.readSigned(bits);
+                }
+            } else {
+                for (int n = 0; n < count; n++) {
+                    samples[i++] = reader.readRice(k);
+                }
+            }
+        }
+        assertEquals(samples.length, i);
+    }
+
+    /**
+     * 编码后解析，检查文件结构并返回解析结果
+     *
+     * @param chunk 每次写入的字节数，不按采样帧对齐
+     */
+    private Decoded roundTrip(FlacEncoder encoder, byte[] pcm, int chunk) throws IOException {
+        for (int offset = 0; offset < pcm.length; offset += chunk) {
+            encoder.write(pcm, offset, Math.min(chunk, pcm.length - offset));
+        }
+        encoder.close();
+        Decoded decoded = decode(read(file));
+        checkStructure(decoded);
+        return decoded;
+    }
+
+    private static void checkStructure(Decoded decoded) {
+        assertEquals(BLOCK_SIZE, decoded.minBlock);
+        assertEquals(BLOCK_SIZE, decoded.maxBlock);
+        long samples = 0;
+        int minFrame = Integer.MAX_VALUE;
+        int maxFrame = 0;
+        for (int i = 0; i < decoded.frames.size(); i++) {
+            Frame frame = decoded.frames.get(i);
+            assertEquals(i, frame.number);
+            //只有最后一帧可以不满
+            if (i < decoded.frames.size() - 1) {
+                assertEquals(BLOCK_SIZE, frame.blockSize);
+            }
+            samples += frame.blockSize;
+            minFrame = Math.min(minFrame, frame.length);
+            maxFrame = Math.max(maxFrame, frame.length);
+        }
+        assertEquals(samples, decoded.totalSamples);
+        assertEquals(samples * decoded.channels, decoded.samples.size());
+        assertEquals(decoded.frames.isEmpty() ? 0 : minFrame, decoded.minFrame);
+        assertEquals(maxFrame, decoded.maxFrame);
+
+        //有效点按样本递增，每个都指向某一帧的开头，其后全部为占位点
+        assertEquals(100, decoded.seekPoints.size());
+        long lastSample = -1;
+        boolean placeholders = false;
+        for (SeekPoint point : decoded.seekPoints) {
+            if (point.sample == PLACEHOLDER) {
+                placeholders = true;
+                assertEquals(0, point.samples);
+                continue;
+            }
+            assertTrue(!placeholders);
+            assertTrue(point.sample > lastSample);
+            lastSample = point.sample;
+            Frame target = null;
+            long frameSample = 0;
+            for (Frame frame : decoded.frames) {
+                if (frameSample == point.sample) {
+                    target = frame;
+                    break;
+                }
+                frameSample += frame.blockSize;
+            }
+            assertTrue("未指向帧开头: " + point.sample, target != null);
+            assertEquals(target.offset, point.offset);
+            assertEquals(target.blockSize, point.samples);
+        }
+        if (!decoded.frames.isEmpty()) {
+            assertEquals(0, decoded.seekPoints.get(0).sample);
+        }
+    }
+
+    /**
+     * FLAC 的 MD5 针对有符号小端样本计算，8bit 输入需要先减去128
+     */
+    private static byte[] md5(byte[] pcm, int bits) throws NoSuchAlgorithmException {
+        byte[] signed = pcm.clone();
+        if (bits == 8) {
+            for (int i = 0; i < signed.length; i++) {
+                signed[i] = (byte) ((pcm[i] & 0xFF) - 128);
+            }
+        }
+        return MessageDigest.getInstance("MD5").digest(signed);
+    }
+
+    private static void assertSamples(byte[] pcm, int bits, Decoded decoded) {
+        int bytes = bits / 8;
+        assertEquals(pcm.length / bytes, decoded.samples.size());
+        for (int i = 0; i < decoded.samples.size(); i++) {
+            int expected = bits == 16
+                    ? (short) ((pcm[i * 2] & 0xFF) | pcm[i * 2 + 1] << 8)
+                    : (pcm[i] & 0xFF) - 128;
+            assertEquals("样本 " + i, expected, (int) decoded.samples.get(i));
+        }
+    }
+
+    /**
+     * 依次为正弦、两声道相同、两声道独立、满幅噪声和静音，使各种子帧类型和声道编码都会出现
+     *
+     * @param frames 采样帧数
+     */
+    private static byte[] signal(int frames, int channels, int bits, long seed) {
+        Random random = new Random(seed);
+        int bytes = bits / 8;
+        int max = bits == 16 ? 32767 : 127;
+        byte[] pcm = new byte[frames * channels * bytes];
+        for (int i = 0; i < frames; i++) {
+            int segment = i / BLOCK_SIZE % 5;
+            for (int c = 0; c < channels; c++) {
+                double sine = Math.sin(2 * Math.PI * 440 * i / 16000.0 + c);
+                int value;
+                switch (segment) {
+                    case 0:
+                        value = (int) (sine * max * 0.6) + random.nextInt(7) - 3;
+                        break;
+                    case 1:
+                        value = (int) (Math.sin(2 * Math.PI * 300 * i / 16000.0) * max * 0.8);
+                        break;
+                    case 2:
+                        value = c == 0 ? (int) (sine * max * 0.5) : random.nextInt(max / 4 + 1) - max / 8;
+                        break;
+                    case 3:
+                        value = random.nextInt(2 * max + 1) - max;
+                        break;
+                    default:
+                        value = 0;
+                        break;
+                }
+                value = Math.max(-max - 1, Math.min(max, value));
+                int index = (i * channels + c) * bytes;
+                if (bits == 16) {
+                    pcm[index] = (byte) value;
+                    pcm[index + 1] = (byte) (value >> 8);
+                } else {
+                    pcm[index] = (byte) (value + 128);
+                }
+            }
+        }
+        return pcm;
+    }
+
+    private void checkRoundTrip(int sampleRate, int channels, int bits, int frames, int chunk) throws Exception {
+        byte[] pcm = signal(frames, channels, bits, sampleRate + channels + bits);
+        FlacEncoder encoder = new FlacEncoder(file, sampleRate, channels, bits, 2, 4);
+        Decoded decoded = roundTrip(encoder, pcm, chunk);
+        assertEquals(sampleRate, decoded.sampleRate);
+        assertEquals(channels, decoded.channels);
+        assertEquals(bits, decoded.bits);
+        assertEquals(frames, decoded.totalSamples);
+        assertArrayEquals(md5(pcm, bits), decoded.md5);
+        assertSamples(pcm, bits, decoded);
+    }
+
+    @Test
+    public void crcMatchesKnownVectors() {
+        byte[] check = "123456789".getBytes();
+        assertEquals(0xF4, crc8(check, 0, check.length));
+        assertEquals(0xFEE8, crc16(check, 0, check.length));
+    }
+
+    @Test
+    public void roundTrip16BitMono() throws Exception {
+        checkRoundTrip(16000, 1, 16, BLOCK_SIZE * 5 + 1000, 333);
+    }
+
+    @Test
+    public void roundTrip16BitStereo() throws Exception {
+        checkRoundTrip(44100, 2, 16, BLOCK_SIZE * 5 + 123, 1001);
+    }
+
+    @Test
+    public void roundTrip8BitMonoWithRateFromStreamInfo() throws Exception {
+        //11025 没有对应的采样率编码，帧头中从 STREAMINFO 取
+        checkRoundTrip(11025, 1, 8, BLOCK_SIZE * 5 + 200, 77);
+    }
+
+    @Test
+    public void roundTrip8BitStereo() throws Exception {
+        checkRoundTrip(8000, 2, 8, BLOCK_SIZE * 5 + 4000, 4096);
+    }
+
+    @Test
+    public void emptyStreamHasOnlyMetadata() throws Exception {
+        Decoded decoded = roundTrip(new FlacEncoder(file, 16000, 1, 16), new byte[0], 1);
+        assertEquals(0, decoded.frames.size());
+        assertEquals(0, decoded.totalSamples);
+        assertArrayEquals(md5(new byte[0], 16), decoded.md5);
+        for (SeekPoint point : decoded.seekPoints) {
+            assertEquals(PLACEHOLDER, point.sample);
+        }
+    }
+
+    @Test
+    public void realtimeOverflowDropsWholeBlocks() throws Exception {
+        //只允许一帧在编码中，连续写入时大部分块会被丢弃，write 不阻塞
+        int blocks = 200;
+        byte[] pcm = signal(BLOCK_SIZE * blocks, 2, 16, 1);
+        FlacEncoder encoder = new FlacEncoder(file, 44100, 2, 16, 1, 1, true);
+        Decoded decoded = roundTrip(encoder, pcm, BLOCK_SIZE * 4);
+
+        long dropped = encoder.getDroppedFrames();
+        assertEquals(blocks - dropped, decoded.frames.size());
+        assertEquals((blocks - dropped) * BLOCK_SIZE, decoded.totalSamples);
+        if (dropped > 0) {
+            //样本不完整，MD5 写0表示未知
+            assertArrayEquals(new byte[16], decoded.md5);
+        } else {
+            assertArrayEquals(md5(pcm, 16), decoded.md5);
+        }
+        //保留下来的每一帧都与按顺序的某个输入块完全相同
+        int block = 0;
+        int sample = 0;
+        for (Frame frame : decoded.frames) {
+            while (!sameBlock(pcm, block, decoded.samples, sample)) {
+                block++;
+                assertTrue(block < blocks);
+            }
+            block++;
+            sample += frame.blockSize * 2;
+        }
+    }
+
+    private static boolean sameBlock(byte[] pcm, int block, List<Integer> samples, int from) {
+        int base = block * BLOCK_SIZE * 2;
+        for (int i = 0; i < BLOCK_SIZE * 2; i++) {
+            int index = (base + i) * 2;
+            if ((short) ((pcm[index] & 0xFF) | pcm[index + 1] << 8) != samples.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,165 @@
+package com.zlw.main.recorderlib.recorder.hls;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HlsSegmenterTest {
+    private static final int SAMPLE_RATE = 44100;
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("hls", "");
+        assertTrue(dir.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /**
+     * AAC LC, 44100Hz, 双声道
+     */
+    private static byte[] adts(int index) {
+        int payload = 100 + index % 50;
+        int frameLength = payload + 7;
+        byte[] frame = new byte[frameLength];
+        frame[0] = (byte) 0xff;
+        frame[1] = (byte) 0xf1;
+        frame[2] = (byte) ((1 << 6) | (4 << 2));
+        frame[3] = (byte) ((2 << 6) | (frameLength >> 11));
+        frame[4] = (byte) (frameLength >> 3);
+        frame[5] = (byte) (((frameLength & 7) << 5) | 0x1f);
+        frame[6] = (byte) 0xfc;
+        for (int i = 7; i < frameLength; i++) {
+            frame[i] = (byte) (index + i);
+        }
+        return frame;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < data.length) {
+                offset += in.read(data, offset, data.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private static int u32(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 24) | ((data[offset + 1] & 0xff) << 16)
+                | ((data[offset + 2] & 0xff) << 8) | (data[offset + 3] & 0xff);
+    }
+
+    private static String type(byte[] data, int offset) {
+        return new String(data, offset + 4, 4);
+    }
+
+    private static int find(byte[] data, String type) {
+        for (int i = 0; i + 8 <= data.length; i++) {
+            if (type(data, i).equals(type)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    public void rollingPlaylistAndFragments() throws IOException {
+        HlsSegmenter segmenter = new HlsSegmenter(new HlsConfig().setSegmentDurationMs(1000).setPlaylistSize(2), dir);
+        int framesPerSegment = 1000 * SAMPLE_RATE / 1000 / 1024;
+        int total = framesPerSegment * 4 + 28;
+        for (int i = 0; i < total; i++) {
+            byte[] frame = adts(i);
+            segmenter.writeAdts(frame, frame.length);
+        }
+        segmenter.close();
+
+        String playlist = new String(read(segmenter.getPlaylistFile()), "UTF-8");
+        assertTrue(playlist, playlist.startsWith("#EXTM3U\n#EXT-X-VERSION:7\n#EXT-X-TARGETDURATION:1\n#EXT-X-MEDIA-SEQUENCE:3\n"));
+        assertTrue(playlist, playlist.contains("#EXT-X-MAP:URI=\"init.mp4\"\n"));
+        assertTrue(playlist, playlist.contains(String.format(java.util.Locale.US, "#EXTINF:%.3f,\nsegment_3.m4s\n",
+                framesPerSegment * 1024.0 / SAMPLE_RATE)));
+        assertTrue(playlist, playlist.contains(String.format(java.util.Locale.US, "#EXTINF:%.3f,\nsegment_4.m4s\n",
+                28 * 1024.0 / SAMPLE_RATE)));
+        assertTrue(playlist, playlist.endsWith("#EXT-X-ENDLIST\n"));
+        assertFalse(new File(dir, "segment_0.m4s").exists());
+        assertTrue(new File(dir, "segment_1.m4s").exists());
+
+        byte[] init = read(new File(dir, HlsSegmenter.INIT_NAME));
+        assertEquals("ftyp", type(init, 0));
+        assertEquals(init.length, u32(init, 0) + u32(init, u32(init, 0)));
+        int esds = find(init, "esds");
+        assertTrue(esds > 0);
+        //DecoderSpecificInfo：AAC LC, 44100Hz, 双声道
+        int dsi = esds + 12 + 5 + 2 + 13;
+        assertEquals(0x05, init[dsi]);
+        assertEquals(0x12, init[dsi + 2]);
+        assertEquals(0x10, init[dsi + 3]);
+        assertEquals(1024, u32(init, find(init, "trex") + 20));
+
+        byte[] segment = read(new File(dir, "segment_2.m4s"));
+        assertEquals("moof", type(segment, 0));
+        int moofSize = u32(segment, 0);
+        assertEquals(3, u32(segment, find(segment, "mfhd") + 12));
+        int tfdt = find(segment, "tfdt");
+        assertEquals(2 * framesPerSegment * 1024, u32(segment, tfdt + 16));
+        int trun = find(segment, "trun");
+        assertEquals(framesPerSegment, u32(segment, trun + 12));
+        int dataOffset = u32(segment, trun + 16);
+        assertEquals(moofSize + 8, dataOffset);
+        assertEquals("mdat", type(segment, moofSize));
+        assertEquals(segment.length - moofSize, u32(segment, moofSize));
+        int position = dataOffset;
+        for (int i = 0; i < framesPerSegment; i++) {
+            byte[] frame = adts(2 * framesPerSegment + i);
+            int size = u32(segment, trun + 20 + i * 4);
+            assertEquals(frame.length - 7, size);
+            for (int j = 0; j < size; j++) {
+                assertEquals(frame[7 + j], segment[position + j]);
+            }
+            position += size;
+        }
+        assertEquals(segment.length, position);
+    }
+
+    @Test
+    public void eventPlaylistKeepsAllSegments() throws IOException {
+        HlsSegmenter segmenter = new HlsSegmenter(new HlsConfig().setSegmentDurationMs(500).setPlaylistSize(0), dir);
+        for (int i = 0; i < 200; i++) {
+            byte[] frame = adts(i);
+            segmenter.writeAdts(frame, frame.length);
+        }
+        segmenter.close();
+        String playlist = new String(read(segmenter.getPlaylistFile()), "UTF-8");
+        assertTrue(playlist.contains("#EXT-X-PLAYLIST-TYPE:EVENT\n"));
+        assertTrue(playlist.contains("#EXT-X-MEDIA-SEQUENCE:0\n"));
+        int segments = (200 + 20) / 21;
+        for (int i = 0; i < segments; i++) {
+            assertTrue(playlist.contains("segment_" + i + ".m4s"));
+            assertTrue(new File(dir, "segment_" + i + ".m4s").exists());
+        }
+        assertFalse(new File(dir, "index.m3u8.tmp").exists());
+    }
+}
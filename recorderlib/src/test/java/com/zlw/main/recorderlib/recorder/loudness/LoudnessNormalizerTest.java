@@ -0,0 +1,119 @@
+package com.zlw.main.recorderlib.recorder.loudness;
+
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按 EBU Tech 3341 的测试信号校验综合响度，以及归一后的结果
+ */
+public class LoudnessNormalizerTest {
+    private static final int SAMPLE_RATE = 48000;
+
+    @Test
+    public void stereoSineMatchesReference() throws IOException {
+        File wav = writeWav(new float[]{-23f}, new int[]{20});
+        try {
+            LoudnessResult result = new LoudnessNormalizer().measureWav(wav);
+            assertEquals(-23f, (float) result.getIntegratedLufs(), 0.1f);
+            assertEquals(-23f, (float) result.getSamplePeakDbfs(), 0.01f);
+            assertEquals(20000, result.getDurationMs());
+        } finally {
+            assertTrue(wav.delete());
+        }
+    }
+
+    @Test
+    public void relativeGateAcrossChunks() throws IOException {
+        //-36/-23/-36 dBFS 各 10/60/10 秒，跨越多个并行分段
+        File wav = writeWav(new float[]{-36f, -23f, -36f}, new int[]{10, 60, 10});
+        try {
+            LoudnessResult result = new LoudnessNormalizer().setThreads(4).measureWav(wav);
+            assertEquals(-23f, (float) result.getIntegratedLufs(), 0.1f);
+        } finally {
+            assertTrue(wav.delete());
+        }
+    }
+
+    @Test
+    public void normalizeToNewFile() throws IOException {
+        File wav = writeWav(new float[]{-30f}, new int[]{15});
+        File out = new File(wav.getPath() + ".out.wav");
+        try {
+            LoudnessNormalizer normalizer = new LoudnessNormalizer().setTargetLufs(-16);
+            LoudnessResult result = normalizer.normalizeWav(wav, out);
+            assertEquals(14f, (float) result.getGainDb(), 0.1f);
+            assertEquals(-16f, (float) normalizer.measureWav(out).getIntegratedLufs(), 0.1f);
+            //原文件不变
+            assertEquals(-30f, (float) normalizer.measureWav(wav).getIntegratedLufs(), 0.1f);
+
+            LoudnessResult limited = new LoudnessNormalizer().setTargetLufs(0).normalizeWav(out, null);
+            assertTrue(limited.isPeakLimited());
+            assertEquals(-1f, (float) new LoudnessNormalizer().measureWav(out).getSamplePeakDbfs(), 0.01f);
+        } finally {
+            assertTrue(wav.delete());
+            assertTrue(out.delete());
+        }
+    }
+
+    /**
+     * 双声道 1kHz 正弦，按段指定峰值电平 dBFS 与时长
+     */
+    private static File writeWav(float[] levels, int[] seconds) throws IOException {
+        int totalFrames = 0;
+        for (int s : seconds) {
+            totalFrames += s * SAMPLE_RATE;
+        }
+        File file = File.createTempFile("loudness", ".wav");
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            int dataLength = totalFrames * 4;
+            writeAscii(os, "RIFF");
+            writeInt(os, 36 + dataLength);
+            writeAscii(os, "WAVE");
+            writeAscii(os, "fmt ");
+            writeInt(os, 16);
+            writeShort(os, 1);
+            writeShort(os, 2);
+            writeInt(os, SAMPLE_RATE);
+            writeInt(os, SAMPLE_RATE * 4);
+            writeShort(os, 4);
+            writeShort(os, 16);
+            writeAscii(os, "data");
+            writeInt(os, dataLength);
+            long n = 0;
+            for (int segment = 0; segment < levels.length; segment++) {
+                double amplitude = 32768 * Math.pow(10, levels[segment] / 20);
+                for (int i = 0; i < seconds[segment] * SAMPLE_RATE; i++, n++) {
+                    int sample = (int) Math.round(amplitude * Math.sin(2 * Math.PI * 1000 * n / SAMPLE_RATE));
+                    writeShort(os, sample);
+                    writeShort(os, sample);
+                }
+            }
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+
+    private static void writeAscii(OutputStream os, String s) throws IOException {
+        os.write(s.getBytes("US-ASCII"));
+    }
+
+    private static void writeInt(OutputStream os, int v) throws IOException {
+        writeShort(os, v);
+        writeShort(os, v >> 16);
+    }
+
+    private static void writeShort(OutputStream os, int v) throws IOException {
+        os.write(v);
+        os.write(v >> 8);
+    }
+}
@@ -0,0 +1,64 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverValuesWithBoundedError() {
+        for (long v = 0; v < 1 << 20; v += 1 + v / 7) {
+            int index = LatencyHistogram.indexOf(v);
+            long upper = LatencyHistogram.upperBoundOf(index);
+            assertTrue(v + " -> " + upper, upper >= v);
+            assertTrue(v + " -> " + upper, upper <= v + v / 4 + 1);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(index - 1) < v);
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        histogram.recordNanos(-5);
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1001, snapshot.getCount());
+        assertEquals(500, snapshot.getMean());
+        assertEquals(1000, snapshot.getMax());
+        assertTrue(snapshot.getP50() >= 500 && snapshot.getP50() <= 625);
+        assertTrue(snapshot.getP90() >= 900 && snapshot.getP90() <= 1000);
+        assertEquals(1000, snapshot.getP99());
+        assertEquals(0, new LatencyHistogram().snapshot().getP99());
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(i % 100);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(40000, snapshot.getCount());
+        assertEquals(99, snapshot.getMax());
+        assertEquals(40000L * 99 / 2, histogram.getTotal());
+    }
+}
@@ -0,0 +1,113 @@
+package com.zlw.main.recorderlib.recorder.metrics;
+
+import com.zlw.main.recorderlib.recorder.pipeline.AudioFrame;
+import com.zlw.main.recorderlib.recorder.pipeline.Pipeline;
+import com.zlw.main.recorderlib.recorder.pipeline.Stage;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecordMetricsTest {
+
+    private static Stage sleeping(final long millis) {
+        return new Stage() {
+            @Override
+            public void process(AudioFrame frame) throws IOException {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void finish() {
+            }
+        };
+    }
+
+    @Test
+    public void snapshotAggregatesQueuesAndRealtimeFactor() {
+        RecordMetrics metrics = new RecordMetrics();
+        QueueMetrics queue = metrics.getQueue("aac");
+        assertTrue(queue == metrics.getQueue("aac"));
+        queue.onEnqueue(3);
+        queue.onEnqueue(7);
+        queue.onDequeue(2000000, 6);
+        queue.onDrop();
+        queue.onDrop();
+        metrics.recordEncode(5000000, 20000000);
+        metrics.recordEncode(5000000, 20000000);
+        metrics.countOverrun();
+        metrics.finish();
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.getQueues().size());
+        QueueStats stats = snapshot.getQueues().get(0);
+        assertEquals(6, stats.getDepth());
+        assertEquals(7, stats.getMaxDepth());
+        assertEquals(2000, stats.getWait().getMax());
+        assertEquals(2, snapshot.getDroppedFrames());
+        assertEquals(0.25f, snapshot.getRealtimeFactor(), 0.001f);
+        assertEquals(1, snapshot.getOverruns());
+        String text = snapshot.toString();
+        assertTrue(text, text.contains("queue aac: depth=6 max=7 dropped=2"));
+        assertTrue(text, text.contains("realtime factor: 0.250"));
+    }
+
+    @Test
+    public void pipelineRecordsStageTimesAndQueueWait() throws Exception {
+        RecordMetrics metrics = new RecordMetrics();
+        Pipeline pipeline = new Pipeline(false, 16)
+                .setMetrics(metrics)
+                .add("fast", sleeping(0))
+                .add("slow", sleeping(3), 2);
+        pipeline.start();
+        for (int i = 0; i < 10; i++) {
+            AudioFrame frame = pipeline.obtain();
+            frame.setLength(16);
+            pipeline.push(frame);
+        }
+        pipeline.finish();
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertEquals(10, snapshot.getStages().get("fast").getCount());
+        HistogramSnapshot slow = snapshot.getStages().get("slow");
+        assertEquals(10, slow.getCount());
+        assertTrue(slow.toString(), slow.getP50() >= 2500);
+        QueueStats queue = snapshot.getQueues().get(0);
+        assertEquals("pipeline-slow", queue.getName());
+        assertEquals(10, queue.getWait().getCount());
+        assertTrue(queue.getMaxDepth() >= 1 && queue.getMaxDepth() <= 2);
+    }
+
+    @Test
+    public void dumperWritesFinalSnapshot() throws IOException {
+        File file = File.createTempFile("metrics", ".txt");
+        assertTrue(file.delete());
+        RecordMetrics metrics = new RecordMetrics();
+        metrics.recordWrite(1500000);
+        MetricsDumper dumper = new MetricsDumper(new MetricsConfig(file.getAbsolutePath()).setDumpIntervalMs(100000),
+                metrics, "test config");
+        dumper.start();
+        dumper.stop();
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            assertEquals(data.length, in.read(data));
+        } finally {
+            in.close();
+        }
+        String text = new String(data, "UTF-8");
+        assertTrue(text, text.contains("test config\n"));
+        assertTrue(text, text.contains("write: n=1 "));
+        assertFalse(new File(file.getAbsolutePath() + ".tmp").exists());
+        assertTrue(file.delete());
+    }
+}
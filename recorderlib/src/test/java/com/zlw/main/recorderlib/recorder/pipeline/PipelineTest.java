@@ -0,0 +1,148 @@
+package com.zlw.main.recorderlib.recorder.pipeline;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineTest {
+
+    /**
+     * 记录经过的数据和线程
+     */
+    private static class RecordingStage implements Stage {
+        final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+        volatile Thread thread;
+        volatile boolean finished;
+        volatile int valuesAtFinish = -1;
+        final long delayMs;
+
+        RecordingStage(long delayMs) {
+            this.delayMs = delayMs;
+        }
+
+        @Override
+        public void process(AudioFrame frame) throws IOException {
+            thread = Thread.currentThread();
+            values.add((int) frame.getShorts()[0]);
+            if (delayMs > 0) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        }
+
+        @Override
+        public void finish() {
+            valuesAtFinish = values.size();
+            finished = true;
+        }
+    }
+
+    @Test
+    public void syncStagesRunInOrderAndModifyData() throws Exception {
+        final List<String> order = new ArrayList<>();
+        Stage doubler = new Stage() {
+            @Override
+            public void process(AudioFrame frame) {
+                order.add("double");
+                short[] data = frame.getShorts();
+                for (int i = 0; i < frame.getLength(); i++) {
+                    data[i] *= 2;
+                }
+                frame.setLength(frame.getLength() - 1);
+            }
+
+            @Override
+            public void finish() {
+                order.add("finish");
+            }
+        };
+        RecordingStage sink = new RecordingStage(0);
+        Pipeline pipeline = new Pipeline(true, 4).add("double", doubler).add("skip", null).add("sink", sink);
+        assertEquals(2, pipeline.getStageNames().size());
+        pipeline.start();
+        for (int i = 1; i <= 3; i++) {
+            AudioFrame frame = pipeline.obtain();
+            assertEquals(4, frame.getCapacity());
+            frame.getShorts()[0] = (short) i;
+            frame.setLength(2);
+            pipeline.push(frame);
+        }
+        pipeline.finish();
+        assertEquals(3, sink.values.size());
+        assertEquals(6, (int) sink.values.get(2));
+        assertEquals(Thread.currentThread(), sink.thread);
+        assertEquals("finish", order.get(order.size() - 1));
+        assertTrue(sink.finished);
+    }
+
+    @Test
+    public void asyncStageDrainsQueueBeforeFinish() throws Exception {
+        RecordingStage first = new RecordingStage(0);
+        RecordingStage slow = new RecordingStage(2);
+        RecordingStage last = new RecordingStage(0);
+        Pipeline pipeline = new Pipeline(true, 1)
+                .add("first", first)
+                .add("slow", slow, 2)
+                .add("last", last);
+        pipeline.start();
+        Map<AudioFrame, Boolean> frames = new IdentityHashMap<>();
+        int count = 50;
+        for (int i = 0; i < count; i++) {
+            AudioFrame frame = pipeline.obtain();
+            frames.put(frame, Boolean.TRUE);
+            frame.getShorts()[0] = (short) i;
+            frame.setLength(1);
+            pipeline.push(frame);
+        }
+        pipeline.finish();
+        //数据块循环使用：1块在录音线程 + 队列2块 + 异步线程处理中1块
+        assertTrue(frames.size() <= 4);
+        assertEquals(Thread.currentThread(), first.thread);
+        assertTrue(slow.thread != Thread.currentThread());
+        assertEquals(slow.thread, last.thread);
+        assertEquals(count, last.values.size());
+        assertEquals(count, last.valuesAtFinish);
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (int) last.values.get(i));
+        }
+        assertTrue(first.finished);
+        assertTrue(last.finished);
+    }
+
+    @Test(expected = IOException.class)
+    public void asyncErrorIsReported() throws Exception {
+        Stage failing = new Stage() {
+            @Override
+            public void process(AudioFrame frame) throws IOException {
+                throw new IOException("编码失败");
+            }
+
+            @Override
+            public void finish() {
+            }
+        };
+        Pipeline pipeline = new Pipeline(false, 8).add("failing", failing, 1);
+        pipeline.start();
+        for (int i = 0; i < 10; i++) {
+            AudioFrame frame = pipeline.obtain();
+            frame.setLength(8);
+            try {
+                pipeline.push(frame);
+            } catch (IOException e) {
+                break;
+            }
+        }
+        pipeline.finish();
+    }
+}
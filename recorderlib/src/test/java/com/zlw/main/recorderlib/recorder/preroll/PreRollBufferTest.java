@@ -0,0 +1,71 @@
+package com.zlw.main.recorderlib.recorder.preroll;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class PreRollBufferTest {
+
+    private static byte[] sequence(int start, int len) {
+        byte[] data = new byte[len];
+        for (int i = 0; i < len; i++) {
+            data[i] = (byte) (start + i);
+        }
+        return data;
+    }
+
+    @Test
+    public void keepsLatestDataAcrossWrap() {
+        //10帧，双声道16bit
+        PreRollBuffer buffer = new PreRollBuffer(10, 4);
+        assertEquals(40, buffer.getCapacity());
+        buffer.write(sequence(0, 24), 0, 24);
+        buffer.write(sequence(24, 24), 0, 24);
+        assertEquals(40, buffer.available());
+
+        byte[] out = new byte[64];
+        //按整帧读取：请求 10 字节只读出 8 字节
+        assertEquals(8, buffer.read(out, 0, 10));
+        assertEquals(32, buffer.read(out, 8, 56));
+        byte[] expected = sequence(8, 40);
+        byte[] actual = new byte[40];
+        System.arraycopy(out, 0, actual, 0, 40);
+        assertArrayEquals(expected, actual);
+        assertEquals(0, buffer.read(out, 0, 64));
+    }
+
+    @Test
+    public void oversizedWriteKeepsTail() {
+        PreRollBuffer buffer = new PreRollBuffer(4, 2);
+        buffer.write(sequence(0, 4), 0, 4);
+        //末尾不足一帧的1字节丢弃
+        buffer.write(sequence(100, 21), 0, 21);
+        byte[] out = new byte[8];
+        assertEquals(8, buffer.read(out, 0, 8));
+        assertArrayEquals(sequence(112, 8), out);
+    }
+
+    @Test
+    public void readsLittleEndianShorts() {
+        PreRollBuffer buffer = new PreRollBuffer(6, 4);
+        short[] samples = new short[20];
+        byte[] data = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (i * 1000 - 9000);
+            data[i * 2] = (byte) samples[i];
+            data[i * 2 + 1] = (byte) (samples[i] >> 8);
+        }
+        //20个样本写入容量12个样本的缓冲，保留最后12个，且跨越了环形边界
+        buffer.write(data, 0, 16);
+        buffer.write(data, 16, data.length - 16);
+        short[] out = new short[12];
+        assertEquals(5 * 2, buffer.read(out, 0, 11));
+        assertEquals(2, buffer.read(out, 10, 2));
+        short[] expected = new short[12];
+        System.arraycopy(samples, 8, expected, 0, 12);
+        assertArrayEquals(expected, out);
+        buffer.clear();
+        assertEquals(0, buffer.available());
+    }
+}
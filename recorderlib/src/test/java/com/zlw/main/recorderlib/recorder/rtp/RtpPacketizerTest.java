@@ -0,0 +1,237 @@
+package com.zlw.main.recorderlib.recorder.rtp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 以本地 UDP socket 作为接收端，检查 RTP 头、负载格式和 pacing
+ */
+public class RtpPacketizerTest {
+    private DatagramSocket receiver;
+
+    @Before
+    public void setUp() throws IOException {
+        receiver = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+        receiver.setSoTimeout(2000);
+        receiver.setReceiveBufferSize(1 << 20);
+    }
+
+    @After
+    public void tearDown() {
+        receiver.close();
+    }
+
+    private RtpSender openSender(RtpConfig config, int clockRate) throws IOException {
+        RtpSender sender = new RtpSender(config, clockRate);
+        sender.open();
+        return sender;
+    }
+
+    private RtpConfig config() {
+        return new RtpConfig("127.0.0.1", receiver.getLocalPort()).setSsrc(0x12345678);
+    }
+
+    private List<byte[]> receive(int count) throws IOException {
+        List<byte[]> packets = new ArrayList<>();
+        byte[] buffer = new byte[2048];
+        for (int i = 0; i < count; i++) {
+            DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            receiver.receive(packet);
+            byte[] data = new byte[packet.getLength()];
+            System.arraycopy(buffer, 0, data, 0, data.length);
+            packets.add(data);
+        }
+        return packets;
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xff) << 8) | (data[offset + 1] & 0xff);
+    }
+
+    private static int u32(byte[] data, int offset) {
+        return (u16(data, offset) << 16) | u16(data, offset + 2);
+    }
+
+    private static boolean marker(byte[] packet) {
+        return (packet[1] & 0x80) != 0;
+    }
+
+    @Test
+    public void l16PacketsAreBigEndianWithSampleTimestamps() throws IOException {
+        RtpSender sender = openSender(config().setPayloadType(97), 8000);
+        L16RtpPacketizer packetizer = new L16RtpPacketizer(sender, 1, 20);
+        assertEquals(160, packetizer.getPacketFrames());
+        byte[] pcm = new byte[400 * 2];
+        for (int i = 0; i < 400; i++) {
+            pcm[i * 2] = (byte) i;
+            pcm[i * 2 + 1] = (byte) (i >> 8);
+        }
+        packetizer.write(pcm, 0, 300);
+        packetizer.write(pcm, 300, pcm.length - 300);
+        packetizer.flush();
+        sender.close();
+
+        List<byte[]> packets = receive(3);
+        int[] sizes = {160, 160, 80};
+        int sample = 0;
+        for (int p = 0; p < packets.size(); p++) {
+            byte[] packet = packets.get(p);
+            assertEquals(0x80, packet[0] & 0xff);
+            assertEquals(97, packet[1] & 0x7f);
+            assertEquals(p == 0, marker(packet));
+            assertEquals((u16(packets.get(0), 2) + p) & 0xffff, u16(packet, 2));
+            assertEquals(u32(packets.get(0), 4) + p * 160, u32(packet, 4));
+            assertEquals(0x12345678, u32(packet, 8));
+            assertEquals(RtpSender.HEADER_SIZE + sizes[p] * 2, packet.length);
+            for (int i = 0; i < sizes[p]; i++, sample++) {
+                assertEquals(sample, u16(packet, RtpSender.HEADER_SIZE + i * 2));
+            }
+        }
+        assertEquals(3, sender.getStats().getPacketsSent());
+    }
+
+    @Test
+    public void l16PacketShrinksToMtu() throws IOException {
+        RtpSender sender = openSender(config().setMtu(500), 48000);
+        L16RtpPacketizer packetizer = new L16RtpPacketizer(sender, 2, 20);
+        assertEquals((500 - RtpSender.HEADER_SIZE) / 4, packetizer.getPacketFrames());
+        sender.close();
+    }
+
+    private static byte[] adts(int payloadSize, int fill) {
+        int frameLength = payloadSize + 7;
+        byte[] frame = new byte[frameLength];
+        frame[0] = (byte) 0xff;
+        frame[1] = (byte) 0xf1;
+        frame[2] = (byte) 0x50;
+        frame[3] = (byte) (0x80 | (frameLength >> 11));
+        frame[4] = (byte) (frameLength >> 3);
+        frame[5] = (byte) (((frameLength & 7) << 5) | 0x1f);
+        frame[6] = (byte) 0xfc;
+        for (int i = 7; i < frameLength; i++) {
+            frame[i] = (byte) (fill + i);
+        }
+        return frame;
+    }
+
+    @Test
+    public void aacFramesUseAuHeadersAndFragment() throws IOException {
+        RtpSender sender = openSender(config().setMtu(300), 44100);
+        AacRtpPacketizer packetizer = new AacRtpPacketizer(sender);
+        byte[] small = adts(200, 1);
+        byte[] large = adts(700, 2);
+        packetizer.writeAdts(small, small.length);
+        packetizer.writeAdts(large, large.length);
+        sender.close();
+
+        int maxFragment = 300 - RtpSender.HEADER_SIZE - AacRtpPacketizer.AU_HEADER_SECTION_SIZE;
+        List<byte[]> packets = receive(1 + 3);
+        int ts0 = u32(packets.get(0), 4);
+        byte[] first = packets.get(0);
+        assertTrue(marker(first));
+        assertEquals(16, u16(first, RtpSender.HEADER_SIZE));
+        assertEquals(200, u16(first, RtpSender.HEADER_SIZE + 2) >> 3);
+        assertEquals(0, u16(first, RtpSender.HEADER_SIZE + 2) & 7);
+        assertEquals(RtpSender.HEADER_SIZE + 4 + 200, first.length);
+        assertEquals((byte) (1 + 7), first[RtpSender.HEADER_SIZE + 4]);
+
+        int offset = 7;
+        for (int p = 1; p < packets.size(); p++) {
+            byte[] packet = packets.get(p);
+            assertEquals(p == packets.size() - 1, marker(packet));
+            assertEquals(ts0 + AacRtpPacketizer.SAMPLES_PER_FRAME, u32(packet, 4));
+            assertEquals(700, u16(packet, RtpSender.HEADER_SIZE + 2) >> 3);
+            int n = packet.length - RtpSender.HEADER_SIZE - 4;
+            assertTrue(n <= maxFragment);
+            for (int i = 0; i < n; i++, offset++) {
+                assertEquals(large[offset], packet[RtpSender.HEADER_SIZE + 4 + i]);
+            }
+        }
+        assertEquals(large.length, offset);
+    }
+
+    /**
+     * 只在等待时前进的时钟，记录每次等待结束的时刻
+     */
+    private static class FakeClock implements RtpSender.Clock {
+        private final List<Long> wakeNanos = new ArrayList<>();
+        private long now;
+
+        FakeClock(long now) {
+            this.now = now;
+        }
+
+        @Override
+        public synchronized long nanoTime() {
+            return now;
+        }
+
+        @Override
+        public synchronized void parkNanos(long nanos) {
+            now += nanos;
+            wakeNanos.add(now);
+        }
+
+        synchronized List<Long> getWakeNanos() {
+            return new ArrayList<>(wakeNanos);
+        }
+    }
+
+    @Test
+    public void pacingSpreadsBurstOverMediaTime() throws IOException {
+        long start = 1000000000L;
+        long packetNanos = 20000000L;
+        FakeClock clock = new FakeClock(start);
+        RtpSender sender = new RtpSender(config().setPacing(true), 8000);
+        sender.setClock(clock);
+        sender.open();
+        L16RtpPacketizer packetizer = new L16RtpPacketizer(sender, 1, 20);
+        sender.markCaptured(10 * 160, start);
+        packetizer.write(new byte[10 * 160 * 2], 0, 10 * 160 * 2);
+        receive(10);
+        sender.close();
+        //第一个包立即发出，之后每 20ms 一个
+        List<Long> wakeNanos = clock.getWakeNanos();
+        assertEquals(9, wakeNanos.size());
+        for (int i = 0; i < wakeNanos.size(); i++) {
+            assertEquals(start + (i + 1) * packetNanos, (long) wakeNanos.get(i));
+        }
+        RtpStats stats = sender.getStats();
+        assertEquals(10, stats.getPacketsSent());
+        assertEquals(0, stats.getDroppedPackets());
+        //整段在 start 时刻采集完，第一个包的最后一个样本已等待 9 个包的时长，之后按媒体时钟发出，延迟不变
+        assertEquals(180f, stats.getMaxLatencyMs(), 0.001f);
+        assertEquals(180f, stats.getAverageLatencyMs(), 0.001f);
+    }
+
+    @Test
+    public void latencyFromCaptureToSocket() throws IOException {
+        RtpSender sender = openSender(config(), 48000);
+        L16RtpPacketizer packetizer = new L16RtpPacketizer(sender, 1, 10);
+        byte[] block = new byte[480 * 2];
+        long frames = 0;
+        for (int i = 0; i < 200; i++) {
+            frames += 480;
+            sender.markCaptured(frames, System.nanoTime());
+            packetizer.write(block, 0, block.length);
+            receive(1);
+        }
+        sender.close();
+        RtpStats stats = sender.getStats();
+        assertEquals(200, stats.getPacketsSent());
+        assertTrue(stats.getAverageLatencyMs() < 5);
+        assertFalse(sender.isOpen());
+    }
+}
@@ -0,0 +1,169 @@
+package com.zlw.main.recorderlib.recorder.stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RecordPublisherTest {
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static class TestSubscriber implements Subscriber<Integer> {
+        final List<Integer> items = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch subscribed = new CountDownLatch(1);
+        final CountDownLatch errored = new CountDownLatch(1);
+        final CountDownLatch entered = new CountDownLatch(1);
+        volatile Subscription subscription;
+        volatile CountDownLatch received = new CountDownLatch(0);
+        volatile CountDownLatch gate;
+        volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            subscribed.countDown();
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            entered.countDown();
+            CountDownLatch g = gate;
+            if (g != null) {
+                try {
+                    g.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            items.add(item);
+            received.countDown();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            errored.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        void request(int n) throws InterruptedException {
+            received = new CountDownLatch(n);
+            subscription.request(n);
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void deliversOnlyRequestedItems() throws InterruptedException {
+        RecordPublisher<Integer> publisher = new RecordPublisher<>("test", executor);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber, 16, OverflowStrategy.DROP_OLDEST);
+        assertTrue(subscriber.subscribed.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            publisher.offer(i);
+        }
+        subscriber.request(3);
+        Thread.sleep(50);
+        assertEquals(3, subscriber.items.size());
+        subscriber.request(7);
+        assertEquals(10, subscriber.items.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) subscriber.items.get(i));
+        }
+        subscriber.subscription.cancel();
+        assertFalse(publisher.hasSubscribers());
+    }
+
+    @Test
+    public void overflowStrategiesPerSubscriber() throws InterruptedException {
+        RecordPublisher<Integer> publisher = new RecordPublisher<>("test", executor);
+        TestSubscriber oldest = new TestSubscriber();
+        TestSubscriber newest = new TestSubscriber();
+        TestSubscriber failing = new TestSubscriber();
+        publisher.subscribe(oldest, 4, OverflowStrategy.DROP_OLDEST);
+        publisher.subscribe(newest, 4, OverflowStrategy.DROP_NEWEST);
+        publisher.subscribe(failing, 4, OverflowStrategy.ERROR);
+        assertTrue(oldest.subscribed.await(5, TimeUnit.SECONDS));
+        assertTrue(newest.subscribed.await(5, TimeUnit.SECONDS));
+        assertTrue(failing.subscribed.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            publisher.offer(i);
+        }
+        oldest.request(4);
+        newest.request(4);
+        assertEquals(6, (int) oldest.items.get(0));
+        assertEquals(9, (int) oldest.items.get(3));
+        assertEquals(0, (int) newest.items.get(0));
+        assertEquals(3, (int) newest.items.get(3));
+        assertTrue(failing.errored.await(5, TimeUnit.SECONDS));
+        assertTrue(failing.error instanceof IllegalStateException);
+        assertEquals(0, failing.items.size());
+        assertEquals(2, publisher.getSubscriberCount());
+    }
+
+    @Test
+    public void slowSubscriberDoesNotStallOthers() throws InterruptedException {
+        RecordPublisher<Integer> publisher = new RecordPublisher<>("test", executor);
+        TestSubscriber slow = new TestSubscriber();
+        TestSubscriber fast = new TestSubscriber();
+        slow.gate = new CountDownLatch(1);
+        publisher.subscribe(slow, 2, OverflowStrategy.DROP_OLDEST);
+        publisher.subscribe(fast, 1000, OverflowStrategy.DROP_OLDEST);
+        assertTrue(slow.subscribed.await(5, TimeUnit.SECONDS));
+        assertTrue(fast.subscribed.await(5, TimeUnit.SECONDS));
+        slow.subscription.request(Long.MAX_VALUE);
+        fast.received = new CountDownLatch(500);
+        fast.subscription.request(Long.MAX_VALUE);
+        long start = System.nanoTime();
+        publisher.offer(0);
+        assertTrue(slow.entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < 500; i++) {
+            publisher.offer(i);
+        }
+        //发布方不等待被阻塞的订阅者
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertTrue(fast.received.await(5, TimeUnit.SECONDS));
+        assertEquals(500, fast.items.size());
+        slow.gate.countDown();
+        Thread.sleep(100);
+        //被阻塞的1个 + 缓冲中保留的最新2个
+        assertEquals(3, slow.items.size());
+        assertEquals(499, (int) slow.items.get(2));
+    }
+
+    @Test
+    public void nonPositiveRequestEndsSubscription() throws InterruptedException {
+        RecordPublisher<Integer> publisher = new RecordPublisher<>("test", executor);
+        TestSubscriber subscriber = new TestSubscriber();
+        publisher.subscribe(subscriber);
+        assertTrue(subscriber.subscribed.await(5, TimeUnit.SECONDS));
+        subscriber.subscription.request(0);
+        assertTrue(subscriber.errored.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertFalse(publisher.hasSubscribers());
+    }
+}
@@ -0,0 +1,208 @@
+package com.zlw.main.recorderlib.recorder.trim;
+
+import com.zlw.main.recorderlib.recorder.wav.PcmFileInfo;
+
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SilenceTrimmerTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void trimWavKeepsPaddingAndTrailingChunk() throws IOException {
+        //1s 静音 + 2s 信号 + 1.5s 静音，data 之后带一个 LIST 块
+        File wav = writeWav(SAMPLE_RATE, 2 * SAMPLE_RATE, 3 * SAMPLE_RATE / 2);
+        try {
+            TrimResult result = SilenceTrimmer.trimWav(wav, -50f, 100);
+            assertTrue(result.isTrimmed());
+            assertEquals(900, result.getRemovedLeadingMs());
+            assertEquals(1400, result.getRemovedTrailingMs());
+
+            PcmFileInfo info = PcmFileInfo.ofWav(wav);
+            assertEquals(2200 * SAMPLE_RATE / 1000, info.getFrames());
+            RandomAccessFile raf = new RandomAccessFile(wav, "r");
+            try {
+                assertEquals(raf.length() - 8, readIntLe(raf, 4));
+                raf.seek(info.getDataOffset() + 1599 * 2);
+                assertEquals(0, readShortLe(raf));
+                assertEquals(10000, readShortLe(raf));
+                raf.seek(info.getDataOffset() + info.getDataLength());
+                assertEquals('L', raf.read());
+            } finally {
+                raf.close();
+            }
+
+            //再次裁剪不再变化
+            assertFalse(SilenceTrimmer.trimWav(wav, -50f, 100).isTrimmed());
+        } finally {
+            assertTrue(wav.delete());
+        }
+    }
+
+    @Test
+    public void allSilentWavUntouched() throws IOException {
+        File wav = writeWav(SAMPLE_RATE, 0, 0);
+        try {
+            long length = wav.length();
+            assertFalse(SilenceTrimmer.trimWav(wav).isTrimmed());
+            assertEquals(length, wav.length());
+        } finally {
+            assertTrue(wav.delete());
+        }
+    }
+
+    @Test
+    public void trimAdtsAtFrameBoundaries() throws IOException {
+        //30 帧，16kHz，每帧 1024 样本 = 64ms
+        File file = File.createTempFile("trim", ".aac");
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            for (int i = 0; i < 30; i++) {
+                int length = 20;
+                os.write(0xff);
+                os.write(0xf1);
+                os.write((1 << 6) | (8 << 2));
+                os.write((1 << 6) | (length >> 11));
+                os.write(length >> 3);
+                os.write(((length & 7) << 5) | 0x1f);
+                os.write(0xfc);
+                for (int j = 7; j < length; j++) {
+                    os.write(i);
+                }
+            }
+        } finally {
+            os.close();
+        }
+        try {
+            TrimResult result = SilenceTrimmer.trimAdts(file, 200, 1000);
+            assertEquals(192, result.getRemovedLeadingMs());
+            assertEquals(896, result.getRemovedTrailingMs());
+            assertEquals(13 * 20, file.length());
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                raf.seek(7);
+                assertEquals(3, raf.read());
+                raf.seek(12 * 20 + 7);
+                assertEquals(15, raf.read());
+            } finally {
+                raf.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    @Test
+    public void trimMp3KeepsId3AndDropsXing() throws IOException {
+        //MPEG1 Layer III 128kbps 44.1kHz，每帧 417 字节
+        int frameLength = 417;
+        File file = File.createTempFile("trim", ".mp3");
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            os.write(new byte[]{'I', 'D', '3', 4, 0, 0, 0, 0, 0, 20});
+            os.write(new byte[20]);
+            for (int i = -1; i < 20; i++) {
+                byte[] frame = new byte[frameLength];
+                frame[0] = (byte) 0xff;
+                frame[1] = (byte) 0xfb;
+                frame[2] = (byte) 0x90;
+                if (i < 0) {
+                    System.arraycopy("Xing".getBytes("US-ASCII"), 0, frame, 36, 4);
+                } else {
+                    frame[4] = (byte) i;
+                }
+                os.write(frame);
+            }
+        } finally {
+            os.close();
+        }
+        try {
+            TrimResult result = SilenceTrimmer.trimMp3(file, 0, 200);
+            assertEquals(0, result.getRemovedLeadingMs());
+            assertEquals(30 + 8 * frameLength, file.length());
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                assertEquals('I', raf.read());
+                raf.seek(30 + 4);
+                assertEquals(0, raf.read());
+                raf.seek(30 + 7 * frameLength + 4);
+                assertEquals(7, raf.read());
+            } finally {
+                raf.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    private static File writeWav(int leadingFrames, int loudFrames, int trailingFrames) throws IOException {
+        File file = File.createTempFile("trim", ".wav");
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file));
+        try {
+            int dataLength = (leadingFrames + loudFrames + trailingFrames) * 2;
+            int listLength = 12;
+            writeAscii(os, "RIFF");
+            writeInt(os, 36 + dataLength + 8 + listLength);
+            writeAscii(os, "WAVE");
+            writeAscii(os, "fmt ");
+            writeInt(os, 16);
+            writeShort(os, 1);
+            writeShort(os, 1);
+            writeInt(os, SAMPLE_RATE);
+            writeInt(os, SAMPLE_RATE * 2);
+            writeShort(os, 2);
+            writeShort(os, 16);
+            writeAscii(os, "data");
+            writeInt(os, dataLength);
+            for (int i = 0; i < leadingFrames; i++) {
+                writeShort(os, 0);
+            }
+            for (int i = 0; i < loudFrames; i++) {
+                writeShort(os, i % 2 == 0 ? 10000 : -10000);
+            }
+            for (int i = 0; i < trailingFrames; i++) {
+                writeShort(os, 0);
+            }
+            writeAscii(os, "LIST");
+            writeInt(os, listLength);
+            writeAscii(os, "INFOISFT");
+            writeInt(os, 0);
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+
+    private static long readIntLe(RandomAccessFile raf, long position) throws IOException {
+        raf.seek(position);
+        return (raf.read() | (raf.read() << 8) | (raf.read() << 16) | ((long) raf.read() << 24));
+    }
+
+    private static int readShortLe(RandomAccessFile raf) throws IOException {
+        return (short) (raf.read() | (raf.read() << 8));
+    }
+
+    private static void writeAscii(OutputStream os, String s) throws IOException {
+        os.write(s.getBytes("US-ASCII"));
+    }
+
+    private static void writeInt(OutputStream os, int v) throws IOException {
+        writeShort(os, v);
+        writeShort(os, v >> 16);
+    }
+
+    private static void writeShort(OutputStream os, int v) throws IOException {
+        os.write(v);
+        os.write(v >> 8);
+    }
+}
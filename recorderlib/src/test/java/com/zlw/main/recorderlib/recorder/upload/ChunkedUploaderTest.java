@@ -0,0 +1,266 @@
+package com.zlw.main.recorderlib.recorder.upload;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 以本地 HTTP 服务代替接收端，服务端按 Content-Range 乱序拼接
+ */
+public class ChunkedUploaderTest {
+    private HttpServer server;
+    private IngestHandler handler;
+    private File spillDir;
+
+    @Before
+    public void setUp() throws IOException {
+        handler = new IngestHandler();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ingest", handler);
+        server.setExecutor(java.util.concurrent.Executors.newFixedThreadPool(4));
+        server.start();
+        spillDir = File.createTempFile("upload", "");
+        assertTrue(spillDir.delete());
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = spillDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        spillDir.delete();
+    }
+
+    @Test
+    public void parallelChunksAssembleInOrder() throws Exception {
+        byte[] data = randomBytes(100000);
+        Result result = new Result();
+        ChunkedUploader uploader = new ChunkedUploader(config().setParallelUploads(3), spillDir, "s1", result);
+        uploader.start();
+        writeInPieces(uploader, data);
+        uploader.finish();
+
+        assertTrue(result.complete.await(10, TimeUnit.SECONDS));
+        assertEquals(data.length, result.total);
+        assertArrayEquals(data, handler.assembled("s1"));
+        assertEquals(data.length, uploader.getAckedOffset());
+        assertEquals(0, uploader.getBufferedBytes());
+    }
+
+    @Test
+    public void offlineSpillsToDiskAndRecovers() throws Exception {
+        handler.offline = true;
+        byte[] data = randomBytes(64 * 1024 + 100);
+        Result result = new Result();
+        ChunkedUploader uploader = new ChunkedUploader(config().setMemoryBufferBytes(8192), spillDir, "s2", result);
+        uploader.start();
+        writeInPieces(uploader, data);
+        assertTrue(uploader.getBufferedBytes() <= 8192);
+        assertTrue(uploader.getSpilledBytes() >= data.length - 8192 - 4096);
+
+        handler.offline = false;
+        uploader.finish();
+        assertTrue(result.complete.await(10, TimeUnit.SECONDS));
+        assertArrayEquals(data, handler.assembled("s2"));
+        assertEquals(0, countFiles(spillDir));
+    }
+
+    @Test
+    public void resumeSkipsAcknowledgedPrefix() throws Exception {
+        byte[] data = randomBytes(40000);
+        handler.offline = true;
+        Result first = new Result();
+        ChunkedUploader uploader = new ChunkedUploader(config(), spillDir, "s3", first);
+        uploader.start();
+        writeInPieces(uploader, data);
+        uploader.finish();
+        uploader.stop();
+        assertTrue(countFiles(spillDir) > 0);
+
+        //服务端在断线前其实已收到第一块
+        byte[] head = new byte[4096];
+        System.arraycopy(data, 0, head, 0, head.length);
+        handler.store("s3", 0, head);
+        handler.offline = false;
+
+        Result result = new Result();
+        ChunkedUploader resumed = ChunkedUploader.resume(config(), spillDir, "s3", result);
+        resumed.start();
+        assertTrue(result.complete.await(10, TimeUnit.SECONDS));
+        assertEquals(data.length, result.total);
+        assertArrayEquals(data, handler.assembled("s3"));
+        assertEquals(0, handler.uploadsAt(0));
+        assertEquals(0, countFiles(spillDir));
+    }
+
+    @Test
+    public void parseRange() {
+        assertEquals(0, ChunkedUploader.parseRangeEnd(null));
+        assertEquals(4096, ChunkedUploader.parseRangeEnd("bytes=0-4095"));
+    }
+
+    private UploadConfig config() {
+        return new UploadConfig("http://127.0.0.1:" + server.getAddress().getPort() + "/ingest")
+                .setChunkSize(4096)
+                .setRetryDelayMs(10)
+                .setMaxRetryDelayMs(50);
+    }
+
+    private static void writeInPieces(ChunkedUploader uploader, byte[] data) {
+        Random random = new Random(5);
+        int offset = 0;
+        while (offset < data.length) {
+            int len = Math.min(data.length - offset, 1 + random.nextInt(1500));
+            uploader.write(data, offset, len);
+            offset += len;
+        }
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+
+    private static int countFiles(File dir) {
+        File[] files = dir.listFiles();
+        return files == null ? 0 : files.length;
+    }
+
+    private static class Result implements ChunkedUploader.Listener {
+        final CountDownLatch complete = new CountDownLatch(1);
+        volatile long total = -1;
+
+        @Override
+        public void onProgress(String sessionId, long ackedBytes, long writtenBytes) {
+        }
+
+        @Override
+        public void onComplete(String sessionId, long totalBytes) {
+            total = totalBytes;
+            complete.countDown();
+        }
+
+        @Override
+        public void onError(String sessionId, String error) {
+        }
+    }
+
+    private static class IngestHandler implements HttpHandler {
+        volatile boolean offline;
+        private final Map<String, TreeMap<Long, byte[]>> sessions = new TreeMap<>();
+        private final Map<String, Long> totals = new TreeMap<>();
+        private final AtomicInteger uploadsAtZero = new AtomicInteger();
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            byte[] body = readAll(exchange.getRequestBody());
+            if (offline) {
+                send(exchange, 503);
+                return;
+            }
+            String session = exchange.getRequestHeaders().getFirst(ChunkedUploader.HEADER_SESSION);
+            String range = exchange.getRequestHeaders().getFirst("Content-Range");
+            String spec = range.substring("bytes ".length());
+            int slash = spec.indexOf('/');
+            String positions = spec.substring(0, slash);
+            String total = spec.substring(slash + 1);
+            synchronized (this) {
+                if (!"*".equals(positions)) {
+                    long start = Long.parseLong(positions.substring(0, positions.indexOf('-')));
+                    if (start == 0) {
+                        uploadsAtZero.incrementAndGet();
+                    }
+                    store(session, start, body);
+                }
+                if (!"*".equals(total)) {
+                    totals.put(session, Long.parseLong(total));
+                }
+                long prefix = prefix(session);
+                Long expected = totals.get(session);
+                if (expected != null && prefix == expected) {
+                    send(exchange, 201);
+                } else {
+                    if (prefix > 0) {
+                        exchange.getResponseHeaders().set("Range", "bytes=0-" + (prefix - 1));
+                    }
+                    send(exchange, ChunkedUploader.HTTP_RESUME_INCOMPLETE);
+                }
+            }
+        }
+
+        synchronized void store(String session, long start, byte[] body) {
+            TreeMap<Long, byte[]> chunks = sessions.get(session);
+            if (chunks == null) {
+                chunks = new TreeMap<>();
+                sessions.put(session, chunks);
+            }
+            chunks.put(start, body);
+        }
+
+        synchronized long prefix(String session) {
+            long end = 0;
+            TreeMap<Long, byte[]> chunks = sessions.get(session);
+            if (chunks != null) {
+                for (Map.Entry<Long, byte[]> entry : chunks.entrySet()) {
+                    if (entry.getKey() > end) {
+                        break;
+                    }
+                    end = Math.max(end, entry.getKey() + entry.getValue().length);
+                }
+            }
+            return end;
+        }
+
+        synchronized byte[] assembled(String session) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            for (byte[] chunk : sessions.get(session).values()) {
+                os.write(chunk, 0, chunk.length);
+            }
+            return os.toByteArray();
+        }
+
+        int uploadsAt(long offset) {
+            return offset == 0 ? uploadsAtZero.get() : -1;
+        }
+
+        private static void send(HttpExchange exchange, int code) throws IOException {
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        }
+
+        private static byte[] readAll(InputStream is) throws IOException {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) > 0) {
+                os.write(buffer, 0, read);
+            }
+            return os.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.zlw.main.recorderlib.recorder.waveform;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 峰值索引写入后按不同缩放级别查询，与直接扫描样本的结果对比
+ */
+public class PeakIndexTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void queryMatchesBruteForce() throws IOException {
+        int channels = 2;
+        int frames = SAMPLE_RATE * 30 + 123;
+        short[] pcm = new short[frames * channels];
+        Random random = new Random(3);
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (short) (random.nextGaussian() * 3000 * (1 + (i / 100000) % 4));
+        }
+        PeakIndexWriter writer = new PeakIndexWriter(SAMPLE_RATE, channels, 16);
+        //模拟采集线程的分块写入
+        for (int offset = 0; offset < pcm.length; offset += 1280) {
+            writer.process(slice(pcm, offset, Math.min(1280, pcm.length - offset)), Math.min(1280, pcm.length - offset));
+        }
+        File file = File.createTempFile("peak", ".peaks");
+        try {
+            writer.write(file);
+            PeakIndex index = PeakIndex.open(file);
+            try {
+                assertEquals(frames, index.getTotalSamples());
+                assertEquals(3, index.getLevelCount());
+                int[] pixels = {frames / 256, 800, 100, 7};
+                for (int p : pixels) {
+                    verify(index, pcm, channels, 0, frames, p);
+                }
+                //所选范围的每像素样本数为桶大小的整数倍时结果与直接扫描一致
+                verify(index, pcm, channels, 65536, 65536 + 4096 * 50, 50);
+            } finally {
+                index.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    private static void verify(PeakIndex index, short[] pcm, int channels, long start, long end, int pixels) {
+        short[] min = new short[pixels];
+        short[] max = new short[pixels];
+        int filled = index.query(start, end, pixels, min, max);
+        assertEquals(pixels, filled);
+        double samplesPerPixel = (double) (end - start) / pixels;
+        for (int p = 0; p < filled; p++) {
+            long from = start + (long) (p * samplesPerPixel);
+            long to = start + (long) ((p + 1) * samplesPerPixel);
+            int lo = Short.MAX_VALUE;
+            int hi = Short.MIN_VALUE;
+            for (long s = from * channels; s < to * channels; s++) {
+                lo = Math.min(lo, pcm[(int) s]);
+                hi = Math.max(hi, pcm[(int) s]);
+            }
+            //索引以桶为单位，像素边界向外取整后结果只会更宽
+            assertTrue(min[p] <= lo && max[p] >= hi);
+            if ((end - start) % pixels == 0 && (long) samplesPerPixel % index.getBucketSize(0) == 0 && from % index.getBucketSize(0) == 0) {
+                assertEquals(lo, min[p]);
+                assertEquals(hi, max[p]);
+            }
+        }
+    }
+
+    private static short[] slice(short[] data, int offset, int count) {
+        short[] out = new short[count];
+        System.arraycopy(data, offset, out, 0, count);
+        return out;
+    }
+}